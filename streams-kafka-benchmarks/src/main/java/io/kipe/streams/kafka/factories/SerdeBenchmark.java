@@ -0,0 +1,220 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+
+import io.confluent.kafka.schemaregistry.protobuf.ProtobufSchema;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Measures the serialization and deserialization throughput of the serdes created by the factories of this package.
+ * <p>
+ * All formats carry the same event, see {@link #createGenericRecord()}. The schema registry based formats talk to a
+ * {@code mock://} registry, so the numbers contain the serde's own work only. Note that some deserializers, e.g. the
+ * lazy json and the avro {@link GenericRecord} serdes, defer decoding the fields until they are accessed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerdeBenchmark {
+
+	private static final String TOPIC = "benchmark";
+	private static final String REGISTRY_SCOPE = "kipes-benchmarks";
+	private static final Map<String, ?> SERDE_CONFIG = Map.of(
+			"schema.registry.url", "mock://" + REGISTRY_SCOPE,
+			"json.value.type", Event.class.getName());
+
+	private static final Schema AVRO_SCHEMA = SchemaBuilder.record("Event").namespace("io.kipe.benchmarks").fields()
+			.requiredString("id")
+			.requiredString("category")
+			.requiredLong("count")
+			.requiredDouble("amount")
+			.requiredBoolean("valid")
+			.endRecord();
+
+	private static final Descriptor PROTOBUF_DESCRIPTOR = new ProtobufSchema(
+			"syntax = \"proto3\";\n"
+			+ "package io.kipe.benchmarks;\n"
+			+ "message Event {\n"
+			+ "  string id = 1;\n"
+			+ "  string category = 2;\n"
+			+ "  int64 count = 3;\n"
+			+ "  double amount = 4;\n"
+			+ "  bool valid = 5;\n"
+			+ "}\n")
+			.toDescriptor();
+
+	@Param({
+		"json",
+		"json-lazy",
+		"binary",
+		"binary-framed",
+		"avro-generic-record",
+		"avro",
+		"protobuf",
+		"json-schema"})
+	public String format;
+
+	private Serializer<Object> serializer;
+	private Deserializer<Object> deserializer;
+	private Object value;
+	private byte[] bytes;
+
+	@Setup
+	public void setup() {
+		switch (this.format) {
+		case "json":
+			use(JsonSerdeFactory.getJsonSerde(GenericRecord.class), createGenericRecord());
+			break;
+		case "json-lazy":
+			use(JsonSerdeFactory.getLazyGenericRecordSerde(), createGenericRecord());
+			break;
+		case "binary":
+			use(BinarySerdeFactory.getGenericRecordSerde(), createGenericRecord());
+			break;
+		case "binary-framed":
+			use(BinarySerdeFactory.createSchemaFramedGenericRecordSerde(new InMemoryFieldNamesRegistry()), createGenericRecord());
+			break;
+		case "avro-generic-record":
+			use(AvroSerdeFactory.createGenericRecordSerde(SERDE_CONFIG, false, AVRO_SCHEMA), createGenericRecord());
+			break;
+		case "avro":
+			use(AvroSerdeFactory.createGenericAvroSerde(SERDE_CONFIG, false), createAvroRecord());
+			break;
+		case "protobuf":
+			use(ProtobufSerdeFactory.<DynamicMessage>createProtoSerde(SERDE_CONFIG, false), createProtobufMessage());
+			break;
+		case "json-schema":
+			use(JsonSchemaSerdeFactory.<Event>createJsonSchemaSerde(SERDE_CONFIG, false), createEvent());
+			break;
+		default:
+			throw new IllegalArgumentException("unknown format: " + this.format);
+		}
+
+		// registers the schemas, if any, before the measurement
+		this.bytes = this.serializer.serialize(TOPIC, this.value);
+	}
+
+	@TearDown
+	public void tearDown() {
+		MockSchemaRegistry.dropScope(REGISTRY_SCOPE);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void use(Serde<T> serde, T value) {
+		this.serializer = (Serializer<Object>) serde.serializer();
+		this.deserializer = (Deserializer<Object>) serde.deserializer();
+		this.value = value;
+	}
+
+	// ------------------------------------------------------------------------
+	// benchmarks
+	// ------------------------------------------------------------------------
+
+	@Benchmark
+	public byte[] serialize() {
+		return this.serializer.serialize(TOPIC, this.value);
+	}
+
+	@Benchmark
+	public Object deserialize() {
+		return this.deserializer.deserialize(TOPIC, this.bytes);
+	}
+
+	// ------------------------------------------------------------------------
+	// events
+	// ------------------------------------------------------------------------
+
+	private static GenericRecord createGenericRecord() {
+		return new GenericRecord()
+				.with("id", "0f8fad5b-d9cb-469f-a165-70867728950e")
+				.with("category", "checkout")
+				.with("count", 42L)
+				.with("amount", 1234.5)
+				.with("valid", true);
+	}
+
+	private static GenericData.Record createAvroRecord() {
+		GenericData.Record r = new GenericData.Record(AVRO_SCHEMA);
+		r.put("id", "0f8fad5b-d9cb-469f-a165-70867728950e");
+		r.put("category", "checkout");
+		r.put("count", 42L);
+		r.put("amount", 1234.5);
+		r.put("valid", true);
+		return r;
+	}
+
+	private static DynamicMessage createProtobufMessage() {
+		return DynamicMessage.newBuilder(PROTOBUF_DESCRIPTOR)
+				.setField(PROTOBUF_DESCRIPTOR.findFieldByName("id"), "0f8fad5b-d9cb-469f-a165-70867728950e")
+				.setField(PROTOBUF_DESCRIPTOR.findFieldByName("category"), "checkout")
+				.setField(PROTOBUF_DESCRIPTOR.findFieldByName("count"), 42L)
+				.setField(PROTOBUF_DESCRIPTOR.findFieldByName("amount"), 1234.5)
+				.setField(PROTOBUF_DESCRIPTOR.findFieldByName("valid"), true)
+				.build();
+	}
+
+	private static Event createEvent() {
+		Event e = new Event();
+		e.id = "0f8fad5b-d9cb-469f-a165-70867728950e";
+		e.category = "checkout";
+		e.count = 42L;
+		e.amount = 1234.5;
+		e.valid = true;
+		return e;
+	}
+
+	/**
+	 * The event as POJO for the json schema serde.
+	 */
+	public static class Event {
+		public String id;
+		public String category;
+		public long count;
+		public double amount;
+		public boolean valid;
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxDistinctCount;
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxMode;
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxPercentile;
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxTopK;
+import io.kipe.streams.kafka.processors.expressions.stats.Average;
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.kafka.processors.expressions.stats.DistinctCount;
+import io.kipe.streams.kafka.processors.expressions.stats.First;
+import io.kipe.streams.kafka.processors.expressions.stats.Last;
+import io.kipe.streams.kafka.processors.expressions.stats.Max;
+import io.kipe.streams.kafka.processors.expressions.stats.Median;
+import io.kipe.streams.kafka.processors.expressions.stats.Min;
+import io.kipe.streams.kafka.processors.expressions.stats.Percentile;
+import io.kipe.streams.kafka.processors.expressions.stats.Range;
+import io.kipe.streams.kafka.processors.expressions.stats.StandardDeviation;
+import io.kipe.streams.kafka.processors.expressions.stats.Sum;
+import io.kipe.streams.kafka.processors.expressions.stats.Variance;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Measures the cost of updating a {@link StatsAggregate} with one {@link StatsExpression} by the number of groups the
+ * records are spread over.
+ * <p>
+ * {@link #update()} works on the aggregates in memory while {@link #updateThroughSerde()} additionally reads and
+ * writes each aggregate with the binary aggregate serde, like the {@link StatsBuilder}'s uncached aggregation store
+ * does per record.
+ * <p>
+ * The aggregates are reset per iteration. Expressions keeping all values of a group, e.g. median or percentiles, get
+ * more expensive the more records a group received, so their numbers depend on the iteration time and cardinality.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsExpressionBenchmark {
+
+	private static final int RECORDS = 1 << 12;
+	private static final int DISTINCT_VALUES = 1_000;
+
+	private static final String GROUP_FIELD = "group";
+	private static final String VALUE_FIELD = "value";
+	private static final String NAME_FIELD = "name";
+	private static final FieldRef[] GROUP_FIELDS = {FieldRef.of(GROUP_FIELD)};
+
+	@Param({
+		"count",
+		"sum",
+		"avg",
+		"min",
+		"max",
+		"range",
+		"first",
+		"last",
+		"distinctCount",
+		"approxDistinctCount",
+		"mode",
+		"approxMode",
+		"approxTopK",
+		"median",
+		"perc95",
+		"approxMedian",
+		"var",
+		"stdev"})
+	public String expression;
+
+	@Param({"1", "100", "10000"})
+	public int cardinality;
+
+	private StatsAggregation aggregation;
+	private GenericRecord[] records;
+	private String[] groupKeys;
+	private StatsAggregate[] aggregates;
+	private byte[][] serializedAggregates;
+	private Serializer<StatsAggregate> serializer;
+	private Deserializer<StatsAggregate> deserializer;
+	private int next;
+
+	@Setup
+	public void setup() {
+		StatsExpression statsExpression = createStatsExpression(this.expression);
+		statsExpression.prepare();
+		this.aggregation = new StatsAggregation(GROUP_FIELDS, List.of(statsExpression));
+
+		this.groupKeys = new String[this.cardinality];
+		for (int i = 0; i < this.cardinality; i++) {
+			this.groupKeys[i] = "group-" + i;
+		}
+
+		Random random = new Random(42);
+		this.records = new GenericRecord[RECORDS];
+		for (int i = 0; i < RECORDS; i++) {
+			int value = random.nextInt(DISTINCT_VALUES);
+			this.records[i] = new GenericRecord()
+					.with(VALUE_FIELD, (double) value)
+					.with(NAME_FIELD, "name-" + value);
+		}
+
+		Serde<StatsAggregate> serde = this.aggregation.serde();
+		this.serializer = serde.serializer();
+		this.deserializer = serde.deserializer();
+	}
+
+	@Setup(Level.Iteration)
+	public void resetAggregates() {
+		this.aggregates = new StatsAggregate[this.cardinality];
+		this.serializedAggregates = new byte[this.cardinality][];
+		this.next = 0;
+	}
+
+	// ------------------------------------------------------------------------
+	// benchmarks
+	// ------------------------------------------------------------------------
+
+	@Benchmark
+	public StatsAggregate update() {
+		int n = this.next++;
+		int group = n % this.cardinality;
+		String groupKey = this.groupKeys[group];
+		GenericRecord value = this.records[n & (RECORDS - 1)];
+
+		StatsAggregate aggregate = this.aggregation.update(groupKey, value, this.aggregates[group]);
+		this.aggregates[group] = aggregate;
+		return aggregate;
+	}
+
+	@Benchmark
+	public byte[] updateThroughSerde() {
+		int n = this.next++;
+		int group = n % this.cardinality;
+		String groupKey = this.groupKeys[group];
+		GenericRecord value = this.records[n & (RECORDS - 1)];
+
+		StatsAggregate aggregate = this.deserializer.deserialize(groupKey, this.serializedAggregates[group]);
+		aggregate = this.aggregation.update(groupKey, value, aggregate);
+
+		byte[] data = this.serializer.serialize(groupKey, aggregate);
+		this.serializedAggregates[group] = data;
+		return data;
+	}
+
+	// ------------------------------------------------------------------------
+	// utils
+	// ------------------------------------------------------------------------
+
+	private static StatsExpression createStatsExpression(String expression) {
+		switch (expression) {
+		case "count":
+			return Count.count();
+		case "sum":
+			return Sum.sum(VALUE_FIELD);
+		case "avg":
+			return Average.average(VALUE_FIELD);
+		case "min":
+			return Min.min(VALUE_FIELD);
+		case "max":
+			return Max.max(VALUE_FIELD);
+		case "range":
+			return Range.range(VALUE_FIELD);
+		case "first":
+			return First.first(VALUE_FIELD);
+		case "last":
+			return Last.last(VALUE_FIELD);
+		case "distinctCount":
+			return DistinctCount.distinctCount(VALUE_FIELD);
+		case "approxDistinctCount":
+			return ApproxDistinctCount.approxDistinctCount(VALUE_FIELD);
+		case "mode":
+			return io.kipe.streams.kafka.processors.expressions.stats.Mode.mode(NAME_FIELD);
+		case "approxMode":
+			return ApproxMode.approxMode(NAME_FIELD);
+		case "approxTopK":
+			return ApproxTopK.approxTopK(NAME_FIELD, 10);
+		case "median":
+			return Median.median(VALUE_FIELD);
+		case "perc95":
+			return Percentile.perc95(VALUE_FIELD);
+		case "approxMedian":
+			return ApproxPercentile.approxMedian(VALUE_FIELD);
+		case "var":
+			return Variance.var(VALUE_FIELD);
+		case "stdev":
+			return StandardDeviation.stdev(VALUE_FIELD);
+		default:
+			throw new IllegalArgumentException("unknown expression: " + expression);
+		}
+	}
+}
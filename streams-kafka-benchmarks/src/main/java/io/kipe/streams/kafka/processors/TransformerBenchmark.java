@@ -0,0 +1,215 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.MockProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.kipe.streams.kafka.factories.BinarySerdeFactory;
+import io.kipe.streams.kafka.factories.JsonSerdeFactory;
+import io.kipe.streams.kafka.processors.DedupBuilder.DedupTransformer;
+import io.kipe.streams.kafka.processors.SequenceBuilder.SequenceTransformer;
+import io.kipe.streams.kafka.processors.SequenceBuilder.SequencesSerde;
+import io.kipe.streams.kafka.processors.TransactionBuilder.EmitType;
+import io.kipe.streams.kafka.processors.TransactionBuilder.TransactionTransformer;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.recordtypes.TransactionRecord;
+
+/**
+ * Measures the per record cost of the stateful transformers backed by in-memory key value stores.
+ * <p>
+ * The stores are wrapped like in a topology, i.e. they serialize keys and values with the serdes the builders use, but
+ * have neither caching nor a changelog. The records are spread round-robin over the configured number of groups and
+ * each group sees the same, repeating sequence of events:
+ * <ul>
+ * <li>dedup: the deduplicated field changes every second record of a group, so half of the records are duplicates</li>
+ * <li>transaction: a transaction consists of a start, two ongoing and an end record, emitted at the end</li>
+ * <li>sequence: a sequence of three records is aggregated for every record once the group saw three records</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformerBenchmark {
+
+	private static final int EVENTS_PER_GROUP = 4;
+	private static final int SEQUENCE_SIZE = 3;
+
+	private static final String GROUP_FIELD = "group";
+	private static final String TYPE_FIELD = "type";
+	private static final String STATE_FIELD = "state";
+	private static final FieldRef GROUP_FIELD_REF = FieldRef.of(GROUP_FIELD);
+	private static final FieldRef TYPE_FIELD_REF = FieldRef.of(TYPE_FIELD);
+	private static final FieldRef STATE_FIELD_REF = FieldRef.of(STATE_FIELD);
+
+	private static final String START = "start";
+	private static final String ONGOING = "ongoing";
+	private static final String END = "end";
+
+	// ------------------------------------------------------------------------
+	// benchmarks
+	// ------------------------------------------------------------------------
+
+	@Benchmark
+	public KeyValue<String, GenericRecord> dedup(DedupState state) {
+		GenericRecord value = state.nextRecord();
+		return state.transformer.transform(value.get(GROUP_FIELD_REF), value);
+	}
+
+	@Benchmark
+	public KeyValue<String, TransactionRecord<String, GenericRecord>> transaction(TransactionState state) {
+		GenericRecord value = state.nextRecord();
+		return state.transformer.transform(value.get(GROUP_FIELD_REF), value);
+	}
+
+	@Benchmark
+	public KeyValue<String, Integer> sequence(SequenceState state) {
+		GenericRecord value = state.nextRecord();
+		return state.transformer.transform(value.get(GROUP_FIELD_REF), value);
+	}
+
+	// ------------------------------------------------------------------------
+	// states
+	// ------------------------------------------------------------------------
+
+	@State(Scope.Thread)
+	public static class DedupState extends AbstractTransformerState {
+
+		DedupTransformer<String, GenericRecord, String, String> transformer;
+
+		@Setup
+		public void setup() {
+			this.transformer = new DedupTransformer<>(
+					"dedup",
+					(key, value) -> key,
+					(key, value) -> value.get(STATE_FIELD_REF));
+			this.transformer.init(createContext("dedup", BinarySerdeFactory.getGenericRecordSerde()));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class TransactionState extends AbstractTransformerState {
+
+		TransactionTransformer<String, GenericRecord, String> transformer;
+
+		@Setup
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public void setup() {
+			this.transformer = new TransactionTransformer<>(
+					"transaction",
+					(key, value) -> key,
+					(key, value) -> START.equals(value.get(TYPE_FIELD_REF)),
+					(key, value) -> END.equals(value.get(TYPE_FIELD_REF)),
+					EmitType.END);
+			this.transformer.init(createContext("transaction", (Serde) JsonSerdeFactory.getJsonSerde(TransactionRecord.class)));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class SequenceState extends AbstractTransformerState {
+
+		SequenceTransformer<String, GenericRecord, Integer, String> transformer;
+
+		@Setup
+		public void setup() {
+			this.transformer = new SequenceTransformer<>(
+					"sequence",
+					(key, value) -> key,
+					SEQUENCE_SIZE,
+					(groupKey, sequence) -> sequence.size());
+			this.transformer.init(createContext("sequence", new SequencesSerde<>(GenericRecord.class)));
+		}
+	}
+
+	/**
+	 * Holds the records and the in-memory store of a transformer.
+	 */
+	public abstract static class AbstractTransformerState {
+
+		@Param({"100", "10000"})
+		public int groups;
+
+		private GenericRecord[] records;
+		private KeyValueStore<String, ?> store;
+		private int next;
+
+		@Setup
+		public void setupRecords() {
+			String[] types = { START, ONGOING, ONGOING, END };
+
+			this.records = new GenericRecord[this.groups * EVENTS_PER_GROUP];
+			for (int i = 0; i < this.records.length; i++) {
+				int event = i / this.groups;
+				this.records[i] = new GenericRecord()
+						.with(GROUP_FIELD, "group-" + (i % this.groups))
+						.with(TYPE_FIELD, types[event])
+						.with(STATE_FIELD, "state-" + (event / 2));
+			}
+		}
+
+		@TearDown
+		public void tearDown() {
+			this.store.close();
+		}
+
+		GenericRecord nextRecord() {
+			GenericRecord record = this.records[this.next];
+			this.next = (this.next + 1) % this.records.length;
+			return record;
+		}
+
+		@SuppressWarnings("deprecation")
+		<V> MockProcessorContext createContext(String storeName, Serde<V> valueSerde) {
+			MockProcessorContext context = new MockProcessorContext();
+
+			KeyValueStore<String, V> kvStore = Stores
+					.keyValueStoreBuilder(
+							Stores.inMemoryKeyValueStore(storeName),
+							Serdes.String(),
+							valueSerde)
+					.withLoggingDisabled() // changelogs aren't supported by the MockProcessorContext
+					.build();
+			kvStore.init(context, kvStore);
+			context.register(kvStore, null);
+
+			this.store = kvStore;
+			return context;
+		}
+	}
+}
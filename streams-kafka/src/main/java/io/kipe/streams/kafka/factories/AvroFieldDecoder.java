@@ -0,0 +1,140 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+
+import io.kipe.streams.recordtypes.FieldDecoder;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * A {@link FieldDecoder} reading the fields of an Avro {@link IndexedRecord}.
+ * <p>
+ * The decoder remembers the schema positions of the record's non-null fields and reads a value by its position only
+ * when the {@link GenericRecord} field is accessed first. Avro specific types are converted to the types used by
+ * {@link GenericRecord}s: strings (e.g. {@code Utf8}) and enum symbols become {@link String}s, bytes and fixed values
+ * {@code byte[]}, arrays {@link List}s, maps {@link Map}s with String keys and nested records lazy GenericRecords
+ * themselves.
+ */
+final class AvroFieldDecoder implements FieldDecoder {
+
+	/**
+	 * Returns a lazy {@link GenericRecord} backed by the given Avro record.
+	 *
+	 * @param record the Avro record.
+	 * @return the GenericRecord or {@code null} if the record is {@code null}.
+	 */
+	static GenericRecord view(IndexedRecord record) {
+		return record == null ? null : GenericRecord.lazy(new AvroFieldDecoder(record));
+	}
+
+	private final IndexedRecord record;
+	private final String[] fieldNames;
+	private final int[] positions;
+	private final int size;
+
+	private AvroFieldDecoder(IndexedRecord record) {
+		this.record = Objects.requireNonNull(record, "record");
+		
+		List<Schema.Field> fields = record.getSchema().getFields();
+		this.fieldNames = new String[fields.size()];
+		this.positions = new int[fields.size()];
+		int count = 0;
+		for (Schema.Field field : fields) {
+			// absent (null) fields are not part of the record, like in the json representation
+			if (record.get(field.pos()) != null) {
+				this.fieldNames[count] = field.name();
+				this.positions[count] = field.pos();
+				count++;
+			}
+		}
+		this.size = count;
+	}
+
+	/**
+	 * Returns the Avro record this decoder reads from.
+	 *
+	 * @return the Avro record.
+	 */
+	IndexedRecord record() {
+		return this.record;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public String fieldName(int index) {
+		return this.fieldNames[index];
+	}
+
+	@Override
+	public Object decode(int index) {
+		return fromAvro(this.record.get(this.positions[index]));
+	}
+
+	private static Object fromAvro(Object value) {
+		if (value == null || value instanceof String) {
+			return value;
+		}
+		if (value instanceof CharSequence || value instanceof GenericData.EnumSymbol) {
+			return value.toString();
+		}
+		if (value instanceof IndexedRecord) {
+			return view((IndexedRecord) value);
+		}
+		if (value instanceof ByteBuffer) {
+			ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return bytes;
+		}
+		if (value instanceof GenericData.Fixed) {
+			return ((GenericData.Fixed) value).bytes().clone();
+		}
+		if (value instanceof Collection) {
+			Collection<?> collection = (Collection<?>) value;
+			List<Object> list = new ArrayList<>(collection.size());
+			for (Object element : collection) {
+				list.add(fromAvro(element));
+			}
+			return list;
+		}
+		if (value instanceof Map) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				map.put(entry.getKey().toString(), fromAvro(entry.getValue()));
+			}
+			return map;
+		}
+		
+		return value;
+	}
+}
@@ -21,9 +21,26 @@ import io.confluent.kafka.streams.serdes.avro.GenericAvroSerde;
 import io.confluent.kafka.streams.serdes.avro.PrimitiveAvroSerde;
 import io.confluent.kafka.streams.serdes.avro.ReflectionAvroSerde;
 import io.confluent.kafka.streams.serdes.avro.SpecificAvroSerde;
+import io.kipe.streams.recordtypes.FieldDecoder;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
 import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
 
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Factory class for creating Kafka Avro Serde instances.
@@ -49,6 +66,56 @@ public class AvroSerdeFactory {
         return serde;
     }
 
+    /**
+     * Creates a Serde reading and writing {@link GenericRecord}s as Avro generic records.
+     * <p>
+     * Deserialized records are views of the Avro records, see {@link #asGenericRecord(IndexedRecord)}. Unmodified
+     * records are serialized by writing their Avro record again. All other records are written with the schema of the
+     * Avro record they were read from. Records not read from Avro can't be serialized by this Serde, use
+     * {@link #createGenericRecordSerde(Map, boolean, Schema)} to write them.
+     *
+     * @param serdeConfig the configuration map for the Serde.
+     * @param isKey       true if the Serde is for a key, false otherwise.
+     * @return a new GenericRecord Serde.
+     */
+    public static Serde<GenericRecord> createGenericRecordSerde(Map<String, ?> serdeConfig, boolean isKey) {
+        return createGenericRecordSerde(serdeConfig, isKey, null);
+    }
+
+    /**
+     * Creates a Serde reading and writing {@link GenericRecord}s as Avro generic records of the given schema.
+     * <p>
+     * Deserialized records are views of the Avro records, see {@link #asGenericRecord(IndexedRecord)}. Unmodified
+     * records of the writer schema are serialized by writing their Avro record again. All other records are converted
+     * to Avro records of the writer schema: fields not in the writer schema are not written, numbers are converted to
+     * the schema's numeric types.
+     *
+     * @param serdeConfig  the configuration map for the Serde.
+     * @param isKey        true if the Serde is for a key, false otherwise.
+     * @param writerSchema the record schema to write, {@code null} to write records with the schema they were read
+     *                     with.
+     * @return a new GenericRecord Serde.
+     */
+    public static Serde<GenericRecord> createGenericRecordSerde(Map<String, ?> serdeConfig, boolean isKey, Schema writerSchema) {
+        final GenericAvroSerde avroSerde = createGenericAvroSerde(serdeConfig, isKey);
+        return Serdes.serdeFrom(
+                new GenericRecordAvroSerializer(avroSerde.serializer(), writerSchema),
+                new GenericRecordAvroDeserializer(avroSerde.deserializer()));
+    }
+
+    /**
+     * Returns a {@link GenericRecord} backed by the given Avro record.
+     * <p>
+     * The fields are read by their schema positions on first access, no values are copied upfront. Changes to the
+     * returned record don't change the Avro record. Absent ({@code null}) Avro fields are not part of the record.
+     *
+     * @param avroRecord the Avro record, e.g. a {@link org.apache.avro.generic.GenericRecord}.
+     * @return the GenericRecord or {@code null} if avroRecord is {@code null}.
+     */
+    public static GenericRecord asGenericRecord(IndexedRecord avroRecord) {
+        return AvroFieldDecoder.view(avroRecord);
+    }
+
     /**
      * Creates a {@link SpecificAvroSerde} instance.
      *
@@ -90,4 +157,203 @@ public class AvroSerdeFactory {
         serde.configure(serdeConfig, isKey);
         return serde;
     }
+
+    // ------------------------------------------------------------------------
+    // GenericRecordAvroSerializer
+    // ------------------------------------------------------------------------
+
+    /**
+     * A Kafka {@link Serializer} writing {@link GenericRecord}s as Avro generic records.
+     */
+    private static class GenericRecordAvroSerializer implements Serializer<GenericRecord> {
+
+        private final Serializer<org.apache.avro.generic.GenericRecord> avroSerializer;
+        private final Schema writerSchema;
+        private final Map<Schema, FieldRef[]> fieldRefs = new ConcurrentHashMap<>();
+
+        GenericRecordAvroSerializer(Serializer<org.apache.avro.generic.GenericRecord> avroSerializer, Schema writerSchema) {
+            this.avroSerializer = Objects.requireNonNull(avroSerializer, "avroSerializer");
+            this.writerSchema = writerSchema;
+        }
+
+        @Override
+        public byte[] serialize(String topic, GenericRecord data) {
+            return this.avroSerializer.serialize(topic, toAvro(data));
+        }
+
+        @Override
+        public void close() {
+            this.avroSerializer.close();
+        }
+
+        private org.apache.avro.generic.GenericRecord toAvro(GenericRecord record) {
+            if (record == null) {
+                return null;
+            }
+
+            FieldDecoder source = record.source();
+            IndexedRecord sourceRecord = source instanceof AvroFieldDecoder ? ((AvroFieldDecoder) source).record() : null;
+            Schema schema = this.writerSchema != null ? this.writerSchema : sourceRecord == null ? null : sourceRecord.getSchema();
+            if (schema == null) {
+                throw new SerializationException("no Avro schema to write a GenericRecord which wasn't read from Avro");
+            }
+
+            if (record.unmodifiedSource() != null
+                    && sourceRecord instanceof org.apache.avro.generic.GenericRecord
+                    && sourceRecord.getSchema().equals(schema)) {
+                return (org.apache.avro.generic.GenericRecord) sourceRecord;
+            }
+
+            return toAvroRecord(record, schema);
+        }
+
+        private GenericData.Record toAvroRecord(GenericRecord record, Schema schema) {
+            List<Schema.Field> fields = schema.getFields();
+            FieldRef[] refs = this.fieldRefs.computeIfAbsent(
+                    schema,
+                    s -> fields.stream().map(field -> FieldRef.of(field.name())).toArray(FieldRef[]::new));
+
+            GenericData.Record avroRecord = new GenericData.Record(schema);
+            for (int i = 0; i < refs.length; i++) {
+                Schema.Field field = fields.get(i);
+                avroRecord.put(field.pos(), toAvro(record.get(refs[i]), field.schema()));
+            }
+            return avroRecord;
+        }
+
+        private Object toAvro(Object value, Schema schema) {
+            if (value == null) {
+                return null;
+            }
+
+            switch (schema.getType()) {
+                case UNION:
+                    return toAvro(value, branchOf(value, schema));
+                case RECORD:
+                    return value instanceof GenericRecord ? toAvroRecord((GenericRecord) value, schema) : value;
+                case ARRAY:
+                    Collection<?> collection = (Collection<?>) value;
+                    GenericData.Array<Object> array = new GenericData.Array<>(collection.size(), schema);
+                    for (Object element : collection) {
+                        array.add(toAvro(element, schema.getElementType()));
+                    }
+                    return array;
+                case MAP:
+                    Map<String, Object> map = new LinkedHashMap<>();
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        map.put(entry.getKey().toString(), toAvro(entry.getValue(), schema.getValueType()));
+                    }
+                    return map;
+                case ENUM:
+                    return value instanceof GenericData.EnumSymbol ? value : new GenericData.EnumSymbol(schema, value.toString());
+                case BYTES:
+                    return value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value;
+                case FIXED:
+                    return value instanceof byte[] ? new GenericData.Fixed(schema, (byte[]) value) : value;
+                case INT:
+                    return ((Number) value).intValue();
+                case LONG:
+                    return ((Number) value).longValue();
+                case FLOAT:
+                    return ((Number) value).floatValue();
+                case DOUBLE:
+                    return ((Number) value).doubleValue();
+                case STRING:
+                    return value instanceof CharSequence ? value : value.toString();
+                default:
+                    return value;
+            }
+        }
+
+        /**
+         * Returns the union branch to write the value with. The branch of the value's exact type is preferred, e.g. a
+         * {@code long} branch for a {@link Long}, otherwise the first compatible branch is used.
+         */
+        private static Schema branchOf(Object value, Schema union) {
+            Schema compatible = null;
+            for (Schema branch : union.getTypes()) {
+                if (isExactBranch(value, branch.getType())) {
+                    return branch;
+                }
+                if (compatible == null && isCompatibleBranch(value, branch.getType())) {
+                    compatible = branch;
+                }
+            }
+            if (compatible == null) {
+                throw new SerializationException("no union branch of " + union + " for value of " + value.getClass());
+            }
+            return compatible;
+        }
+
+        private static boolean isExactBranch(Object value, Schema.Type type) {
+            switch (type) {
+                case INT:
+                    return value instanceof Integer;
+                case LONG:
+                    return value instanceof Long;
+                case FLOAT:
+                    return value instanceof Float;
+                case DOUBLE:
+                    return value instanceof Double;
+                case STRING:
+                    return value instanceof CharSequence;
+                default:
+                    return isCompatibleBranch(value, type);
+            }
+        }
+
+        private static boolean isCompatibleBranch(Object value, Schema.Type type) {
+            switch (type) {
+                case RECORD:
+                    return value instanceof GenericRecord || value instanceof IndexedRecord;
+                case ARRAY:
+                    return value instanceof Collection;
+                case MAP:
+                    return value instanceof Map;
+                case ENUM:
+                    return value instanceof CharSequence || value instanceof GenericData.EnumSymbol;
+                case BYTES:
+                    return value instanceof byte[] || value instanceof ByteBuffer;
+                case FIXED:
+                    return value instanceof byte[] || value instanceof GenericData.Fixed;
+                case INT:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                    return value instanceof Number;
+                case BOOLEAN:
+                    return value instanceof Boolean;
+                case STRING:
+                    return value instanceof CharSequence;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // GenericRecordAvroDeserializer
+    // ------------------------------------------------------------------------
+
+    /**
+     * A Kafka {@link Deserializer} reading Avro generic records as {@link GenericRecord} views.
+     */
+    private static class GenericRecordAvroDeserializer implements Deserializer<GenericRecord> {
+
+        private final Deserializer<org.apache.avro.generic.GenericRecord> avroDeserializer;
+
+        GenericRecordAvroDeserializer(Deserializer<org.apache.avro.generic.GenericRecord> avroDeserializer) {
+            this.avroDeserializer = Objects.requireNonNull(avroDeserializer, "avroDeserializer");
+        }
+
+        @Override
+        public GenericRecord deserialize(String topic, byte[] data) {
+            return AvroFieldDecoder.view(this.avroDeserializer.deserialize(topic, data));
+        }
+
+        @Override
+        public void close() {
+            this.avroDeserializer.close();
+        }
+    }
 }
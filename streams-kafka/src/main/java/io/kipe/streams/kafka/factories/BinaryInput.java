@@ -0,0 +1,131 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.util.Objects;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+/**
+ * Reads the values written by a {@link BinaryOutput}. The read methods must be called in the order of the write
+ * methods which wrote the bytes. Reading beyond the end of the bytes throws an {@link IndexOutOfBoundsException},
+ * which serdes usually translate into a {@link SerializationException}.
+ * <p>
+ * Instances are not thread-safe and meant to read one message.
+ */
+public final class BinaryInput {
+
+	private final GenericRecordBinaryCodec.Reader reader;
+
+	/**
+	 * Creates a new instance reading the given bytes from the start.
+	 *
+	 * @param bytes the bytes to read.
+	 */
+	public BinaryInput(byte[] bytes) {
+		this.reader = new GenericRecordBinaryCodec.Reader(Objects.requireNonNull(bytes, "bytes"));
+	}
+
+	/**
+	 * @return the next byte.
+	 * @see BinaryOutput#writeByte(int)
+	 */
+	public byte readByte() {
+		return this.reader.readByte();
+	}
+
+	/**
+	 * @return the next boolean.
+	 * @see BinaryOutput#writeBoolean(boolean)
+	 */
+	public boolean readBoolean() {
+		return this.reader.readByte() != 0;
+	}
+
+	/**
+	 * @return the next varint.
+	 * @see BinaryOutput#writeVarInt(int)
+	 */
+	public int readVarInt() {
+		return this.reader.readVarInt();
+	}
+
+	/**
+	 * @return the next zigzag encoded long.
+	 * @see BinaryOutput#writeLong(long)
+	 */
+	public long readLong() {
+		return GenericRecordBinaryCodec.Reader.unzigzag(this.reader.readVarLong());
+	}
+
+	/**
+	 * @return the next double.
+	 * @see BinaryOutput#writeDouble(double)
+	 */
+	public double readDouble() {
+		return Double.longBitsToDouble(this.reader.readFixedLong());
+	}
+
+	/**
+	 * Reads doubles written by {@link BinaryOutput#writeDoubles(double[], int)}.
+	 *
+	 * @return a new array with exactly the written values.
+	 */
+	public double[] readDoubles() {
+		double[] values = new double[this.reader.readVarInt()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Double.longBitsToDouble(this.reader.readFixedLong());
+		}
+		return values;
+	}
+
+	/**
+	 * Reads bytes written by {@link BinaryOutput#writeBytes(byte[])}.
+	 *
+	 * @return a new array with exactly the written bytes.
+	 */
+	public byte[] readBytes() {
+		return this.reader.readBytes(this.reader.readVarInt());
+	}
+
+	/**
+	 * @return the next String.
+	 * @see BinaryOutput#writeString(String)
+	 */
+	public String readString() {
+		return this.reader.readString();
+	}
+
+	/**
+	 * @param <V> the expected value type.
+	 * @return the next tagged value.
+	 * @throws SerializationException if the value can't be decoded.
+	 * @see BinaryOutput#writeValue(Object)
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V readValue() {
+		return (V) this.reader.readValue();
+	}
+
+	/**
+	 * @return whether there are bytes left to read.
+	 */
+	public boolean hasRemaining() {
+		return this.reader.hasRemaining();
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+/**
+ * Writes values in the encoding of {@link BinarySerdeFactory#getGenericRecordSerde()} into a growing byte array. It
+ * is meant for serdes of compact, custom structures, like the states of stats expressions, which combine untagged
+ * primitives with tagged {@link #writeValue(Object) values}. The bytes are read back with a {@link BinaryInput} by
+ * calling the corresponding read methods in the same order.
+ * <p>
+ * Instances are not thread-safe and meant to write one message.
+ */
+public final class BinaryOutput {
+
+	private final GenericRecordBinaryCodec.Writer writer = new GenericRecordBinaryCodec.Writer();
+
+	/**
+	 * Writes a single byte.
+	 *
+	 * @param value the byte to write, only the lower 8 bits are written.
+	 */
+	public void writeByte(int value) {
+		this.writer.writeByte(value);
+	}
+
+	/**
+	 * Writes a boolean as single byte.
+	 *
+	 * @param value the value to write.
+	 */
+	public void writeBoolean(boolean value) {
+		this.writer.writeByte(value ? 1 : 0);
+	}
+
+	/**
+	 * Writes a non-negative int, e.g. a length or count, as varint.
+	 *
+	 * @param value the value to write.
+	 */
+	public void writeVarInt(int value) {
+		this.writer.writeVarInt(value);
+	}
+
+	/**
+	 * Writes a long as zigzag varint, which is compact for values of small magnitude.
+	 *
+	 * @param value the value to write.
+	 */
+	public void writeLong(long value) {
+		this.writer.writeVarLong(GenericRecordBinaryCodec.Writer.zigzag(value));
+	}
+
+	/**
+	 * Writes a double as its 8 bytes IEEE 754 representation.
+	 *
+	 * @param value the value to write.
+	 */
+	public void writeDouble(double value) {
+		this.writer.writeFixedLong(Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Writes the given doubles prefixed by their count.
+	 *
+	 * @param values the array holding the values.
+	 * @param length the number of values to write from the start of the array.
+	 */
+	public void writeDoubles(double[] values, int length) {
+		this.writer.writeVarInt(length);
+		for (int i = 0; i < length; i++) {
+			this.writer.writeFixedLong(Double.doubleToRawLongBits(values[i]));
+		}
+	}
+
+	/**
+	 * Writes the given bytes prefixed by their count.
+	 *
+	 * @param values the bytes to write.
+	 */
+	public void writeBytes(byte[] values) {
+		this.writer.writeVarInt(values.length);
+		this.writer.writeBytes(values);
+	}
+
+	/**
+	 * Writes a non-null String as varint length followed by its UTF-8 bytes.
+	 *
+	 * @param value the value to write.
+	 */
+	public void writeString(String value) {
+		this.writer.writeString(value);
+	}
+
+	/**
+	 * Writes a tagged value. Supports all values of the {@link io.kipe.streams.recordtypes.GenericRecord} binary
+	 * encoding, including {@code null}, collections, maps and nested records, and keeps the exact value types.
+	 *
+	 * @param value the value to write.
+	 * @throws SerializationException if the value can't be encoded.
+	 */
+	public void writeValue(Object value) {
+		this.writer.writeValue(value);
+	}
+
+	/**
+	 * Returns the bytes written so far.
+	 *
+	 * @return a copy of the written bytes.
+	 */
+	public byte[] toByteArray() {
+		return this.writer.toByteArray();
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.recordtypes.GroupKey;
+
+/**
+ * BinarySerdeFactory is a utility class providing compact binary Serde instances.
+ * <p>
+ * The {@link GenericRecord} serde writes a tagged type-length-value encoding with varint encoded integers and a per
+ * message dictionary for field names (see {@link GenericRecordBinaryCodec}). Compared to the json serde of
+ * {@link JsonSerdeFactory#getJsonSerde(Class)} it neither repeats field names nor class names of the common value
+ * types, which considerably reduces the size of state store changelogs and repartition topics as well as the
+ * serialization costs. The binary format is not meant to be read by other tools, so it should be used for internal
+ * topics, e.g. via {@link io.kipe.streams.kafka.processors.StatsBuilder#withInternalSerde(Serde)}.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * KipesBuilder<String, GenericRecord> statsBuilder = kipesBuilder
+ *         .stats()
+ *         .withInternalSerde(BinarySerdeFactory.getGenericRecordSerde())
+ *         .with(Count.count()).as("myCount")
+ *         .groupBy("group")
+ *         .build(Serdes.String());
+ * }</pre>
+ * <p>
+ * The schema framed variant of {@link #createSchemaFramedGenericRecordSerde(FieldNamesRegistry)} doesn't write the
+ * top level field names at all but a fingerprint of them. The field name lists are kept in a
+ * {@link FieldNamesRegistry}, which makes the messages of wide records with recurring field sets considerably smaller.
+ * <p>
+ * The {@link GroupKey} serde writes the typed values of a key in an order preserving encoding (see
+ * {@link GroupKeyCodec}), i.e. the encoded keys sort like the keys.
+ */
+public class BinarySerdeFactory {
+
+	private static final Serde<GenericRecord> GENERIC_RECORD_SERDE = Serdes.serdeFrom(
+			new GenericRecordSerializer(null),
+			new GenericRecordDeserializer(null));
+
+	private static final Serde<GroupKey> GROUP_KEY_SERDE = Serdes.serdeFrom(
+			new GroupKeySerializer(),
+			new GroupKeyDeserializer());
+
+	/**
+	 * Private constructor to prevent instantiation of this utility class.
+	 */
+	private BinarySerdeFactory() {}
+
+	/**
+	 * Returns the binary Serde for {@link GenericRecord}s. The Serde is stateless and shared.
+	 *
+	 * @return the binary GenericRecord Serde.
+	 */
+	public static Serde<GenericRecord> getGenericRecordSerde() {
+		return GENERIC_RECORD_SERDE;
+	}
+
+	/**
+	 * Returns the binary Serde for {@link GroupKey}s. The Serde is stateless and shared.
+	 *
+	 * @return the binary GroupKey Serde.
+	 */
+	public static Serde<GroupKey> getGroupKeySerde() {
+		return GROUP_KEY_SERDE;
+	}
+
+	/**
+	 * Creates a binary Serde for {@link GenericRecord}s which writes the fingerprint of the top level field names
+	 * instead of the names themselves. The field names are registered at and resolved from the given registry, with
+	 * a local cache in front of it. The Serde also reads the messages of {@link #getGenericRecordSerde()}.
+	 *
+	 * @param registry the registry of the field names shared by all writers and readers of the topics.
+	 * @return the schema framed GenericRecord Serde.
+	 */
+	public static Serde<GenericRecord> createSchemaFramedGenericRecordSerde(FieldNamesRegistry registry) {
+		FieldNamesCache fieldNames = new FieldNamesCache(registry);
+		return Serdes.serdeFrom(
+				new GenericRecordSerializer(fieldNames),
+				new GenericRecordDeserializer(fieldNames));
+	}
+
+	// ------------------------------------------------------------------------
+	// GenericRecordSerializer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A Kafka {@link Serializer} writing {@link GenericRecord}s in the binary format of
+	 * {@link GenericRecordBinaryCodec}. {@code null} records are serialized as {@code null} so that they keep their
+	 * tombstone semantics.
+	 */
+	private static class GenericRecordSerializer implements Serializer<GenericRecord> {
+
+		private final FieldNamesCache fieldNames;
+
+		GenericRecordSerializer(FieldNamesCache fieldNames) {
+			this.fieldNames = fieldNames;
+		}
+
+		@Override
+		public void configure(final Map<String, ?> props, final boolean isKey) {
+			// nothing to do
+		}
+
+		/**
+		 * Serialize the provided record to a byte array.
+		 *
+		 * @param topic the topic associated with the data. Ignored in this implementation.
+		 * @param data  the record to serialize.
+		 * @return the encoded record, or null if the provided record is null.
+		 * @throws SerializationException if a field value can't be serialized.
+		 */
+		@Override
+		public byte[] serialize(final String topic, final GenericRecord data) {
+			if (data == null)
+				return null;
+
+			return this.fieldNames == null 
+					? GenericRecordBinaryCodec.encode(data) 
+					: GenericRecordBinaryCodec.encode(data, this.fieldNames);
+		}
+
+		@Override
+		public void close() {
+			// nothing to do
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// GenericRecordDeserializer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A Kafka {@link Deserializer} reading {@link GenericRecord}s in the binary format of
+	 * {@link GenericRecordBinaryCodec}.
+	 */
+	private static class GenericRecordDeserializer implements Deserializer<GenericRecord> {
+
+		private final FieldNamesCache fieldNames;
+
+		GenericRecordDeserializer(FieldNamesCache fieldNames) {
+			this.fieldNames = fieldNames;
+		}
+
+		@Override
+		public void configure(final Map<String, ?> props, final boolean isKey) {
+			// nothing to do
+		}
+
+		/**
+		 * Deserializes a binary encoded record.
+		 *
+		 * @param topic The topic the data is being deserialized from.
+		 * @param bytes The encoded record.
+		 * @return The deserialized record, or null if bytes is null or empty.
+		 * @throws SerializationException if the bytes are not a valid encoding.
+		 */
+		@Override
+		public GenericRecord deserialize(final String topic, final byte[] bytes) {
+			if (bytes == null || bytes.length == 0)
+				return null;
+
+			return GenericRecordBinaryCodec.decode(bytes, this.fieldNames);
+		}
+
+		@Override
+		public void close() {
+			// nothing to do
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// GroupKeySerializer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A Kafka {@link Serializer} writing {@link GroupKey}s in the binary format of {@link GroupKeyCodec}.
+	 */
+	private static class GroupKeySerializer implements Serializer<GroupKey> {
+
+		@Override
+		public void configure(final Map<String, ?> props, final boolean isKey) {
+			// nothing to do
+		}
+
+		@Override
+		public byte[] serialize(final String topic, final GroupKey data) {
+			if (data == null)
+				return null;
+
+			return GroupKeyCodec.encode(data);
+		}
+
+		@Override
+		public void close() {
+			// nothing to do
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// GroupKeyDeserializer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A Kafka {@link Deserializer} reading {@link GroupKey}s in the binary format of {@link GroupKeyCodec}.
+	 */
+	private static class GroupKeyDeserializer implements Deserializer<GroupKey> {
+
+		@Override
+		public void configure(final Map<String, ?> props, final boolean isKey) {
+			// nothing to do
+		}
+
+		/**
+		 * Deserializes a binary encoded key.
+		 *
+		 * @param topic The topic the data is being deserialized from.
+		 * @param bytes The encoded key.
+		 * @return The deserialized key, or null if bytes is null.
+		 * @throws SerializationException if the bytes are not a valid encoding.
+		 */
+		@Override
+		public GroupKey deserialize(final String topic, final byte[] bytes) {
+			if (bytes == null)
+				return null;
+
+			return GroupKeyCodec.decode(bytes);
+		}
+
+		@Override
+		public void close() {
+			// nothing to do
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * The local cache in front of a {@link FieldNamesRegistry}.
+ * <p>
+ * Writers resolve the fingerprint of a record's field names from the cache and register unknown field name lists once.
+ * The fingerprints are cached by the record's {@link GenericRecord#fieldLayout() field layout}, so records of a known
+ * layout don't collect their field names. Readers resolve the field names of a fingerprint from the cache and only ask
+ * the registry for unknown fingerprints. The fingerprint is the 64-bit Rabin fingerprint (as used by Avro) of the UTF-8
+ * field names, each terminated by a {@code 0} byte.
+ */
+final class FieldNamesCache {
+
+	static final int MAX_ENTRIES = 10_000;
+
+	private static final long EMPTY = 0xc15d213aa4d7a795L;
+	private static final long[] FP_TABLE = new long[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			long fp = i;
+			for (int j = 0; j < 8; j++) {
+				fp = (fp >>> 1) ^ (EMPTY & -(fp & 1L));
+			}
+			FP_TABLE[i] = fp;
+		}
+	}
+
+	private final FieldNamesRegistry registry;
+	private final Map<Object, Long> layoutFingerprints = new ConcurrentHashMap<>();
+	private final Map<List<String>, Long> fingerprints = new ConcurrentHashMap<>();
+	private final Map<Long, String[]> fieldNames = new ConcurrentHashMap<>();
+
+	FieldNamesCache(FieldNamesRegistry registry) {
+		this.registry = Objects.requireNonNull(registry, "registry");
+	}
+
+	/**
+	 * Returns the fingerprint of the given record's field names and registers them if they are unknown.
+	 *
+	 * @param record the record.
+	 * @return the fingerprint.
+	 */
+	long fingerprintOf(GenericRecord record) {
+		// the layouts are interned and don't override equals, so they are compared by identity
+		Object layout = record.fieldLayout();
+		Long fingerprint = layout != null ? this.layoutFingerprints.get(layout) : null;
+		if (fingerprint != null) {
+			return fingerprint;
+		}
+		
+		List<String> names = new ArrayList<>();
+		record.forEachField((fieldName, value) -> names.add(fieldName));
+		
+		fingerprint = this.fingerprints.get(names);
+		if (fingerprint == null) {
+			fingerprint = fingerprint(names);
+			this.registry.register(fingerprint, names);
+			if (this.fingerprints.size() < MAX_ENTRIES) {
+				this.fingerprints.put(names, fingerprint);
+			}
+		}
+		if (layout != null && this.layoutFingerprints.size() < MAX_ENTRIES) {
+			this.layoutFingerprints.put(layout, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Returns the field names of the given fingerprint.
+	 *
+	 * @param fingerprint the fingerprint.
+	 * @return the field names.
+	 * @throws SerializationException if the fingerprint is unknown.
+	 */
+	String[] fieldNamesOf(long fingerprint) {
+		String[] names = this.fieldNames.get(fingerprint);
+		if (names != null) {
+			return names;
+		}
+		
+		List<String> registered = this.registry.lookup(fingerprint);
+		if (registered == null) {
+			throw new SerializationException(String.format("unknown field names fingerprint %016x", fingerprint));
+		}
+		names = registered.toArray(new String[0]);
+		if (this.fieldNames.size() < MAX_ENTRIES) {
+			this.fieldNames.put(fingerprint, names);
+		}
+		return names;
+	}
+
+	/**
+	 * Computes the fingerprint of the given field names.
+	 *
+	 * @param fieldNames the field names.
+	 * @return the fingerprint.
+	 */
+	static long fingerprint(List<String> fieldNames) {
+		long fp = EMPTY;
+		for (String fieldName : fieldNames) {
+			for (byte b : fieldName.getBytes(StandardCharsets.UTF_8)) {
+				fp = (fp >>> 8) ^ FP_TABLE[(int) (fp ^ b) & 0xff];
+			}
+			fp = (fp >>> 8) ^ FP_TABLE[(int) fp & 0xff];
+		}
+		return fp;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.util.List;
+
+/**
+ * A registry of the field name lists used by the schema framed {@link io.kipe.streams.recordtypes.GenericRecord}
+ * format of {@link BinarySerdeFactory#createSchemaFramedGenericRecordSerde(FieldNamesRegistry)}.
+ * <p>
+ * Messages of that format only contain the 64-bit fingerprint of their record's field names. Serializers register
+ * each new field name list before the first message referencing it is written, deserializers look them up by the
+ * fingerprint. A registry must therefore be shared by all writers and readers of a topic, e.g. by backing it with a
+ * compacted topic keyed by the fingerprint. Registered lists never change, so implementations don't need to support
+ * updates or deletes.
+ */
+public interface FieldNamesRegistry {
+
+	/**
+	 * Registers the field names for the given fingerprint. Registering the same list again must be a no-op.
+	 *
+	 * @param fingerprint the fingerprint of the field names.
+	 * @param fieldNames  the field names in record order.
+	 */
+	void register(long fingerprint, List<String> fieldNames);
+
+	/**
+	 * Returns the field names registered for the given fingerprint.
+	 *
+	 * @param fingerprint the fingerprint of the field names.
+	 * @return the field names or {@code null} if the fingerprint is unknown.
+	 */
+	List<String> lookup(long fingerprint);
+}
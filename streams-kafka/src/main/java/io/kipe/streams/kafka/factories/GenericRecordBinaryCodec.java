@@ -0,0 +1,660 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * The binary encoding used by {@link BinarySerdeFactory#getGenericRecordSerde()}.
+ * <p>
+ * A message starts with the {@link #FORMAT_VERSION} byte followed by the top level record. Records, lists, sets and
+ * maps are written as varint count followed by their elements. Every value is written as tag byte followed by the
+ * tag specific payload:
+ * <pre>
+ * | tag        | payload                                        | java type                  |
+ * |------------|------------------------------------------------|----------------------------|
+ * | NULL       | -                                              | null                       |
+ * | TRUE       | -                                              | Boolean                    |
+ * | FALSE      | -                                              | Boolean                    |
+ * | INT        | zigzag varint                                  | Integer                    |
+ * | LONG       | zigzag varint                                  | Long                       |
+ * | SHORT      | zigzag varint                                  | Short                      |
+ * | BYTE       | 1 byte                                         | Byte                       |
+ * | DOUBLE     | 8 bytes IEEE 754                               | Double                     |
+ * | FLOAT      | 4 bytes IEEE 754                               | Float                      |
+ * | STRING     | varint length, UTF-8 bytes                     | String                     |
+ * | NAME       | dictionary string                              | String (map keys)          |
+ * | BYTES      | varint length, bytes                           | byte[]                     |
+ * | LIST       | count, values                                  | ArrayList, other List      |
+ * | SET        | count, values                                  | HashSet, other Set         |
+ * | MAP        | count, key and value pairs                     | HashMap, other Map         |
+ * | COLLECTION | dictionary class name, count, values           | other Collection           |
+ * | TYPED_MAP  | dictionary class name, count, key value pairs  | other Map                  |
+ * | RECORD     | count, dictionary field name and value pairs   | GenericRecord              |
+ * | JSON       | dictionary class name, varint length, json     | anything else (Jackson)    |
+ * </pre>
+ * Field names, string map keys and class names are written as dictionary strings: the first occurrence within a
+ * message is written as {@code 0} followed by the string and appended to the message's dictionary, later occurrences
+ * are written as the varint {@code index + 1} of that dictionary entry.
+ * <p>
+ * Collections and maps of classes without a public no-arg constructor, like unmodifiable collections, are read as their
+ * plain LIST, SET or MAP counterpart. The class names read from a message are loaded without initializing the classes,
+ * and only instantiated or passed to Jackson once they are checked to be of the type the tag expects. Other than the
+ * json representation this encoding keeps the exact number types of the values.
+ * <p>
+ * Schema framed messages start with the {@link #FORMAT_FRAMED} byte followed by the 8 bytes fingerprint of the top
+ * level record's field names (see {@link FieldNamesCache}), the varint count and the field values without names.
+ * Nested records are written as above.
+ */
+final class GenericRecordBinaryCodec {
+
+	static final byte FORMAT_VERSION = 1;
+	static final byte FORMAT_FRAMED = 2;
+
+	static final byte NULL = 0;
+	static final byte TRUE = 1;
+	static final byte FALSE = 2;
+	static final byte INT = 3;
+	static final byte LONG = 4;
+	static final byte SHORT = 5;
+	static final byte BYTE = 6;
+	static final byte DOUBLE = 7;
+	static final byte FLOAT = 8;
+	static final byte STRING = 9;
+	static final byte NAME = 10;
+	static final byte BYTES = 11;
+	static final byte LIST = 12;
+	static final byte SET = 13;
+	static final byte MAP = 14;
+	static final byte COLLECTION = 15;
+	static final byte TYPED_MAP = 16;
+	static final byte RECORD = 17;
+	static final byte JSON = 18;
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+	private static final int MAX_CACHED_CLASSES = 1024;
+	private static final Map<String, Class<?>> CLASSES = new ConcurrentHashMap<>();
+	private static final Map<Class<?>, Boolean> INSTANTIABLE = new ConcurrentHashMap<>();
+
+	private GenericRecordBinaryCodec() {}
+
+	/**
+	 * Encodes the given record.
+	 *
+	 * @param record the record to encode.
+	 * @return the encoded bytes.
+	 * @throws SerializationException if a value can't be encoded.
+	 */
+	static byte[] encode(GenericRecord record) {
+		Writer writer = new Writer();
+		writer.writeByte(FORMAT_VERSION);
+		writer.writeRecord(record);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Encodes the given record as schema framed message.
+	 *
+	 * @param record     the record to encode.
+	 * @param fieldNames the cache to resolve the fingerprint of the record's field names from.
+	 * @return the encoded bytes.
+	 * @throws SerializationException if a value can't be encoded.
+	 */
+	static byte[] encode(GenericRecord record, FieldNamesCache fieldNames) {
+		Writer writer = new Writer();
+		writer.writeByte(FORMAT_FRAMED);
+		writer.writeFixedLong(fieldNames.fingerprintOf(record));
+		writer.writeRecordValues(record);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Decodes a record from the given bytes.
+	 *
+	 * @param bytes the bytes to decode.
+	 * @return the decoded record.
+	 * @throws SerializationException if the bytes are not a valid encoding.
+	 */
+	static GenericRecord decode(byte[] bytes) {
+		return decode(bytes, null);
+	}
+
+	/**
+	 * Decodes a record from the given bytes, which might be a schema framed message.
+	 *
+	 * @param bytes      the bytes to decode.
+	 * @param fieldNames the cache to resolve the field names of schema framed messages from, might be {@code null}
+	 *                   if there are none.
+	 * @return the decoded record.
+	 * @throws SerializationException if the bytes are not a valid encoding.
+	 */
+	static GenericRecord decode(byte[] bytes, FieldNamesCache fieldNames) {
+		Reader reader = new Reader(bytes);
+		byte version = reader.readByte();
+		if (version != FORMAT_VERSION && (version != FORMAT_FRAMED || fieldNames == null)) {
+			throw new SerializationException("unsupported GenericRecord binary format version " + version);
+		}
+
+		try {
+			return version == FORMAT_FRAMED 
+					? reader.readRecordValues(fieldNames.fieldNamesOf(reader.readFixedLong())) 
+					: reader.readRecord();
+		} catch (IndexOutOfBoundsException e) {
+			throw new SerializationException("truncated GenericRecord binary message", e);
+		}
+	}
+
+	/**
+	 * Returns the class with the given name read from a message. The class is loaded without being initialized and
+	 * checked to be a subtype of the expected type before it is used in any way.
+	 *
+	 * @param className    the class' name.
+	 * @param expectedType the type the class has to be assignable to.
+	 * @return the class.
+	 * @throws SerializationException if there is no such class or it isn't of the expected type.
+	 */
+	private static Class<?> classForName(String className, Class<?> expectedType) {
+		Class<?> cls = CLASSES.get(className);
+		if (cls == null) {
+			try {
+				cls = Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+			} catch (ClassNotFoundException e) {
+				throw new SerializationException("unknown class " + className, e);
+			}
+			// the names are read from messages, so only a limited number of classes is cached
+			if (CLASSES.size() < MAX_CACHED_CLASSES) {
+				CLASSES.put(className, cls);
+			}
+		}
+
+		if (!expectedType.isAssignableFrom(cls)) {
+			throw new SerializationException(String.format("class %s is not a %s", className, expectedType.getName()));
+		}
+		return cls;
+	}
+
+	/**
+	 * Returns whether values of the given class might have been written as JSON, i.e. whether it is a concrete class
+	 * not encoded by one of the other tags.
+	 *
+	 * @param cls the class to check.
+	 * @return true if the class might be read from JSON.
+	 */
+	private static boolean isJsonType(Class<?> cls) {
+		return !cls.isInterface()
+				&& (cls.isArray() || !Modifier.isAbstract(cls.getModifiers()))
+				&& !Map.class.isAssignableFrom(cls)
+				&& !GenericRecord.class.isAssignableFrom(cls);
+	}
+
+	/**
+	 * Returns whether the given class can be created reflectively by its public no-arg constructor. The result is
+	 * cached per class.
+	 *
+	 * @param cls the class to check.
+	 * @return true if the class is public and has a public no-arg constructor.
+	 */
+	private static boolean isInstantiable(Class<?> cls) {
+		return INSTANTIABLE.computeIfAbsent(cls, GenericRecordBinaryCodec::hasNoArgConstructor);
+	}
+
+	private static boolean hasNoArgConstructor(Class<?> cls) {
+		if (!Modifier.isPublic(cls.getModifiers())) {
+			return false;
+		}
+		try {
+			return cls.getConstructor() != null;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T newInstance(String className, Class<? super T> expectedType) {
+		Class<?> cls = classForName(className, expectedType);
+		if (!isInstantiable(cls)) {
+			throw new SerializationException("can't instantiate " + className);
+		}
+
+		try {
+			Constructor<?> constructor = cls.getConstructor();
+			return (T) constructor.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new SerializationException("can't instantiate " + className, e);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Writer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Writes one message into a growing byte array. Also backs {@link BinaryOutput}.
+	 */
+	static class Writer {
+
+		private final Map<String, Integer> dictionary = new HashMap<>();
+		private byte[] buffer = new byte[256];
+		private int position;
+
+		void writeRecord(GenericRecord record) {
+			int[] count = {0};
+			record.forEachField((fieldName, value) -> count[0]++);
+
+			writeVarInt(count[0]);
+			record.forEachField((fieldName, value) -> {
+				writeDictionaryString(fieldName);
+				writeValue(value);
+			});
+		}
+
+		void writeRecordValues(GenericRecord record) {
+			int[] count = {0};
+			record.forEachField((fieldName, value) -> count[0]++);
+
+			writeVarInt(count[0]);
+			record.forEachField((fieldName, value) -> writeValue(value));
+		}
+
+		void writeValue(Object value) {
+			if (value == null) {
+				writeByte(NULL);
+			} else if (value instanceof String) {
+				writeByte(STRING);
+				writeString((String) value);
+			} else if (value instanceof Integer) {
+				writeByte(INT);
+				writeVarLong(zigzag((Integer) value));
+			} else if (value instanceof Long) {
+				writeByte(LONG);
+				writeVarLong(zigzag((Long) value));
+			} else if (value instanceof Double) {
+				writeByte(DOUBLE);
+				writeFixedLong(Double.doubleToRawLongBits((Double) value));
+			} else if (value instanceof Boolean) {
+				writeByte((Boolean) value ? TRUE : FALSE);
+			} else if (value instanceof Float) {
+				writeByte(FLOAT);
+				writeFixedInt(Float.floatToRawIntBits((Float) value));
+			} else if (value instanceof Short) {
+				writeByte(SHORT);
+				writeVarLong(zigzag((Short) value));
+			} else if (value instanceof Byte) {
+				writeByte(BYTE);
+				writeByte((Byte) value);
+			} else if (value instanceof byte[]) {
+				byte[] bytes = (byte[]) value;
+				writeByte(BYTES);
+				writeVarInt(bytes.length);
+				writeBytes(bytes);
+			} else if (value instanceof GenericRecord) {
+				writeByte(RECORD);
+				writeRecord((GenericRecord) value);
+			} else if (value instanceof Collection) {
+				writeCollection((Collection<?>) value);
+			} else if (value instanceof Map) {
+				writeMap((Map<?, ?>) value);
+			} else {
+				writeJson(value);
+			}
+		}
+
+		private void writeCollection(Collection<?> collection) {
+			Class<?> cls = collection.getClass();
+			if (cls == ArrayList.class) {
+				writeByte(LIST);
+			} else if (cls == HashSet.class) {
+				writeByte(SET);
+			} else if (isInstantiable(cls)) {
+				writeByte(COLLECTION);
+				writeDictionaryString(cls.getName());
+			} else if (collection instanceof List) {
+				// e.g. unmodifiable or Arrays.asList() lists
+				writeByte(LIST);
+			} else if (collection instanceof Set) {
+				writeByte(SET);
+			} else {
+				writeJson(collection);
+				return;
+			}
+
+			writeVarInt(collection.size());
+			for (Object element : collection) {
+				writeValue(element);
+			}
+		}
+
+		private void writeMap(Map<?, ?> map) {
+			Class<?> cls = map.getClass();
+			if (cls != HashMap.class && isInstantiable(cls)) {
+				writeByte(TYPED_MAP);
+				writeDictionaryString(cls.getName());
+			} else {
+				writeByte(MAP);
+			}
+
+			writeVarInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				Object key = entry.getKey();
+				if (key instanceof String) {
+					writeByte(NAME);
+					writeDictionaryString((String) key);
+				} else {
+					writeValue(key);
+				}
+				writeValue(entry.getValue());
+			}
+		}
+
+		private void writeJson(Object value) {
+			byte[] json;
+			try {
+				json = OBJECT_MAPPER.writeValueAsBytes(value);
+			} catch (Exception e) {
+				throw new SerializationException("Error serializing value of " + value.getClass(), e);
+			}
+
+			writeByte(JSON);
+			writeDictionaryString(value.getClass().getName());
+			writeVarInt(json.length);
+			writeBytes(json);
+		}
+
+		private void writeDictionaryString(String s) {
+			Integer index = this.dictionary.get(s);
+			if (index != null) {
+				writeVarInt(index + 1);
+			} else {
+				this.dictionary.put(s, this.dictionary.size());
+				writeVarInt(0);
+				writeString(s);
+			}
+		}
+
+		void writeString(String s) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(bytes.length);
+			writeBytes(bytes);
+		}
+
+		static long zigzag(long value) {
+			return (value << 1) ^ (value >> 63);
+		}
+
+		void writeVarInt(int value) {
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		void writeVarLong(long value) {
+			ensureCapacity(10);
+			while ((value & ~0x7FL) != 0) {
+				this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.buffer[this.position++] = (byte) value;
+		}
+
+		void writeFixedLong(long value) {
+			ensureCapacity(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				this.buffer[this.position++] = (byte) (value >>> shift);
+			}
+		}
+
+		private void writeFixedInt(int value) {
+			ensureCapacity(4);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				this.buffer[this.position++] = (byte) (value >>> shift);
+			}
+		}
+
+		void writeByte(int value) {
+			ensureCapacity(1);
+			this.buffer[this.position++] = (byte) value;
+		}
+
+		void writeBytes(byte[] bytes) {
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+			this.position += bytes.length;
+		}
+
+		private void ensureCapacity(int length) {
+			if (this.position + length > this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + length));
+			}
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.buffer, this.position);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Reader
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Reads one message from a byte array. Also backs {@link BinaryInput}.
+	 */
+	static class Reader {
+
+		private final List<String> dictionary = new ArrayList<>();
+		private final byte[] buffer;
+		private int position;
+
+		Reader(byte[] buffer) {
+			this.buffer = buffer;
+		}
+
+		GenericRecord readRecord() {
+			GenericRecord record = new GenericRecord();
+			int count = readVarInt();
+			for (int i = 0; i < count; i++) {
+				String fieldName = readDictionaryString();
+				record.set(fieldName, readValue());
+			}
+
+			return record;
+		}
+
+		GenericRecord readRecordValues(String[] fieldNames) {
+			int count = readVarInt();
+			if (count != fieldNames.length) {
+				throw new SerializationException(
+						String.format("expected %d values but got %d", fieldNames.length, count));
+			}
+			
+			GenericRecord record = new GenericRecord();
+			for (String fieldName : fieldNames) {
+				record.set(fieldName, readValue());
+			}
+
+			return record;
+		}
+
+		Object readValue() {
+			byte tag = readByte();
+			switch (tag) {
+			case NULL:
+				return null;
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case INT:
+				return (int) unzigzag(readVarLong());
+			case LONG:
+				return unzigzag(readVarLong());
+			case SHORT:
+				return (short) unzigzag(readVarLong());
+			case BYTE:
+				return readByte();
+			case DOUBLE:
+				return Double.longBitsToDouble(readFixedLong());
+			case FLOAT:
+				return Float.intBitsToFloat(readFixedInt());
+			case STRING:
+				return readString();
+			case NAME:
+				return readDictionaryString();
+			case BYTES:
+				return readBytes(readVarInt());
+			case LIST:
+				return readElements(new ArrayList<>());
+			case SET:
+				return readElements(new HashSet<>());
+			case MAP:
+				return readEntries(new HashMap<>());
+			case COLLECTION:
+				return readElements(newInstance(readDictionaryString(), Collection.class));
+			case TYPED_MAP:
+				return readEntries(newInstance(readDictionaryString(), Map.class));
+			case RECORD:
+				return readRecord();
+			case JSON:
+				return readJson();
+			default:
+				throw new SerializationException("unknown GenericRecord binary tag " + tag);
+			}
+		}
+
+		private Collection<Object> readElements(Collection<Object> collection) {
+			int count = readVarInt();
+			for (int i = 0; i < count; i++) {
+				collection.add(readValue());
+			}
+
+			return collection;
+		}
+
+		private Map<Object, Object> readEntries(Map<Object, Object> map) {
+			int count = readVarInt();
+			for (int i = 0; i < count; i++) {
+				Object key = readValue();
+				map.put(key, readValue());
+			}
+
+			return map;
+		}
+
+		private Object readJson() {
+			Class<?> cls = classForName(readDictionaryString(), Object.class);
+			if (!isJsonType(cls)) {
+				throw new SerializationException("unexpected JSON value class " + cls.getName());
+			}
+
+			int length = readVarInt();
+			try {
+				Object value = OBJECT_MAPPER.readValue(this.buffer, this.position, length, cls);
+				this.position += length;
+				return value;
+			} catch (Exception e) {
+				throw new SerializationException("Error deserializing value of " + cls, e);
+			}
+		}
+
+		private String readDictionaryString() {
+			int reference = readVarInt();
+			if (reference > 0) {
+				return this.dictionary.get(reference - 1);
+			}
+
+			String s = readString();
+			this.dictionary.add(s);
+			return s;
+		}
+
+		String readString() {
+			int length = readVarInt();
+			String s = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+			this.position += length;
+			return s;
+		}
+
+		byte[] readBytes(int length) {
+			if (length > this.buffer.length - this.position) {
+				throw new IndexOutOfBoundsException("cannot read " + length + " bytes at " + this.position);
+			}
+			byte[] bytes = Arrays.copyOfRange(this.buffer, this.position, this.position + length);
+			this.position += length;
+			return bytes;
+		}
+
+		static long unzigzag(long value) {
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		int readVarInt() {
+			return (int) readVarLong();
+		}
+
+		long readVarLong() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = this.buffer[this.position++];
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new SerializationException("malformed varint");
+		}
+
+		long readFixedLong() {
+			long value = 0;
+			for (int i = 0; i < 8; i++) {
+				value = (value << 8) | (this.buffer[this.position++] & 0xFF);
+			}
+			return value;
+		}
+
+		private int readFixedInt() {
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				value = (value << 8) | (this.buffer[this.position++] & 0xFF);
+			}
+			return value;
+		}
+
+		byte readByte() {
+			return this.buffer[this.position++];
+		}
+
+		boolean hasRemaining() {
+			return this.position < this.buffer.length;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * A streaming (jackson-core) codec for the json representation of {@link GenericRecord}s.
+ * <p>
+ * The codec reads and writes the same json as Jackson databind does for {@code GenericRecord.fields}, but only
+ * supports the common value types: {@link String}, {@link Integer}, {@link Long}, finite {@link Double}s,
+ * {@link Boolean} and nested GenericRecords. It neither introspects the record nor builds an intermediate map.
+ * For records with other values {@link #write(JsonFactory, ByteArrayBuilder, GenericRecord)} and
+ * {@link #read(JsonFactory, byte[])} return {@code null} and the caller has to fall back to Jackson databind.
+ */
+final class GenericRecordJsonCodec {
+
+	private static final String FIELDS = "fields";
+	private static final String CLASS_NAME = "className";
+	private static final String GENERIC_RECORD_CLASS = GenericRecord.class.getName();
+	private static final String LONG_CLASS = Long.class.getName();
+
+	private GenericRecordJsonCodec() {}
+
+	// ------------------------------------------------------------------------
+	// write
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Writes the json of the given record.
+	 *
+	 * @param factory the factory to create the generator with.
+	 * @param buffer  the buffer to write to. It gets reset before.
+	 * @param record  the record to write.
+	 * @return the json or {@code null} if the record contains unsupported values.
+	 * @throws IOException if the json can't be written.
+	 */
+	static byte[] write(JsonFactory factory, ByteArrayBuilder buffer, GenericRecord record) throws IOException {
+		buffer.reset();
+		try (JsonGenerator gen = factory.createGenerator(buffer)) {
+			gen.writeStartObject();
+			writeFields(gen, record);
+			gen.writeEndObject();
+		} catch (Unsupported e) {
+			return null;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		
+		return buffer.toByteArray();
+	}
+
+	private static void writeFields(JsonGenerator gen, GenericRecord record) throws IOException {
+		gen.writeFieldName(FIELDS);
+		gen.writeStartObject();
+		record.forEachField((fieldName, value) -> {
+			try {
+				gen.writeFieldName(fieldName);
+				writeValue(gen, value);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		gen.writeEndObject();
+	}
+
+	private static void writeValue(JsonGenerator gen, Object value) throws IOException {
+		if (value instanceof String) {
+			gen.writeString((String) value);
+		} else if (value instanceof Integer) {
+			gen.writeNumber((Integer) value);
+		} else if (value instanceof Long) {
+			// not a natural json type, so written with its type
+			gen.writeStartArray();
+			gen.writeString(LONG_CLASS);
+			gen.writeNumber((Long) value);
+			gen.writeEndArray();
+		} else if (value instanceof Double && Double.isFinite((Double) value)) {
+			gen.writeNumber((Double) value);
+		} else if (value instanceof Boolean) {
+			gen.writeBoolean((Boolean) value);
+		} else if (value instanceof GenericRecord) {
+			gen.writeStartObject();
+			gen.writeStringField(CLASS_NAME, GENERIC_RECORD_CLASS);
+			writeFields(gen, (GenericRecord) value);
+			gen.writeEndObject();
+		} else {
+			throw Unsupported.INSTANCE;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// read
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Reads a record from its json.
+	 *
+	 * @param factory the factory to create the parser with.
+	 * @param json    the json to read.
+	 * @return the record or {@code null} if the json contains unsupported values or is {@code null}.
+	 * @throws IOException if the json is malformed.
+	 */
+	static GenericRecord read(JsonFactory factory, byte[] json) throws IOException {
+		try (JsonParser p = factory.createParser(json)) {
+			if (p.nextToken() != JsonToken.START_OBJECT) {
+				return null;
+			}
+			return readRecord(p);
+		} catch (Unsupported e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the properties of a record up to its END_OBJECT.
+	 */
+	private static GenericRecord readRecord(JsonParser p) throws IOException {
+		GenericRecord record = new GenericRecord();
+		for (JsonToken token = p.nextToken(); token != JsonToken.END_OBJECT; token = p.nextToken()) {
+			if (!FIELDS.equals(p.currentName())) {
+				throw Unsupported.INSTANCE;
+			}
+			token = p.nextToken();
+			if (token == JsonToken.START_OBJECT) {
+				readFields(p, record);
+			} else if (token != JsonToken.VALUE_NULL) {
+				throw Unsupported.INSTANCE;
+			}
+		}
+		
+		return record;
+	}
+
+	private static void readFields(JsonParser p, GenericRecord record) throws IOException {
+		for (JsonToken token = p.nextToken(); token != JsonToken.END_OBJECT; token = p.nextToken()) {
+			String fieldName = p.currentName();
+			record.set(fieldName, readValue(p, p.nextToken()));
+		}
+	}
+
+	private static Object readValue(JsonParser p, JsonToken token) throws IOException {
+		switch (token) {
+		case VALUE_STRING:
+			return p.getText();
+		case VALUE_NUMBER_INT:
+			return readInteger(p);
+		case VALUE_NUMBER_FLOAT:
+			return p.getDoubleValue();
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		case VALUE_NULL:
+			return null;
+		case START_ARRAY:
+			return readTypedLong(p);
+		case START_OBJECT:
+			return readNestedRecord(p);
+		default:
+			throw Unsupported.INSTANCE;
+		}
+	}
+
+	private static Object readInteger(JsonParser p) throws IOException {
+		switch (p.getNumberType()) {
+		case INT:
+			return p.getIntValue();
+		case LONG:
+			return p.getLongValue();
+		default:
+			throw Unsupported.INSTANCE;
+		}
+	}
+
+	/**
+	 * Reads a Long in its typed representation {@code ["java.lang.Long",value]}.
+	 */
+	private static Long readTypedLong(JsonParser p) throws IOException {
+		if (p.nextToken() != JsonToken.VALUE_STRING 
+				|| !LONG_CLASS.equals(p.getText())
+				|| p.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+			throw Unsupported.INSTANCE;
+		}
+		Object value = readInteger(p);
+		if (p.nextToken() != JsonToken.END_ARRAY) {
+			throw Unsupported.INSTANCE;
+		}
+		
+		return ((Number) value).longValue();
+	}
+
+	/**
+	 * Reads a nested record in its typed representation {@code {"className":"...GenericRecord","fields":{...}}}.
+	 */
+	private static GenericRecord readNestedRecord(JsonParser p) throws IOException {
+		if (p.nextToken() != JsonToken.FIELD_NAME 
+				|| !CLASS_NAME.equals(p.currentName())
+				|| p.nextToken() != JsonToken.VALUE_STRING
+				|| !GENERIC_RECORD_CLASS.equals(p.getText())) {
+			throw Unsupported.INSTANCE;
+		}
+		
+		return readRecord(p);
+	}
+
+	// ------------------------------------------------------------------------
+	// Unsupported
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Signals json or values the codec doesn't support. It is thrown without a stack trace.
+	 */
+	private static final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		private static final Unsupported INSTANCE = new Unsupported();
+
+		private Unsupported() {
+			super(null, null, false, false);
+		}
+	}
+}
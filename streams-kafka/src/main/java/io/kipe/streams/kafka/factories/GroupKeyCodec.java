@@ -0,0 +1,195 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import io.kipe.streams.recordtypes.GroupKey;
+
+/**
+ * The order preserving binary encoding of {@link GroupKey}s used by {@link BinarySerdeFactory#getGroupKeySerde()}.
+ * <p>
+ * The values are written one after another as tag byte followed by the tag specific payload:
+ * <pre>
+ * | tag    | payload                                                      | java type |
+ * |--------|--------------------------------------------------------------|-----------|
+ * | NULL   | -                                                            | null      |
+ * | FALSE  | -                                                            | Boolean   |
+ * | TRUE   | -                                                            | Boolean   |
+ * | LONG   | 8 bytes big endian with flipped sign bit                     | Long      |
+ * | DOUBLE | 8 bytes big endian IEEE 754, sign bit flipped if positive,   | Double    |
+ * |        | all bits flipped if negative                                 |           |
+ * | STRING | UTF-8 bytes with 0x00 escaped as 0x00 0xFF, terminated by    | String    |
+ * |        | 0x00                                                         |           |
+ * </pre>
+ * <p>
+ * The tags are ordered like the types in {@link GroupKey#compareTo(GroupKey)} and each payload is ordered like its
+ * values, so comparing the encodings of two keys as unsigned bytes gives the same order as comparing the keys. Keys
+ * with a common prefix of values sort by their following values, a key being a prefix of another sorts first.
+ */
+final class GroupKeyCodec {
+
+	static final byte NULL = 0x00;
+	static final byte FALSE = 0x10;
+	static final byte TRUE = 0x11;
+	static final byte LONG = 0x20;
+	static final byte DOUBLE = 0x30;
+	static final byte STRING = 0x40;
+
+	private static final byte ESCAPE = (byte) 0xFF;
+
+	private GroupKeyCodec() {}
+
+	/**
+	 * Encodes the given key.
+	 *
+	 * @param key the key to encode.
+	 * @return the encoded key.
+	 */
+	static byte[] encode(GroupKey key) {
+		Writer writer = new Writer();
+		for (int i = 0; i < key.size(); i++) {
+			Object value = key.get(i);
+			if (value == null) {
+				writer.write(NULL);
+			} else if (value instanceof Boolean) {
+				writer.write((Boolean) value ? TRUE : FALSE);
+			} else if (value instanceof Long) {
+				writer.write(LONG);
+				writer.writeLong((Long) value ^ Long.MIN_VALUE);
+			} else if (value instanceof Double) {
+				long bits = Double.doubleToLongBits((Double) value);
+				writer.write(DOUBLE);
+				writer.writeLong(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE);
+			} else {
+				writer.write(STRING);
+				for (byte b : ((String) value).getBytes(StandardCharsets.UTF_8)) {
+					writer.write(b);
+					if (b == 0) {
+						writer.write(ESCAPE);
+					}
+				}
+				writer.write((byte) 0);
+			}
+		}
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Decodes a key encoded by {@link #encode(GroupKey)}.
+	 *
+	 * @param bytes the encoded key.
+	 * @return the decoded key.
+	 * @throws SerializationException if the bytes are not a valid encoding.
+	 */
+	static GroupKey decode(byte[] bytes) {
+		List<Object> values = new ArrayList<>(4);
+		int position = 0;
+		try {
+			while (position < bytes.length) {
+				byte tag = bytes[position++];
+				switch (tag) {
+				case NULL:
+					values.add(null);
+					break;
+				case FALSE:
+					values.add(Boolean.FALSE);
+					break;
+				case TRUE:
+					values.add(Boolean.TRUE);
+					break;
+				case LONG:
+					values.add(readLong(bytes, position) ^ Long.MIN_VALUE);
+					position += 8;
+					break;
+				case DOUBLE:
+					long bits = readLong(bytes, position);
+					values.add(Double.longBitsToDouble(bits < 0 ? bits ^ Long.MIN_VALUE : ~bits));
+					position += 8;
+					break;
+				case STRING:
+					Writer string = new Writer();
+					while (true) {
+						byte b = bytes[position++];
+						if (b == 0) {
+							if (position == bytes.length || bytes[position] != ESCAPE) {
+								break;
+							}
+							position++;
+						}
+						string.write(b);
+					}
+					values.add(new String(string.buffer, 0, string.size, StandardCharsets.UTF_8));
+					break;
+				default:
+					throw new SerializationException("unknown group key tag " + tag);
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new SerializationException("truncated group key", e);
+		}
+		return GroupKey.of(values.toArray());
+	}
+
+	private static long readLong(byte[] bytes, int position) {
+		if (position + 8 > bytes.length) {
+			throw new ArrayIndexOutOfBoundsException(position + 8);
+		}
+
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (bytes[position + i] & 0xFF);
+		}
+		return value;
+	}
+
+	// ------------------------------------------------------------------------
+	// Writer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A minimal growing byte buffer.
+	 */
+	private static class Writer {
+
+		byte[] buffer = new byte[32];
+		int size;
+
+		void write(byte b) {
+			if (this.size == this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, this.size * 2);
+			}
+			this.buffer[this.size++] = b;
+		}
+
+		void writeLong(long value) {
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				write((byte) (value >>> shift));
+			}
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.buffer, this.size);
+		}
+	}
+}
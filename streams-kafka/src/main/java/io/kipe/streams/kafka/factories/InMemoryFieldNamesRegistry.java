@@ -0,0 +1,47 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link FieldNamesRegistry} keeping the field names in memory.
+ * <p>
+ * The registry is only visible within the JVM, so it is meant for tests and for applications whose framed messages
+ * are only read by the same instance, e.g. state stores without standby replicas. The changelogs of such stores can't
+ * be restored by another instance or after a restart unless the registry gets populated before.
+ */
+public class InMemoryFieldNamesRegistry implements FieldNamesRegistry {
+
+	private final Map<Long, List<String>> fieldNames = new ConcurrentHashMap<>();
+
+	@Override
+	public void register(long fingerprint, List<String> fieldNames) {
+		Objects.requireNonNull(fieldNames, "fieldNames");
+		
+		this.fieldNames.putIfAbsent(fingerprint, List.copyOf(fieldNames));
+	}
+
+	@Override
+	public List<String> lookup(long fingerprint) {
+		return this.fieldNames.get(fingerprint);
+	}
+}
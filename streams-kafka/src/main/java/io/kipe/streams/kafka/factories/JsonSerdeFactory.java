@@ -17,6 +17,7 @@
  */
 package io.kipe.streams.kafka.factories;
 
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -27,7 +28,14 @@ import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.common.serialization.Serializer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.kipe.streams.recordtypes.FieldDecoder;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 /**
  * JsonSerdeFactory is a utility class for creating Serde instances for JSON
@@ -36,12 +44,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * already, and caches it for future use. This ensures that a single Serde
  * instance is used for all instances of the same POJO class, reducing memory
  * usage and improving performance.
+ * <p>
+ * All Serdes share one ObjectMapper and use an ObjectReader and ObjectWriter
+ * bound to their class. The serialized json is built in a reused per thread
+ * buffer. {@link GenericRecord}s with common value types are read and written
+ * by a streaming codec without Jackson databind (see
+ * {@link GenericRecordJsonCodec}). The ObjectMapper registers all Jackson
+ * modules found on the classpath, so adding e.g. the
+ * {@code jackson-module-blackbird} dependency enables Jackson's bytecode
+ * optimized (de)serializers.
  */
 public class JsonSerdeFactory {
 
     private static final String JSON_POJO_CLASS = "JsonPOJOClass";
+	private static final int INITIAL_BUFFER_SIZE = 512;
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+	private static final ThreadLocal<ByteArrayBuilder> BUFFERS = ThreadLocal.withInitial(() -> new ByteArrayBuilder(INITIAL_BUFFER_SIZE));
 	@SuppressWarnings("rawtypes")
 	private static final Map<Class, Serde> SERDES = new ConcurrentHashMap<>();
+	private static volatile Serde<GenericRecord> lazyGenericRecordSerde;
 
 	/**
 	 * Private constructor to prevent instantiation of this utility class.
@@ -59,12 +80,41 @@ public class JsonSerdeFactory {
 	 * @param cls The POJO class for which the Serde instance should be created.
 	 * @return The Serde instance for the given POJO class.
 	 */
-	public static synchronized <T> Serde<T> getJsonSerde(final Class<T> cls) {
-		@SuppressWarnings("unchecked")
+	@SuppressWarnings("unchecked")
+	public static <T> Serde<T> getJsonSerde(final Class<T> cls) {
 		Serde<T> serde = SERDES.get(cls);
 		if(serde == null) {
-			serde = createJSONSerde(cls);
-			SERDES.put(cls, serde);
+			serde = SERDES.computeIfAbsent(cls, c -> createJSONSerde(cls));
+		}
+		
+		return serde;
+	}
+
+	/**
+	 * Returns a Serde for {@link GenericRecord}s which decodes the fields lazily.
+	 * <p>
+	 * The deserializer only indexes the json and each field gets decoded the first time it is read (see
+	 * {@link GenericRecord#lazy(FieldDecoder)}). Records which weren't modified are serialized by writing the
+	 * original json. This makes deserialization proportional to the fields actually touched, e.g. in filter or
+	 * pass-through stages of records with many fields. The json format is the same as the one of
+	 * {@link #getJsonSerde(Class)}.
+	 * <p>
+	 * Note that malformed field values don't fail the deserialization but the first access to the field.
+	 *
+	 * @return the lazy GenericRecord Serde.
+	 */
+	public static Serde<GenericRecord> getLazyGenericRecordSerde() {
+		Serde<GenericRecord> serde = lazyGenericRecordSerde;
+		if (serde == null) {
+			synchronized (JsonSerdeFactory.class) {
+				serde = lazyGenericRecordSerde;
+				if (serde == null) {
+					serde = Serdes.serdeFrom(
+							new JsonPOJOSerializer<>(), 
+							new LazyGenericRecordDeserializer());
+					lazyGenericRecordSerde = serde;
+				}
+			}
 		}
 		
 		return serde;
@@ -100,11 +150,12 @@ public class JsonSerdeFactory {
 	 * with a map of properties, but this implementation ignores any provided properties.
 	 * <p>The {@link #serialize(String, Object)} method is used by Kafka to convert an object to a byte array.
 	 * If the provided object is null, an empty byte array is returned. If there is an error serializing the object
-	 * to JSON, a {@link SerializationException} is thrown.
+	 * to JSON, a {@link SerializationException} is thrown. Unmodified {@link GenericRecord}s read by
+	 * {@link LazyGenericRecordDeserializer} are serialized by returning their original json.
 	 * <p>The {@link #close()} method is a no-op in this implementation.
 	 */
 	private static class JsonPOJOSerializer<T> implements Serializer<T> {
-	    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	    private ObjectWriter writer = OBJECT_MAPPER.writer();
 
 	    /**
 	     * Default constructor needed by Kafka
@@ -113,13 +164,19 @@ public class JsonSerdeFactory {
 
 		/**
 		 * Configure this class.
+		 * <p>
+		 * The writer is bound to the POJO class if it is final. Otherwise the runtime class of each object decides
+		 * how it gets serialized.
 		 *
-		 * @param props map of properties used to configure this class. Ignored in this implementation.
+		 * @param props map of properties used to configure this class.
 		 * @param isKey whether the serializer is being used for a key or value. Ignored in this implementation.
 		 */
 	    @Override
 	    public void configure(final Map<String, ?> props, final boolean isKey) {
-	        // nothing to do
+	        Class<?> cls = (Class<?>) props.get(JSON_POJO_CLASS);
+	        if (cls != null && Modifier.isFinal(cls.getModifiers())) {
+	            this.writer = OBJECT_MAPPER.writerFor(cls);
+	        }
 	    }
 
 		/**
@@ -135,8 +192,27 @@ public class JsonSerdeFactory {
 	        if (data == null)
 	            return new byte[0];
 
+	        if (data instanceof GenericRecord) {
+	            FieldDecoder source = ((GenericRecord) data).unmodifiedSource();
+	            if (source instanceof LazyJsonFieldDecoder) {
+	                return ((LazyJsonFieldDecoder) source).json();
+	            }
+	        }
+
+	        ByteArrayBuilder buffer = BUFFERS.get();
 	        try {
-	            return objectMapper.writeValueAsBytes(data);
+	            if (data instanceof GenericRecord) {
+	                byte[] json = GenericRecordJsonCodec.write(OBJECT_MAPPER.getFactory(), buffer, (GenericRecord) data);
+	                if (json != null) {
+	                    return json;
+	                }
+	            }
+	            
+	            buffer.reset();
+	            try (JsonGenerator gen = OBJECT_MAPPER.getFactory().createGenerator(buffer)) {
+	                writer.writeValue(gen, data);
+	            }
+	            return buffer.toByteArray();
 	        } catch (final Exception e) {
 	            throw new SerializationException("Error serializing JSON message", e);
 	        }
@@ -164,9 +240,8 @@ public class JsonSerdeFactory {
 	 * The class should be used with Kafka as it includes a default constructor that is needed by Kafka.
 	 */
 	private static class JsonPOJODeserializer<T> implements Deserializer<T> {
-	    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
-
 	    private Class<T> tClass;
+	    private ObjectReader reader;
 
 	    /**
 	     * Default constructor needed by Kafka
@@ -184,6 +259,7 @@ public class JsonSerdeFactory {
 	    @Override
 	    public void configure(final Map<String, ?> props, final boolean isKey) {
 	        tClass = (Class<T>) props.get(JSON_POJO_CLASS);
+	        reader = OBJECT_MAPPER.readerFor(tClass);
 	    }
 
 		/**
@@ -193,6 +269,7 @@ public class JsonSerdeFactory {
 		 * @param bytes The JSON byte array that will be deserialized.
 		 * @return The deserialized POJO of type T.
 		 */
+	    @SuppressWarnings("unchecked")
 	    @Override
 	    public T deserialize(final String topic, final byte[] bytes) {
 	        if (bytes == null)
@@ -200,7 +277,10 @@ public class JsonSerdeFactory {
 
 	        T data;
 	        try {
-	            data = objectMapper.readValue(bytes, tClass);
+	            data = tClass == GenericRecord.class ? (T) GenericRecordJsonCodec.read(OBJECT_MAPPER.getFactory(), bytes) : null;
+	            if (data == null) {
+	                data = reader.readValue(bytes);
+	            }
 	        } catch (final Exception e) {
 	            throw new SerializationException(e);
 	        }
@@ -216,4 +296,65 @@ public class JsonSerdeFactory {
 	        // nothing to do
 	    }
 	}
+
+	// ------------------------------------------------------------------------
+	// LazyGenericRecordDeserializer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A Deserializer creating lazily decoded {@link GenericRecord}s from their json representation by a
+	 * {@link LazyJsonFieldDecoder}.
+	 */
+	private static class LazyGenericRecordDeserializer implements Deserializer<GenericRecord> {
+	    private final ObjectReader reader = OBJECT_MAPPER.readerFor(GenericRecord.class);
+
+	    /**
+	     * Default constructor needed by Kafka
+	     */
+	    LazyGenericRecordDeserializer() {
+	    }
+
+	    @Override
+	    public void configure(final Map<String, ?> props, final boolean isKey) {
+	        // nothing to do
+	    }
+
+		/**
+		 * Indexes the json of a GenericRecord without decoding the field values.
+		 *
+		 * @param topic The topic the data is being deserialized from.
+		 * @param bytes The json of the GenericRecord.
+		 * @return The lazily decoded GenericRecord.
+		 */
+	    @Override
+	    public GenericRecord deserialize(final String topic, final byte[] bytes) {
+	        if (bytes == null)
+	            return null;
+
+	        try {
+	            LazyJsonFieldDecoder decoder = LazyJsonFieldDecoder.index(OBJECT_MAPPER, bytes);
+	            return decoder == null ? null : GenericRecord.lazy(decoder);
+	        } catch (final IllegalArgumentException e) {
+	            // duplicate field names, let Jackson resolve them
+	            return readEagerly(bytes);
+	        } catch (final SerializationException e) {
+	            throw e;
+	        } catch (final Exception e) {
+	            throw new SerializationException(e);
+	        }
+	    }
+
+	    private GenericRecord readEagerly(final byte[] bytes) {
+	        try {
+	            return reader.readValue(bytes);
+	        } catch (final Exception e) {
+	            throw new SerializationException(e);
+	        }
+	    }
+
+	    @Override
+	    public void close() {
+	        // nothing to do
+	    }
+	}
 }
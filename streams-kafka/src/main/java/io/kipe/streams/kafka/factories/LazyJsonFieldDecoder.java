@@ -0,0 +1,249 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.kipe.streams.recordtypes.FieldDecoder;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * A {@link FieldDecoder} for the json representation of a {@link GenericRecord}.
+ * <p>
+ * {@link #index(ObjectMapper, byte[])} scans the json once and remembers the byte range of each field value without
+ * materializing it. {@link #decode(int)} parses a single value: strings, ints, doubles and booleans are read
+ * directly, all other values are deserialized by Jackson with the same type information as
+ * {@code GenericRecord.fields}.
+ */
+final class LazyJsonFieldDecoder implements FieldDecoder {
+
+	private static final byte[] HOLDER_PREFIX = "{\"v\":".getBytes(StandardCharsets.UTF_8);
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final ObjectMapper objectMapper;
+	private final byte[] json;
+	private final String[] fieldNames;
+	private final int[] starts;
+	private final int[] ends;
+	private final int size;
+
+	private LazyJsonFieldDecoder(ObjectMapper objectMapper, byte[] json, String[] fieldNames, int[] starts, int[] ends, int size) {
+		this.objectMapper = objectMapper;
+		this.json = json;
+		this.fieldNames = fieldNames;
+		this.starts = starts;
+		this.ends = ends;
+		this.size = size;
+	}
+
+	/**
+	 * Indexes the fields of the given GenericRecord json.
+	 *
+	 * @param objectMapper the mapper to decode the field values with.
+	 * @param json         the json representation of a GenericRecord.
+	 * @return the decoder or {@code null} if the json is {@code null}.
+	 * @throws IOException            if the json is malformed.
+	 * @throws SerializationException if the json is not a GenericRecord.
+	 */
+	static LazyJsonFieldDecoder index(ObjectMapper objectMapper, byte[] json) throws IOException {
+		try (JsonParser p = objectMapper.getFactory().createParser(json)) {
+			JsonToken token = p.nextToken();
+			if (token == JsonToken.VALUE_NULL) {
+				return null;
+			}
+			expect(token, JsonToken.START_OBJECT);
+			
+			LazyJsonFieldDecoder decoder = null;
+			while ((token = p.nextToken()) == JsonToken.FIELD_NAME) {
+				String name = p.currentName();
+				if (!"fields".equals(name)) {
+					throw new SerializationException("unrecognized GenericRecord property " + name);
+				}
+				
+				token = p.nextToken();
+				if (token != JsonToken.VALUE_NULL) {
+					expect(token, JsonToken.START_OBJECT);
+					decoder = indexFields(objectMapper, json, p);
+				}
+			}
+			expect(token, JsonToken.END_OBJECT);
+			
+			return decoder != null ? decoder : new LazyJsonFieldDecoder(objectMapper, json, new String[0], new int[0], new int[0], 0);
+		}
+	}
+
+	/**
+	 * Indexes the entries of the fields object. The parser is positioned at its START_OBJECT token.
+	 * <p>
+	 * A value ends where the next field name starts (or at the closing brace) minus the separating comma and
+	 * whitespace. Null values are skipped as they are absent fields.
+	 */
+	private static LazyJsonFieldDecoder indexFields(ObjectMapper objectMapper, byte[] json, JsonParser p) throws IOException {
+		String[] fieldNames = new String[INITIAL_CAPACITY];
+		int[] starts = new int[INITIAL_CAPACITY];
+		int[] ends = new int[INITIAL_CAPACITY];
+		int size = 0;
+		boolean open = false;
+		
+		JsonToken token;
+		while ((token = p.nextToken()) == JsonToken.FIELD_NAME) {
+			if (open) {
+				ends[size - 1] = trimEnd(json, (int) p.getTokenLocation().getByteOffset());
+				open = false;
+			}
+			
+			String fieldName = p.currentName();
+			token = p.nextToken();
+			if (token == JsonToken.VALUE_NULL) {
+				continue;
+			}
+			
+			if (size == fieldNames.length) {
+				fieldNames = Arrays.copyOf(fieldNames, size * 2);
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+			}
+			fieldNames[size] = fieldName;
+			starts[size] = (int) p.getTokenLocation().getByteOffset();
+			size++;
+			open = true;
+			
+			if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+				p.skipChildren();
+			}
+		}
+		expect(token, JsonToken.END_OBJECT);
+		
+		if (open) {
+			// the current location is just behind the closing brace
+			ends[size - 1] = trimEnd(json, (int) p.getCurrentLocation().getByteOffset() - 1);
+		}
+		
+		return new LazyJsonFieldDecoder(objectMapper, json, fieldNames, starts, ends, size);
+	}
+
+	private static int trimEnd(byte[] json, int end) {
+		end = skipWhitespaceBackwards(json, end);
+		if (json[end - 1] == ',') {
+			end = skipWhitespaceBackwards(json, end - 1);
+		}
+		
+		return end;
+	}
+
+	private static int skipWhitespaceBackwards(byte[] json, int end) {
+		while (json[end - 1] == ' ' || json[end - 1] == '\n' || json[end - 1] == '\r' || json[end - 1] == '\t') {
+			end--;
+		}
+		
+		return end;
+	}
+
+	private static void expect(JsonToken token, JsonToken expected) {
+		if (token != expected) {
+			throw new SerializationException("unexpected json token " + token + " while reading a GenericRecord, expected " + expected);
+		}
+	}
+
+	/**
+	 * Returns the json this decoder was created from.
+	 *
+	 * @return the original json.
+	 */
+	byte[] json() {
+		return this.json;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public String fieldName(int index) {
+		return this.fieldNames[index];
+	}
+
+	/**
+	 * Decodes the field value at the given index.
+	 *
+	 * @throws SerializationException if the value can't be deserialized.
+	 */
+	@Override
+	public Object decode(int index) {
+		int start = this.starts[index];
+		int length = this.ends[index] - start;
+		
+		try (JsonParser p = this.objectMapper.getFactory().createParser(this.json, start, length)) {
+			switch (p.nextToken()) {
+			case VALUE_STRING:
+				return p.getText();
+			case VALUE_NUMBER_INT:
+				if (p.getNumberType() == JsonParser.NumberType.INT) {
+					return p.getIntValue();
+				}
+				break;
+			case VALUE_NUMBER_FLOAT:
+				return p.getDoubleValue();
+			case VALUE_TRUE:
+				return Boolean.TRUE;
+			case VALUE_FALSE:
+				return Boolean.FALSE;
+			default:
+				break;
+			}
+			
+			return decodeTyped(start, length);
+		} catch (IOException e) {
+			throw new SerializationException("Error deserializing GenericRecord field " + this.fieldNames[index], e);
+		}
+	}
+
+	private Object decodeTyped(int start, int length) throws IOException {
+		byte[] holder = new byte[HOLDER_PREFIX.length + length + 1];
+		System.arraycopy(HOLDER_PREFIX, 0, holder, 0, HOLDER_PREFIX.length);
+		System.arraycopy(this.json, start, holder, HOLDER_PREFIX.length, length);
+		holder[holder.length - 1] = '}';
+		
+		return this.objectMapper.readValue(holder, ValueHolder.class).value;
+	}
+
+	// ------------------------------------------------------------------------
+	// ValueHolder
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Wraps a single field value with the type information of {@code GenericRecord.fields}.
+	 */
+	static class ValueHolder {
+
+		@JsonProperty("v")
+		@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "className")
+		Object value;
+	}
+}
@@ -24,6 +24,7 @@ import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.kstream.KStream;
 
 import io.kipe.common.utils.MathUtils;
+import io.kipe.streams.recordtypes.FieldRef;
 import io.kipe.streams.recordtypes.GenericRecord;
 
 
@@ -142,7 +143,7 @@ public class BinBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecord>
 		Objects.requireNonNull(this.fieldName, "fieldName");
 		Objects.requireNonNull(this.span, "span");
 		
-		final String sourceFieldName = this.fieldName;
+		final FieldRef sourceField = FieldRef.of(this.fieldName);
 		final String targetFieldName = Objects.requireNonNullElse(this.newFieldName, this.fieldName);
 		final double binSpan = this.span;
 		
@@ -156,7 +157,7 @@ public class BinBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecord>
 						targetFieldName, 
 						(key,value) -> 
 							MathUtils.round(
-								MathUtils.round(value.getDouble(sourceFieldName) / binSpan, 0)
+								MathUtils.round(value.getDouble(sourceField) / binSpan, 0)
 								* binSpan, MathUtils.getPrecision(binSpan)))
 				.build();
 	}
@@ -105,6 +105,9 @@ public class EvalBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecord
 
     /**
      * Build the topology and return a KipesBuilder object.
+     * <p>
+     * The expressions update a {@link GenericRecord#fork()} of the incoming value, so that other branches of the same
+     * stream don't see the new fields.
      *
      * @return the KipesBuilder object representing the built topology.
      */
@@ -113,8 +116,9 @@ public class EvalBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecord
                 this.stream
                         .map(
                                 (key, value) -> {
-                                    this.expressions.forEach(expression -> expression.update(key, value));
-                                    return new KeyValue<>(key, value);
+                                    GenericRecord result = value.fork();
+                                    this.expressions.forEach(expression -> expression.update(key, result));
+                                    return new KeyValue<>(key, result);
                                 }));
     }
 
@@ -19,24 +19,34 @@ package io.kipe.streams.kafka.processors;
 
 import java.util.function.BiFunction;
 
+import io.kipe.streams.recordtypes.FieldRef;
 import io.kipe.streams.recordtypes.GenericRecord;
-import lombok.AllArgsConstructor;
-import lombok.Setter;
 
 /**
  * Simple construct to update a {@link GenericRecord} field from a function.
+ * <p>
+ * The target field is accessed by a {@link FieldRef} so that updating a record doesn't need to look up the field name.
  *
  * @param <K> the key type
  * @param <V> the GenericRecord
  */
-@AllArgsConstructor 
 public class Expression<K, V extends GenericRecord> {
 	
-	@Setter
 	protected String fieldName;
+	protected FieldRef fieldRef;
 	protected BiFunction<K, V, Object> valueFunction;
 	
 	protected Expression() {}
+	
+	public Expression(String fieldName, BiFunction<K, V, Object> valueFunction) {
+		setFieldName(fieldName);
+		this.valueFunction = valueFunction;
+	}
+	
+	public void setFieldName(String fieldName) {
+		this.fieldName = fieldName;
+		this.fieldRef = FieldRef.of(fieldName);
+	}
 
 	/**
 	 * The update method is used to update the specified field in the {@link GenericRecord} object with the new value
@@ -47,7 +57,7 @@ public class Expression<K, V extends GenericRecord> {
 	 **/
 	void update(K key, V record) {
 		record.set(
-				this.fieldName, 
+				this.fieldRef, 
 				this.valueFunction.apply(key, record));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,262 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.query.Position;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import io.kipe.streams.kafka.factories.BinarySerdeFactory;
+import io.kipe.streams.recordtypes.GroupKey;
+
+/**
+ * The partial {@link StatsAggregate}s of a pre-aggregating task, see {@link StatsBuilder#preAggregate(int, Duration)}.
+ * <p>
+ * The partial aggregates are updated in memory. The ones updated since the last flush are written to a logged
+ * in-memory key value store when the store gets flushed, which the runtime does before every commit. So the
+ * changelog holds the contribution of every record whose offset gets committed, while the partial aggregates are
+ * only serialized once per commit rather than per record.
+ */
+final class PartialAggregatesStore implements StateStore {
+
+	private final KeyValueStore<GroupKey,StatsAggregate> changelogged;
+	/** the partial aggregates in the order of their groups' first records */
+	private final Map<GroupKey,StatsAggregate> partials = new LinkedHashMap<>();
+	/** the groups updated since their partial aggregates were last written to the logged store */
+	private final Set<GroupKey> dirtyGroups = new HashSet<>();
+	/** the groups whose partial aggregates are in the logged store */
+	private final Set<GroupKey> storedGroups = new HashSet<>();
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param changelogged the logged store to write the partial aggregates to.
+	 */
+	PartialAggregatesStore(KeyValueStore<GroupKey,StatsAggregate> changelogged) {
+		this.changelogged = Objects.requireNonNull(changelogged, "changelogged");
+	}
+
+	/**
+	 * Returns a builder of a store with the given name and a logged in-memory store of the same name.
+	 *
+	 * @param name           the name of the store.
+	 * @param aggregateSerde the serde of the partial aggregates.
+	 * @return the builder.
+	 */
+	static StoreBuilder<PartialAggregatesStore> builder(String name, Serde<StatsAggregate> aggregateSerde) {
+		return new Builder(Stores.keyValueStoreBuilder(
+				Stores.inMemoryKeyValueStore(name),
+				BinarySerdeFactory.getGroupKeySerde(),
+				aggregateSerde));
+	}
+
+	/**
+	 * Loads the partial aggregates restored into the logged store, e.g. the ones of a failed task. Has to be called
+	 * once the store is restored, i.e. when the processor using it gets initialized.
+	 */
+	void load() {
+		this.partials.clear();
+		this.dirtyGroups.clear();
+		this.storedGroups.clear();
+
+		try (KeyValueIterator<GroupKey,StatsAggregate> it = this.changelogged.all()) {
+			while (it.hasNext()) {
+				KeyValue<GroupKey,StatsAggregate> partial = it.next();
+				this.partials.put(partial.key, partial.value);
+				this.storedGroups.add(partial.key);
+			}
+		}
+	}
+
+	/**
+	 * Returns the partial aggregate of the given group.
+	 *
+	 * @param groupKey the group's key.
+	 * @return the partial aggregate or {@code null} if there is none.
+	 */
+	StatsAggregate get(GroupKey groupKey) {
+		return this.partials.get(groupKey);
+	}
+
+	/**
+	 * Puts the partial aggregate of the given group. Has to be called after every update, also of aggregates updated
+	 * in place, so that the update gets written on the next flush.
+	 *
+	 * @param groupKey the group's key.
+	 * @param partial  the partial aggregate.
+	 */
+	void put(GroupKey groupKey, StatsAggregate partial) {
+		this.partials.put(groupKey, partial);
+		this.dirtyGroups.add(groupKey);
+	}
+
+	/**
+	 * @return the number of groups with a partial aggregate.
+	 */
+	int size() {
+		return this.partials.size();
+	}
+
+	/**
+	 * Performs the given action for each partial aggregate in the order of their groups' first records.
+	 *
+	 * @param action the action to perform with the group's key and its partial aggregate.
+	 */
+	void forEach(BiConsumer<GroupKey,StatsAggregate> action) {
+		this.partials.forEach(action);
+	}
+
+	/**
+	 * Removes all partial aggregates, also from the logged store.
+	 */
+	void clear() {
+		for (GroupKey groupKey : this.storedGroups) {
+			this.changelogged.delete(groupKey);
+		}
+
+		this.partials.clear();
+		this.dirtyGroups.clear();
+		this.storedGroups.clear();
+	}
+
+	@Override
+	public String name() {
+		return this.changelogged.name();
+	}
+
+	@Override
+	@Deprecated
+	@SuppressWarnings("deprecation")
+	public void init(ProcessorContext context, StateStore root) {
+		this.changelogged.init(context, root);
+	}
+
+	@Override
+	public void init(StateStoreContext context, StateStore root) {
+		this.changelogged.init(context, root);
+	}
+
+	/**
+	 * Writes the partial aggregates updated since the last flush to the logged store and flushes it.
+	 */
+	@Override
+	public void flush() {
+		for (GroupKey groupKey : this.dirtyGroups) {
+			this.changelogged.put(groupKey, this.partials.get(groupKey));
+			this.storedGroups.add(groupKey);
+		}
+		this.dirtyGroups.clear();
+
+		this.changelogged.flush();
+	}
+
+	@Override
+	public void close() {
+		this.changelogged.close();
+	}
+
+	@Override
+	public boolean persistent() {
+		return this.changelogged.persistent();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.changelogged.isOpen();
+	}
+
+	@Override
+	public Position getPosition() {
+		return this.changelogged.getPosition();
+	}
+
+	// ------------------------------------------------------------------------
+	// Builder
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Builds {@link PartialAggregatesStore}s around the stores of the given builder of the logged store.
+	 */
+	private static final class Builder implements StoreBuilder<PartialAggregatesStore> {
+
+		private final StoreBuilder<KeyValueStore<GroupKey,StatsAggregate>> changeloggedBuilder;
+
+		Builder(StoreBuilder<KeyValueStore<GroupKey,StatsAggregate>> changeloggedBuilder) {
+			this.changeloggedBuilder = changeloggedBuilder;
+		}
+
+		@Override
+		public StoreBuilder<PartialAggregatesStore> withCachingEnabled() {
+			this.changeloggedBuilder.withCachingEnabled();
+			return this;
+		}
+
+		@Override
+		public StoreBuilder<PartialAggregatesStore> withCachingDisabled() {
+			this.changeloggedBuilder.withCachingDisabled();
+			return this;
+		}
+
+		@Override
+		public StoreBuilder<PartialAggregatesStore> withLoggingEnabled(Map<String,String> config) {
+			this.changeloggedBuilder.withLoggingEnabled(config);
+			return this;
+		}
+
+		@Override
+		public StoreBuilder<PartialAggregatesStore> withLoggingDisabled() {
+			this.changeloggedBuilder.withLoggingDisabled();
+			return this;
+		}
+
+		@Override
+		public PartialAggregatesStore build() {
+			return new PartialAggregatesStore(this.changeloggedBuilder.build());
+		}
+
+		@Override
+		public Map<String,String> logConfig() {
+			return this.changeloggedBuilder.logConfig();
+		}
+
+		@Override
+		public boolean loggingEnabled() {
+			return this.changeloggedBuilder.loggingEnabled();
+		}
+
+		@Override
+		public String name() {
+			return this.changeloggedBuilder.name();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * The aggregate of one stats group as kept in the {@link StatsBuilder}'s aggregation store.
+ * <p>
+ * It consists of a record holding the group fields and the fields of plain {@link StatsExpression}s, and one
+ * {@link StatsState} slot per {@link TypedStatsExpression}, or per group of typed expressions sharing their state. The
+ * result record emitted by the {@link StatsBuilder} is projected from it.
+ */
+public final class StatsAggregate {
+
+	private final GenericRecord record;
+	private final StatsState[] states;
+
+	StatsAggregate(GenericRecord record, StatsState[] states) {
+		this.record = record;
+		this.states = states;
+	}
+
+	/**
+	 * Returns the record holding the group fields and the fields of plain {@link StatsExpression}s.
+	 *
+	 * @return the record.
+	 */
+	public GenericRecord record() {
+		return this.record;
+	}
+
+	/**
+	 * Returns the state of the given slot.
+	 *
+	 * @param slot the slot, slots are assigned to the {@link TypedStatsExpression}s in the order they were added,
+	 *             expressions sharing their state get the slot of the first of them.
+	 * @return the state.
+	 */
+	public StatsState state(int slot) {
+		return this.states[slot];
+	}
+
+	/**
+	 * Returns the number of state slots.
+	 *
+	 * @return the number of slots.
+	 */
+	public int size() {
+		return this.states.length;
+	}
+}
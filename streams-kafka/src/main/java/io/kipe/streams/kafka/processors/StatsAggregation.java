@@ -0,0 +1,357 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.recordtypes.GroupKey;
+
+/**
+ * Creates, updates, projects and serializes the {@link StatsAggregate}s of a {@link StatsBuilder}.
+ * <p>
+ * Plain {@link StatsExpression}s update the aggregate's record, {@link TypedStatsExpression}s their state slot. Typed
+ * expressions with equal {@link TypedStatsExpression#sharedStateKey() shared state keys} share one slot, which is
+ * created, read and updated by the first of them (the slot's owner). The expressions must be
+ * {@link StatsExpression#prepare() prepared} before.
+ */
+final class StatsAggregation {
+
+	private final FieldRef[] groupFields;
+	private final StatsExpression[] expressions;
+	/** the state slot per expression, {@code -1} for plain expressions */
+	private final int[] slots;
+	/** the expression creating, reading and updating the state per slot */
+	private final TypedStatsExpression<?>[] owners;
+	/** the expressions sharing the state per slot */
+	private final List<List<TypedStatsExpression<?>>> sharers = new ArrayList<>();
+	private final boolean hasPlainExpressions;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param groupFields the fields to copy from the first record of a group into its aggregate.
+	 * @param expressions the prepared expressions.
+	 */
+	StatsAggregation(FieldRef[] groupFields, List<StatsExpression> expressions) {
+		this.groupFields = groupFields;
+		this.expressions = expressions.toArray(new StatsExpression[0]);
+		this.slots = new int[this.expressions.length];
+
+		Map<Object, Integer> sharedSlots = new HashMap<>();
+		boolean plainExpressions = false;
+		for (int i = 0; i < this.expressions.length; i++) {
+			if (!(this.expressions[i] instanceof TypedStatsExpression)) {
+				this.slots[i] = -1;
+				plainExpressions = true;
+				continue;
+			}
+
+			TypedStatsExpression<?> e = (TypedStatsExpression<?>) this.expressions[i];
+			Object key = e.sharedStateKey();
+			Integer slot = key == null ? null : sharedSlots.get(key);
+			if (slot == null) {
+				slot = this.sharers.size();
+				this.sharers.add(new ArrayList<>());
+				if (key != null) {
+					sharedSlots.put(key, slot);
+				}
+			}
+
+			this.slots[i] = slot;
+			this.sharers.get(slot).add(e);
+		}
+
+		this.hasPlainExpressions = plainExpressions;
+
+		this.owners = new TypedStatsExpression<?>[this.sharers.size()];
+		for (int slot = 0; slot < this.owners.length; slot++) {
+			this.owners[slot] = this.sharers.get(slot).get(0);
+		}
+	}
+
+	/**
+	 * Updates the given aggregate with the given record.
+	 *
+	 * @param groupKey  the key of the current stats group, a {@link GroupKey} or its string form.
+	 * @param value     the record to aggregate.
+	 * @param aggregate the group's current aggregate, or {@code null} if the group is new.
+	 * @return the updated aggregate.
+	 */
+	StatsAggregate update(Object groupKey, GenericRecord value, StatsAggregate aggregate) {
+		StatsAggregate a = aggregate == null ? create(value) : aggregate;
+
+		if (this.hasPlainExpressions) {
+			// only plain expressions get the string form of the key
+			String key = groupKey.toString();
+			for (int i = 0; i < this.expressions.length; i++) {
+				if (this.slots[i] < 0) {
+					this.expressions[i].update(key, value, a.record());
+				}
+			}
+		}
+		for (int slot = 0; slot < this.owners.length; slot++) {
+			updateState(this.owners[slot], value, a.state(slot));
+		}
+
+		return a;
+	}
+
+	/**
+	 * Merges the aggregates of two parts of a group's records, e.g. of two session windows joined by a new record.
+	 *
+	 * @param groupKey  the key of the stats group, a {@link GroupKey} or its string form.
+	 * @param aggregate the aggregate of the earlier records, updated in place, or {@code null}.
+	 * @param other     the aggregate of the later records, or {@code null}.
+	 * @return the merged aggregate.
+	 * @throws IllegalStateException if there are plain expressions, see {@link #requireMergeable()}.
+	 */
+	StatsAggregate merge(Object groupKey, StatsAggregate aggregate, StatsAggregate other) {
+		if (aggregate == null) {
+			return other;
+		}
+		if (other == null) {
+			return aggregate;
+		}
+
+		requireMergeable();
+		for (int slot = 0; slot < this.owners.length; slot++) {
+			mergeState(this.owners[slot], aggregate.state(slot), other.state(slot));
+		}
+
+		return aggregate;
+	}
+
+	/**
+	 * Checks that the aggregates can be merged, i.e. that all expressions are typed and
+	 * {@link StatsExpression#isMergeable() mergeable}. Plain expressions keep their results in the aggregate's
+	 * record, which can't be merged.
+	 *
+	 * @throws IllegalStateException if there are expressions which can't be merged.
+	 */
+	void requireMergeable() {
+		for (int i = 0; i < this.expressions.length; i++) {
+			if (this.slots[i] < 0 || !this.expressions[i].isMergeable()) {
+				throw new IllegalStateException(String.format(
+						"the stats expression '%s' (%s) can't be merged",
+						this.expressions[i].fieldName, this.expressions[i].getClass().getSimpleName()));
+			}
+		}
+	}
+
+	/**
+	 * Projects the result record of the given aggregate: its record extended by the results of the typed
+	 * expressions.
+	 *
+	 * @param aggregate the aggregate to project.
+	 * @return the result record.
+	 */
+	GenericRecord project(StatsAggregate aggregate) {
+		if (aggregate == null) {
+			return null;
+		}
+
+		GenericRecord result = aggregate.record().fork();
+		for (int i = 0; i < this.expressions.length; i++) {
+			int slot = this.slots[i];
+			if (slot < 0) {
+				continue;
+			}
+
+			TypedStatsExpression<?> e = (TypedStatsExpression<?>) this.expressions[i];
+			Object value = finishState(e, aggregate.state(slot));
+			if (value != null) {
+				result.set(e.fieldRef, value);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the serde of the aggregates.
+	 *
+	 * @return the serde.
+	 */
+	Serde<StatsAggregate> serde() {
+		return new StatsAggregateSerde(this.owners);
+	}
+
+	private StatsAggregate create(GenericRecord value) {
+		GenericRecord record = new GenericRecord();
+		for (FieldRef field : this.groupFields) {
+			record.set(field, value.get(field));
+		}
+
+		StatsState[] states = new StatsState[this.owners.length];
+		for (int slot = 0; slot < states.length; slot++) {
+			List<TypedStatsExpression<?>> slotSharers = this.sharers.get(slot);
+			states[slot] = slotSharers.size() == 1
+					? this.owners[slot].createState()
+					: this.owners[slot].createSharedState(slotSharers);
+		}
+
+		return new StatsAggregate(record, states);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <S extends StatsState> void updateState(
+			TypedStatsExpression<S> expression,
+			GenericRecord value,
+			StatsState state)
+	{
+		expression.update(value, (S) state);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <S extends StatsState> void mergeState(
+			TypedStatsExpression<S> expression,
+			StatsState state,
+			StatsState other)
+	{
+		expression.merge((S) state, (S) other);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <S extends StatsState> Object finishState(TypedStatsExpression<S> expression, StatsState state) {
+		return expression.finish((S) state);
+	}
+
+	// ------------------------------------------------------------------------
+	// StatsAggregateSerde
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The binary serde of the {@link StatsAggregate}s. A message consists of the format version byte, the varint
+	 * fingerprint of the state slots, the tagged record, the varint number of state slots and the states in slot
+	 * order.
+	 * <p>
+	 * The fingerprint is the hash of the slot owners' {@link TypedStatsExpression#sharedStateKey() shared state keys},
+	 * or of their class names if they don't share their state. Aggregates written by different typed expressions or
+	 * parameters are rejected rather than read by the wrong state type.
+	 */
+	static class StatsAggregateSerde implements Serializer<StatsAggregate>, Deserializer<StatsAggregate>, Serde<StatsAggregate> {
+
+		static final byte FORMAT_VERSION = 1;
+
+		private final TypedStatsExpression<?>[] owners;
+		private final int fingerprint;
+
+		StatsAggregateSerde(TypedStatsExpression<?>[] owners) {
+			this.owners = owners;
+			this.fingerprint = fingerprint(owners);
+		}
+
+		static int fingerprint(TypedStatsExpression<?>[] owners) {
+			StringBuilder sb = new StringBuilder();
+			for (TypedStatsExpression<?> owner : owners) {
+				Object key = owner.sharedStateKey();
+				sb.append(key == null ? owner.getClass().getName() : key).append(';');
+			}
+			// the hash of strings is specified, so it is stable across JVMs
+			return sb.toString().hashCode();
+		}
+
+		@Override
+		public byte[] serialize(String topic, StatsAggregate data) {
+			if (data == null) {
+				return null;
+			}
+
+			BinaryOutput output = new BinaryOutput();
+			output.writeByte(FORMAT_VERSION);
+			output.writeVarInt(this.fingerprint);
+			output.writeValue(data.record());
+			output.writeVarInt(data.size());
+			for (int slot = 0; slot < data.size(); slot++) {
+				data.state(slot).write(output);
+			}
+
+			return output.toByteArray();
+		}
+
+		@Override
+		public StatsAggregate deserialize(String topic, byte[] data) {
+			if (data == null) {
+				return null;
+			}
+
+			BinaryInput input = new BinaryInput(data);
+			try {
+				byte version = input.readByte();
+				if (version != FORMAT_VERSION) {
+					throw new SerializationException("unsupported stats aggregate format version " + version);
+				}
+				int fingerprint = input.readVarInt();
+				if (fingerprint != this.fingerprint) {
+					throw new SerializationException(String.format(
+							"expected stats states fingerprint %08x but got %08x, the stats expressions have changed",
+							this.fingerprint, fingerprint));
+				}
+
+				GenericRecord record = input.readValue();
+				int size = input.readVarInt();
+				if (size != this.owners.length) {
+					throw new SerializationException(String.format(
+							"expected %d stats states but got %d, the stats expressions have changed",
+							this.owners.length, size));
+				}
+
+				StatsState[] states = new StatsState[size];
+				for (int slot = 0; slot < size; slot++) {
+					states[slot] = this.owners[slot].readState(input);
+				}
+
+				return new StatsAggregate(record, states);
+			} catch (IndexOutOfBoundsException e) {
+				throw new SerializationException("truncated stats aggregate", e);
+			}
+		}
+
+		@Override
+		public void configure(Map<String, ?> configs, boolean isKey) {
+			// nothing to configure
+		}
+
+		@Override
+		public Serializer<StatsAggregate> serializer() {
+			return this;
+		}
+
+		@Override
+		public Deserializer<StatsAggregate> deserializer() {
+			return this;
+		}
+
+		@Override
+		public void close() {
+			// nothing to do
+		}
+	}
+}
@@ -19,20 +19,40 @@ package io.kipe.streams.kafka.processors;
 
 import static io.kipe.streams.kafka.factories.TopicNamesFactory.getProcessorStoreTopicName;
 
+import java.time.Duration;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KGroupedStream;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.KTable;
 import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.SessionWindows;
+import org.apache.kafka.streams.kstream.SlidingWindows;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.Suppressed.BufferConfig;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.kstream.ValueTransformerWithKey;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.StateStore;
 import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.SessionStore;
+import org.apache.kafka.streams.state.WindowStore;
 
+import io.kipe.streams.kafka.factories.BinarySerdeFactory;
+import io.kipe.streams.recordtypes.FieldRef;
 import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.recordtypes.GroupKey;
 
 /**
  * A Builder for calculating statistics on incoming {@link GenericRecord}s. It is not meant to be instantiated directly
@@ -40,7 +60,7 @@ import io.kipe.streams.recordtypes.GenericRecord;
  * <p>It allows specification of statistics functions using instances of {@link StatsExpression}, added with the
  * {@link #with(StatsExpression)} method. The target field for each function can be changed using {@link #as(String)}.
  * Grouping the statistics based on one or more fields of the GenericRecord is possible with the groupBy method. If
- * grouping is specified, the output will be a KTable with a key as a concatenated string of the group field values and
+ * grouping is specified, the output will be a KTable with a {@link GroupKey} of the group field values as key and
  * a value as a GenericRecord containing both grouping fields and statistics fields.
  * <p>The final topology can be assembled and started with the {@link StatsBuilder#build(Serde)} method, which returns
  * a
@@ -79,13 +99,62 @@ import io.kipe.streams.recordtypes.GenericRecord;
  * |---------|----------|----------------------------------|
  * | stats   | yes      | {topicsBaseName}-stats-processor-store |
  * </pre>
+ * <p>
+ * The repartition topic and the store are keyed by the {@link GroupKey} of each group in the order preserving binary
+ * encoding of {@link BinarySerdeFactory#getGroupKeySerde()}, except for {@link #asKTable(Serde)}, which keys them by
+ * the key's string form {@code {fieldValue_1}..{fieldValue_N}}. The results of {@link #build(Serde)} are keyed by the
+ * string form too. This form isn't unique if a grouping field holds values of different types with the same string
+ * representation, e.g. {@code "1"} and {@code 1}: {@link #build(Serde)} aggregates them as distinct groups but emits
+ * them with the same key, {@link #asKTable(Serde)} aggregates them together. {@link #asGroupKeyedKTable()} keeps them
+ * apart.
+ * <p>
+ * The store keeps a {@link StatsAggregate} per group. {@link TypedStatsExpression}s keep their working state in
+ * binary encoded state slots of it rather than in internal fields, the result record with the group and stats fields
+ * is only projected when a result gets emitted.
+ * <p>
+ * Typed expressions able to share their state are fused into one slot which is updated once per record, e.g. avg, var,
+ * stdev and sum of the same field all use the moments of that field.
+ * <p>
+ * By default the stats are aggregated over all time and each group's aggregate is kept forever. With
+ * {@link #windowedBy(TimeWindows)} (tumbling or hopping windows), {@link #windowedBy(SlidingWindows)} or
+ * {@link #windowedBy(SessionWindows)} they are aggregated per window instead, in a window or session store whose
+ * segments are dropped once they are older than the retention period, see {@link #withRetention(Duration)}. Records
+ * arriving after a window's grace period are dropped. Windowed results are available by
+ * {@link #asWindowedKTable()}; {@link #build(Serde)} keys them by the group and adds the window bounds as the
+ * {@value #WINDOW_START_FIELD} and {@value #WINDOW_END_FIELD} fields in epoch milliseconds. Session windows merge the
+ * aggregates of the sessions a record joins, so they require all expressions to be mergeable
+ * {@link TypedStatsExpression}s, see {@link StatsExpression#isMergeable()}.
+ * <p>
+ * By default every update of an aggregate is written to the store's changelog and emitted, see
+ * {@link #emitEveryUpdate()}. For groups receiving many records {@link #emitCached(Duration)} coalesces the updates
+ * in the store's record cache and emits a group's result at most once per flush interval, while windowed stats can be
+ * emitted once per window when it closes with {@link #emitFinal()}.
+ * <p>
+ * Expressions using the record timestamps, see {@link StatsExpression#usesRecordTimestamps()}, get them in the
+ * internal {@value StatsExpression#RECORD_TIMESTAMP_FIELD} field added to the records before repartitioning.
+ * <p>
+ * By default every input record is sent through the repartition topic. For a high input rate over few groups,
+ * {@link #preAggregate(int, Duration)} aggregates the records of each task into partial aggregates first and only
+ * sends those through the repartition topic, where they are merged into the final aggregates.
  *
  * @param <K> The key type of the input Kafka topic.
  */
 public class StatsBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecord> {
 
+	public static final String WINDOW_START_FIELD = "windowStart";
+	public static final String WINDOW_END_FIELD = "windowEnd";
+
 	private String[] groupFields = {};
 	private final List<StatsExpression> expressions = new LinkedList<>();
+	private Serde<GenericRecord> internalSerde;
+	private TimeWindows timeWindows;
+	private SlidingWindows slidingWindows;
+	private SessionWindows sessionWindows;
+	private Duration retention;
+	private Emission emission = Emission.EVERY_UPDATE;
+	private Duration flushInterval;
+	private int maxPartialGroups;
+	private Duration partialsFlushInterval;
 
 	/**
 	 * Creates a new instance of the StatsBuilder class.
@@ -118,6 +187,165 @@ public class StatsBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecor
 		return this;
 	}
 
+	/**
+	 * Aggregates the stats per tumbling or hopping time window, e.g.
+	 * {@code TimeWindows.ofSizeAndGrace(Duration.ofMinutes(5), Duration.ofSeconds(30))}. Replaces any windows
+	 * specified before.
+	 *
+	 * @param windows the time windows.
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> windowedBy(TimeWindows windows) {
+		Objects.requireNonNull(windows, "windows");
+
+		clearWindows();
+		this.timeWindows = windows;
+		return this;
+	}
+
+	/**
+	 * Aggregates the stats per sliding window, i.e. over the records within the given time difference of each
+	 * other. Replaces any windows specified before.
+	 *
+	 * @param windows the sliding windows.
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> windowedBy(SlidingWindows windows) {
+		Objects.requireNonNull(windows, "windows");
+
+		clearWindows();
+		this.slidingWindows = windows;
+		return this;
+	}
+
+	/**
+	 * Aggregates the stats per session window, i.e. over the records of a group separated by less than the
+	 * inactivity gap. Replaces any windows specified before.
+	 * <p>
+	 * Sessions joined by a record get merged, so all expressions have to be mergeable {@link TypedStatsExpression}s,
+	 * see {@link StatsExpression#isMergeable()}. This is checked when the topology is assembled.
+	 *
+	 * @param windows the session windows.
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> windowedBy(SessionWindows windows) {
+		Objects.requireNonNull(windows, "windows");
+
+		clearWindows();
+		this.sessionWindows = windows;
+		return this;
+	}
+
+	/**
+	 * Specifies how long windowed aggregates are kept in the store. Has to be at least the window size (or
+	 * inactivity gap) plus the grace period, which is the default. Expired windows are dropped segment by segment.
+	 *
+	 * @param retention the retention period.
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> withRetention(Duration retention) {
+		Objects.requireNonNull(retention, "retention");
+
+		this.retention = retention;
+		return this;
+	}
+
+	/**
+	 * Emits the result of a group on every update of its aggregate, the default. Each record causes a write to the
+	 * store's changelog and an output record.
+	 *
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> emitEveryUpdate() {
+		this.emission = Emission.EVERY_UPDATE;
+		this.flushInterval = null;
+		return this;
+	}
+
+	/**
+	 * Coalesces the updates of the aggregates in the store's record cache, which is flushed to the changelog on each
+	 * commit, and emits the latest result of a group at most once per flush interval of stream time. Intermediate
+	 * results of a group within the interval are dropped.
+	 *
+	 * @param flushInterval the minimum stream time between two results of the same group (and window).
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> emitCached(Duration flushInterval) {
+		Objects.requireNonNull(flushInterval, "flushInterval");
+		if (flushInterval.isNegative()) {
+			throw new IllegalArgumentException("flushInterval must not be negative but was " + flushInterval);
+		}
+
+		this.emission = Emission.CACHED;
+		this.flushInterval = flushInterval;
+		return this;
+	}
+
+	/**
+	 * Emits the final result of each window once it closes, i.e. when the stream time passes the window's end plus
+	 * its grace period. The updates of the aggregates are coalesced in the store's record cache like with
+	 * {@link #emitCached(Duration)}. Requires windows, see {@link #windowedBy(TimeWindows)}.
+	 *
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> emitFinal() {
+		this.emission = Emission.FINAL;
+		this.flushInterval = null;
+		return this;
+	}
+
+	/**
+	 * Aggregates the records into partial aggregates per group before repartitioning them. Each task keeps the
+	 * partial aggregates of up to {@code maxGroups} groups and sends them through the repartition topic once this
+	 * number is reached and every {@code flushInterval} of wall clock time. The final aggregates merge the partial
+	 * aggregates, so all expressions have to be mergeable {@link TypedStatsExpression}s, see
+	 * {@link StatsExpression#isMergeable()}. This is checked when the topology is assembled.
+	 * <p>
+	 * This cuts the repartition traffic from one record per input record to one partial aggregate per group and flush,
+	 * but delays the results by up to the flush interval. The partial aggregates are kept in memory and written to the
+	 * changelog of a store named {@code {topicsBaseName}-stats-partials-processor-store} before every commit, so they
+	 * survive a failing task while being serialized once per commit rather than per record. Records without a value
+	 * are skipped. As the partial aggregates of different tasks arrive in no particular order,
+	 * {@link io.kipe.streams.kafka.processors.expressions.stats.First} and
+	 * {@link io.kipe.streams.kafka.processors.expressions.stats.Last} are only defined per task.
+	 * <p>
+	 * Pre-aggregation isn't supported for windowed stats.
+	 *
+	 * @param maxGroups     the maximum number of groups to keep partial aggregates for per task.
+	 * @param flushInterval the wall clock time between two flushes of the partial aggregates.
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> preAggregate(int maxGroups, Duration flushInterval) {
+		Objects.requireNonNull(flushInterval, "flushInterval");
+		if (maxGroups < 1) {
+			throw new IllegalArgumentException("maxGroups must be at least 1 but was " + maxGroups);
+		}
+		if (flushInterval.isZero() || flushInterval.isNegative()) {
+			throw new IllegalArgumentException("flushInterval must be positive but was " + flushInterval);
+		}
+
+		this.maxPartialGroups = maxGroups;
+		this.partialsFlushInterval = flushInterval;
+		return this;
+	}
+
+	/**
+	 * Specifies the Serde used for the internal repartition topic. Defaults to the value Serde of the incoming stream.
+	 * As this topic is never read by clients a compact Serde like
+	 * {@link io.kipe.streams.kafka.factories.BinarySerdeFactory#getGenericRecordSerde()} considerably reduces the
+	 * repartition traffic. The aggregation store always uses the binary encoding of the {@link StatsAggregate}s, as
+	 * does the repartition topic when pre-aggregating, see {@link #preAggregate(int, Duration)}.
+	 *
+	 * @param internalSerde the Serde to use for the internal repartition topic.
+	 * @return this builder.
+	 */
+	public StatsBuilder<K> withInternalSerde(Serde<GenericRecord> internalSerde) {
+		Objects.requireNonNull(internalSerde, "internalSerde");
+		
+		this.internalSerde = internalSerde;
+		return this;
+	}
+
 	/**
 	 * Adds a StatsExpression. See {@link #as(String)} to override the default target field.
 	 *
@@ -154,66 +382,128 @@ public class StatsBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecor
 
 	/**
 	 * Assembles the topology and emits the results as {@link KTable}. The key of each row will be a concatenated String
-	 * in the form {@code {fieldValue_1}..{fieldValue_N}}. The row value will be a {@link GenericRecord} with the
-	 * grouping fields and stats fields.
+	 * in the form {@code {fieldValue_1}..{fieldValue_N}}, see {@link GroupKey#toString()}. The row value will be a
+	 * {@link GenericRecord} with the grouping fields and stats fields.
+	 * <p>
+	 * The records are grouped by this string, so groups whose field values have the same string form, e.g.
+	 * {@code "1"} and {@code 1}, are aggregated together. {@link #asGroupKeyedKTable()} keeps them apart.
 	 *
 	 * @param keySerde a {@link Serde<String>}.
 	 * @return a KeyTable holding the current stats results.
+	 * @throws IllegalStateException if windows were specified, see {@link #asWindowedKTable()}, or final results
+	 *                               were requested.
 	 */
 	public KTable<String, GenericRecord> asKTable(Serde<String> keySerde) {
 		if (keySerde == null) {
 			LOG.warn("The default keySerde is being used. To customize serdes, provide a specific serde to override this behavior.");
 		}
-		Objects.requireNonNull(getTopicsBaseName(), "topicBaseName");
 
-		final String stateStoreName = getProcessorStoreTopicName(getTopicsBaseName()+"-stats");
-
-		return this.stream
-				
-				.groupBy(
-						(key, value) -> {
-							var sb = new StringBuilder();
-							for(String field: this.groupFields) {
-								sb.append("{").append(value.getString(field)).append("}");
-							}
-							return sb.toString();
-						},
-						Grouped.<String,GenericRecord>as(getTopicsBaseName())
-						.withKeySerde(keySerde)
-						.withValueSerde(this.valueSerde))
-				
-				.<GenericRecord> aggregate(
-						() -> null,
-						(key, value, aggregate) -> {
-							
-							GenericRecord a = aggregate;
-							if(a == null) {
-								a = new GenericRecord();
-								for(String field: this.groupFields) {
-									a.set(field, value.get(field));
-								}								
-							}
-							
-							for(StatsExpression e : expressions) {
-								e.update(key, value, a);
-							}
-							
-							return a;
-						},
-						Materialized
-						.<String, GenericRecord, KeyValueStore<Bytes,byte[]>>as(stateStoreName)
-						.withKeySerde(keySerde)
-						.withValueSerde(this.valueSerde)
-						.withCachingDisabled());	// disabled so that incremental aggregates are available
+		return aggregatedTable(GroupKey::toString, keySerde);
 	}
 
+	/**
+	 * Assembles the topology and emits the results as {@link KTable} keyed by strings, using the default serde.
+	 *
+	 * @return a KeyTable holding the current stats results.
+	 * @see #asKTable(Serde)
+	 */
 	public KTable<String, GenericRecord> asKTable() {
 		return asKTable(null);
 	}
+
+	/**
+	 * Assembles the topology and emits the results as {@link KTable}. The key of each row will be the
+	 * {@link GroupKey} of the grouping field values. The row value will be a {@link GenericRecord} with the grouping
+	 * fields and stats fields.
+	 *
+	 * @return a KeyTable holding the current stats results.
+	 * @throws IllegalStateException if windows were specified, see {@link #asWindowedKTable()}, or final results were
+	 *                               requested.
+	 */
+	public KTable<GroupKey, GenericRecord> asGroupKeyedKTable() {
+		return aggregatedTable(Function.identity(), BinarySerdeFactory.getGroupKeySerde());
+	}
+
+	/**
+	 * Assembles the topology and emits the results per window as {@link KTable}. The key of each row is the
+	 * {@link GroupKey} of the grouping field values and the window. The row value will be a {@link GenericRecord} with
+	 * the grouping fields, the window bounds and stats fields.
+	 * <p>
+	 * With session windows, sessions merged into a new one are deleted from the table by {@code null} values.
+	 *
+	 * @return a KeyTable holding the current stats results per window.
+	 * @throws IllegalStateException if no windows were specified, pre-aggregation was requested or session windows
+	 *                               are used with expressions which can't be merged.
+	 */
+	public KTable<Windowed<GroupKey>, GenericRecord> asWindowedKTable() {
+		if (!isWindowed()) {
+			throw new IllegalStateException("no windows were specified, see windowedBy");
+		}
+		if (isPreAggregated()) {
+			throw new IllegalStateException("windowed stats can't be pre-aggregated");
+		}
+
+		final StatsAggregation aggregation = createAggregation();
+		final KGroupedStream<GroupKey, GenericRecord> groupedStream =
+				groupedStream(Function.identity(), BinarySerdeFactory.getGroupKeySerde());
+
+		KTable<Windowed<GroupKey>, StatsAggregate> aggregates;
+		if (this.sessionWindows != null) {
+			aggregation.requireMergeable();
+
+			Materialized<GroupKey, StatsAggregate, SessionStore<Bytes,byte[]>> materialized =
+					materialized(BinarySerdeFactory.getGroupKeySerde(), aggregation);
+			if (this.retention != null) {
+				materialized.withRetention(this.retention);
+			}
+
+			aggregates = groupedStream
+					.windowedBy(this.sessionWindows)
+					.aggregate(
+							() -> null,
+							(key, value, aggregate) -> aggregation.update(key, value, aggregate),
+							(key, aggregate, other) -> aggregation.merge(key, aggregate, other),
+							materialized);
+		} else {
+			Materialized<GroupKey, StatsAggregate, WindowStore<Bytes,byte[]>> materialized =
+					materialized(BinarySerdeFactory.getGroupKeySerde(), aggregation);
+			if (this.retention != null) {
+				materialized.withRetention(this.retention);
+			}
+
+			aggregates = (this.timeWindows != null
+							? groupedStream.windowedBy(this.timeWindows)
+							: groupedStream.windowedBy(this.slidingWindows))
+					.aggregate(
+							() -> null,
+							(key, value, aggregate) -> aggregation.update(key, value, aggregate),
+							materialized);
+		}
+
+		if (this.emission == Emission.CACHED) {
+			aggregates = aggregates.suppress(
+					Suppressed.untilTimeLimit(this.flushInterval, BufferConfig.unbounded()));
+		} else if (this.emission == Emission.FINAL) {
+			aggregates = aggregates.suppress(
+					Suppressed.untilWindowCloses(BufferConfig.unbounded()));
+		}
+
+		// the result records are only projected when emitted
+		return aggregates.mapValues((windowedKey, aggregate) -> {
+			GenericRecord result = aggregation.project(aggregate);
+			if (result != null) {
+				result.set(WINDOW_START_FIELD, windowedKey.window().start());
+				result.set(WINDOW_END_FIELD, windowedKey.window().end());
+			}
+			return result;
+		});
+	}
 	
 	/**
 	 * Builds a kipes builder that contains a stream created from the KTable returned by
-	 * {@link StatsBuilder#asKTable(Serde)}.
+	 * {@link StatsBuilder#asGroupKeyedKTable()}, keyed by the string form of the {@link GroupKey}s like
+	 * {@link StatsBuilder#asKTable(Serde)}. Windowed results are keyed by their group key too, see
+	 * {@link StatsBuilder#asWindowedKTable()}.
 	 * <p>
 	 * If a non-null value is provided for the serdes parameter, it will be used as the serde for the resulting stream.
 	 * Otherwise, the default serde will be used.
@@ -222,9 +512,22 @@ public class StatsBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecor
 	 * @return a kipes builder containing a stream with the specified key and value types.
 	 */
 	public KipesBuilder<String, GenericRecord> build(Serde<String> keySerde) {
+		if (keySerde == null) {
+			LOG.warn("The default keySerde is being used. To customize serdes, provide a specific serde to override this behavior.");
+		}
+
+		if (isWindowed()) {
+			return createKipesBuilder(
+					asWindowedKTable()
+					.toStream((windowedKey, value) -> windowedKey.key().toString())
+					.filter((key, value) -> value != null),	// drops the tombstones of merged sessions
+					keySerde,
+					this.valueSerde);
+		}
+
 		return createKipesBuilder(
-				asKTable(keySerde)
-				.toStream(),
+				asGroupKeyedKTable()
+				.toStream((key, value) -> key.toString()),
 				keySerde,
 				this.valueSerde);
 	}
@@ -240,4 +543,290 @@ public class StatsBuilder<K> extends AbstractTopologyPartBuilder<K, GenericRecor
 	public KipesBuilder<String, GenericRecord> build() {
 		return build(null);
 	}
+
+	// ------------------------------------------------------------------------
+	// utils
+	// ------------------------------------------------------------------------
+
+	private boolean isWindowed() {
+		return this.timeWindows != null || this.slidingWindows != null || this.sessionWindows != null;
+	}
+
+	private boolean isPreAggregated() {
+		return this.partialsFlushInterval != null;
+	}
+
+	private void clearWindows() {
+		this.timeWindows = null;
+		this.slidingWindows = null;
+		this.sessionWindows = null;
+	}
+
+	private String getStateStoreName() {
+		Objects.requireNonNull(getTopicsBaseName(), "topicBaseName");
+		return getProcessorStoreTopicName(getTopicsBaseName()+"-stats");
+	}
+
+	/**
+	 * Assembles the topology of the stats per group.
+	 *
+	 * @param keyMapper maps the {@link GroupKey} of a record to the key to group it by.
+	 * @param keySerde  the serde of the keys to group by.
+	 * @return the results per group.
+	 */
+	private <G> KTable<G, GenericRecord> aggregatedTable(Function<GroupKey, G> keyMapper, Serde<G> keySerde) {
+		if (isWindowed()) {
+			throw new IllegalStateException("windowed stats are emitted by asWindowedKTable");
+		}
+		if (this.emission == Emission.FINAL) {
+			throw new IllegalStateException("final results require windows, see windowedBy");
+		}
+
+		final StatsAggregation aggregation = createAggregation();
+
+		KTable<G, StatsAggregate> aggregates;
+		if (isPreAggregated()) {
+			aggregates = groupedPartials(aggregation, keyMapper, keySerde)
+					.<StatsAggregate> aggregate(
+							() -> null,
+							(key, partial, aggregate) -> aggregation.merge(key, aggregate, partial),
+							this.<G, KeyValueStore<Bytes,byte[]>> materialized(keySerde, aggregation));
+		} else {
+			aggregates = groupedStream(keyMapper, keySerde)
+					.<StatsAggregate> aggregate(
+							() -> null,
+							(key, value, aggregate) -> aggregation.update(key, value, aggregate),
+							this.<G, KeyValueStore<Bytes,byte[]>> materialized(keySerde, aggregation));
+		}
+		
+		if (this.emission == Emission.CACHED) {
+			aggregates = aggregates.suppress(
+					Suppressed.untilTimeLimit(this.flushInterval, BufferConfig.unbounded()));
+		}
+		
+		// the result records are only projected when emitted
+		return aggregates.mapValues(aggregation::project);
+	}
+
+	private <G, S extends StateStore> Materialized<G, StatsAggregate, S> materialized(
+			Serde<G> keySerde,
+			StatsAggregation aggregation)
+	{
+		Materialized<G, StatsAggregate, S> materialized = Materialized
+				.<G, StatsAggregate, S>as(getStateStoreName())
+				.withKeySerde(keySerde)
+				.withValueSerde(aggregation.serde());
+		
+		// the cache coalesces the updates of a group, disabled so that every incremental aggregate is emitted
+		return this.emission == Emission.EVERY_UPDATE
+				? materialized.withCachingDisabled()
+				: materialized.withCachingEnabled();
+	}
+
+	private StatsAggregation createAggregation() {
+		// resolve the field refs once, the aggregation only uses them per record
+		this.expressions.forEach(StatsExpression::prepare);
+		return new StatsAggregation(groupFieldRefs(), this.expressions);
+	}
+
+	private FieldRef[] groupFieldRefs() {
+		final FieldRef[] groupFieldRefs = new FieldRef[this.groupFields.length];
+		for(int i = 0; i < groupFieldRefs.length; i++) {
+			groupFieldRefs[i] = FieldRef.of(this.groupFields[i]);
+		}
+		return groupFieldRefs;
+	}
+
+	private <G> KGroupedStream<G, GenericRecord> groupedStream(Function<GroupKey, G> keyMapper, Serde<G> keySerde) {
+		final Serde<GenericRecord> repartitionSerde = this.internalSerde == null ? this.valueSerde : this.internalSerde;
+		final FieldRef[] groupFieldRefs = groupFieldRefs();
+
+		return timestampedStream()
+				.groupBy(
+						(key, value) -> keyMapper.apply(groupKey(groupFieldRefs, value)),
+						Grouped.<G,GenericRecord>as(getTopicsBaseName())
+						.withKeySerde(keySerde)
+						.withValueSerde(repartitionSerde));
+	}
+
+	private <G> KGroupedStream<G, StatsAggregate> groupedPartials(
+			StatsAggregation aggregation,
+			Function<GroupKey, G> keyMapper,
+			Serde<G> keySerde)
+	{
+		aggregation.requireMergeable();
+
+		final String partialsStoreName = getProcessorStoreTopicName(getTopicsBaseName()+"-stats-partials");
+		final FieldRef[] groupFieldRefs = groupFieldRefs();
+		final int maxGroups = this.maxPartialGroups;
+		final Duration flushInterval = this.partialsFlushInterval;
+
+		// the partial aggregates are only written to the changelog once per commit
+		this.streamsBuilder.addStateStore(PartialAggregatesStore.builder(partialsStoreName, aggregation.serde()));
+
+		return timestampedStream()
+				.transform(
+						() -> new PreAggregationTransformer<K>(
+								partialsStoreName,
+								groupFieldRefs,
+								aggregation,
+								maxGroups,
+								flushInterval),
+						partialsStoreName)
+				.groupBy(
+						(groupKey, partial) -> keyMapper.apply(groupKey),
+						Grouped.<G,StatsAggregate>as(getTopicsBaseName())
+						.withKeySerde(keySerde)
+						.withValueSerde(aggregation.serde()));
+	}
+
+	private KStream<K, GenericRecord> timestampedStream() {
+		if (this.expressions.stream().noneMatch(StatsExpression::usesRecordTimestamps)) {
+			return this.stream;
+		}
+
+		final FieldRef timestampField = FieldRef.of(StatsExpression.RECORD_TIMESTAMP_FIELD);
+
+		return this.stream
+				.transformValues(
+						() -> new ValueTransformerWithKey<K, GenericRecord, GenericRecord>() {
+							
+							private ProcessorContext context;
+							
+							@Override
+							public void init(ProcessorContext context) {
+								this.context = context;
+							}
+
+							@Override
+							public GenericRecord transform(K key, GenericRecord value) {
+								if (value == null) {
+									return null;
+								}
+
+								// the input record may be shared with other processors
+								GenericRecord timestamped = value.fork();
+								timestamped.set(timestampField, this.context.timestamp());
+								return timestamped;
+							}
+
+							@Override
+							public void close() {
+								// nothing to do
+							}
+						});
+	}
+
+	static GroupKey groupKey(FieldRef[] groupFieldRefs, GenericRecord value) {
+		Object[] values = new Object[groupFieldRefs.length];
+		for(int i = 0; i < groupFieldRefs.length; i++) {
+			values[i] = value.get(groupFieldRefs[i]);
+		}
+		return GroupKey.of(values);
+	}
+
+	/**
+	 * When results get emitted.
+	 */
+	private enum Emission {
+		EVERY_UPDATE,
+		CACHED,
+		FINAL
+	}
+
+	// ------------------------------------------------------------------------
+	// PreAggregationTransformer
+	// ------------------------------------------------------------------------
+
+	/**
+	 * PreAggregationTransformer is a Kafka Streams {@link Transformer} that aggregates the incoming records of a task
+	 * into partial {@link StatsAggregate}s per group. The partial aggregates are kept in a
+	 * {@link PartialAggregatesStore} and forwarded keyed by their {@link GroupKey}s, and dropped, once the maximum
+	 * number of groups is reached and on each wall clock punctuation.
+	 *
+	 * @param <K> the key type of the incoming records.
+	 */
+	static class PreAggregationTransformer<K> implements Transformer<K,GenericRecord, KeyValue<GroupKey,StatsAggregate>> {
+
+		private final String stateStoreName;
+		private final FieldRef[] groupFieldRefs;
+		private final StatsAggregation aggregation;
+		private final int maxGroups;
+		private final Duration flushInterval;
+
+		ProcessorContext context;
+		PartialAggregatesStore partials;
+
+		/**
+		 * Creates a new instance of PreAggregationTransformer.
+		 *
+		 * @param stateStoreName the name of the state store keeping the partial aggregates.
+		 * @param groupFieldRefs the fields to group the records by.
+		 * @param aggregation    the aggregation to update the partial aggregates with.
+		 * @param maxGroups      the number of groups at which the partial aggregates get flushed.
+		 * @param flushInterval  the wall clock time between two flushes.
+		 */
+		PreAggregationTransformer(
+				String stateStoreName,
+				FieldRef[] groupFieldRefs,
+				StatsAggregation aggregation,
+				int maxGroups,
+				Duration flushInterval)
+		{
+			this.stateStoreName = stateStoreName;
+			this.groupFieldRefs = groupFieldRefs;
+			this.aggregation = aggregation;
+			this.maxGroups = maxGroups;
+			this.flushInterval = flushInterval;
+		}
+
+		@Override
+		public void init(ProcessorContext context) {
+			this.context = context;
+			this.partials = (PartialAggregatesStore)context.getStateStore(this.stateStoreName);
+
+			// the store might have been restored with the partial aggregates of a failed task
+			this.partials.load();
+
+			context.schedule(this.flushInterval, PunctuationType.WALL_CLOCK_TIME, timestamp -> flush());
+		}
+
+		/**
+		 * Updates the partial aggregate of the record's group. Flushes all partial aggregates if the maximum number of
+		 * groups is reached.
+		 *
+		 * @param key   the input key
+		 * @param value the input value
+		 * @return always null, the partial aggregates are forwarded when flushed.
+		 */
+		@Override
+		public KeyValue<GroupKey,StatsAggregate> transform(K key, GenericRecord value) {
+			if (value == null) {
+				return null;
+			}
+
+			final GroupKey groupKey = groupKey(this.groupFieldRefs, value);
+
+			this.partials.put(groupKey, this.aggregation.update(groupKey, value, this.partials.get(groupKey)));
+
+			if (this.partials.size() >= this.maxGroups) {
+				flush();
+			}
+
+			return null;
+		}
+
+		/**
+		 * Forwards all partial aggregates and removes them from the store.
+		 */
+		void flush() {
+			this.partials.forEach((groupKey, partial) -> this.context.forward(groupKey, partial));
+			this.partials.clear();
+		}
+
+		@Override
+		public void close() {
+			// nothing to do, the store is flushed by the runtime
+		}
+	}
 }
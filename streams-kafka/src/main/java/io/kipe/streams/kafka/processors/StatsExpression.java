@@ -17,17 +17,36 @@
  */
 package io.kipe.streams.kafka.processors;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.kipe.streams.recordtypes.FieldRef;
 import io.kipe.streams.recordtypes.GenericRecord;
-import lombok.Setter;
 
 /**
  * An Abstract class for defining statistics expressions to be applied to Kafka records.
+ * <p>
+ * Expressions access the records by {@link FieldRef}s. The ones depending on the target field name, e.g. internal
+ * fields, are resolved in {@link #prepare()} which the {@link StatsBuilder} calls once when it assembles the topology.
+ * <p>
+ * An aggregate record is built by {@link #update(String, GenericRecord, GenericRecord) updating} it with the records
+ * of a group, its result is read by {@link #finish(GenericRecord)}. {@link #isMergeable() Mergeable} expressions can
+ * also {@link #merge(GenericRecord, GenericRecord) merge} the aggregates of different parts of a group's records, so
+ * that the parts can be aggregated independently, e.g. in parallel or per partition, and combined afterwards.
  */
 public abstract class StatsExpression {
 
-	@Setter
+	/**
+	 * The internal field holding the timestamp of the record to aggregate, see {@link #usesRecordTimestamps()}.
+	 */
+	public static final String RECORD_TIMESTAMP_FIELD = "_recordTimestamp";
+
+	private static final FieldRef RECORD_TIMESTAMP_FIELD_REF = FieldRef.of(RECORD_TIMESTAMP_FIELD);
+
 	protected String fieldName;
+	protected FieldRef fieldRef;
 	protected StatsFunction<Object> statsFunction;
+	private final Map<String, String> internalFieldNames = new ConcurrentHashMap<>();
 	
 	/**
 	 * Constructor for creating a {@link StatsExpression}.
@@ -37,17 +56,87 @@ public abstract class StatsExpression {
 	 */
 	protected StatsExpression(String defaultFieldName) {
 		this.fieldName = defaultFieldName;
+		this.fieldRef = FieldRef.of(defaultFieldName);
+	}
+	
+	/**
+	 * Sets the target field name of this expression.
+	 *
+	 * @param fieldName the field to store the expression's result at.
+	 */
+	public void setFieldName(String fieldName) {
+		this.fieldName = fieldName;
+		this.fieldRef = FieldRef.of(fieldName);
+		this.internalFieldNames.clear();
+	}
+	
+	/**
+	 * Resolves the {@link FieldRef}s this expression uses per record, like the refs of its internal fields. It is
+	 * called once by the {@link StatsBuilder} when assembling the topology, i.e. after the target field name is final.
+	 * <p>
+	 * The default implementation does nothing.
+	 */
+	protected void prepare() {
+		// nothing to do
+	}
+	
+	/**
+	 * Returns whether this expression reads the timestamps of the records from their
+	 * {@value #RECORD_TIMESTAMP_FIELD} field. The {@link StatsBuilder} only adds this field to the records if one of
+	 * its expressions uses it, clients updating aggregates directly have to set it themselves.
+	 * <p>
+	 * The default implementation returns {@code false}.
+	 *
+	 * @return {@code true} if the records need their timestamps.
+	 */
+	protected boolean usesRecordTimestamps() {
+		return false;
+	}
+
+	/**
+	 * Returns the timestamp of the given record, see {@link #usesRecordTimestamps()}.
+	 *
+	 * @param value the record to aggregate.
+	 * @return the record's timestamp.
+	 * @throws IllegalStateException if the record has no timestamp.
+	 */
+	protected long recordTimestamp(GenericRecord value) {
+		Number timestamp = value.get(RECORD_TIMESTAMP_FIELD_REF);
+		if (timestamp == null) {
+			throw new IllegalStateException("the record timestamp is missing at the field " + RECORD_TIMESTAMP_FIELD);
+		}
+		return timestamp.longValue();
 	}
 	
 	/**
-	 * Creates a new InternalFieldName according to the ADR: GenericRecord Field Names.
+	 * Creates a new InternalFieldName according to the ADR: GenericRecord Field Names. The names are cached per
+	 * fieldNamePart until the {@link #setFieldName(String) fieldName} changes, so that the update methods don't build
+	 * them per record.
 	 *    
 	 * @param fieldNamePart the internal field name part to use to create the InternalFieldName
 	 * @return
 	 * 	the InternalFieldName
 	 */
 	protected String createInternalFieldName(String fieldNamePart) {
-		return "_" + this.fieldName + "_" + fieldNamePart;
+		String internalFieldName = this.internalFieldNames.get(fieldNamePart);
+		if (internalFieldName == null) {
+			internalFieldName = "_" + this.fieldName + "_" + fieldNamePart;
+			this.internalFieldNames.put(fieldNamePart, internalFieldName);
+		}
+		
+		return internalFieldName;
+	}
+	
+	/**
+	 * Creates a {@link FieldRef} to the InternalFieldName of the given part.
+	 * 
+	 * @param fieldNamePart the internal field name part to use to create the InternalFieldName
+	 * @return
+	 * 	the FieldRef to the InternalFieldName
+	 * @see #createInternalFieldName(String)
+	 */
+	protected FieldRef createInternalFieldRef(String fieldNamePart) {
+		return FieldRef.of(createInternalFieldName(fieldNamePart));
 	}
 	
 	/**
@@ -60,11 +149,49 @@ public abstract class StatsExpression {
 	 **/
 	protected void update(String groupKey, GenericRecord value, GenericRecord aggregate) {
 		aggregate.set(
-				this.fieldName, 
+				this.fieldRef, 
 				this.statsFunction.apply(groupKey, value, aggregate));
 	}
 	
 	
+	/**
+	 * Returns whether this expression can {@link #merge(GenericRecord, GenericRecord) merge} aggregates.
+	 * <p>
+	 * The default implementation returns {@code false}, as plain expressions only keep their result in the
+	 * aggregate.
+	 *
+	 * @return {@code true} if aggregates can be merged.
+	 */
+	public boolean isMergeable() {
+		return false;
+	}
+
+	/**
+	 * Merges the aggregate of a later part of a group's records into the aggregate of an earlier part, as if the
+	 * earlier aggregate had been updated with the later records too.
+	 * <p>
+	 * The default implementation throws an {@link UnsupportedOperationException}, see {@link #isMergeable()}.
+	 *
+	 * @param aggregate the aggregate of the earlier records, updated in place.
+	 * @param other     the aggregate of the later records, not changed.
+	 * @throws UnsupportedOperationException if the expression isn't mergeable.
+	 */
+	public void merge(GenericRecord aggregate, GenericRecord other) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support merging aggregates");
+	}
+
+	/**
+	 * Returns the result of this expression from the given aggregate.
+	 * <p>
+	 * The default implementation returns the value of the target field.
+	 *
+	 * @param aggregate the aggregate of a group.
+	 * @return the result or {@code null} if there is none yet.
+	 */
+	public Object finish(GenericRecord aggregate) {
+		return aggregate.get(this.fieldRef);
+	}
+	
 	/**
 	 * Functional Interface for the aggregation function of all StatsExpression to aggregate values.
 	 *
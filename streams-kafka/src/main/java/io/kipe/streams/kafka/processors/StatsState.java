@@ -0,0 +1,39 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import io.kipe.streams.kafka.factories.BinaryOutput;
+
+/**
+ * The working state of a {@link TypedStatsExpression} within one stats group, e.g. the running sum and count of an
+ * average.
+ * <p>
+ * States are kept in the {@link StatsAggregate} of their group and written to the aggregation store with the
+ * aggregate's binary serde after each update. They are read back by the
+ * {@link TypedStatsExpression#readState(io.kipe.streams.kafka.factories.BinaryInput) expression} which created them.
+ */
+public interface StatsState {
+
+	/**
+	 * Writes this state in the form expected by the expression's
+	 * {@link TypedStatsExpression#readState(io.kipe.streams.kafka.factories.BinaryInput) readState} method.
+	 *
+	 * @param output the output to write to.
+	 */
+	void write(BinaryOutput output);
+}
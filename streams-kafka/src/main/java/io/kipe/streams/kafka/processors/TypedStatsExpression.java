@@ -0,0 +1,190 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * A {@link StatsExpression} keeping its working state in a typed {@link StatsState} instead of internal fields of the
+ * aggregate record.
+ * <p>
+ * The {@link StatsBuilder} keeps one state slot per typed expression in the {@link StatsAggregate} of each group and
+ * stores it with a compact binary encoding. The expression's result is only computed by {@link #finish(StatsState)}
+ * when the aggregate gets emitted.
+ * <p>
+ * Expressions of one {@link StatsBuilder} returning equal {@link #sharedStateKey() shared state keys} are fused: they
+ * get a single state slot which is updated once per record by the first of them, and each of them projects its own
+ * result from it.
+ *
+ * @param <S> the type of the state.
+ */
+public abstract class TypedStatsExpression<S extends StatsState> extends StatsExpression {
+
+	private FieldRef stateField;
+
+	/**
+	 * Constructor for creating a {@link TypedStatsExpression}.
+	 *
+	 * @param defaultFieldName The default field name to be used by the expression.
+	 */
+	protected TypedStatsExpression(String defaultFieldName) {
+		super(defaultFieldName);
+	}
+
+	@Override
+	public void setFieldName(String fieldName) {
+		super.setFieldName(fieldName);
+		this.stateField = null;
+	}
+
+	/**
+	 * Creates the empty state of a new group.
+	 *
+	 * @return the new state.
+	 */
+	protected abstract S createState();
+
+	/**
+	 * Returns the key of the state this expression can share with other expressions of the same {@link StatsBuilder},
+	 * e.g. the moments of a field. Expressions with equal keys must use the same state type and update it the same
+	 * way, as only the first of them updates the shared state.
+	 *
+	 * @return the key or {@code null} if the state isn't shared, the default.
+	 */
+	protected Object sharedStateKey() {
+		return null;
+	}
+
+	/**
+	 * Creates the empty state of a new group which is shared by the given expressions. Called on the first of the
+	 * expressions with equal {@link #sharedStateKey() shared state keys}. Defaults to {@link #createState()}.
+	 *
+	 * @param expressions all expressions sharing the state, including this one.
+	 * @return the new state.
+	 */
+	protected S createSharedState(List<TypedStatsExpression<?>> expressions) {
+		return createState();
+	}
+
+	/**
+	 * Reads a state written by {@link StatsState#write(io.kipe.streams.kafka.factories.BinaryOutput)}.
+	 *
+	 * @param input the input to read from.
+	 * @return the state.
+	 */
+	protected abstract S readState(BinaryInput input);
+
+	/**
+	 * Updates the state of the current group with the given record.
+	 *
+	 * @param value the record to update the state with.
+	 * @param state the state of the group.
+	 */
+	protected abstract void update(GenericRecord value, S state);
+
+	/**
+	 * Merges the state of a later part of a group's records into the state of an earlier part, e.g. when a record
+	 * joins two session windows of the group. Shared states are only merged by the first of their expressions.
+	 * <p>
+	 * Merging a state into a new {@link #createState() empty state} has to result in an equal state. The other state
+	 * must not be changed.
+	 *
+	 * @param state the state of the earlier records, updated in place.
+	 * @param other the state of the later records.
+	 * @throws UnsupportedOperationException if the expression can't merge states, the default. Expressions not
+	 *                                       overriding this method have to override {@link #isMergeable()}.
+	 */
+	protected void merge(S state, S other) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support merging states");
+	}
+
+	/**
+	 * Computes the expression's result from the given state.
+	 *
+	 * @param state the state of a group.
+	 * @return the result or {@code null} if there is none yet, e.g. because the group didn't see any values. The
+	 *         result field is omitted in that case.
+	 */
+	protected abstract Object finish(S state);
+
+	/**
+	 * Returns {@code true}, typed expressions merge their states by {@link #merge(StatsState, StatsState)}.
+	 */
+	@Override
+	public boolean isMergeable() {
+		return true;
+	}
+
+	/**
+	 * Updates the aggregate record directly for clients not using the {@link StatsBuilder}. The state object is kept
+	 * in an internal field of the aggregate, so the aggregate can only be used in memory.
+	 */
+	@Override
+	protected void update(String groupKey, GenericRecord value, GenericRecord aggregate) {
+		S state = aggregate.get(stateField());
+		if (state == null) {
+			state = createState();
+			aggregate.set(this.stateField, state);
+		}
+
+		update(value, state);
+		aggregate.set(this.fieldRef, finish(state));
+	}
+
+	/**
+	 * Merges the state kept in the other aggregate record by {@link #update(String, GenericRecord, GenericRecord)}
+	 * into the one of the given aggregate and updates its result.
+	 */
+	@Override
+	public void merge(GenericRecord aggregate, GenericRecord other) {
+		S otherState = other.get(stateField());
+		if (otherState == null) {
+			return;
+		}
+
+		S state = aggregate.get(this.stateField);
+		if (state == null) {
+			state = createState();
+			aggregate.set(this.stateField, state);
+		}
+
+		merge(state, otherState);
+		aggregate.set(this.fieldRef, finish(state));
+	}
+
+	/**
+	 * Computes the result from the state kept in the aggregate record by
+	 * {@link #update(String, GenericRecord, GenericRecord)}.
+	 */
+	@Override
+	public Object finish(GenericRecord aggregate) {
+		S state = aggregate.get(stateField());
+		return state == null ? null : finish(state);
+	}
+
+	private FieldRef stateField() {
+		if (this.stateField == null) {
+			this.stateField = createInternalFieldRef("state");
+		}
+		return this.stateField;
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * The ApproxDistinctCount class estimates the number of distinct values of a specified field with a HyperLogLog sketch.
+ * <p>
+ * The fields for this statistical expression are as follows:
+ * <pre>
+ * | field               | internal | type | description                                                  |
+ * |---------------------|----------|------|--------------------------------------------------------------|
+ * | approxDistinctCount | no       | long | the estimated count of distinct values at the measured field |
+ * </pre>
+ * <p>
+ * In contrast to {@link DistinctCount} the state doesn't keep the values: it is bounded by {@code 2^precision} bytes
+ * while small groups only keep their few non-zero registers. The relative standard error of the estimate is about
+ * {@code 1.04 / sqrt(2^precision)}, i.e. 0.8% at the default precision of 14. Records without a value at the
+ * measured field are ignored. Values are compared by their hash, so e.g. an int and a long of the same value count
+ * once.
+ */
+public class ApproxDistinctCount extends TypedStatsExpression<HyperLogLogState> {
+
+    public static final String DEFAULT_FIELD = "approxDistinctCount";
+    public static final int DEFAULT_PRECISION = 14;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    /**
+     * Returns a new ApproxDistinctCount instance for the specified field with the default precision.
+     *
+     * @param fieldNameToDistinctCount the field to count distinct values of
+     * @return a new ApproxDistinctCount instance for the given field
+     */
+    public static ApproxDistinctCount approxDistinctCount(String fieldNameToDistinctCount) {
+        return approxDistinctCount(fieldNameToDistinctCount, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Returns a new ApproxDistinctCount instance for the specified field.
+     *
+     * @param fieldNameToDistinctCount the field to count distinct values of
+     * @param precision                the number of register index bits in the range [4, 18], each additional bit
+     *                                 halves the variance of the estimate and doubles the maximum state size
+     * @return a new ApproxDistinctCount instance for the given field
+     */
+    public static ApproxDistinctCount approxDistinctCount(String fieldNameToDistinctCount, int precision) {
+        return new ApproxDistinctCount(fieldNameToDistinctCount, precision);
+    }
+
+    private final String fieldNameToDistinctCount;
+    private final FieldRef fieldToDistinctCount;
+    private final int precision;
+
+    /**
+     * Creates an ApproxDistinctCount for the specified field.
+     */
+    private ApproxDistinctCount(String fieldNameToDistinctCount, int precision) {
+        super(DEFAULT_FIELD);
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(String.format(
+                    "precision must be in the range [%d, %d] but was %d", MIN_PRECISION, MAX_PRECISION, precision));
+        }
+
+        this.fieldNameToDistinctCount = fieldNameToDistinctCount;
+        this.fieldToDistinctCount = FieldRef.of(fieldNameToDistinctCount);
+        this.precision = precision;
+    }
+
+    @Override
+    protected HyperLogLogState createState() {
+        return new HyperLogLogState(this.precision);
+    }
+
+    @Override
+    protected Object sharedStateKey() {
+        return List.of(HyperLogLogState.class, this.fieldNameToDistinctCount, this.precision);
+    }
+
+    @Override
+    protected HyperLogLogState readState(BinaryInput input) {
+        return HyperLogLogState.read(input, this.precision);
+    }
+
+    @Override
+    protected void update(GenericRecord value, HyperLogLogState state) {
+        Object fieldValue = value.get(this.fieldToDistinctCount);
+        if (fieldValue == null) {
+            return;
+        }
+
+        state.add(HyperLogLogState.hash(fieldValue));
+    }
+
+    @Override
+    protected void merge(HyperLogLogState state, HyperLogLogState other) {
+        state.add(other);
+    }
+
+    @Override
+    protected Object finish(HyperLogLogState state) {
+        return state.estimate();
+    }
+}
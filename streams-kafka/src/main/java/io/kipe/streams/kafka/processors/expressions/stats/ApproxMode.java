@@ -0,0 +1,77 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.Set;
+
+/**
+ * The ApproxMode class estimates the mode of values in a data stream, the most frequently occurring value(s) in a
+ * specified field, with a Space-Saving summary of a fixed number of counters.
+ * <p>
+ * The fields for this statistical expression are as follows:
+ * <pre>
+ * | field      | internal | type           | description                                                |
+ * |------------|----------|----------------|------------------------------------------------------------|
+ * | approxMode | no       | set of strings | the estimated mode of values at the measured value field   |
+ * </pre>
+ * <p>
+ * In contrast to {@link Mode} the state doesn't keep a count for each unique value but only for the {@code capacity}
+ * most frequent values seen so far. A value occurring more often than {@code n / capacity} times in {@code n}
+ * records is always monitored and its count is overestimated by at most {@code n / capacity}, so the result is exact
+ * for skewed distributions whose mode stands out by that margin. {@link ApproxTopK} expressions of the same field and
+ * capacity share the state.
+ */
+public class ApproxMode extends SpaceSavingExpression {
+
+    public static final String DEFAULT_FIELD = "approxMode";
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Returns a new ApproxMode instance for the specified field with the default capacity.
+     *
+     * @param fieldNameToMode the field for which the mode will be estimated
+     * @return a new ApproxMode instance for the given field
+     */
+    public static ApproxMode approxMode(String fieldNameToMode) {
+        return approxMode(fieldNameToMode, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns a new ApproxMode instance for the specified field.
+     *
+     * @param fieldNameToMode the field for which the mode will be estimated
+     * @param capacity        the number of counters, larger capacities reduce the error of the counts
+     * @return a new ApproxMode instance for the given field
+     */
+    public static ApproxMode approxMode(String fieldNameToMode, int capacity) {
+        return new ApproxMode(fieldNameToMode, capacity);
+    }
+
+    /**
+     * Creates an ApproxMode for the specified field.
+     */
+    private ApproxMode(String fieldNameToMode, int capacity) {
+        super(DEFAULT_FIELD, fieldNameToMode, capacity);
+    }
+
+    @Override
+    protected Object finish(SpaceSavingState state) {
+        Set<String> modes = state.modes();
+        return modes.isEmpty() ? null : modes;
+    }
+}
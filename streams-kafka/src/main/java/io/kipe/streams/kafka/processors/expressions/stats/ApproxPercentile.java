@@ -0,0 +1,156 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * The ApproxPercentile class estimates the n-th percentile of values from an event stream with a t-digest, a sketch of
+ * the value distribution in a bounded number of centroids.
+ * <p>
+ * The fields for this statistical expression are as follows:
+ * <pre>
+ * | field                            | internal | type   | description                                         |
+ * |----------------------------------|----------|--------|-----------------------------------------------------|
+ * | approxPercentile or approxMedian | no       | double | the estimated n-th percentile of the measured field |
+ * </pre>
+ * <p>
+ * In contrast to {@link Percentile} the state doesn't grow with the number of values: its size is bounded by the
+ * compression, which trades size against accuracy. The default compression of 100 keeps
+ * about 100 centroids and estimates are typically within a fraction of a percent of the rank, more accurate at the
+ * tails than around the median. Approximate percentiles of the same field and compression share one sketch, so any
+ * number of them costs one update per record.
+ */
+public class ApproxPercentile extends TypedStatsExpression<TDigestState> {
+
+    public static final String DEFAULT_FIELD = "approxPercentile";
+    public static final String DEFAULT_MEDIAN_FIELD = "approxMedian";
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    /**
+     * Returns a new ApproxPercentile instance estimating the given percentile with the default compression.
+     *
+     * @param fieldName  the field for which the percentile will be estimated
+     * @param percentile the percentile in the range [0, 100]
+     * @return a new ApproxPercentile instance for the given field
+     */
+    public static ApproxPercentile approxPercentile(String fieldName, double percentile) {
+        return approxPercentile(fieldName, percentile, DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Returns a new ApproxPercentile instance estimating the given percentile.
+     *
+     * @param fieldName   the field for which the percentile will be estimated
+     * @param percentile  the percentile in the range [0, 100]
+     * @param compression the compression of the sketch, higher values are more accurate but keep more centroids
+     * @return a new ApproxPercentile instance for the given field
+     */
+    public static ApproxPercentile approxPercentile(String fieldName, double percentile, double compression) {
+        return new ApproxPercentile(fieldName, percentile, compression, DEFAULT_FIELD);
+    }
+
+    /**
+     * Returns a new ApproxPercentile instance estimating the median with the default compression.
+     *
+     * @param fieldName the field for which the median will be estimated
+     * @return a new ApproxPercentile instance for the given field
+     */
+    public static ApproxPercentile approxMedian(String fieldName) {
+        return approxMedian(fieldName, DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Returns a new ApproxPercentile instance estimating the median.
+     *
+     * @param fieldName   the field for which the median will be estimated
+     * @param compression the compression of the sketch, higher values are more accurate but keep more centroids
+     * @return a new ApproxPercentile instance for the given field
+     */
+    public static ApproxPercentile approxMedian(String fieldName, double compression) {
+        return new ApproxPercentile(fieldName, 50, compression, DEFAULT_MEDIAN_FIELD);
+    }
+
+    private final String fieldNameToPercentile;
+    private final FieldRef fieldToPercentile;
+    private final double percentile;
+    private final double compression;
+
+    /**
+     * Creates an ApproxPercentile for the specified field.
+     */
+    private ApproxPercentile(String fieldName, double percentile, double compression, String defaultField) {
+        super(defaultField);
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in the range [0, 100] but was " + percentile);
+        }
+        if (compression < 10) {
+            throw new IllegalArgumentException("compression must be at least 10 but was " + compression);
+        }
+
+        this.fieldNameToPercentile = fieldName;
+        this.fieldToPercentile = FieldRef.of(fieldName);
+        this.percentile = percentile;
+        this.compression = compression;
+    }
+
+    @Override
+    protected TDigestState createState() {
+        return new TDigestState(this.compression);
+    }
+
+    @Override
+    protected Object sharedStateKey() {
+        return List.of(TDigestState.class, this.fieldNameToPercentile, this.compression);
+    }
+
+    @Override
+    protected TDigestState readState(BinaryInput input) {
+        return TDigestState.read(input, this.compression);
+    }
+
+    @Override
+    protected void update(GenericRecord value, TDigestState state) {
+        Number fieldValue = value.getNumber(this.fieldToPercentile);
+        if (fieldValue == null) {
+            return;
+        }
+
+        state.add(fieldValue.doubleValue());
+    }
+
+    @Override
+    protected void merge(TDigestState state, TDigestState other) {
+        state.add(other);
+    }
+
+    @Override
+    protected Object finish(TDigestState state) {
+        if (state.count() == 0) {
+            return null;
+        }
+
+        double result = state.quantile(this.percentile / 100.0);
+        return result;
+    }
+}
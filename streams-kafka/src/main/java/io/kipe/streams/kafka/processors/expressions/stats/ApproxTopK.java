@@ -0,0 +1,83 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.List;
+
+/**
+ * The ApproxTopK class estimates the k most frequently occurring values in a specified field with a Space-Saving
+ * summary of a fixed number of counters.
+ * <p>
+ * The fields for this statistical expression are as follows:
+ * <pre>
+ * | field      | internal | type            | description                                                      |
+ * |------------|----------|-----------------|------------------------------------------------------------------|
+ * | approxTopK | no       | list of strings | the estimated k most frequent values, the most frequent first    |
+ * </pre>
+ * <p>
+ * Values with the same estimated count are ordered by their natural order. See {@link ApproxMode} for the error
+ * bounds: the more the capacity exceeds k, the more reliable the ranks of the top values are.
+ */
+public class ApproxTopK extends SpaceSavingExpression {
+
+    public static final String DEFAULT_FIELD = "approxTopK";
+
+    /**
+     * Returns a new ApproxTopK instance for the specified field with a capacity of at least
+     * {@link ApproxMode#DEFAULT_CAPACITY}. Using the same capacity as {@link ApproxMode} lets both share their state.
+     *
+     * @param fieldNameToMeasure the field to find the most frequent values of
+     * @param k                  the number of values to report
+     * @return a new ApproxTopK instance for the given field
+     */
+    public static ApproxTopK approxTopK(String fieldNameToMeasure, int k) {
+        return approxTopK(fieldNameToMeasure, k, Math.max(ApproxMode.DEFAULT_CAPACITY, k));
+    }
+
+    /**
+     * Returns a new ApproxTopK instance for the specified field.
+     *
+     * @param fieldNameToMeasure the field to find the most frequent values of
+     * @param k                  the number of values to report
+     * @param capacity           the number of counters, at least k
+     * @return a new ApproxTopK instance for the given field
+     */
+    public static ApproxTopK approxTopK(String fieldNameToMeasure, int k, int capacity) {
+        if (k < 1 || k > capacity) {
+            throw new IllegalArgumentException(String.format(
+                    "k must be in the range [1, %d] but was %d", capacity, k));
+        }
+        return new ApproxTopK(fieldNameToMeasure, k, capacity);
+    }
+
+    private final int k;
+
+    /**
+     * Creates an ApproxTopK for the specified field.
+     */
+    private ApproxTopK(String fieldNameToMeasure, int k, int capacity) {
+        super(DEFAULT_FIELD, fieldNameToMeasure, capacity);
+        this.k = k;
+    }
+
+    @Override
+    protected Object finish(SpaceSavingState state) {
+        List<String> top = state.top(this.k);
+        return top.isEmpty() ? null : top;
+    }
+}
@@ -17,7 +17,6 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
 
 /**
  * The Average class calculates the average value of a specified field within a dataset.
@@ -27,11 +26,12 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * | field | internal | type    | description                                         |
  * |-------|----------|---------|-----------------------------------------------------|
  * | avg   | no       | double  | the calculated average value of the measured field  |
- * | sum   | yes      | double  | the running sum of the values in the measured field |
- * | count | yes      | integer | the running count of values in the measured field   |
  * </pre>
+ * <p>
+ * The average is computed from a state of the running sum and count of the values in the measured field, which is
+ * shared with the other moment based expressions (sum, avg, var, stdev) on the same field.
  */
-public class Average extends StatsExpression {
+public class Average extends MomentsExpression {
 
     public static final String DEFAULT_FIELD = "avg";
 
@@ -46,35 +46,16 @@ public class Average extends StatsExpression {
     }
 
     /**
-     * Initializes the statsFunction to compute the average value for the specified field by maintaining a running sum
-     * and count of values.
+     * Creates an Average for the specified field which maintains a running sum and count of values.
      *
      * @param fieldNameToAverage the field name for which to find the average value
      */
     private Average(String fieldNameToAverage) {
-        super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            String fieldNameSum = createInternalFieldName("sum");
-            String fieldNameCount = createInternalFieldName("count");
-
-            Number fieldValue = value.getNumber(fieldNameToAverage);
-
-            if (fieldValue != null) {
-                double newValue = fieldValue.doubleValue();
-
-                double currentSum = aggregate.get(fieldNameSum, () -> 0.0);
-                int currentCount = aggregate.get(fieldNameCount, () -> 0);
-
-                currentSum += newValue;
-                currentCount++;
-
-                aggregate.set(fieldNameSum, currentSum);
-                aggregate.set(fieldNameCount, currentCount);
+        super(DEFAULT_FIELD, fieldNameToAverage, false);
+    }
 
-                return currentCount > 0 ? currentSum / currentCount : 0;
-            } else {
-                return aggregate.getNumber(this.fieldName);
-            }
-        };
+    @Override
+    protected Object finish(MomentsState state) {
+        return state.count == 0 ? null : state.sum / state.count;
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * The n highest ranked values of a field in a binary heap of a fixed capacity.
+ * <p>
+ * The root of the heap is the lowest ranked value kept, i.e. the smallest one when keeping the largest values. A new
+ * value only replaces the root if it ranks higher, so each update takes {@code O(log n)} time and the state never
+ * holds more than {@code n} values. Equal values are kept as often as they occur.
+ */
+class BoundedHeapState implements StatsState {
+
+	private final boolean largest;
+	private final double[] values;
+	private int size;
+
+	/**
+	 * Creates a new, empty heap.
+	 *
+	 * @param capacity the number of values to keep.
+	 * @param largest  whether to keep the largest values, otherwise the smallest ones.
+	 */
+	BoundedHeapState(int capacity, boolean largest) {
+		this.largest = largest;
+		this.values = new double[capacity];
+	}
+
+	static BoundedHeapState read(BinaryInput input, int capacity, boolean largest) {
+		BoundedHeapState state = new BoundedHeapState(capacity, largest);
+		double[] values = input.readDoubles();
+		if (values.length > capacity) {
+			throw new SerializationException(String.format(
+					"expected at most %d values but got %d, the stats expressions have changed", capacity, values.length));
+		}
+		System.arraycopy(values, 0, state.values, 0, values.length);
+		state.size = values.length;
+		return state;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	void add(double value) {
+		if (this.size < this.values.length) {
+			this.values[this.size] = value;
+			siftUp(this.size++);
+		} else if (ranksLower(this.values[0], value)) {
+			this.values[0] = value;
+			siftDown(0);
+		}
+	}
+
+	void add(BoundedHeapState other) {
+		for (int i = 0; i < other.size; i++) {
+			add(other.values[i]);
+		}
+	}
+
+	/**
+	 * Returns the kept values, the highest ranked first.
+	 *
+	 * @return a new list of the values.
+	 */
+	List<Double> values() {
+		double[] sorted = Arrays.copyOf(this.values, this.size);
+		Arrays.sort(sorted);
+
+		List<Double> result = new ArrayList<>(this.size);
+		for (int i = 0; i < this.size; i++) {
+			result.add(this.largest ? sorted[this.size - 1 - i] : sorted[i]);
+		}
+		return result;
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeDoubles(this.values, this.size);
+	}
+
+	private boolean ranksLower(double a, double b) {
+		return this.largest ? a < b : a > b;
+	}
+
+	private void siftUp(int i) {
+		double value = this.values[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!ranksLower(value, this.values[parent])) {
+				break;
+			}
+			this.values[i] = this.values[parent];
+			i = parent;
+		}
+		this.values[i] = value;
+	}
+
+	private void siftDown(int i) {
+		double value = this.values[i];
+		int half = this.size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < this.size && ranksLower(this.values[right], this.values[child])) {
+				child = right;
+			}
+			if (!ranksLower(this.values[child], value)) {
+				break;
+			}
+			this.values[i] = this.values[child];
+			i = child;
+		}
+		this.values[i] = value;
+	}
+}
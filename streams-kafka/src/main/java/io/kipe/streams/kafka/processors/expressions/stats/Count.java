@@ -17,7 +17,12 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
 import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.kafka.processors.StatsState;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 /**
  * Stats expression to count records.
@@ -25,9 +30,7 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * This class provides a singleton instance of the Count expression and a default field name "count"
  * which will be used to store the count value in the resulting record.
  * <p>
- * The valueFunction provided in the constructor takes in a key and value and returns the count value
- * by first attempting to retrieve the count value from the provided field name in the value,
- * and if it is not present, it defaults to 1.
+ * The count is kept as long state, starting at 1 for the first record.
  * <p>
  * The class also provides a static factory method count() to retrieve the singleton instance.
  * <p>
@@ -38,7 +41,7 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * | count | no       | long | the count of records in the data stream |
  * </pre>
  */
-public class Count extends StatsExpression {
+public class Count extends TypedStatsExpression<Count.CountState> {
 
 	public static final String DEFAULT_FIELD = "count";
 	private static final Count SINGLETON = new Count();
@@ -54,13 +57,46 @@ public class Count extends StatsExpression {
 
 	/**
 	 * Constructor for Count class, which calls the constructor of the parent class {@link StatsExpression}
-	 * with the default field name "count". It also sets the valueFunction in the constructor.
+	 * with the default field name "count".
 	 */
 	private Count() {
 		super(DEFAULT_FIELD);
-		this.statsFunction = (groupKey, value, aggregate) -> {
-			Long count = aggregate.get(this.fieldName, () -> 0L);
-			return count + 1L;
-		};
+	}
+
+	@Override
+	protected CountState createState() {
+		return new CountState();
+	}
+
+	@Override
+	protected CountState readState(BinaryInput input) {
+		CountState state = new CountState();
+		state.count = input.readLong();
+		return state;
+	}
+
+	@Override
+	protected void update(GenericRecord value, CountState state) {
+		state.count++;
+	}
+
+	@Override
+	protected void merge(CountState state, CountState other) {
+		state.count += other.count;
+	}
+
+	@Override
+	protected Object finish(CountState state) {
+		return state.count;
+	}
+
+	static class CountState implements StatsState {
+
+		long count;
+
+		@Override
+		public void write(BinaryOutput output) {
+			output.writeLong(this.count);
+		}
 	}
 }
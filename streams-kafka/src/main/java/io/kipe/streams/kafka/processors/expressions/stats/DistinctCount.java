@@ -17,7 +17,12 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -30,10 +35,11 @@ import java.util.Set;
  * | field         | internal | type           | description                                              |
  * |---------------|----------|----------------|----------------------------------------------------------|
  * | distinctCount | no       | integer        | the count of distinct values at the measured value field |
- * | values        | yes      | set of objects | the unique values of the specified field                 |
  * </pre>
+ * <p>
+ * The unique values of the specified field, including {@code null}, are kept as state.
  */
-public class DistinctCount extends StatsExpression {
+public class DistinctCount extends TypedStatsExpression<DistinctCount.DistinctValuesState> {
 
     public static final String DEFAULT_FIELD = "distinctCount";
 
@@ -47,19 +53,56 @@ public class DistinctCount extends StatsExpression {
         return new DistinctCount(fieldNameToDistinctCount);
     }
 
+    private final FieldRef fieldToDistinctCount;
+
     /**
-     * Initializes the statsFunction to count distinct values of the specified field by maintaining a set of unique
-     * values.
+     * Creates a DistinctCount for the specified field.
      */
     private DistinctCount(String fieldNameToDistinctCount) {
         super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            String fieldNameValues = createInternalFieldName("values");
-            Set<Object> uniqueValues = aggregate.get(fieldNameValues, HashSet::new);
-            uniqueValues.add(value.get(fieldNameToDistinctCount));
-            aggregate.set(fieldNameValues, uniqueValues);
-            return uniqueValues.size();
-        };
+        this.fieldToDistinctCount = FieldRef.of(fieldNameToDistinctCount);
+    }
+
+    @Override
+    protected DistinctValuesState createState() {
+        return new DistinctValuesState();
+    }
+
+    @Override
+    protected DistinctValuesState readState(BinaryInput input) {
+        DistinctValuesState state = new DistinctValuesState();
+        int size = input.readVarInt();
+        for (int i = 0; i < size; i++) {
+            state.values.add(input.readValue());
+        }
+        return state;
+    }
+
+    @Override
+    protected void update(GenericRecord value, DistinctValuesState state) {
+        state.values.add(value.get(this.fieldToDistinctCount));
     }
 
+    @Override
+    protected void merge(DistinctValuesState state, DistinctValuesState other) {
+        state.values.addAll(other.values);
+    }
+
+    @Override
+    protected Object finish(DistinctValuesState state) {
+        return state.values.size();
+    }
+
+    static class DistinctValuesState implements StatsState {
+
+        final Set<Object> values = new HashSet<>();
+
+        @Override
+        public void write(BinaryOutput output) {
+            output.writeVarInt(this.values.size());
+            for (Object value : this.values) {
+                output.writeValue(value);
+            }
+        }
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.time.Duration;
+
+/**
+ * The ExponentialMovingAverage class calculates the exponentially weighted moving average of a specified field,
+ * giving recent values more weight than older ones.
+ * <p>
+ * The fields for this statistical expression are as follows:
+ * <pre>
+ * | field | internal | type   | description                                     |
+ * |-------|----------|--------|-------------------------------------------------|
+ * | ewma  | no       | double | the exponentially weighted average of the field |
+ * </pre>
+ * <p>
+ * The weights of older values either decay per value by a smoothing factor alpha or per half-life of record time, see
+ * {@link ExponentialMovingExpression}. The state only holds the decayed weight, mean and variance and the latest
+ * timestamp, so each update takes constant time and memory.
+ */
+public class ExponentialMovingAverage extends ExponentialMovingExpression {
+    public static final String DEFAULT_FIELD = "ewma";
+
+    /**
+     * Returns a new ExponentialMovingAverage instance for the specified field, decaying the weights per value.
+     *
+     * @param fieldNameToMeasure the field to measure
+     * @param alpha              the smoothing factor in (0, 1], higher values discount older values faster
+     * @return a new ExponentialMovingAverage instance for the given field
+     */
+    public static ExponentialMovingAverage ewma(String fieldNameToMeasure, double alpha) {
+        return new ExponentialMovingAverage(fieldNameToMeasure, alpha);
+    }
+
+    /**
+     * Returns a new ExponentialMovingAverage instance for the specified field, decaying the weights by record time.
+     *
+     * @param fieldNameToMeasure the field to measure
+     * @param halfLife           the record time after which the weight of a value halves
+     * @return a new ExponentialMovingAverage instance for the given field
+     */
+    public static ExponentialMovingAverage ewma(String fieldNameToMeasure, Duration halfLife) {
+        return new ExponentialMovingAverage(fieldNameToMeasure, halfLife);
+    }
+
+    private ExponentialMovingAverage(String fieldNameToMeasure, double alpha) {
+        super(DEFAULT_FIELD, fieldNameToMeasure, alpha);
+    }
+
+    private ExponentialMovingAverage(String fieldNameToMeasure, Duration halfLife) {
+        super(DEFAULT_FIELD, fieldNameToMeasure, halfLife);
+    }
+
+    @Override
+    protected Object finish(ExponentialMovingState state) {
+        if (state.weight == 0) {
+            return null;
+        }
+
+        return state.mean;
+    }
+}
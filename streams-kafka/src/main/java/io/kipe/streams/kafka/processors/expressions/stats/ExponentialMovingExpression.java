@@ -0,0 +1,175 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.time.Duration;
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Base of the exponentially weighted stats of a field: {@link ExponentialMovingAverage} and
+ * {@link ExponentialMovingVariance}.
+ * <p>
+ * The weights of the values either decay by {@code 1 - alpha} per value or by half per half-life of record time
+ * between two records. The record timestamps are read from the {@value #RECORD_TIMESTAMP_FIELD} field, records older
+ * than the latest one don't decay the weights but get the weight they would have if they were in order.
+ * <p>
+ * Only the expressions decaying by half-life are {@link #isMergeable() mergeable}, so the ones decaying by
+ * {@code alpha} can't be used with session windows or pre-aggregation.
+ * <p>
+ * All of them measuring the same field with the same decay share one {@link ExponentialMovingState}. Records without
+ * a value at the measured field or with a {@code NaN} value don't change the state.
+ */
+abstract class ExponentialMovingExpression extends TypedStatsExpression<ExponentialMovingState> {
+
+	private static final double LN_2 = Math.log(2);
+
+	private final String fieldNameToMeasure;
+	private final FieldRef fieldToMeasure;
+	private final double alpha;
+	private final long halfLifeMillis;
+
+	/**
+	 * Creates a new instance decaying the weights per value.
+	 *
+	 * @param defaultFieldName   the default field name of the result.
+	 * @param fieldNameToMeasure the field to measure.
+	 * @param alpha              the smoothing factor in (0, 1], the weight of a new value relative to all weights.
+	 */
+	ExponentialMovingExpression(String defaultFieldName, String fieldNameToMeasure, double alpha) {
+		this(defaultFieldName, fieldNameToMeasure, alpha, 0);
+		if (!(alpha > 0 && alpha <= 1)) {
+			throw new IllegalArgumentException("alpha must be in (0, 1] but was " + alpha);
+		}
+	}
+
+	/**
+	 * Creates a new instance decaying the weights by record time.
+	 *
+	 * @param defaultFieldName   the default field name of the result.
+	 * @param fieldNameToMeasure the field to measure.
+	 * @param halfLife           the record time after which the weight of a value halves.
+	 */
+	ExponentialMovingExpression(String defaultFieldName, String fieldNameToMeasure, Duration halfLife) {
+		this(defaultFieldName, fieldNameToMeasure, Double.NaN, halfLife.toMillis());
+		if (this.halfLifeMillis <= 0) {
+			throw new IllegalArgumentException("halfLife must be at least 1ms but was " + halfLife);
+		}
+	}
+
+	private ExponentialMovingExpression(
+			String defaultFieldName,
+			String fieldNameToMeasure,
+			double alpha,
+			long halfLifeMillis)
+	{
+		super(defaultFieldName);
+		this.fieldNameToMeasure = fieldNameToMeasure;
+		this.fieldToMeasure = FieldRef.of(fieldNameToMeasure);
+		this.alpha = alpha;
+		this.halfLifeMillis = halfLifeMillis;
+	}
+
+	@Override
+	protected boolean usesRecordTimestamps() {
+		return isTimeBased();
+	}
+
+	@Override
+	protected ExponentialMovingState createState() {
+		return new ExponentialMovingState();
+	}
+
+	@Override
+	protected Object sharedStateKey() {
+		return List.of(ExponentialMovingState.class, this.fieldNameToMeasure, this.alpha, this.halfLifeMillis);
+	}
+
+	@Override
+	protected ExponentialMovingState readState(BinaryInput input) {
+		return ExponentialMovingState.read(input);
+	}
+
+	@Override
+	protected void update(GenericRecord value, ExponentialMovingState state) {
+		if (!value.contains(this.fieldToMeasure)) {
+			return;
+		}
+
+		double fieldValue = value.getDoubleValue(this.fieldToMeasure);
+		if (Double.isNaN(fieldValue)) {
+			return;
+		}
+
+		if (!isTimeBased()) {
+			state.add(fieldValue, 1 - this.alpha);
+			return;
+		}
+
+		long timestamp = recordTimestamp(value);
+		if (state.weight == 0) {
+			state.add(fieldValue, 0);
+			state.timestamp = timestamp;
+		} else if (timestamp >= state.timestamp) {
+			state.add(fieldValue, decay(timestamp - state.timestamp));
+			state.timestamp = timestamp;
+		} else {
+			// a late value is weighted as decayed to the latest record time, like when merging
+			state.add(fieldValue, 1, decay(state.timestamp - timestamp));
+		}
+	}
+
+	/**
+	 * Returns whether the weights decay by record time. Merging states decaying per value requires the other state to
+	 * hold the later records, which neither session windows nor pre-aggregation guarantee, while time based decay
+	 * doesn't depend on the order of the merged states.
+	 */
+	@Override
+	public boolean isMergeable() {
+		return isTimeBased();
+	}
+
+	@Override
+	protected void merge(ExponentialMovingState state, ExponentialMovingState other) {
+		if (other.weight == 0) {
+			return;
+		}
+
+		if (isTimeBased()) {
+			long timestamp = state.weight == 0 ? other.timestamp : Math.max(state.timestamp, other.timestamp);
+			state.add(other, decay(timestamp - state.timestamp), decay(timestamp - other.timestamp));
+			state.timestamp = timestamp;
+		} else {
+			// the weight of n values is (1 - (1 - alpha)^n) / alpha, so the later values decay the earlier ones by
+			// (1 - alpha)^n = 1 - weight * alpha
+			state.add(other, Math.max(0, 1 - other.weight * this.alpha), 1);
+		}
+	}
+
+	private boolean isTimeBased() {
+		return this.halfLifeMillis > 0;
+	}
+
+	private double decay(long elapsedMillis) {
+		return elapsedMillis <= 0 ? 1 : Math.exp(-LN_2 * elapsedMillis / this.halfLifeMillis);
+	}
+}
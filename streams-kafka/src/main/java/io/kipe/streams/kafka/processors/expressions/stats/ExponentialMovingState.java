@@ -0,0 +1,109 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * The exponentially weighted mean and variance of the values of a field.
+ * <p>
+ * Each new value gets the weight 1 while the weights of the values before decay by a factor, so the state only keeps
+ * the sum of the decayed weights, the weighted mean and the weighted (population) variance. The first values aren't
+ * biased towards zero as the mean is normalized by the sum of the weights. For a constant decay {@code 1 - alpha}
+ * the weight converges to {@code 1 / alpha} and each update moves the mean by {@code alpha} towards the new value.
+ * <p>
+ * Shared by the {@link ExponentialMovingExpression}s measuring the same field with the same decay, see
+ * {@link ExponentialMovingExpression}.
+ */
+class ExponentialMovingState implements StatsState {
+
+	double weight;
+	double mean;
+	double variance;
+	long timestamp;
+
+	static ExponentialMovingState read(BinaryInput input) {
+		ExponentialMovingState state = new ExponentialMovingState();
+		state.weight = input.readDouble();
+		if (state.weight > 0) {
+			state.mean = input.readDouble();
+			state.variance = input.readDouble();
+			state.timestamp = input.readLong();
+		}
+		return state;
+	}
+
+	/**
+	 * Adds a value after decaying the weight of the values before.
+	 *
+	 * @param value the value.
+	 * @param decay the factor to decay the weight of the values before with.
+	 */
+	void add(double value, double decay) {
+		add(value, decay, 1);
+	}
+
+	/**
+	 * Adds a value of the given weight after decaying the weight of the values before.
+	 *
+	 * @param value       the value.
+	 * @param decay       the factor to decay the weight of the values before with.
+	 * @param valueWeight the weight of the value, e.g. less than 1 for a value older than the latest one.
+	 */
+	void add(double value, double decay, double valueWeight) {
+		this.weight = this.weight * decay + valueWeight;
+
+		double alpha = valueWeight / this.weight;
+		double diff = value - this.mean;
+		this.mean += alpha * diff;
+		this.variance = (1 - alpha) * (this.variance + alpha * diff * diff);
+	}
+
+	/**
+	 * Merges the values of another state with their weights decayed by the given factors.
+	 *
+	 * @param other      the other state.
+	 * @param decay      the factor to decay the weight of the values of this state with.
+	 * @param otherDecay the factor to decay the weight of the values of the other state with.
+	 */
+	void add(ExponentialMovingState other, double decay, double otherDecay) {
+		double w1 = this.weight * decay;
+		double w2 = other.weight * otherDecay;
+		double w = w1 + w2;
+		if (w == 0) {
+			return;
+		}
+
+		double delta = other.mean - this.mean;
+		this.mean += delta * w2 / w;
+		this.variance = (w1 * this.variance + w2 * other.variance) / w + w1 * w2 * delta * delta / (w * w);
+		this.weight = w;
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeDouble(this.weight);
+		if (this.weight > 0) {
+			output.writeDouble(this.mean);
+			output.writeDouble(this.variance);
+			output.writeLong(this.timestamp);
+		}
+	}
+}
@@ -17,7 +17,10 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 /**
  * The First class is a stats expression that returns the first seen value of records for a specified field.
@@ -28,8 +31,10 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * |-------|----------|--------|--------------------------------------------------|
  * | first | no       | object | the first seen value at the measured value field |
  * </pre>
+ * <p>
+ * The first seen non null value is kept as state.
  */
-public class First extends StatsExpression {
+public class First extends TypedStatsExpression<ValueState> {
 
     public static final String DEFAULT_FIELD = "first";
 
@@ -43,15 +48,42 @@ public class First extends StatsExpression {
         return new First(fieldNameToFirst);
     }
 
+    private final FieldRef fieldToFirst;
+
     /**
-     * Initializes the statsFunction to return the first seen value of records for the specified field.
+     * Creates a First for the specified field.
      */
     private First(String fieldNameToFirst) {
         super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            var fieldValue = value.get(fieldNameToFirst);
-            return aggregate.get(this.fieldName, () -> fieldValue);
-        };
+        this.fieldToFirst = FieldRef.of(fieldNameToFirst);
+    }
+
+    @Override
+    protected ValueState createState() {
+        return new ValueState();
+    }
+
+    @Override
+    protected ValueState readState(BinaryInput input) {
+        return ValueState.read(input);
     }
 
+    @Override
+    protected void update(GenericRecord value, ValueState state) {
+        if (state.value == null) {
+            state.value = value.get(this.fieldToFirst);
+        }
+    }
+
+    @Override
+    protected void merge(ValueState state, ValueState other) {
+        if (state.value == null) {
+            state.value = other.value;
+        }
+    }
+
+    @Override
+    protected Object finish(ValueState state) {
+        return state.value;
+    }
 }
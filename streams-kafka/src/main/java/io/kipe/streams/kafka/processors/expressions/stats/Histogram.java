@@ -0,0 +1,215 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.kipe.common.utils.MathUtils;
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * The Histogram class counts the values of a specified field per bucket.
+ * <p>
+ * The fields for this statistical expression are as follows:
+ * <pre>
+ * | field     | internal | type                | description                                            |
+ * |-----------|----------|---------------------|--------------------------------------------------------|
+ * | histogram | no       | map of double, long | the number of values per bucket, keyed by bucket label |
+ * </pre>
+ * <p>
+ * The buckets are defined by one of the following scales:
+ * <ul>
+ *     <li>{@link #histogram(String, double)}: buckets of a fixed span labeled like the bins of the {@code BinBuilder},
+ *     i.e. a value falls into the bucket of the nearest multiple of the span.</li>
+ *     <li>{@link #histogram(String, double[])}: buckets between the given boundaries, labeled by their lower boundary.
+ *     Values below the first boundary are counted at {@code -Infinity}.</li>
+ *     <li>{@link #logHistogram(String, double)}: buckets between the powers of a base, labeled by their lower power.
+ *     Values less than or equal to zero are counted at {@code 0.0}.</li>
+ * </ul>
+ * Only buckets with values are kept and reported, so the state of a group grows with the number of distinct buckets
+ * rather than the number of records. Records without a value at the measured field or with a {@code NaN} value are
+ * ignored.
+ */
+public class Histogram extends TypedStatsExpression<HistogramState> {
+    public static final String DEFAULT_FIELD = "histogram";
+
+    // below all powers, even of the smallest double for a base next to 1
+    private static final long ZERO_BUCKET = Long.MIN_VALUE;
+
+    private enum Scale {
+        SPAN, BOUNDARIES, LOG
+    }
+
+    /**
+     * Returns a new Histogram instance with buckets of a fixed span for the specified field.
+     *
+     * @param fieldNameToMeasure the field to count the values of
+     * @param span               the span of the buckets
+     * @return a new Histogram instance for the given field
+     */
+    public static Histogram histogram(String fieldNameToMeasure, double span) {
+        if (!(span > 0) || Double.isInfinite(span)) {
+            throw new IllegalArgumentException("span must be positive but was " + span);
+        }
+        return new Histogram(fieldNameToMeasure, Scale.SPAN, span, null);
+    }
+
+    /**
+     * Returns a new Histogram instance with buckets between the given boundaries for the specified field.
+     *
+     * @param fieldNameToMeasure the field to count the values of
+     * @param boundaries         the strictly increasing lower boundaries of the buckets
+     * @return a new Histogram instance for the given field
+     */
+    public static Histogram histogram(String fieldNameToMeasure, double[] boundaries) {
+        if (boundaries == null || boundaries.length == 0) {
+            throw new IllegalArgumentException("boundaries must not be empty");
+        }
+        for (int i = 0; i < boundaries.length; i++) {
+            if (!Double.isFinite(boundaries[i]) || (i > 0 && boundaries[i] <= boundaries[i - 1])) {
+                throw new IllegalArgumentException(
+                        "boundaries must be finite and strictly increasing but were " + Arrays.toString(boundaries));
+            }
+        }
+        return new Histogram(fieldNameToMeasure, Scale.BOUNDARIES, 0, boundaries.clone());
+    }
+
+    /**
+     * Returns a new Histogram instance with buckets between the powers of the given base for the specified field.
+     *
+     * @param fieldNameToMeasure the field to count the values of
+     * @param base               the base of the powers, e.g. 10 for one bucket per order of magnitude
+     * @return a new Histogram instance for the given field
+     */
+    public static Histogram logHistogram(String fieldNameToMeasure, double base) {
+        if (!(base > 1) || Double.isInfinite(base)) {
+            throw new IllegalArgumentException("base must be greater than 1 but was " + base);
+        }
+        return new Histogram(fieldNameToMeasure, Scale.LOG, base, null);
+    }
+
+    private final FieldRef fieldToMeasure;
+    private final Scale scale;
+    private final double spanOrBase;
+    private final int precision;
+    private final double logBase;
+    private final double[] boundaries;
+
+    /**
+     * Creates a Histogram for the specified field.
+     */
+    private Histogram(String fieldNameToMeasure, Scale scale, double spanOrBase, double[] boundaries) {
+        super(DEFAULT_FIELD);
+        this.fieldToMeasure = FieldRef.of(fieldNameToMeasure);
+        this.scale = scale;
+        this.spanOrBase = spanOrBase;
+        this.precision = scale == Scale.SPAN ? MathUtils.getPrecision(spanOrBase) : 0;
+        this.logBase = scale == Scale.LOG ? Math.log(spanOrBase) : 0;
+        this.boundaries = boundaries;
+    }
+
+    @Override
+    protected HistogramState createState() {
+        return new HistogramState();
+    }
+
+    @Override
+    protected Object sharedStateKey() {
+        return List.of(HistogramState.class, this.fieldToMeasure, this.scale, this.spanOrBase,
+                Arrays.toString(this.boundaries));
+    }
+
+    @Override
+    protected HistogramState readState(BinaryInput input) {
+        return HistogramState.read(input);
+    }
+
+    @Override
+    protected void update(GenericRecord value, HistogramState state) {
+        if (!value.contains(this.fieldToMeasure)) {
+            return;
+        }
+
+        double fieldValue = value.getDoubleValue(this.fieldToMeasure);
+        if (!Double.isNaN(fieldValue)) {
+            state.add(bucketOf(fieldValue));
+        }
+    }
+
+    @Override
+    protected void merge(HistogramState state, HistogramState other) {
+        state.add(other);
+    }
+
+    @Override
+    protected Object finish(HistogramState state) {
+        if (state.size() == 0) {
+            return null;
+        }
+
+        Map<Double, Long> histogram = new TreeMap<>();
+        for (int i = 0; i < state.size(); i++) {
+            histogram.put(labelOf(state.bucket(i)), state.count(i));
+        }
+        return histogram;
+    }
+
+    // ------------------------------------------------------------------------
+    // buckets
+    // ------------------------------------------------------------------------
+
+    long bucketOf(double value) {
+        switch (this.scale) {
+        case SPAN:
+            // the same rounding as the BinBuilder
+            return Math.round(value / this.spanOrBase);
+        case BOUNDARIES:
+            int i = Arrays.binarySearch(this.boundaries, value);
+            return i >= 0 ? i + 1 : -i - 1;
+        default:
+            if (value <= 0) {
+                return ZERO_BUCKET;
+            }
+            long power = (long) Math.floor(Math.log(value) / this.logBase);
+            // correct rounding errors of the logarithm at exact powers
+            if (Math.pow(this.spanOrBase, power + 1) <= value) {
+                power++;
+            } else if (Math.pow(this.spanOrBase, power) > value) {
+                power--;
+            }
+            return power;
+        }
+    }
+
+    double labelOf(long bucket) {
+        switch (this.scale) {
+        case SPAN:
+            return MathUtils.round(bucket * this.spanOrBase, this.precision);
+        case BOUNDARIES:
+            return bucket == 0 ? Double.NEGATIVE_INFINITY : this.boundaries[(int) bucket - 1];
+        default:
+            return bucket == ZERO_BUCKET ? 0.0 : Math.pow(this.spanOrBase, bucket);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.Arrays;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * The counts of the values of a field per bucket, kept as two sorted primitive arrays of the indexes of the buckets
+ * seen so far and their counts. Only buckets with values take space, so open ended scales like fixed spans or
+ * logarithmic buckets don't need a fixed range.
+ */
+class HistogramState implements StatsState {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private long[] buckets;
+	private long[] counts;
+	private int size;
+
+	HistogramState() {
+		this(INITIAL_CAPACITY);
+	}
+
+	private HistogramState(int capacity) {
+		this.buckets = new long[capacity];
+		this.counts = new long[capacity];
+	}
+
+	static HistogramState read(BinaryInput input) {
+		int size = input.readVarInt();
+		HistogramState state = new HistogramState(Math.max(INITIAL_CAPACITY, size));
+		long bucket = 0;
+		for (int i = 0; i < size; i++) {
+			bucket += input.readLong();
+			state.buckets[i] = bucket;
+			state.counts[i] = input.readLong();
+		}
+		state.size = size;
+		return state;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	long bucket(int i) {
+		return this.buckets[i];
+	}
+
+	long count(int i) {
+		return this.counts[i];
+	}
+
+	/**
+	 * Counts a value of the given bucket.
+	 *
+	 * @param bucket the bucket's index.
+	 */
+	void add(long bucket) {
+		int i = Arrays.binarySearch(this.buckets, 0, this.size, bucket);
+		if (i >= 0) {
+			this.counts[i]++;
+			return;
+		}
+
+		i = -i - 1;
+		if (this.size == this.buckets.length) {
+			this.buckets = Arrays.copyOf(this.buckets, this.size * 2);
+			this.counts = Arrays.copyOf(this.counts, this.size * 2);
+		}
+		System.arraycopy(this.buckets, i, this.buckets, i + 1, this.size - i);
+		System.arraycopy(this.counts, i, this.counts, i + 1, this.size - i);
+		this.buckets[i] = bucket;
+		this.counts[i] = 1;
+		this.size++;
+	}
+
+	/**
+	 * Adds the counts of the given histogram of the same buckets.
+	 *
+	 * @param other the other histogram.
+	 */
+	void add(HistogramState other) {
+		long[] mergedBuckets = new long[Math.max(INITIAL_CAPACITY, this.size + other.size)];
+		long[] mergedCounts = new long[mergedBuckets.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < this.size || j < other.size) {
+			if (j == other.size || (i < this.size && this.buckets[i] < other.buckets[j])) {
+				mergedBuckets[k] = this.buckets[i];
+				mergedCounts[k++] = this.counts[i++];
+			} else if (i == this.size || other.buckets[j] < this.buckets[i]) {
+				mergedBuckets[k] = other.buckets[j];
+				mergedCounts[k++] = other.counts[j++];
+			} else {
+				mergedBuckets[k] = this.buckets[i];
+				mergedCounts[k++] = this.counts[i++] + other.counts[j++];
+			}
+		}
+
+		this.buckets = mergedBuckets;
+		this.counts = mergedCounts;
+		this.size = k;
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeVarInt(this.size);
+		long previous = 0;
+		for (int i = 0; i < this.size; i++) {
+			// neighboring buckets have small distances
+			output.writeLong(this.buckets[i] - previous);
+			output.writeLong(this.counts[i]);
+			previous = this.buckets[i];
+		}
+	}
+}
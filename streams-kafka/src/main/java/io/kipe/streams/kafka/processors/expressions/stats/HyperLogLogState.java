@@ -0,0 +1,293 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.Arrays;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct values of a field in {@code 2^precision} registers. Used by
+ * {@link ApproxDistinctCount}.
+ * <p>
+ * Each value is hashed to 64 bits: the upper {@code precision} bits select a register, which keeps the maximum
+ * position of the first 1-bit seen in the remaining bits. The cardinality is estimated from the histogram of the
+ * registers with Ertl's improved estimator, which is unbiased over the whole range without the empirical bias
+ * correction tables of HyperLogLog++.
+ * <p>
+ * Like HyperLogLog++ the sketch starts with a sparse representation, a sorted array of the non-zero registers, and
+ * switches to the dense register array once that isn't smaller anymore. The binary encoding of the sparse
+ * representation is delta encoded, so small groups stay small while large groups are bounded by {@code 2^precision}
+ * bytes.
+ * <p>
+ * Sketches of the same precision can be merged by taking the maximum of each register.
+ */
+class HyperLogLogState implements StatsState {
+
+	private static final int RANK_BITS = 6;
+	private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+
+	private final int precision;
+
+	/** the non-zero registers as {@code index << RANK_BITS | rank}, sorted, while sparse */
+	private int[] sparse = new int[4];
+	private int sparseSize;
+
+	/** the registers, {@code null} while sparse */
+	private byte[] dense;
+
+	HyperLogLogState(int precision) {
+		this.precision = precision;
+	}
+
+	static HyperLogLogState read(BinaryInput input, int precision) {
+		HyperLogLogState state = new HyperLogLogState(precision);
+		if (input.readBoolean()) {
+			state.dense = input.readBytes();
+		} else {
+			int size = input.readVarInt();
+			state.sparse = new int[Math.max(4, size)];
+			int entry = 0;
+			for (int i = 0; i < size; i++) {
+				entry += input.readVarInt();
+				state.sparse[i] = entry;
+			}
+			state.sparseSize = size;
+		}
+		return state;
+	}
+
+	/**
+	 * Adds a value by its 64 bits hash.
+	 *
+	 * @param hash the value's hash, see {@link #hash(Object)}.
+	 */
+	void add(long hash) {
+		int index = (int) (hash >>> (64 - this.precision));
+		// the sentinel bit bounds the rank to 64 - precision + 1
+		long remaining = (hash << this.precision) | (1L << (this.precision - 1));
+		int rank = Long.numberOfLeadingZeros(remaining) + 1;
+		set(index, rank);
+	}
+
+	/**
+	 * Merges the given sketch into this one.
+	 *
+	 * @param other a sketch of the same precision.
+	 */
+	void add(HyperLogLogState other) {
+		if (other.precision != this.precision) {
+			throw new IllegalArgumentException(
+					"cannot merge HyperLogLog sketches of precision " + other.precision + " into " + this.precision);
+		}
+
+		if (other.dense == null) {
+			for (int i = 0; i < other.sparseSize; i++) {
+				set(other.sparse[i] >>> RANK_BITS, other.sparse[i] & RANK_MASK);
+			}
+		} else {
+			toDense();
+			for (int i = 0; i < this.dense.length; i++) {
+				this.dense[i] = (byte) Math.max(this.dense[i], other.dense[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the estimated number of distinct values.
+	 *
+	 * @return the estimate.
+	 */
+	long estimate() {
+		int m = 1 << this.precision;
+		int q = 64 - this.precision;
+
+		// histogram of the register values
+		int[] counts = new int[q + 2];
+		if (this.dense == null) {
+			counts[0] = m - this.sparseSize;
+			for (int i = 0; i < this.sparseSize; i++) {
+				counts[this.sparse[i] & RANK_MASK]++;
+			}
+		} else {
+			for (byte rank : this.dense) {
+				counts[rank]++;
+			}
+		}
+
+		double z = m * tau(1.0 - (double) counts[q + 1] / m);
+		for (int k = q; k >= 1; k--) {
+			z = 0.5 * (z + counts[k]);
+		}
+		z += m * sigma((double) counts[0] / m);
+
+		return Math.round(0.5 / Math.log(2) * m * m / z);
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeBoolean(this.dense != null);
+		if (this.dense != null) {
+			output.writeBytes(this.dense);
+			return;
+		}
+
+		output.writeVarInt(this.sparseSize);
+		int previous = 0;
+		for (int i = 0; i < this.sparseSize; i++) {
+			output.writeVarInt(this.sparse[i] - previous);
+			previous = this.sparse[i];
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// registers
+	// ------------------------------------------------------------------------
+
+	private void set(int index, int rank) {
+		if (this.dense != null) {
+			if (rank > this.dense[index]) {
+				this.dense[index] = (byte) rank;
+			}
+			return;
+		}
+
+		int entry = index << RANK_BITS | rank;
+		int position = Arrays.binarySearch(this.sparse, 0, this.sparseSize, index << RANK_BITS);
+		if (position < 0) {
+			position = -(position + 1);
+		}
+
+		// the entries of an index sort between index << RANK_BITS and the next index
+		if (position < this.sparseSize && this.sparse[position] >>> RANK_BITS == index) {
+			if (rank > (this.sparse[position] & RANK_MASK)) {
+				this.sparse[position] = entry;
+			}
+			return;
+		}
+
+		// a sparse entry takes about 2 to 3 bytes encoded, switch to the registers when they are smaller
+		if (this.sparseSize + 1 > (1 << this.precision) / 3) {
+			toDense();
+			this.dense[index] = (byte) rank;
+			return;
+		}
+
+		if (this.sparseSize == this.sparse.length) {
+			this.sparse = Arrays.copyOf(this.sparse, this.sparseSize * 2);
+		}
+		System.arraycopy(this.sparse, position, this.sparse, position + 1, this.sparseSize - position);
+		this.sparse[position] = entry;
+		this.sparseSize++;
+	}
+
+	private void toDense() {
+		if (this.dense != null) {
+			return;
+		}
+
+		this.dense = new byte[1 << this.precision];
+		for (int i = 0; i < this.sparseSize; i++) {
+			this.dense[this.sparse[i] >>> RANK_BITS] = (byte) (this.sparse[i] & RANK_MASK);
+		}
+		this.sparse = null;
+		this.sparseSize = 0;
+	}
+
+	// ------------------------------------------------------------------------
+	// estimator, see Otmar Ertl: New cardinality estimation algorithms for HyperLogLog sketches
+	// ------------------------------------------------------------------------
+
+	private static double sigma(double x) {
+		if (x == 1.0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double y = 1.0;
+		double z = x;
+		double previous;
+		do {
+			x *= x;
+			previous = z;
+			z += x * y;
+			y += y;
+		} while (z != previous);
+		return z;
+	}
+
+	private static double tau(double x) {
+		if (x == 0.0 || x == 1.0) {
+			return 0.0;
+		}
+
+		double y = 1.0;
+		double z = 1.0 - x;
+		double previous;
+		do {
+			x = Math.sqrt(x);
+			previous = z;
+			y *= 0.5;
+			z -= Math.pow(1.0 - x, 2) * y;
+		} while (z != previous);
+		return z / 3;
+	}
+
+	// ------------------------------------------------------------------------
+	// hashing
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns a 64 bits hash of the given value which is stable across JVMs, as sketches are persisted. Strings are
+	 * hashed by their characters, integral numbers by their long value, floating point numbers by their bits and other
+	 * values by their {@link Object#hashCode()}.
+	 *
+	 * @param value a non-null value.
+	 * @return the hash.
+	 */
+	static long hash(Object value) {
+		if (value instanceof String) {
+			String s = (String) value;
+			long h = 0xcbf29ce484222325L;
+			for (int i = 0; i < s.length(); i++) {
+				h = (h ^ s.charAt(i)) * 0x100000001b3L;
+			}
+			return mix(h);
+		}
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return mix(((Number) value).longValue() ^ 0x9e3779b97f4a7c15L);
+		}
+		if (value instanceof Double || value instanceof Float) {
+			return mix(Double.doubleToLongBits(((Number) value).doubleValue()) ^ 0xc2b2ae3d27d4eb4fL);
+		}
+		return mix(value.hashCode());
+	}
+
+	/**
+	 * The 64 bits finalizer of MurmurHash3.
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb93fe5ae53ccL;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -17,7 +17,10 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 /**
  * The Last class is a stats expression that returns the last seen value of records for a specified field.
@@ -28,8 +31,10 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * |-------|----------|--------|-------------------------------------------------|
  * | last  | no       | object | the last seen value at the measured value field |
  * </pre>
+ * <p>
+ * The last seen non null value is kept as state.
  */
-public class Last extends StatsExpression {
+public class Last extends TypedStatsExpression<ValueState> {
 
     public static final String DEFAULT_FIELD = "last";
 
@@ -43,14 +48,43 @@ public class Last extends StatsExpression {
         return new Last(fieldNameToLast);
     }
 
+    private final FieldRef fieldToLast;
+
     /**
-     * Initializes the statsFunction to return the last seen value of records for the specified field.
+     * Creates a Last for the specified field.
      */
     private Last(String fieldNameToLast) {
         super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            var fieldValue = value.get(fieldNameToLast);
-            return fieldValue == null ? aggregate.get(fieldName) : fieldValue;
-        };
+        this.fieldToLast = FieldRef.of(fieldNameToLast);
+    }
+
+    @Override
+    protected ValueState createState() {
+        return new ValueState();
+    }
+
+    @Override
+    protected ValueState readState(BinaryInput input) {
+        return ValueState.read(input);
+    }
+
+    @Override
+    protected void update(GenericRecord value, ValueState state) {
+        Object fieldValue = value.get(this.fieldToLast);
+        if (fieldValue != null) {
+            state.value = fieldValue;
+        }
+    }
+
+    @Override
+    protected void merge(ValueState state, ValueState other) {
+        if (other.value != null) {
+            state.value = other.value;
+        }
+    }
+
+    @Override
+    protected Object finish(ValueState state) {
+        return state.value;
     }
 }
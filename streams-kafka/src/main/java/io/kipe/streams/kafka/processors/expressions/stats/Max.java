@@ -17,7 +17,11 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
+import io.kipe.streams.kafka.factories.BinaryInput;
 import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 /**
  * Stats expression to find the maximum value.
@@ -28,8 +32,10 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * |-------|----------|--------|-----------------------------------------|
  * | max   | no       | double | the maximum value of the measured field |
  * </pre>
+ * <p>
+ * The maximum value is kept as state with its original number type.
  */
-public class Max extends StatsExpression {
+public class Max extends TypedStatsExpression<ValueState> {
 
     public static final String DEFAULT_FIELD = "max";
 
@@ -43,25 +49,49 @@ public class Max extends StatsExpression {
         return new Max(fieldNameToMax);
     }
 
+    private final FieldRef fieldToMax;
+
     /**
      * Constructor for Max class, which calls the constructor of the parent class {@link StatsExpression}
-     * with the default field name "max". It also sets the valueFunction
-     * in the constructor.
+     * with the default field name "max".
      */
     private Max(String fieldNameToMax) {
         super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            Number fieldValue = value.getNumber(fieldNameToMax);
-            if (fieldValue == null) {
-                return aggregate.getNumber(this.fieldName);
-            }
+        this.fieldToMax = FieldRef.of(fieldNameToMax);
+    }
+
+    @Override
+    protected ValueState createState() {
+        return new ValueState();
+    }
+
+    @Override
+    protected ValueState readState(BinaryInput input) {
+        return ValueState.read(input);
+    }
+
+    @Override
+    protected void update(GenericRecord value, ValueState state) {
+        Number fieldValue = value.getNumber(this.fieldToMax);
+        if (fieldValue == null) {
+            return;
+        }
+
+        if (state.value == null || fieldValue.doubleValue() > ((Number) state.value).doubleValue()) {
+            state.value = fieldValue;
+        }
+    }
+
+    @Override
+    protected void merge(ValueState state, ValueState other) {
+        if (other.value != null
+                && (state.value == null || ((Number) other.value).doubleValue() > ((Number) state.value).doubleValue())) {
+            state.value = other.value;
+        }
+    }
 
-            Number currentMax = aggregate.get(this.fieldName, () -> fieldValue);
-            if (fieldValue.doubleValue() > currentMax.doubleValue()) {
-                aggregate.set(this.fieldName, fieldValue);
-                return fieldValue;
-            }
-            return currentMax;
-        };
+    @Override
+    protected Object finish(ValueState state) {
+        return state.value;
     }
-}
\ No newline at end of file
+}
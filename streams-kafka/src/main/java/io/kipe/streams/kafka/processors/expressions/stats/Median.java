@@ -17,9 +17,6 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import com.google.common.collect.TreeMultiset;
-import io.kipe.streams.kafka.processors.StatsExpression;
-
 /**
  * The Median class calculates the median value of a data stream for a specified field.
  * <p>
@@ -28,14 +25,13 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * | field     | internal | type               | description                                       |
  * |-----------|----------|--------------------|---------------------------------------------------|
  * | median    | no       | double             | the calculated median value of the measured field |
- * | lowerHalf | yes      | multiset of double | the lower half values for the specified field     |
- * | upperHalf | yes      | multiset of double | the upper half values for the specified field     |
  * </pre>
  * <p>
- * Note: This implementation uses 2-TreeMultiset as an alternative to the 2-PriorityQueue approach due to serialization
- * issues, while still providing an efficient median calculation in streaming environments.
+ * The values are kept as state in a sorted {@code double[]}, which makes the median a lookup of the middle value(s).
+ * The state is shared with the percentiles of the same field. Records without a value at the measured field are
+ * ignored.
  */
-public class Median extends StatsExpression {
+public class Median extends SortedValuesExpression {
     public static final String DEFAULT_FIELD = "median";
 
     /**
@@ -49,58 +45,22 @@ public class Median extends StatsExpression {
     }
 
     /**
-     * Initializes the statsFunction to calculate the median by collecting the values for the specified field and
-     * finding the middle value using two TreeMultisets (lowerHalf and upperHalf).
+     * Creates a Median for the specified field.
      */
     private Median(String fieldNameToMedian) {
-        super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            String fieldNameLowerHalf = createInternalFieldName("lowerHalf");
-            String fieldNameUpperHalf = createInternalFieldName("upperHalf");
-
-            TreeMultiset<Double> lowerHalf = aggregate.get(fieldNameLowerHalf);
-            TreeMultiset<Double> upperHalf = aggregate.get(fieldNameUpperHalf);
-
-            if (lowerHalf == null) {
-                lowerHalf = TreeMultiset.create();
-            }
-            if (upperHalf == null) {
-                upperHalf = TreeMultiset.create();
-            }
-
-            Double fieldValue = value.getNumber(fieldNameToMedian).doubleValue();
-            addValue(fieldValue, lowerHalf, upperHalf);
-            rebalanceMultisets(lowerHalf, upperHalf);
-
-            aggregate.set(fieldNameLowerHalf, lowerHalf);
-            aggregate.set(fieldNameUpperHalf, upperHalf);
-
-            return calculateMedian(lowerHalf, upperHalf);
-        };
+        super(DEFAULT_FIELD, fieldNameToMedian);
     }
 
-    private void addValue(Double fieldValue, TreeMultiset<Double> lowerHalf, TreeMultiset<Double> upperHalf) {
-        if (lowerHalf.isEmpty() || fieldValue < lowerHalf.lastEntry().getElement()) {
-            lowerHalf.add(fieldValue);
-        } else {
-            upperHalf.add(fieldValue);
+    @Override
+    protected Object finish(SortedValuesState state) {
+        if (state.size == 0) {
+            return null;
         }
-    }
-
-    private void rebalanceMultisets(TreeMultiset<Double> lowerHalf, TreeMultiset<Double> upperHalf) {
-        while (lowerHalf.size() > upperHalf.size() + 1) {
-            upperHalf.add(lowerHalf.pollLastEntry().getElement());
-        }
-        while (upperHalf.size() > lowerHalf.size()) {
-            lowerHalf.add(upperHalf.pollFirstEntry().getElement());
-        }
-    }
 
-    private double calculateMedian(TreeMultiset<Double> lowerHalf, TreeMultiset<Double> upperHalf) {
-        if (lowerHalf.size() == upperHalf.size()) {
-            return (lowerHalf.lastEntry().getElement() + upperHalf.firstEntry().getElement()) / 2;
-        } else {
-            return lowerHalf.lastEntry().getElement();
-        }
+        int middle = (state.size - 1) / 2;
+        double median = state.size % 2 == 0
+                ? (state.values[middle] + state.values[middle + 1]) / 2
+                : state.values[middle];
+        return median;
     }
 }
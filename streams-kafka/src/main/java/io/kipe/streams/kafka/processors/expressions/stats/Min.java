@@ -17,7 +17,11 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
+import io.kipe.streams.kafka.factories.BinaryInput;
 import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 /**
  * Stats expression to find the minimum value.
@@ -28,8 +32,10 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * |-------|----------|--------|-----------------------------------------|
  * | min   | no       | double | the minimum value of the measured field |
  * </pre>
+ * <p>
+ * The minimum value is kept as state with its original number type.
  */
-public class Min extends StatsExpression {
+public class Min extends TypedStatsExpression<ValueState> {
 
     public static final String DEFAULT_FIELD = "min";
 
@@ -43,24 +49,49 @@ public class Min extends StatsExpression {
         return new Min(fieldNameToMin);
     }
 
+    private final FieldRef fieldToMin;
+
     /**
      * Constructor for Min class, which calls the constructor of the parent class {@link StatsExpression}
-     * with the default field name "min". It also sets the valueFunction in the constructor.
+     * with the default field name "min".
      */
-    private Min(String fieldName) {
+    private Min(String fieldNameToMin) {
         super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            Number fieldValue = value.getNumber(fieldName);
-            if (fieldValue == null) {
-                return aggregate.getNumber(this.fieldName);
-            }
+        this.fieldToMin = FieldRef.of(fieldNameToMin);
+    }
+
+    @Override
+    protected ValueState createState() {
+        return new ValueState();
+    }
+
+    @Override
+    protected ValueState readState(BinaryInput input) {
+        return ValueState.read(input);
+    }
+
+    @Override
+    protected void update(GenericRecord value, ValueState state) {
+        Number fieldValue = value.getNumber(this.fieldToMin);
+        if (fieldValue == null) {
+            return;
+        }
+
+        if (state.value == null || fieldValue.doubleValue() < ((Number) state.value).doubleValue()) {
+            state.value = fieldValue;
+        }
+    }
+
+    @Override
+    protected void merge(ValueState state, ValueState other) {
+        if (other.value != null
+                && (state.value == null || ((Number) other.value).doubleValue() < ((Number) state.value).doubleValue())) {
+            state.value = other.value;
+        }
+    }
 
-            Number currentMin = aggregate.get(this.fieldName, () -> fieldValue);
-            if (fieldValue.doubleValue() < currentMin.doubleValue()) {
-                aggregate.set(this.fieldName, fieldValue);
-                return fieldValue;
-            }
-            return currentMin;
-        };
+    @Override
+    protected Object finish(ValueState state) {
+        return state.value;
     }
-}
\ No newline at end of file
+}
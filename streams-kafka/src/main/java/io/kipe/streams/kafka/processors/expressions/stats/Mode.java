@@ -17,13 +17,18 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * The Mode class calculates the mode of values in a data stream by finding the most frequently occurring value(s) in a
@@ -34,10 +39,13 @@ import java.util.stream.Collectors;
  * | field  | internal | type                     | description                                      |
  * |--------|----------|--------------------------|--------------------------------------------------|
  * | mode   | no       | set of strings           | the mode of values at the measured value field   |
- * | counts | yes      | map of string to integer | the frequency of each unique value               |
  * </pre>
+ * <p>
+ * The frequency of each unique value is kept as state. The state also tracks the current maximum frequency and the
+ * values having it, so updates take constant time regardless of the number of unique values. See {@link ApproxMode}
+ * for a variant with bounded state.
  */
-public class Mode extends StatsExpression {
+public class Mode extends TypedStatsExpression<Mode.CountsState> {
 
     public static final String DEFAULT_FIELD = "mode";
 
@@ -51,36 +59,95 @@ public class Mode extends StatsExpression {
         return new Mode(fieldNameToMode);
     }
 
+    private final FieldRef fieldToMode;
+
     /**
-     * Initializes the statsFunction to calculate the mode by counting the frequency of each unique value for the
-     * specified field and determining the most frequently occurring value(s).
+     * Creates a Mode for the specified field.
      */
     private Mode(String fieldNameToMode) {
         super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            String fieldNameCounts = createInternalFieldName("counts");
+        this.fieldToMode = FieldRef.of(fieldNameToMode);
+    }
 
-            String fieldValue = value.get(fieldNameToMode);
+    @Override
+    protected CountsState createState() {
+        return new CountsState();
+    }
 
-            if (fieldValue == null) {
-                return aggregate.get(this.fieldName);
-            }
+    @Override
+    protected CountsState readState(BinaryInput input) {
+        CountsState state = new CountsState();
+        int size = input.readVarInt();
+        for (int i = 0; i < size; i++) {
+            state.put(input.readString(), input.readVarInt());
+        }
+        return state;
+    }
+
+    @Override
+    protected void update(GenericRecord value, CountsState state) {
+        String fieldValue = value.get(this.fieldToMode);
+        if (fieldValue == null) {
+            return;
+        }
 
-            Map<String, Integer> counts = aggregate.get(fieldNameCounts, HashMap::new);
-            counts.put(fieldValue, counts.getOrDefault(fieldValue, 0) + 1);
-            aggregate.set(fieldNameCounts, counts);
+        state.increment(fieldValue);
+    }
 
-            return calculateModes(counts);
-        };
+    @Override
+    protected void merge(CountsState state, CountsState other) {
+        for (Entry<String, Integer> entry : other.counts.entrySet()) {
+            state.put(entry.getKey(), state.counts.getOrDefault(entry.getKey(), 0) + entry.getValue());
+        }
     }
 
-    private Set<String> calculateModes(Map<String, Integer> counts) {
-        int maxCount = counts.values().stream().max(Integer::compareTo).orElse(0);
+    @Override
+    protected Object finish(CountsState state) {
+        if (state.modes.isEmpty()) {
+            return null;
+        }
 
-        return counts.entrySet().stream()
-                .filter(entry -> entry.getValue() == maxCount)
-                .map(Entry::getKey)
-                .collect(Collectors.toSet());
+        return new HashSet<>(state.modes);
     }
 
+    static class CountsState implements StatsState {
+
+        final Map<String, Integer> counts = new HashMap<>();
+
+        /** the values with the maximum count */
+        final Set<String> modes = new HashSet<>();
+        int maxCount;
+
+        void increment(String value) {
+            track(value, this.counts.merge(value, 1, Integer::sum));
+        }
+
+        void put(String value, int count) {
+            this.counts.put(value, count);
+            track(value, count);
+        }
+
+        /**
+         * Updates the modes for the new count of a value. As counts only grow, a value can only join the modes or
+         * replace them.
+         */
+        private void track(String value, int count) {
+            if (count > this.maxCount) {
+                this.maxCount = count;
+                this.modes.clear();
+                this.modes.add(value);
+            } else if (count == this.maxCount) {
+                this.modes.add(value);
+            }
+        }
+
+        @Override
+        public void write(BinaryOutput output) {
+            output.writeVarInt(this.counts.size());
+            for (Entry<String, Integer> entry : this.counts.entrySet()) {
+                output.writeString(entry.getKey());
+                output.writeVarInt(entry.getValue());
+            }
+        }
+    }
 }
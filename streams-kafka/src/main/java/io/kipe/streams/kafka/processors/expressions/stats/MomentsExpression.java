@@ -0,0 +1,90 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Base of the stats expressions computed from the moments of a field: {@link Sum}, {@link Average}, {@link Variance}
+ * and {@link StandardDeviation}.
+ * <p>
+ * All of them measuring the same field share one {@link MomentsState}, so e.g. avg, var, stdev and sum of a field
+ * are updated once per record. The shared state only tracks the deviations if one of the expressions needs them.
+ * Records without a value at the measured field don't change the state.
+ */
+abstract class MomentsExpression extends TypedStatsExpression<MomentsState> {
+
+	private final String fieldNameToMeasure;
+	private final FieldRef fieldToMeasure;
+	private final boolean deviations;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param defaultFieldName   the default field name of the result.
+	 * @param fieldNameToMeasure the field to measure.
+	 * @param deviations         whether the expression needs the deviations from the mean.
+	 */
+	MomentsExpression(String defaultFieldName, String fieldNameToMeasure, boolean deviations) {
+		super(defaultFieldName);
+		this.fieldNameToMeasure = fieldNameToMeasure;
+		this.fieldToMeasure = FieldRef.of(fieldNameToMeasure);
+		this.deviations = deviations;
+	}
+
+	@Override
+	protected MomentsState createState() {
+		return new MomentsState(this.deviations);
+	}
+
+	@Override
+	protected Object sharedStateKey() {
+		return List.of(MomentsState.class, this.fieldNameToMeasure);
+	}
+
+	@Override
+	protected MomentsState createSharedState(List<TypedStatsExpression<?>> expressions) {
+		boolean sharedDeviations = expressions.stream()
+				.anyMatch(e -> ((MomentsExpression) e).deviations);
+		return new MomentsState(sharedDeviations);
+	}
+
+	@Override
+	protected MomentsState readState(BinaryInput input) {
+		return MomentsState.read(input);
+	}
+
+	@Override
+	protected void update(GenericRecord value, MomentsState state) {
+		if (!value.contains(this.fieldToMeasure)) {
+			return;
+		}
+
+		state.add(value.getDoubleValue(this.fieldToMeasure));
+	}
+
+	@Override
+	protected void merge(MomentsState state, MomentsState other) {
+		state.add(other);
+	}
+}
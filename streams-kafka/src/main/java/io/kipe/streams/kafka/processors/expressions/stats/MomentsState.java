@@ -0,0 +1,108 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * The running count and sum of the values of a field and, if requested, their mean and sum of squared differences from
+ * the mean (ssd). The deviations are updated with Welford's algorithm for better numerical stability.
+ * <p>
+ * Shared by the {@link MomentsExpression}s measuring the same field, see {@link MomentsExpression}.
+ */
+class MomentsState implements StatsState {
+
+	final boolean deviations;
+	long count;
+	double sum;
+	double mean;
+	double ssd;
+
+	MomentsState(boolean deviations) {
+		this.deviations = deviations;
+	}
+
+	static MomentsState read(BinaryInput input) {
+		MomentsState state = new MomentsState(input.readBoolean());
+		state.count = input.readLong();
+		state.sum = input.readDouble();
+		if (state.deviations) {
+			state.mean = input.readDouble();
+			state.ssd = input.readDouble();
+		}
+		return state;
+	}
+
+	void add(double value) {
+		this.count++;
+		this.sum += value;
+
+		if (this.deviations) {
+			double previousMean = this.mean;
+			this.mean = previousMean + (value - previousMean) / this.count;
+			this.ssd += (value - previousMean) * (value - this.mean);
+		}
+	}
+
+	/**
+	 * Merges the moments of other values into this state with the pairwise update of Chan et al.
+	 *
+	 * @param other the moments of the other values, tracking deviations the same way.
+	 */
+	void add(MomentsState other) {
+		if (other.count == 0) {
+			return;
+		}
+
+		if (this.deviations) {
+			long count = this.count + other.count;
+			double delta = other.mean - this.mean;
+			this.ssd += other.ssd + delta * delta * ((double) this.count * other.count / count);
+			this.mean += delta * other.count / count;
+		}
+
+		this.count += other.count;
+		this.sum += other.sum;
+	}
+
+	/**
+	 * Returns the sample or population variance, {@code 0.0} for less than two values.
+	 *
+	 * @param population whether to return the population variance.
+	 * @return the variance.
+	 */
+	double variance(boolean population) {
+		if (this.count <= 1) {
+			return 0.0;
+		}
+		return this.ssd / (population ? this.count : this.count - 1);
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeBoolean(this.deviations);
+		output.writeLong(this.count);
+		output.writeDouble(this.sum);
+		if (this.deviations) {
+			output.writeDouble(this.mean);
+			output.writeDouble(this.ssd);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * The minimum and maximum of the values of a field within a sliding window, kept in monotonic deques.
+ * <p>
+ * Each value is added at a position, its sequence number or timestamp, and leaves the window once the newest position
+ * is {@code span} or more ahead of it. The min deque holds the values which can still become the minimum of the
+ * window: ordered by position and by strictly increasing value, as a new value drops all older values greater or
+ * equal to it from the back. The minimum is the front of the deque, which is dropped when it leaves the window. The
+ * max deque works the other way around. Every value is added and dropped at most once, so updates take amortized
+ * constant time and the deques never hold more values than the window.
+ * <p>
+ * Shared by the {@link RollingExtremesExpression}s measuring the same field over the same window, see
+ * {@link RollingExtremesExpression}.
+ */
+class MonotonicDequeState implements StatsState {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	final Deque min;
+	final Deque max;
+	long latest;
+
+	/**
+	 * Creates a new, empty state.
+	 *
+	 * @param trackMin whether to track the minimum.
+	 * @param trackMax whether to track the maximum.
+	 */
+	MonotonicDequeState(boolean trackMin, boolean trackMax) {
+		this.min = trackMin ? new Deque(true) : null;
+		this.max = trackMax ? new Deque(false) : null;
+	}
+
+	static MonotonicDequeState read(BinaryInput input) {
+		byte tracked = input.readByte();
+		MonotonicDequeState state = new MonotonicDequeState((tracked & 1) != 0, (tracked & 2) != 0);
+		state.latest = input.readLong();
+		if (state.min != null) {
+			state.min.read(input, state.latest);
+		}
+		if (state.max != null) {
+			state.max.read(input, state.latest);
+		}
+		return state;
+	}
+
+	/**
+	 * Adds a value at the given position and drops the values leaving the window.
+	 *
+	 * @param position the value's position, not less than the ones added before.
+	 * @param value    the value.
+	 * @param span     the window's span in positions.
+	 */
+	void add(long position, double value, long span) {
+		this.latest = position;
+		if (this.min != null) {
+			this.min.push(position, value);
+			this.min.dropUntil(position - span);
+		}
+		if (this.max != null) {
+			this.max.push(position, value);
+			this.max.dropUntil(position - span);
+		}
+	}
+
+	/**
+	 * Adds the values of a later part of the records. As the values of the other state which were dropped are
+	 * dominated by later values of it or out of its window, pushing its remaining values is enough.
+	 *
+	 * @param other  the state of the later records, tracking the same extremes.
+	 * @param offset the offset to add to the positions of the other state, e.g. the number of values of this state
+	 *               for positions counting the values.
+	 * @param span   the window's span in positions.
+	 */
+	void add(MonotonicDequeState other, long offset, long span) {
+		long position = Math.max(this.latest, other.latest + offset);
+		if (this.min != null) {
+			this.min.pushAll(other.min, offset, this.latest);
+			this.min.dropUntil(position - span);
+		}
+		if (this.max != null) {
+			this.max.pushAll(other.max, offset, this.latest);
+			this.max.dropUntil(position - span);
+		}
+		this.latest = position;
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeByte((this.min != null ? 1 : 0) | (this.max != null ? 2 : 0));
+		output.writeLong(this.latest);
+		if (this.min != null) {
+			this.min.write(output, this.latest);
+		}
+		if (this.max != null) {
+			this.max.write(output, this.latest);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// Deque
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A monotonic deque of values and their positions in a growing ring buffer.
+	 */
+	static final class Deque {
+
+		private final boolean ascending;
+		private long[] positions = new long[INITIAL_CAPACITY];
+		private double[] values = new double[INITIAL_CAPACITY];
+		private int head;
+		private int size;
+
+		Deque(boolean ascending) {
+			this.ascending = ascending;
+		}
+
+		boolean isEmpty() {
+			return this.size == 0;
+		}
+
+		int size() {
+			return this.size;
+		}
+
+		/**
+		 * @return the extreme value of the window, i.e. the front value.
+		 */
+		double front() {
+			return this.values[this.head];
+		}
+
+		void push(long position, double value) {
+			// drops the values which can't become the extreme as the new one stays longer in the window
+			while (this.size > 0 && !precedes(this.values[index(this.size - 1)], value)) {
+				this.size--;
+			}
+
+			if (this.size == this.positions.length) {
+				grow();
+			}
+			int i = index(this.size);
+			this.positions[i] = position;
+			this.values[i] = value;
+			this.size++;
+		}
+
+		void pushAll(Deque other, long offset, long minPosition) {
+			for (int j = 0; j < other.size; j++) {
+				int i = other.index(j);
+				push(Math.max(other.positions[i] + offset, minPosition), other.values[i]);
+			}
+		}
+
+		/**
+		 * Drops the values at positions up to and including the given one from the front.
+		 */
+		void dropUntil(long position) {
+			while (this.size > 0 && this.positions[this.head] <= position) {
+				this.head = index(1);
+				this.size--;
+			}
+		}
+
+		void write(BinaryOutput output, long latest) {
+			output.writeVarInt(this.size);
+			for (int j = 0; j < this.size; j++) {
+				int i = index(j);
+				// the distance to the latest position is small within the window
+				output.writeLong(latest - this.positions[i]);
+				output.writeDouble(this.values[i]);
+			}
+		}
+
+		void read(BinaryInput input, long latest) {
+			int length = input.readVarInt();
+			if (length > this.positions.length) {
+				this.positions = new long[length];
+				this.values = new double[length];
+			}
+			for (int i = 0; i < length; i++) {
+				this.positions[i] = latest - input.readLong();
+				this.values[i] = input.readDouble();
+			}
+			this.head = 0;
+			this.size = length;
+		}
+
+		private boolean precedes(double older, double newer) {
+			return this.ascending ? older < newer : older > newer;
+		}
+
+		private int index(int offset) {
+			return (this.head + offset) % this.positions.length;
+		}
+
+		private void grow() {
+			long[] grownPositions = new long[this.positions.length * 2];
+			double[] grownValues = new double[grownPositions.length];
+			for (int j = 0; j < this.size; j++) {
+				int i = index(j);
+				grownPositions[j] = this.positions[i];
+				grownValues[j] = this.values[i];
+			}
+			this.positions = grownPositions;
+			this.values = grownValues;
+			this.head = 0;
+		}
+	}
+}
@@ -17,12 +17,6 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 /**
  * The Percentile class calculates the exact n-th percentile of values from an event stream using the "Linear
  * Interpolation Between Closest Ranks" algorithm.
@@ -32,14 +26,30 @@ import java.util.List;
  * | field      | internal | type            | description                                     |
  * |------------|----------|-----------------|-------------------------------------------------|
  * | percentile | no       | double          | the n-th percentile at the measured value field |
- * | values     | yes      | list of doubles | the values in the event stream                  |
  * </pre>
+ * <p>
+ * The values are kept as state in a sorted {@code double[]}. All percentiles and the median of the same field share
+ * this state, so any number of them keeps the values once and inserts each value once.
  */
-public class Percentile extends StatsExpression {
+public class Percentile extends SortedValuesExpression {
 
     public static final String DEFAULT_FIELD = "percentile";
     private final int percentile;
 
+    /**
+     * Returns a new Percentile instance for the specified field and percentile.
+     *
+     * @param fieldName  the field for which the percentile will be calculated
+     * @param percentile the percentile in the range [0, 100]
+     * @return a new Percentile instance for the given field
+     */
+    public static Percentile perc(String fieldName, int percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in the range [0, 100] but was " + percentile);
+        }
+        return new Percentile(fieldName, percentile);
+    }
+
     public static Percentile median(String fieldName) {
         return new Percentile(fieldName, 50);
     }
@@ -121,48 +131,18 @@ public class Percentile extends StatsExpression {
     }
 
     private Percentile(String fieldName, int percentile) {
-        super(DEFAULT_FIELD);
+        super(DEFAULT_FIELD, fieldName);
         this.percentile = percentile;
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            String fieldNameValues = createInternalFieldName("values");
-
-            Double fieldValue = value.get(fieldName);
-
-            if (fieldValue == null) {
-                return aggregate.get(this.fieldName);
-            }
-
-            List<Double> values = aggregate.get(fieldNameValues, ArrayList::new);
-            insertSorted(values, fieldValue);
-            aggregate.set(fieldNameValues, values);
-
-            return calculatePercentile(values, percentile);
-        };
-    }
-
-    private void insertSorted(List<Double> values, double fieldValue) {
-        int index = Collections.binarySearch(values, fieldValue);
-        if (index < 0) {
-            index = -(index + 1);
-        }
-        values.add(index, fieldValue);
     }
 
-    private double calculatePercentile(List<Double> values, int percentile) {
-        int numValues = values.size();
-
-        if (numValues == 1) {
-            return values.get(0);
+    @Override
+    protected Object finish(SortedValuesState state) {
+        if (state.size == 0) {
+            return null;
         }
 
-        double rank = percentile / 100.0 * (numValues - 1) + 1.0;
-        int lowerIndex = (int) Math.floor(rank);
-
-        double weight = rank - lowerIndex;
-        double lowerValue = values.get(lowerIndex - 1);
-        double upperValue = values.get(lowerIndex);
-
-        return lowerValue + weight * (upperValue - lowerValue);
+        double result = state.percentile(this.percentile);
+        return result;
     }
 
 }
@@ -17,7 +17,12 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
 
 /**
  * The Range class calculates the range of values in a data stream by finding the difference between the maximum and
@@ -28,11 +33,11 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * | field | internal | type   | description                                          |
  * |-------|----------|--------|------------------------------------------------------|
  * | range | no       | double | the calculated range of values in the measured field |
- * | min   | yes      | double | the minimum value found in the measured field        |
- * | max   | yes      | double | the maximum value found in the measured field        |
  * </pre>
+ * <p>
+ * The result is computed from a state of the minimum and maximum values found in the measured field.
  */
-public class Range extends StatsExpression {
+public class Range extends TypedStatsExpression<Range.RangeState> {
     public static final String DEFAULT_FIELD = "range";
 
     /**
@@ -45,36 +50,75 @@ public class Range extends StatsExpression {
         return new Range(fieldNameToRange);
     }
 
+    private final FieldRef fieldToRange;
+
     /**
-     * Initializes the statsFunction to calculate the range by finding the minimum and maximum values for the specified
-     * field and computing the difference between them.
+     * Creates a Range which calculates the range by finding the minimum and maximum values for the specified field and
+     * computing the difference between them.
      */
     private Range(String fieldNameToRange) {
         super(DEFAULT_FIELD);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            String fieldNameMin = createInternalFieldName("min");
-            String fieldNameMax = createInternalFieldName("max");
+        this.fieldToRange = FieldRef.of(fieldNameToRange);
+    }
 
-            Number min = aggregate.getNumber(fieldNameMin);
-            Number max = aggregate.getNumber(fieldNameMax);
-            Number fieldValue = value.getNumber(fieldNameToRange);
+    @Override
+    protected RangeState createState() {
+        return new RangeState();
+    }
 
-            if (fieldValue == null) {
-                return min != null && max != null ? max.doubleValue() - min.doubleValue() : null;
-            }
+    @Override
+    protected RangeState readState(BinaryInput input) {
+        RangeState state = new RangeState();
+        state.seen = input.readBoolean();
+        state.min = input.readDouble();
+        state.max = input.readDouble();
+        return state;
+    }
+
+    @Override
+    protected void update(GenericRecord value, RangeState state) {
+        if (!value.contains(this.fieldToRange)) {
+            return;
+        }
 
-            if (min == null || fieldValue.doubleValue() < min.doubleValue()) {
-                aggregate.set(fieldNameMin, fieldValue);
-            }
+        double fieldValue = value.getDoubleValue(this.fieldToRange);
+        state.min = state.seen ? Math.min(state.min, fieldValue) : fieldValue;
+        state.max = state.seen ? Math.max(state.max, fieldValue) : fieldValue;
+        state.seen = true;
+    }
+
+    @Override
+    protected void merge(RangeState state, RangeState other) {
+        if (!other.seen) {
+            return;
+        }
+
+        state.min = state.seen ? Math.min(state.min, other.min) : other.min;
+        state.max = state.seen ? Math.max(state.max, other.max) : other.max;
+        state.seen = true;
+    }
+
+    @Override
+    protected Object finish(RangeState state) {
+        if (!state.seen) {
+            return null;
+        }
+
+        double range = state.max - state.min;
+        return range;
+    }
 
-            if (max == null || fieldValue.doubleValue() > max.doubleValue()) {
-                aggregate.set(fieldNameMax, fieldValue);
-            }
+    static class RangeState implements StatsState {
 
-            min = aggregate.getNumber(fieldNameMin);
-            max = aggregate.getNumber(fieldNameMax);
+        boolean seen;
+        double min;
+        double max;
 
-            return max.doubleValue() - min.doubleValue();
-        };
+        @Override
+        public void write(BinaryOutput output) {
+            output.writeBoolean(this.seen);
+            output.writeDouble(this.min);
+            output.writeDouble(this.max);
+        }
     }
 }
@@ -0,0 +1,175 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.time.Duration;
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Base of the stats expressions computing the extremes of a field within a sliding window: {@link RollingMin},
+ * {@link RollingMax} and {@link RollingRange}.
+ * <p>
+ * The window either holds the last N values of the field or the values of the records whose timestamps are less than
+ * a time span before the latest record's timestamp. Records older than the latest one are treated as if they had the
+ * latest timestamp. The record timestamps are read from the {@value #RECORD_TIMESTAMP_FIELD} field.
+ * <p>
+ * All of them measuring the same field within the same window share one {@link MonotonicDequeState}, which only
+ * tracks the extremes one of the expressions needs. Records without a value at the measured field or with a
+ * {@code NaN} value don't change the state.
+ * <p>
+ * The expressions aren't {@link #isMergeable() mergeable}, so they can't be used with session windows or
+ * pre-aggregation.
+ */
+abstract class RollingExtremesExpression extends TypedStatsExpression<MonotonicDequeState> {
+
+	private final String fieldNameToMeasure;
+	private final FieldRef fieldToMeasure;
+	private final long span;
+	private final boolean timeBased;
+	private final boolean trackMin;
+	private final boolean trackMax;
+
+	/**
+	 * Creates a new instance over the last {@code lastN} values.
+	 *
+	 * @param defaultFieldName   the default field name of the result.
+	 * @param fieldNameToMeasure the field to measure.
+	 * @param lastN              the number of values within the window.
+	 * @param trackMin           whether the expression needs the minimum.
+	 * @param trackMax           whether the expression needs the maximum.
+	 */
+	RollingExtremesExpression(
+			String defaultFieldName,
+			String fieldNameToMeasure,
+			int lastN,
+			boolean trackMin,
+			boolean trackMax)
+	{
+		this(defaultFieldName, fieldNameToMeasure, lastN, false, trackMin, trackMax);
+		if (lastN < 1) {
+			throw new IllegalArgumentException("lastN must be positive but was " + lastN);
+		}
+	}
+
+	/**
+	 * Creates a new instance over the given time span.
+	 *
+	 * @param defaultFieldName   the default field name of the result.
+	 * @param fieldNameToMeasure the field to measure.
+	 * @param span               the time span of the window.
+	 * @param trackMin           whether the expression needs the minimum.
+	 * @param trackMax           whether the expression needs the maximum.
+	 */
+	RollingExtremesExpression(
+			String defaultFieldName,
+			String fieldNameToMeasure,
+			Duration span,
+			boolean trackMin,
+			boolean trackMax)
+	{
+		this(defaultFieldName, fieldNameToMeasure, span.toMillis(), true, trackMin, trackMax);
+		if (span.isZero() || span.isNegative()) {
+			throw new IllegalArgumentException("span must be positive but was " + span);
+		}
+	}
+
+	private RollingExtremesExpression(
+			String defaultFieldName,
+			String fieldNameToMeasure,
+			long span,
+			boolean timeBased,
+			boolean trackMin,
+			boolean trackMax)
+	{
+		super(defaultFieldName);
+		this.fieldNameToMeasure = fieldNameToMeasure;
+		this.fieldToMeasure = FieldRef.of(fieldNameToMeasure);
+		this.span = span;
+		this.timeBased = timeBased;
+		this.trackMin = trackMin;
+		this.trackMax = trackMax;
+	}
+
+	@Override
+	protected boolean usesRecordTimestamps() {
+		return this.timeBased;
+	}
+
+	@Override
+	protected MonotonicDequeState createState() {
+		return new MonotonicDequeState(this.trackMin, this.trackMax);
+	}
+
+	@Override
+	protected Object sharedStateKey() {
+		return List.of(MonotonicDequeState.class, this.fieldNameToMeasure, this.span, this.timeBased);
+	}
+
+	@Override
+	protected MonotonicDequeState createSharedState(List<TypedStatsExpression<?>> expressions) {
+		boolean sharedMin = expressions.stream()
+				.anyMatch(e -> ((RollingExtremesExpression) e).trackMin);
+		boolean sharedMax = expressions.stream()
+				.anyMatch(e -> ((RollingExtremesExpression) e).trackMax);
+		return new MonotonicDequeState(sharedMin, sharedMax);
+	}
+
+	@Override
+	protected MonotonicDequeState readState(BinaryInput input) {
+		return MonotonicDequeState.read(input);
+	}
+
+	@Override
+	protected void update(GenericRecord value, MonotonicDequeState state) {
+		if (!value.contains(this.fieldToMeasure)) {
+			return;
+		}
+
+		double fieldValue = value.getDoubleValue(this.fieldToMeasure);
+		if (Double.isNaN(fieldValue)) {
+			return;
+		}
+
+		long position = this.timeBased
+				? Math.max(recordTimestamp(value), state.latest)
+				: state.latest + 1;
+
+		state.add(position, fieldValue, this.span);
+	}
+
+	/**
+	 * Returns {@code false}: merging requires the other state to hold the later records, which neither session windows
+	 * nor pre-aggregation guarantee. {@link #merge(MonotonicDequeState, MonotonicDequeState)} is only correct for
+	 * states merged in record order.
+	 */
+	@Override
+	public boolean isMergeable() {
+		return false;
+	}
+
+	@Override
+	protected void merge(MonotonicDequeState state, MonotonicDequeState other) {
+		// the positions of the later values continue the sequence of the earlier ones
+		state.add(other, this.timeBased ? 0 : state.latest, this.span);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.time.Duration;
+
+/**
+ * The RollingRange class calculates the difference between the maximum and minimum values of a specified field
+ * within a sliding window.
+ * <p>
+ * The fields for this statistical expression are as follows:
+ * <pre>
+ * | field        | internal | type   | description                                    |
+ * |--------------|----------|--------|------------------------------------------------|
+ * | rollingRange | no       | double | the range of values of the field in the window |
+ * </pre>
+ * <p>
+ * The window either holds the last N values or the values of the last time span of record time, see
+ * {@link RollingExtremesExpression}. Each update takes amortized constant time.
+ */
+public class RollingRange extends RollingExtremesExpression {
+    public static final String DEFAULT_FIELD = "rollingRange";
+
+    /**
+     * Returns a new RollingRange instance over the last values of the specified field.
+     *
+     * @param fieldNameToMeasure the field to measure
+     * @param lastN              the number of values within the window
+     * @return a new RollingRange instance for the given field
+     */
+    public static RollingRange rollingRange(String fieldNameToMeasure, int lastN) {
+        return new RollingRange(fieldNameToMeasure, lastN);
+    }
+
+    /**
+     * Returns a new RollingRange instance over the values of the specified field within the given time span before the
+     * latest record.
+     *
+     * @param fieldNameToMeasure the field to measure
+     * @param span               the time span of the window
+     * @return a new RollingRange instance for the given field
+     */
+    public static RollingRange rollingRange(String fieldNameToMeasure, Duration span) {
+        return new RollingRange(fieldNameToMeasure, span);
+    }
+
+    private RollingRange(String fieldNameToMeasure, int lastN) {
+        super(DEFAULT_FIELD, fieldNameToMeasure, lastN, true, true);
+    }
+
+    private RollingRange(String fieldNameToMeasure, Duration span) {
+        super(DEFAULT_FIELD, fieldNameToMeasure, span, true, true);
+    }
+
+    @Override
+    protected Object finish(MonotonicDequeState state) {
+        if (state.min.isEmpty()) {
+            return null;
+        }
+
+        double range = state.max.front() - state.min.front();
+        return range;
+    }
+}
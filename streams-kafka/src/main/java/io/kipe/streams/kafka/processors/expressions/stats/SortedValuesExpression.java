@@ -0,0 +1,80 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Base of the exact order statistics of a field: {@link Median} and {@link Percentile}.
+ * <p>
+ * All of them measuring the same field share one {@link SortedValuesState}, so any number of percentiles of a field
+ * keep the values once and insert each record's value once. Records without a value at the measured field don't
+ * change the state.
+ */
+abstract class SortedValuesExpression extends TypedStatsExpression<SortedValuesState> {
+
+	private final String fieldNameToMeasure;
+	private final FieldRef fieldToMeasure;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param defaultFieldName   the default field name of the result.
+	 * @param fieldNameToMeasure the field to measure.
+	 */
+	SortedValuesExpression(String defaultFieldName, String fieldNameToMeasure) {
+		super(defaultFieldName);
+		this.fieldNameToMeasure = fieldNameToMeasure;
+		this.fieldToMeasure = FieldRef.of(fieldNameToMeasure);
+	}
+
+	@Override
+	protected SortedValuesState createState() {
+		return new SortedValuesState();
+	}
+
+	@Override
+	protected Object sharedStateKey() {
+		return List.of(SortedValuesState.class, this.fieldNameToMeasure);
+	}
+
+	@Override
+	protected SortedValuesState readState(BinaryInput input) {
+		return SortedValuesState.read(input);
+	}
+
+	@Override
+	protected void update(GenericRecord value, SortedValuesState state) {
+		Number fieldValue = value.getNumber(this.fieldToMeasure);
+		if (fieldValue == null) {
+			return;
+		}
+
+		state.add(fieldValue.doubleValue());
+	}
+
+	@Override
+	protected void merge(SortedValuesState state, SortedValuesState other) {
+		state.add(other);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+import java.util.Arrays;
+
+/**
+ * The values of a field kept sorted in a growing {@code double[]}. New values are inserted at the position found by a
+ * binary search. Shared by the {@link SortedValuesExpression}s measuring the same field.
+ */
+class SortedValuesState implements StatsState {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	double[] values;
+	int size;
+
+	SortedValuesState() {
+		this(new double[INITIAL_CAPACITY], 0);
+	}
+
+	private SortedValuesState(double[] values, int size) {
+		this.values = values;
+		this.size = size;
+	}
+
+	static SortedValuesState read(BinaryInput input) {
+		double[] values = input.readDoubles();
+		return new SortedValuesState(values, values.length);
+	}
+
+	void add(double value) {
+		int index = Arrays.binarySearch(this.values, 0, this.size, value);
+		if (index < 0) {
+			index = -(index + 1);
+		}
+
+		if (this.size == this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(INITIAL_CAPACITY, this.size * 2));
+		}
+		System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
+		this.values[index] = value;
+		this.size++;
+	}
+
+	/**
+	 * Merges the values of the given state into this one.
+	 *
+	 * @param other the other state.
+	 */
+	void add(SortedValuesState other) {
+		double[] merged = new double[Math.max(INITIAL_CAPACITY, this.size + other.size)];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < this.size && j < other.size) {
+			merged[k++] = this.values[i] <= other.values[j] ? this.values[i++] : other.values[j++];
+		}
+		System.arraycopy(this.values, i, merged, k, this.size - i);
+		System.arraycopy(other.values, j, merged, k + this.size - i, other.size - j);
+
+		this.values = merged;
+		this.size += other.size;
+	}
+
+	/**
+	 * Returns the n-th percentile of the values using linear interpolation between the closest ranks.
+	 *
+	 * @param percentile the percentile in the range [0, 100].
+	 * @return the percentile.
+	 */
+	double percentile(double percentile) {
+		if (this.size == 1) {
+			return this.values[0];
+		}
+
+		double rank = percentile / 100.0 * (this.size - 1) + 1.0;
+		int lowerIndex = (int) Math.floor(rank);
+		if (lowerIndex >= this.size) {
+			return this.values[this.size - 1];
+		}
+
+		double weight = rank - lowerIndex;
+		double lowerValue = this.values[lowerIndex - 1];
+		double upperValue = this.values[lowerIndex];
+
+		return lowerValue + weight * (upperValue - lowerValue);
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeDoubles(this.values, this.size);
+	}
+}
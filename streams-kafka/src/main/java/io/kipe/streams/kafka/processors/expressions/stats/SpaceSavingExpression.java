@@ -0,0 +1,86 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Base of the approximate frequency statistics of a field: {@link ApproxMode} and {@link ApproxTopK}.
+ * <p>
+ * All of them measuring the same field with the same capacity share one {@link SpaceSavingState}. Records without a
+ * value at the measured field don't change the state.
+ */
+abstract class SpaceSavingExpression extends TypedStatsExpression<SpaceSavingState> {
+
+	private final String fieldNameToMeasure;
+	private final FieldRef fieldToMeasure;
+	private final int capacity;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param defaultFieldName   the default field name of the result.
+	 * @param fieldNameToMeasure the field to measure.
+	 * @param capacity           the number of counters.
+	 */
+	SpaceSavingExpression(String defaultFieldName, String fieldNameToMeasure, int capacity) {
+		super(defaultFieldName);
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+		}
+
+		this.fieldNameToMeasure = fieldNameToMeasure;
+		this.fieldToMeasure = FieldRef.of(fieldNameToMeasure);
+		this.capacity = capacity;
+	}
+
+	@Override
+	protected SpaceSavingState createState() {
+		return new SpaceSavingState(this.capacity);
+	}
+
+	@Override
+	protected Object sharedStateKey() {
+		return List.of(SpaceSavingState.class, this.fieldNameToMeasure, this.capacity);
+	}
+
+	@Override
+	protected SpaceSavingState readState(BinaryInput input) {
+		return SpaceSavingState.read(input, this.capacity);
+	}
+
+	@Override
+	protected void update(GenericRecord value, SpaceSavingState state) {
+		String fieldValue = value.get(this.fieldToMeasure);
+		if (fieldValue == null) {
+			return;
+		}
+
+		state.add(fieldValue);
+	}
+
+	@Override
+	protected void merge(SpaceSavingState state, SpaceSavingState other) {
+		state.add(other);
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * A Space-Saving summary of the most frequent values of a field in a fixed number of counters. Used by
+ * {@link ApproxMode} and {@link ApproxTopK}.
+ * <p>
+ * A value already monitored increments its counter. A new value takes a free counter or replaces the value of the
+ * smallest counter, taking over its count plus one. Counts therefore overestimate by at most the smallest count,
+ * which is at most {@code n / capacity} after {@code n} values, and every value occurring more often than that is
+ * monitored.
+ * <p>
+ * The counters are kept as a binary min-heap with an index from the values to their heap positions, so each update
+ * takes {@code O(log capacity)} time. The binary encoding keeps the heap order, so reading the state doesn't need to
+ * rebuild the heap.
+ * <p>
+ * Summaries of the same capacity can be merged: the counts of values monitored by both are summed, values monitored
+ * by one summary only are charged the smallest count of the other (if it is full), and the largest counters are
+ * kept.
+ */
+class SpaceSavingState implements StatsState {
+
+	private final int capacity;
+
+	/** the monitored values and their counts as a min-heap on the counts */
+	private final String[] values;
+	private final long[] counts;
+	private int size;
+
+	/** the heap positions of the monitored values */
+	private final Map<String, Integer> positions;
+
+	SpaceSavingState(int capacity) {
+		this.capacity = capacity;
+		this.values = new String[capacity];
+		this.counts = new long[capacity];
+		this.positions = new HashMap<>();
+	}
+
+	static SpaceSavingState read(BinaryInput input, int capacity) {
+		SpaceSavingState state = new SpaceSavingState(capacity);
+		int size = input.readVarInt();
+		for (int i = 0; i < size; i++) {
+			String value = input.readString();
+			state.values[i] = value;
+			state.counts[i] = input.readLong();
+			state.positions.put(value, i);
+		}
+		state.size = size;
+		return state;
+	}
+
+	/**
+	 * Counts one occurrence of the given value.
+	 *
+	 * @param value the value.
+	 */
+	void add(String value) {
+		Integer position = this.positions.get(value);
+		if (position != null) {
+			this.counts[position]++;
+			siftDown(position);
+			return;
+		}
+
+		if (this.size < this.capacity) {
+			this.values[this.size] = value;
+			this.counts[this.size] = 1;
+			this.positions.put(value, this.size);
+			siftUp(this.size++);
+			return;
+		}
+
+		// the new value takes over the smallest counter
+		this.positions.remove(this.values[0]);
+		this.values[0] = value;
+		this.counts[0]++;
+		this.positions.put(value, 0);
+		siftDown(0);
+	}
+
+	/**
+	 * Merges the given summary into this one.
+	 *
+	 * @param other a summary of the same capacity.
+	 */
+	void add(SpaceSavingState other) {
+		if (other.capacity != this.capacity) {
+			throw new IllegalArgumentException(
+					"cannot merge Space-Saving summaries of capacity " + other.capacity + " into " + this.capacity);
+		}
+
+		long thisMin = this.size == this.capacity ? this.counts[0] : 0;
+		long otherMin = other.size == other.capacity ? other.counts[0] : 0;
+
+		Map<String, Long> merged = new HashMap<>(2 * (this.size + other.size));
+		for (int i = 0; i < this.size; i++) {
+			Integer otherPosition = other.positions.get(this.values[i]);
+			merged.put(this.values[i], this.counts[i] + (otherPosition == null ? otherMin : other.counts[otherPosition]));
+		}
+		for (int i = 0; i < other.size; i++) {
+			merged.putIfAbsent(other.values[i], other.counts[i] + thisMin);
+		}
+
+		List<Map.Entry<String, Long>> entries = new ArrayList<>(merged.entrySet());
+		entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+		this.positions.clear();
+		this.size = Math.min(this.capacity, entries.size());
+		for (int i = 0; i < this.size; i++) {
+			this.values[i] = entries.get(i).getKey();
+			this.counts[i] = entries.get(i).getValue();
+		}
+		Arrays.fill(this.values, this.size, this.capacity, null);
+
+		// descending counts reversed form a min-heap
+		for (int i = 0, j = this.size - 1; i < j; i++, j--) {
+			swap(i, j);
+		}
+		for (int i = 0; i < this.size; i++) {
+			this.positions.put(this.values[i], i);
+		}
+	}
+
+	/**
+	 * Returns the values with the largest count.
+	 *
+	 * @return the modes, empty if no value was added.
+	 */
+	Set<String> modes() {
+		long maxCount = 0;
+		for (int i = 0; i < this.size; i++) {
+			maxCount = Math.max(maxCount, this.counts[i]);
+		}
+
+		Set<String> modes = new HashSet<>();
+		for (int i = 0; i < this.size; i++) {
+			if (this.counts[i] == maxCount) {
+				modes.add(this.values[i]);
+			}
+		}
+		return modes;
+	}
+
+	/**
+	 * Returns the values with the largest counts in descending order of their counts. Values with the same count are
+	 * ordered by their natural order.
+	 *
+	 * @param k the maximum number of values to return.
+	 * @return the top values.
+	 */
+	List<String> top(int k) {
+		Integer[] order = new Integer[this.size];
+		for (int i = 0; i < this.size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer> comparingLong(i -> -this.counts[i]).thenComparing(i -> this.values[i]));
+
+		List<String> top = new ArrayList<>(Math.min(k, this.size));
+		for (int i = 0; i < Math.min(k, this.size); i++) {
+			top.add(this.values[order[i]]);
+		}
+		return top;
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeVarInt(this.size);
+		for (int i = 0; i < this.size; i++) {
+			output.writeString(this.values[i]);
+			output.writeLong(this.counts[i]);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// heap
+	// ------------------------------------------------------------------------
+
+	private void siftUp(int position) {
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (this.counts[parent] <= this.counts[position]) {
+				break;
+			}
+			swap(position, parent);
+			this.positions.put(this.values[position], position);
+			position = parent;
+		}
+		this.positions.put(this.values[position], position);
+	}
+
+	private void siftDown(int position) {
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && this.counts[child + 1] < this.counts[child]) {
+				child++;
+			}
+			if (this.counts[position] <= this.counts[child]) {
+				break;
+			}
+			swap(position, child);
+			this.positions.put(this.values[position], position);
+			position = child;
+		}
+		this.positions.put(this.values[position], position);
+	}
+
+	private void swap(int i, int j) {
+		String value = this.values[i];
+		this.values[i] = this.values[j];
+		this.values[j] = value;
+
+		long count = this.counts[i];
+		this.counts[i] = this.counts[j];
+		this.counts[j] = count;
+	}
+}
@@ -17,9 +17,6 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
-import org.apache.kafka.streams.errors.StreamsException;
-
 /**
  * The StandardDeviation class calculates the standard deviation of values in a data stream using Welford's algorithm
  * for better numerical stability.
@@ -29,12 +26,13 @@ import org.apache.kafka.streams.errors.StreamsException;
  * | field           | internal | type   | description                                                  |
  * |-----------------|----------|--------|--------------------------------------------------------------|
  * | stdev or stdevp | no       | double | the standard deviation of values at the measured value field |
- * | count           | yes      | long   | the number of values processed                               |
- * | mean            | yes      | double | the running mean of the values                               |
- * | ssd             | yes      | double | the running sum of squared differences from the mean         |
  * </pre>
+ * <p>
+ * The result is computed from a state of the number of values processed, their running mean and the running sum of
+ * squared differences from the mean, which is shared with the other moment based expressions (sum, avg, var,
+ * stdev) on the same field. Records without a value at the measured field are ignored.
  */
-public class StandardDeviation extends StatsExpression {
+public class StandardDeviation extends MomentsExpression {
     public static final String DEFAULT_SAMPLE_STDEV_FIELD = "stdev";
     public static final String DEFAULT_POPULATION_STDEV_FIELD = "stdevp";
 
@@ -48,9 +46,6 @@ public class StandardDeviation extends StatsExpression {
      * @param fieldNameToStdev the field for which the standard deviation will be calculated
      * @param stdevType        the type of standard deviation to calculate (sample or population)
      * @return a new StandardDeviation instance for the given field
-     * @throws StreamsException     when an error occurs during processing, such as encountering a null field value
-     * @throws NullPointerException when a null field value is encountered, causing an issue in processing (underlying
-     *                              cause of StreamsException)
      */
     public static StandardDeviation stdev(String fieldNameToStdev, StandardDeviationType stdevType) {
         String defaultField = stdevType == StandardDeviationType.SAMPLE ? DEFAULT_SAMPLE_STDEV_FIELD : DEFAULT_POPULATION_STDEV_FIELD;
@@ -77,36 +72,23 @@ public class StandardDeviation extends StatsExpression {
         return stdev(fieldNameToStdev, StandardDeviationType.POPULATION);
     }
 
+    private final StandardDeviationType stdevType;
+
     /**
-     * Initializes the statsFunction to calculate the standard deviation for the specified field.
+     * Creates a StandardDeviation for the specified field.
      */
     private StandardDeviation(String fieldNameToStdev, StandardDeviationType stdevType, String defaultField) {
-        super(defaultField);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            String fieldNameCount = createInternalFieldName("count");
-            String fieldNameMean = createInternalFieldName("mean");
-            String fieldNameSsd = createInternalFieldName("ssd");
-
-            Double fieldValue = value.getDouble(fieldNameToStdev);
-
-            if (fieldValue == null) {
-                return aggregate.getDouble(this.fieldName);
-            }
-
-            double previousMean = aggregate.get(fieldNameMean, () -> 0.0);
-            long previousCount = aggregate.get(fieldNameCount, () -> 0L);
-            previousCount += 1;
-            double updatedMean = previousMean + (fieldValue - previousMean) / previousCount;
-            double previousSsd = aggregate.get(fieldNameSsd, () -> 0.0);
-            double updatedSsd = previousSsd + (fieldValue - previousMean) * (fieldValue - updatedMean);
+        super(defaultField, fieldNameToStdev, true);
+        this.stdevType = stdevType;
+    }
 
-            aggregate.set(fieldNameCount, previousCount);
-            aggregate.set(fieldNameMean, updatedMean);
-            aggregate.set(fieldNameSsd, updatedSsd);
+    @Override
+    protected Object finish(MomentsState state) {
+        if (state.count == 0) {
+            return null;
+        }
 
-            double variance = updatedSsd / (stdevType.equals(StandardDeviationType.POPULATION) ? previousCount : previousCount - 1);
-            double stdev = Math.sqrt(variance);
-            return previousCount <= 1 ? 0.0 : stdev;
-        };
+        double variance = state.variance(this.stdevType == StandardDeviationType.POPULATION);
+        return Math.sqrt(variance);
     }
 }
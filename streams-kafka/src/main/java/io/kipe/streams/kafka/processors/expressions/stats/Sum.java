@@ -25,9 +25,9 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * This class provides a singleton instance of the Sum expression and a default field name "sum"
  * which will be used to store the sum value in the resulting record.
  * <p>
- * The valueFunction provided in the constructor takes in a key and value and returns the sum value
- * by first attempting to retrieve the count value from the provided field name in the value,
- * and if it is not present, it defaults to 0.
+ * The sum is kept as double state together with the number of summed values. Records without a value at the
+ * measured field don't change the sum, the sum field is omitted until the first value was seen. The state is shared
+ * with the other moment based expressions (sum, avg, var, stdev) on the same field.
  * <p>
  * The class also provides a static factory method sum(..) to retrieve an instance.
  * <p>
@@ -38,7 +38,7 @@ import io.kipe.streams.kafka.processors.StatsExpression;
  * | sum   | no       | double | the calculated sum of values in the measured field |
  * </pre>
  */
-public class Sum extends StatsExpression {
+public class Sum extends MomentsExpression {
 
 	public static final String DEFAULT_FIELD = "sum";
 
@@ -52,25 +52,16 @@ public class Sum extends StatsExpression {
 		return new Sum(fieldNameToSum);
 	}
 
-	private final String fieldNameToSum;
-	
 	/**
 	 * Constructor for Sum class, which calls the constructor of the parent class {@link StatsExpression}
-	 * with the default field name "sum". It also sets the valueFunction in the constructor.
+	 * with the default field name "sum".
 	 */
 	private Sum(String fieldNameToSum) {
-		super(DEFAULT_FIELD);
-		this.fieldNameToSum = fieldNameToSum;
-		this.statsFunction = (groupKey, value, aggregate) -> {
-			Number fieldValue = value.getNumber(this.fieldNameToSum);
-
-			if (fieldValue == null) {
-				return aggregate.getNumber(this.fieldName);
-			}
-
-			Number sum = aggregate.get(this.fieldName, () -> 0.0);
-			return sum.doubleValue() + fieldValue.doubleValue();
-		};
+		super(DEFAULT_FIELD, fieldNameToSum, false);
 	}
 
+	@Override
+	protected Object finish(MomentsState state) {
+		return state.count == 0 ? null : state.sum;
+	}
 }
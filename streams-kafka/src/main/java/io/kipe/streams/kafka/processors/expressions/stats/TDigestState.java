@@ -0,0 +1,312 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.Arrays;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * A merging t-digest sketching the distribution of the values of a field in a bounded number of weighted centroids.
+ * Used by {@link ApproxPercentile}.
+ * <p>
+ * New values are collected in a buffer which gets merged into the sorted centroids when it is full or the state is
+ * written. Merging uses the k1 scale function {@code k(q) = compression / (2 * PI) * asin(2q - 1)}: neighbouring
+ * centroids are only combined while the combined centroid spans at most one unit of k. This keeps the centroids
+ * small at the tails, so extreme quantiles stay accurate, and bounds their number by about {@code compression}.
+ * <p>
+ * The binary encoding consists of the minimum and maximum value and the merged centroids only, its size is
+ * independent of the number of values seen.
+ */
+class TDigestState implements StatsState {
+
+	private final double compression;
+
+	private double[] means;
+	private long[] weights;
+	private int centroids;
+	private long totalWeight;
+
+	private final double[] bufferMeans;
+	private final long[] bufferWeights;
+	private int buffered;
+
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	TDigestState(double compression) {
+		this.compression = compression;
+		int capacity = (int) Math.ceil(compression) + 8;
+		this.means = new double[capacity];
+		this.weights = new long[capacity];
+		this.bufferMeans = new double[capacity * 4];
+		this.bufferWeights = new long[capacity * 4];
+	}
+
+	static TDigestState read(BinaryInput input, double compression) {
+		TDigestState state = new TDigestState(compression);
+		state.min = input.readDouble();
+		state.max = input.readDouble();
+
+		double[] means = input.readDoubles();
+		state.ensureCapacity(means.length);
+		System.arraycopy(means, 0, state.means, 0, means.length);
+		for (int i = 0; i < means.length; i++) {
+			long weight = input.readLong();
+			state.weights[i] = weight;
+			state.totalWeight += weight;
+		}
+		state.centroids = means.length;
+
+		return state;
+	}
+
+	/**
+	 * Returns the number of values added.
+	 *
+	 * @return the number of values.
+	 */
+	long count() {
+		long count = this.totalWeight;
+		for (int i = 0; i < this.buffered; i++) {
+			count += this.bufferWeights[i];
+		}
+		return count;
+	}
+
+	void add(double value) {
+		add(value, 1);
+	}
+
+	/**
+	 * Adds the centroids of the given digest to this one.
+	 *
+	 * @param other the digest to add.
+	 */
+	void add(TDigestState other) {
+		other.compress();
+		for (int i = 0; i < other.centroids; i++) {
+			add(other.means[i], other.weights[i]);
+		}
+		this.min = Math.min(this.min, other.min);
+		this.max = Math.max(this.max, other.max);
+	}
+
+	private void add(double mean, long weight) {
+		if (this.buffered == this.bufferMeans.length) {
+			compress();
+		}
+
+		this.bufferMeans[this.buffered] = mean;
+		this.bufferWeights[this.buffered] = weight;
+		this.buffered++;
+
+		this.min = Math.min(this.min, mean);
+		this.max = Math.max(this.max, mean);
+	}
+
+	/**
+	 * Returns the estimated value at the given quantile.
+	 *
+	 * @param q the quantile in the range [0, 1].
+	 * @return the estimated value or {@link Double#NaN} if no value was added yet.
+	 */
+	double quantile(double q) {
+		compress();
+		if (this.centroids == 0) {
+			return Double.NaN;
+		}
+		if (this.centroids == 1) {
+			return this.means[0];
+		}
+
+		double index = q * this.totalWeight;
+
+		// left of the first centroid's center: interpolate from the minimum
+		double firstHalf = this.weights[0] / 2.0;
+		if (index < firstHalf) {
+			return this.min + (this.means[0] - this.min) * index / firstHalf;
+		}
+
+		// right of the last centroid's center: interpolate to the maximum
+		int last = this.centroids - 1;
+		double lastHalf = this.weights[last] / 2.0;
+		if (index > this.totalWeight - lastHalf) {
+			return this.max - (this.max - this.means[last]) * (this.totalWeight - index) / lastHalf;
+		}
+
+		// between the centers of two neighbouring centroids
+		double center = firstHalf;
+		for (int i = 0; i < last; i++) {
+			double distance = (this.weights[i] + this.weights[i + 1]) / 2.0;
+			if (index <= center + distance) {
+				double weight = (index - center) / distance;
+				return this.means[i] + weight * (this.means[i + 1] - this.means[i]);
+			}
+			center += distance;
+		}
+
+		return this.means[last];
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		compress();
+
+		output.writeDouble(this.min);
+		output.writeDouble(this.max);
+		output.writeDoubles(this.means, this.centroids);
+		for (int i = 0; i < this.centroids; i++) {
+			output.writeLong(this.weights[i]);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	// merging
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Merges the buffered values into the centroids.
+	 */
+	private void compress() {
+		if (this.buffered == 0) {
+			return;
+		}
+
+		sort(this.bufferMeans, this.bufferWeights, this.buffered);
+
+		// merge the sorted centroids and the sorted buffer into one sorted sequence
+		int n = this.centroids + this.buffered;
+		double[] sortedMeans = new double[n];
+		long[] sortedWeights = new long[n];
+		long total = this.totalWeight;
+		for (int i = 0, c = 0, b = 0; i < n; i++) {
+			if (b == this.buffered || c < this.centroids && this.means[c] <= this.bufferMeans[b]) {
+				sortedMeans[i] = this.means[c];
+				sortedWeights[i] = this.weights[c++];
+			} else {
+				sortedMeans[i] = this.bufferMeans[b];
+				sortedWeights[i] = this.bufferWeights[b++];
+				total += sortedWeights[i];
+			}
+		}
+
+		// combine neighbours while the combined centroid spans at most one unit of k
+		this.centroids = 0;
+		this.buffered = 0;
+		this.totalWeight = total;
+
+		double mean = sortedMeans[0];
+		long weight = sortedWeights[0];
+		long weightSoFar = 0;
+		double weightLimit = total * limit(0.0);
+		for (int i = 1; i < n; i++) {
+			if (weightSoFar + weight + sortedWeights[i] <= weightLimit) {
+				weight += sortedWeights[i];
+				mean += (sortedMeans[i] - mean) * sortedWeights[i] / weight;
+			} else {
+				appendCentroid(mean, weight);
+				weightSoFar += weight;
+				weightLimit = total * limit((double) weightSoFar / total);
+				mean = sortedMeans[i];
+				weight = sortedWeights[i];
+			}
+		}
+		appendCentroid(mean, weight);
+	}
+
+	/**
+	 * Returns the quantile one unit of k right of the given quantile.
+	 */
+	private double limit(double q) {
+		double normalizer = this.compression / (2 * Math.PI);
+		double k = normalizer * Math.asin(2 * q - 1) + 1;
+		if (k >= normalizer * Math.PI / 2) {
+			return 1.0;
+		}
+		return (Math.sin(k / normalizer) + 1) / 2;
+	}
+
+	private void appendCentroid(double mean, long weight) {
+		ensureCapacity(this.centroids + 1);
+		this.means[this.centroids] = mean;
+		this.weights[this.centroids] = weight;
+		this.centroids++;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > this.means.length) {
+			int newCapacity = Math.max(capacity, this.means.length * 2);
+			this.means = Arrays.copyOf(this.means, newCapacity);
+			this.weights = Arrays.copyOf(this.weights, newCapacity);
+		}
+	}
+
+	/**
+	 * Sorts the first n means ascending and keeps the weights at their means.
+	 */
+	private static void sort(double[] means, long[] weights, int n) {
+		quickSort(means, weights, 0, n - 1);
+	}
+
+	private static void quickSort(double[] means, long[] weights, int from, int to) {
+		while (to - from > 16) {
+			double pivot = means[(from + to) >>> 1];
+			int i = from;
+			int j = to;
+			while (i <= j) {
+				while (means[i] < pivot) {
+					i++;
+				}
+				while (means[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(means, weights, i++, j--);
+				}
+			}
+
+			// recurse into the smaller part to bound the stack depth
+			if (j - from < to - i) {
+				quickSort(means, weights, from, j);
+				from = i;
+			} else {
+				quickSort(means, weights, i, to);
+				to = j;
+			}
+		}
+
+		for (int i = from + 1; i <= to; i++) {
+			for (int j = i; j > from && means[j - 1] > means[j]; j--) {
+				swap(means, weights, j - 1, j);
+			}
+		}
+	}
+
+	private static void swap(double[] means, long[] weights, int i, int j) {
+		double mean = means[i];
+		means[i] = means[j];
+		means[j] = mean;
+
+		long weight = weights[i];
+		weights[i] = weights[j];
+		weights[j] = weight;
+	}
+}
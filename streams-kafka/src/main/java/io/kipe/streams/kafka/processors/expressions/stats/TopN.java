@@ -0,0 +1,125 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import java.util.List;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.processors.TypedStatsExpression;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * The TopN class finds the n largest or smallest values of a specified field.
+ * <p>
+ * The fields for this statistical expression are as follows:
+ * <pre>
+ * | field | internal | type            | description                                                      |
+ * |-------|----------|-----------------|------------------------------------------------------------------|
+ * | topN  | no       | list of doubles | the n largest (or smallest) values, the largest (smallest) first |
+ * </pre>
+ * <p>
+ * The result is computed from a binary heap holding at most n values, so the state of a group stays bounded however
+ * many records it sees. Equal values are reported as often as they occur. Records without a value at the measured
+ * field or with a {@code NaN} value are ignored.
+ */
+public class TopN extends TypedStatsExpression<BoundedHeapState> {
+    public static final String DEFAULT_FIELD = "topN";
+
+    public enum TopNOrder {
+        LARGEST, SMALLEST
+    }
+
+    /**
+     * Returns a new TopN instance for the n largest values of the specified field.
+     *
+     * @param fieldNameToMeasure the field to find the largest values of
+     * @param n                  the number of values to report
+     * @return a new TopN instance for the given field
+     */
+    public static TopN topN(String fieldNameToMeasure, int n) {
+        return topN(fieldNameToMeasure, n, TopNOrder.LARGEST);
+    }
+
+    /**
+     * Returns a new TopN instance for the n largest or smallest values of the specified field.
+     *
+     * @param fieldNameToMeasure the field to find the top values of
+     * @param n                  the number of values to report
+     * @param order              whether to report the largest or the smallest values
+     * @return a new TopN instance for the given field
+     */
+    public static TopN topN(String fieldNameToMeasure, int n, TopNOrder order) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive but was " + n);
+        }
+        return new TopN(fieldNameToMeasure, n, order);
+    }
+
+    private final FieldRef fieldToMeasure;
+    private final int n;
+    private final boolean largest;
+
+    /**
+     * Creates a TopN for the specified field.
+     */
+    private TopN(String fieldNameToMeasure, int n, TopNOrder order) {
+        super(DEFAULT_FIELD);
+        this.fieldToMeasure = FieldRef.of(fieldNameToMeasure);
+        this.n = n;
+        this.largest = order == TopNOrder.LARGEST;
+    }
+
+    @Override
+    protected BoundedHeapState createState() {
+        return new BoundedHeapState(this.n, this.largest);
+    }
+
+    @Override
+    protected Object sharedStateKey() {
+        return List.of(BoundedHeapState.class, this.fieldToMeasure, this.n, this.largest);
+    }
+
+    @Override
+    protected BoundedHeapState readState(BinaryInput input) {
+        return BoundedHeapState.read(input, this.n, this.largest);
+    }
+
+    @Override
+    protected void update(GenericRecord value, BoundedHeapState state) {
+        if (!value.contains(this.fieldToMeasure)) {
+            return;
+        }
+
+        double fieldValue = value.getDoubleValue(this.fieldToMeasure);
+        if (!Double.isNaN(fieldValue)) {
+            state.add(fieldValue);
+        }
+    }
+
+    @Override
+    protected void merge(BoundedHeapState state, BoundedHeapState other) {
+        state.add(other);
+    }
+
+    @Override
+    protected Object finish(BoundedHeapState state) {
+        List<Double> top = state.values();
+        return top.isEmpty() ? null : top;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.factories.BinaryInput;
+import io.kipe.streams.kafka.factories.BinaryOutput;
+import io.kipe.streams.kafka.processors.StatsState;
+
+/**
+ * A single retained value of a field, {@code null} until one was seen. Used by {@link Min}, {@link Max}, {@link First}
+ * and {@link Last}.
+ */
+class ValueState implements StatsState {
+
+	Object value;
+
+	static ValueState read(BinaryInput input) {
+		ValueState state = new ValueState();
+		state.value = input.readValue();
+		return state;
+	}
+
+	@Override
+	public void write(BinaryOutput output) {
+		output.writeValue(this.value);
+	}
+}
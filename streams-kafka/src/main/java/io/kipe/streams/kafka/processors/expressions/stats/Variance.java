@@ -17,7 +17,6 @@
  */
 package io.kipe.streams.kafka.processors.expressions.stats;
 
-import io.kipe.streams.kafka.processors.StatsExpression;
 import org.apache.kafka.streams.errors.StreamsException;
 
 /**
@@ -29,12 +28,13 @@ import org.apache.kafka.streams.errors.StreamsException;
  * | field       | internal | type   | description                                          |
  * |-------------|----------|--------|------------------------------------------------------|
  * | var or varp | no       | double | the variance of values at the measured value field   |
- * | count       | yes      | long   | the number of values processed                       |
- * | mean        | yes      | double | the running mean of the values                       |
- * | ssd         | yes      | double | the running sum of squared differences from the mean |
  * </pre>
+ * <p>
+ * The result is computed from a state of the number of values processed, their running mean and the running sum of
+ * squared differences from the mean, which is shared with the other moment based expressions (sum, avg, var,
+ * stdev) on the same field.
  */
-public class Variance extends StatsExpression {
+public class Variance extends MomentsExpression {
     public static final String DEFAULT_SAMPLE_VARIANCE_FIELD = "var";
     public static final String DEFAULT_POPULATION_VARIANCE_FIELD = "varp";
 
@@ -74,35 +74,23 @@ public class Variance extends StatsExpression {
         return var(fieldNameToVariance, VarianceType.POPULATION);
     }
 
+    private final VarianceType varianceType;
+
     /**
-     * Initializes the statsFunction to calculate the variance for the specified field.
+     * Creates a Variance for the specified field.
      */
     private Variance(String fieldNameToVariance, VarianceType varianceType, String defaultField) {
-        super(defaultField);
-        this.statsFunction = (groupKey, value, aggregate) -> {
-            String fieldNameCount = createInternalFieldName("count");
-            String fieldNameMean = createInternalFieldName("mean");
-            String fieldNameSsd = createInternalFieldName("ssd");
-
-            Double fieldValue = value.getDouble(fieldNameToVariance);
-
-            if (fieldValue == null) {
-                return aggregate.getDouble(this.fieldName);
-            }
-
-            double previousMean = aggregate.get(fieldNameMean, () -> 0.0);
-            long previousCount = aggregate.get(fieldNameCount, () -> 0L);
-            previousCount += 1;
-            double updatedMean = previousMean + (fieldValue - previousMean) / previousCount;
-            double previousSsd = aggregate.get(fieldNameSsd, () -> 0.0);
-            double updatedSsd = previousSsd + (fieldValue - previousMean) * (fieldValue - updatedMean);
+        super(defaultField, fieldNameToVariance, true);
+        this.varianceType = varianceType;
+    }
 
-            aggregate.set(fieldNameCount, previousCount);
-            aggregate.set(fieldNameMean, updatedMean);
-            aggregate.set(fieldNameSsd, updatedSsd);
+    @Override
+    protected Object finish(MomentsState state) {
+        if (state.count == 0) {
+            return null;
+        }
 
-            double variance = updatedSsd / (varianceType.equals(VarianceType.POPULATION) ? previousCount : previousCount - 1);
-            return previousCount <= 1 ? 0.0 : variance;
-        };
+        double variance = state.variance(this.varianceType == VarianceType.POPULATION);
+        return variance;
     }
 }
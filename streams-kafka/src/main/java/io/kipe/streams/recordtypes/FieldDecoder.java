@@ -0,0 +1,52 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.recordtypes;
+
+/**
+ * The source of a lazily decoded {@link GenericRecord}.
+ * <p>
+ * A FieldDecoder indexes the fields of an encoded record without decoding their values.
+ * {@link GenericRecord#lazy(FieldDecoder)} creates a record from that index and decodes each field by
+ * {@link #decode(int)} the first time it is read. Implementations must be immutable, as the decoder is shared by
+ * {@link GenericRecord#copy() copies} of the record.
+ */
+public interface FieldDecoder {
+
+	/**
+	 * Returns the number of encoded fields.
+	 *
+	 * @return the number of fields.
+	 */
+	int size();
+
+	/**
+	 * Returns the name of the field at the given index. Field names must be unique.
+	 *
+	 * @param index the field's index.
+	 * @return the field's name.
+	 */
+	String fieldName(int index);
+
+	/**
+	 * Decodes the value of the field at the given index. Each call returns a newly decoded value.
+	 *
+	 * @param index the field's index.
+	 * @return the decoded value, never {@code null}.
+	 */
+	Object decode(int index);
+}
@@ -0,0 +1,108 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.recordtypes;
+
+import java.util.Objects;
+
+/**
+ * A precompiled handle to a {@link GenericRecord} field.
+ * <p>
+ * FieldRefs are meant to be created once, e.g. when a topology gets assembled, and used for all records. Accessing a
+ * field by a FieldRef skips the field name lookup as long as the records share the same {@link FieldSchema}: each
+ * FieldRef caches the slot of the last schema it was resolved against (a monomorphic inline cache). For records of a
+ * different schema the slot is looked up and cached again.
+ * <p>
+ * FieldRefs are thread-safe.
+ */
+public final class FieldRef {
+
+	/**
+	 * Creates a FieldRef for the given field.
+	 *
+	 * @param fieldName the field's name.
+	 * @return a new FieldRef.
+	 */
+	public static FieldRef of(String fieldName) {
+		return new FieldRef(fieldName);
+	}
+
+	private final String fieldName;
+	private volatile Resolution resolution;
+
+	private FieldRef(String fieldName) {
+		this.fieldName = Objects.requireNonNull(fieldName, "fieldName");
+	}
+
+	/**
+	 * Returns the referenced field's name.
+	 *
+	 * @return the field's name.
+	 */
+	public String fieldName() {
+		return this.fieldName;
+	}
+
+	/**
+	 * Returns the slot of the referenced field in the given schema.
+	 *
+	 * @param schema the schema to resolve the slot in.
+	 * @return the slot or {@code -1} if the schema doesn't contain the field.
+	 */
+	int slotIn(FieldSchema schema) {
+		Resolution r = this.resolution;
+		if (r != null && r.schema == schema) {
+			return r.slot;
+		}
+		
+		int slot = schema.slotOf(this.fieldName);
+		this.resolution = new Resolution(schema, slot);
+		return slot;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o == this || (o instanceof FieldRef && this.fieldName.equals(((FieldRef) o).fieldName));
+	}
+
+	@Override
+	public int hashCode() {
+		return this.fieldName.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "FieldRef(" + this.fieldName + ")";
+	}
+
+	// ------------------------------------------------------------------------
+	// Resolution
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An immutable pair of schema and slot so that both are published together.
+	 */
+	private static final class Resolution {
+		private final FieldSchema schema;
+		private final int slot;
+
+		Resolution(FieldSchema schema, int slot) {
+			this.schema = schema;
+			this.slot = slot;
+		}
+	}
+}
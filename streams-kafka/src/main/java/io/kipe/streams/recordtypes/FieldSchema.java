@@ -0,0 +1,125 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.recordtypes;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, interned layout of {@link GenericRecord} fields.
+ * <p>
+ * A FieldSchema maps field names to slot indexes. {@link GenericRecord}s with the same fields (added in the same
+ * order) share the same FieldSchema instance and only hold their values in an {@code Object[]} indexed by these slots.
+ * <p>
+ * Schemas form a transition tree starting at {@link #EMPTY}: adding a field to a record moves it to the wider schema
+ * returned by {@link #withField(String)}, which is created once and cached at the narrower schema. The number of cached
+ * transitions per schema is limited to protect against records with unbounded, dynamic field names. Schemas created
+ * beyond that limit, and the schemas extending them, are still correct but not shared.
+ */
+final class FieldSchema {
+
+	static final int MAX_TRANSITIONS = 256;
+
+	static final FieldSchema EMPTY = new FieldSchema(new String[0], true);
+
+	private final String[] fieldNames;
+	private final boolean interned;
+	private final Map<String, Integer> slots;
+	private final Map<String, FieldSchema> transitions = new ConcurrentHashMap<>();
+
+	private FieldSchema(String[] fieldNames, boolean interned) {
+		this.fieldNames = fieldNames;
+		this.interned = interned;
+		this.slots = new HashMap<>(Math.max(4, fieldNames.length * 2));
+		for (int i = 0; i < fieldNames.length; i++) {
+			this.slots.put(fieldNames[i], i);
+		}
+	}
+
+	/**
+	 * Returns the number of fields (slots) of this schema.
+	 *
+	 * @return the number of slots.
+	 */
+	int size() {
+		return this.fieldNames.length;
+	}
+
+	/**
+	 * Returns whether this schema is the only one of its fields, i.e. it is reachable from {@link #EMPTY} by cached
+	 * transitions only.
+	 *
+	 * @return {@code true} if this schema is interned.
+	 */
+	boolean isInterned() {
+		return this.interned;
+	}
+
+	/**
+	 * Returns the slot of the given field.
+	 *
+	 * @param fieldName the field's name.
+	 * @return the slot index or {@code -1} if this schema doesn't contain the field.
+	 */
+	int slotOf(String fieldName) {
+		Integer slot = this.slots.get(fieldName);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Returns the name of the field at the given slot.
+	 *
+	 * @param slot the slot index.
+	 * @return the field's name.
+	 */
+	String fieldName(int slot) {
+		return this.fieldNames[slot];
+	}
+
+	/**
+	 * Returns the schema extending this schema by the given field. The new field gets the slot {@link #size()}.
+	 *
+	 * @param fieldName the field to add.
+	 * @return the interned wider schema.
+	 */
+	FieldSchema withField(String fieldName) {
+		FieldSchema next = this.transitions.get(fieldName);
+		if (next != null) {
+			return next;
+		}
+
+		String[] nextFieldNames = Arrays.copyOf(this.fieldNames, this.fieldNames.length + 1);
+		nextFieldNames[this.fieldNames.length] = fieldName;
+		boolean intern = this.interned && this.transitions.size() < MAX_TRANSITIONS;
+		next = new FieldSchema(nextFieldNames, intern);
+
+		if (!intern) {
+			return next;
+		}
+
+		FieldSchema interned = this.transitions.putIfAbsent(fieldName, next);
+		return interned == null ? next : interned;
+	}
+
+	@Override
+	public String toString() {
+		return "FieldSchema" + Arrays.toString(this.fieldNames);
+	}
+}
@@ -17,26 +17,62 @@
  */
 package io.kipe.streams.recordtypes;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
-import lombok.EqualsAndHashCode;
-import lombok.NoArgsConstructor;
-import lombok.ToString;
-
 /**
  * A record of dynamic fields.
+ * <p>
+ * Records don't hold their own field map. Instead, the field names are kept in an interned {@link FieldSchema} which
+ * is shared by all records with the same fields, and the record itself only holds the field values in an array
+ * indexed by the schema's slots. Adding a new field migrates the record to the next wider schema.
+ * <p>
+ * A field is present if its slot holds a non-null value.
+ * <p>
+ * Numeric fields set by {@link #setLong(String, long)} or {@link #setDouble(String, double)} are stored unboxed in a
+ * parallel {@code long[]} (doubles as their raw long bits), tagged by a marker in the value slot. They can be read
+ * without boxing by {@link #getLong(String)} and {@link #getDoubleValue(String)}. All other accessors see them as
+ * {@link Long} or {@link Double} values.
+ * <p>
+ * Records created by {@link #lazy(FieldDecoder)} decode their fields on first access. As long as such a record is
+ * unmodified, {@link #unmodifiedSource()} returns its decoder so that serializers can write the original bytes.
+ * <p>
+ * {@link #fork()} creates copy-on-write records which share the value slots with their original until either gets
+ * modified.
  */
-@NoArgsConstructor
-@EqualsAndHashCode
-@ToString
+@JsonAutoDetect(
+		fieldVisibility = Visibility.NONE,
+		getterVisibility = Visibility.NONE,
+		isGetterVisibility = Visibility.NONE,
+		setterVisibility = Visibility.NONE)
 public class GenericRecord {
 
+	private static final Object[] NO_VALUES = {};
+	private static final int MIN_CAPACITY = 4;
+
+	/**
+	 * Markers for values stored unboxed in {@link GenericRecord#primitives}.
+	 */
+	private enum Primitive {
+		LONG,
+		DOUBLE
+	}
+
+	/**
+	 * Marker for values not yet decoded from {@link GenericRecord#decoder}.
+	 */
+	private static final Object UNDECODED = new Object();
+
 	/**
 	 * Creates a new instance of the {@link GenericRecord} class.
 	 *
@@ -45,9 +81,47 @@ public class GenericRecord {
 	public static GenericRecord create() {
 		return new GenericRecord();
 	}
+
+	/**
+	 * Creates a record whose fields get decoded from the given decoder on first access.
+	 *
+	 * @param decoder the decoder of the encoded fields.
+	 * @return a new, unmodified record.
+	 * @throws IllegalArgumentException if the decoder contains duplicate field names.
+	 */
+	public static GenericRecord lazy(FieldDecoder decoder) {
+		Objects.requireNonNull(decoder, "decoder");
+		
+		GenericRecord record = new GenericRecord();
+		int size = decoder.size();
+		record.values = new Object[Math.max(MIN_CAPACITY, size)];
+		for (int index = 0; index < size; index++) {
+			String fieldName = decoder.fieldName(index);
+			if (record.schema.slotOf(fieldName) >= 0) {
+				throw new IllegalArgumentException("duplicate field " + fieldName);
+			}
+			record.schema = record.schema.withField(fieldName);
+			record.values[index] = UNDECODED;
+		}
+		record.decoder = decoder;
+		record.unmodified = true;
+		
+		return record;
+	}
 	
-	@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "className")
-	private Map<String, Object> fields = new HashMap<>();
+	private FieldSchema schema = FieldSchema.EMPTY;
+	private Object[] values = NO_VALUES;
+	private long[] primitives;
+	private FieldDecoder decoder;
+	private boolean unmodified;
+	private boolean shared;
+
+	/**
+	 * Creates a new, empty instance.
+	 */
+	public GenericRecord() {
+		// nothing to do
+	}
 	
 	/**
 	 * Returns a shallow copy.
@@ -57,9 +131,41 @@ public class GenericRecord {
 	 */
 	public GenericRecord copy() {
 		GenericRecord copy = new GenericRecord();
-		copy.fields.putAll(this.fields);
+		copy.schema = this.schema;
+		copy.values = this.values.length == 0 ? NO_VALUES : this.values.clone();
+		copy.primitives = this.primitives == null ? null : this.primitives.clone();
+		copy.decoder = this.decoder;
+		copy.unmodified = this.unmodified;
 		
-		return this;
+		return copy;
+	}
+
+	/**
+	 * Returns a copy-on-write fork of this record.
+	 * <p>
+	 * The fork and this record share their value slots until one of them
+	 * gets modified, which then copies the slots before its first change.
+	 * Forking is therefore cheap for records of which only some get
+	 * modified, e.g. when a stream fans out to several branches. Like
+	 * {@link #copy()}, the fork is shallow: the field values themselves
+	 * are shared and must not be modified in place.
+	 * <p>
+	 * Forks are not thread-safe, they are meant to be used by the same
+	 * stream thread as their original.
+	 *
+	 * @return the fork.
+	 */
+	public GenericRecord fork() {
+		GenericRecord fork = new GenericRecord();
+		fork.schema = this.schema;
+		fork.values = this.values;
+		fork.primitives = this.primitives;
+		fork.decoder = this.decoder;
+		fork.unmodified = this.unmodified;
+		fork.shared = true;
+		this.shared = true;
+		
+		return fork;
 	}
 
 	/**
@@ -72,7 +178,20 @@ public class GenericRecord {
 	public GenericRecord withNewFieldsFrom(GenericRecord other) {
 		Objects.requireNonNull(other, "other");
 		
-		other.fields.forEach(this.fields::putIfAbsent);
+		for (int slot = 0; slot < other.schema.size(); slot++) {
+			Object value = other.values[slot];
+			if (value != null) {
+				String fieldName = other.schema.fieldName(slot);
+				int target = this.schema.slotOf(fieldName);
+				if (target < 0 || this.values[target] == null) {
+					if (value instanceof Primitive) {
+						setPrimitiveAt(target, fieldName, (Primitive) value, other.primitives[slot]);
+					} else {
+						setAt(target, fieldName, other.valueAt(slot));
+					}
+				}
+			}
+		}
 		
 		return this;
 	}
@@ -97,8 +216,40 @@ public class GenericRecord {
 	 */
 	@SuppressWarnings("unchecked")
 	public <V> V get(String fieldName) {
-		Objects.requireNonNull(fieldName, "fieldName");
-		return (V)fields.get(fieldName);
+		return (V)getAt(slotOf(fieldName));
+	}
+
+	/**
+	 * Returns the value of the referenced field.
+	 *
+	 * @param fieldRef the field to return the value for.
+	 * @return the current field's value or {@code null} if there is no such field.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V get(FieldRef fieldRef) {
+		return (V)getAt(slotOf(fieldRef));
+	}
+
+	/**
+	 * Returns whether the given field is present.
+	 *
+	 * @param fieldName the field's name.
+	 * @return true if the field has a value.
+	 */
+	public boolean contains(String fieldName) {
+		int slot = slotOf(fieldName);
+		return slot >= 0 && this.values[slot] != null;
+	}
+
+	/**
+	 * Returns whether the referenced field is present.
+	 *
+	 * @param fieldRef the field.
+	 * @return true if the field has a value.
+	 */
+	public boolean contains(FieldRef fieldRef) {
+		int slot = slotOf(fieldRef);
+		return slot >= 0 && this.values[slot] != null;
 	}
 
     /**
@@ -109,13 +260,26 @@ public class GenericRecord {
      * @return the field value.
      * @throws NullPointerException if fieldName or initOnNull is null.
      */
-    @SuppressWarnings("unchecked")
     public <V> V get(String fieldName, Supplier<V> initOnNull) {
         Objects.requireNonNull(fieldName, "fieldName");
         Objects.requireNonNull(initOnNull, "initOnNull");
 
-        @SuppressWarnings("unchecked")
-        V value = (V) fields.get(fieldName);
+        V value = get(fieldName);
+        return value == null ? initOnNull.get() : value;
+    }
+
+    /**
+     * Retrieves the referenced field's value or initializes it using `initOnNull` if absent.
+     *
+     * @param fieldRef   the field.
+     * @param initOnNull the supplier for initializing the field.
+     * @return the field value.
+     * @throws NullPointerException if fieldRef or initOnNull is null.
+     */
+    public <V> V get(FieldRef fieldRef, Supplier<V> initOnNull) {
+        Objects.requireNonNull(initOnNull, "initOnNull");
+
+        V value = get(fieldRef);
         return value == null ? initOnNull.get() : value;
     }
 
@@ -130,13 +294,19 @@ public class GenericRecord {
 	 * @param value     the field's new value.
 	 */
 	public <V> void set(String fieldName, V value) {
-		Objects.requireNonNull(fieldName, "fieldName");
-		
-		if(value == null) {
-			remove(fieldName);
-		}
-		
-		this.fields.put(fieldName, value);
+		setAt(slotOf(fieldName), fieldName, value);
+	}
+
+	/**
+	 * Sets the referenced field. If the value is {@code null} the field will be removed.
+	 *
+	 * @param <V>      the field's new value type.
+	 * @param fieldRef the field to set.
+	 * @param value    the field's new value.
+	 * @see #set(String, Object)
+	 */
+	public <V> void set(FieldRef fieldRef, V value) {
+		setAt(slotOf(fieldRef), fieldRef.fieldName(), value);
 	}
 
 	/**
@@ -158,8 +328,204 @@ public class GenericRecord {
 	 * @param fieldName the field to be removed.
 	 */
 	public void remove(String fieldName) {
+		removeAt(slotOf(fieldName));
+	}
+
+	/**
+	 * Removes the referenced field.
+	 *
+	 * @param fieldRef the field to be removed.
+	 */
+	public void remove(FieldRef fieldRef) {
+		removeAt(slotOf(fieldRef));
+	}
+
+	/**
+	 * Performs the given action for each present field in the order the
+	 * fields were added.
+	 *
+	 * @param action the action to perform with the field's name and value.
+	 */
+	public void forEachField(BiConsumer<String, Object> action) {
+		Objects.requireNonNull(action, "action");
+
+		for (int slot = 0; slot < this.schema.size(); slot++) {
+			if (this.values[slot] != null) {
+				action.accept(this.schema.fieldName(slot), valueAt(slot));
+			}
+		}
+	}
+
+	/**
+	 * Returns the interned layout of this record's present fields. Records
+	 * with the same present fields, added in the same order, return the same
+	 * instance, so serializers can cache data derived from the field names,
+	 * e.g. their fingerprint, by the identity of the layout.
+	 *
+	 * @return the layout or {@code null} if the present fields have no
+	 *         interned layout, e.g. after fields were removed.
+	 */
+	public Object fieldLayout() {
+		if (!this.schema.isInterned()) {
+			return null;
+		}
+		for (int slot = 0; slot < this.schema.size(); slot++) {
+			if (this.values[slot] == null) {
+				return null;
+			}
+		}
+		return this.schema;
+	}
+
+	// ------------------------------------------------------------------------
+	// slot access
+	// ------------------------------------------------------------------------
+
+	private int slotOf(String fieldName) {
 		Objects.requireNonNull(fieldName, "fieldName");
-		this.fields.remove(fieldName);
+		
+		return this.schema.slotOf(fieldName);
+	}
+
+	private int slotOf(FieldRef fieldRef) {
+		Objects.requireNonNull(fieldRef, "fieldRef");
+		
+		return fieldRef.slotIn(this.schema);
+	}
+
+	private Object getAt(int slot) {
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	/**
+	 * Sets the value at the given slot, adding the field if the slot is
+	 * {@code -1}. A {@code null} value removes the field.
+	 */
+	private void setAt(int slot, String fieldName, Object value) {
+		if (value == null) {
+			removeAt(slot);
+			return;
+		}
+		
+		ensureOwned();
+		if (slot < 0) {
+			slot = addField(fieldName);
+		}
+		
+		this.values[slot] = value;
+		this.unmodified = false;
+	}
+
+	private void removeAt(int slot) {
+		if (slot >= 0 && this.values[slot] != null) {
+			ensureOwned();
+			this.values[slot] = null;
+			this.unmodified = false;
+		}
+	}
+
+	/**
+	 * Returns the value at the given slot, boxing primitive values.
+	 *
+	 * @param slot the slot.
+	 * @return the slot's value or {@code null}.
+	 */
+	private Object valueAt(int slot) {
+		Object value = this.values[slot];
+		if (value == UNDECODED) {
+			return decode(slot);
+		}
+		if (value == Primitive.LONG) {
+			return this.primitives[slot];
+		}
+		if (value == Primitive.DOUBLE) {
+			return Double.longBitsToDouble(this.primitives[slot]);
+		}
+		
+		return value;
+	}
+
+	/**
+	 * Decodes the value at the given slot from the {@link #decoder}. Decoding
+	 * a value which might get modified by the caller, like a collection, ends
+	 * the unmodified state.
+	 *
+	 * @param slot the slot to decode.
+	 * @return the decoded value.
+	 */
+	private Object decode(int slot) {
+		Object value = this.decoder.decode(slot);
+		if (!isImmutable(value)) {
+			// forks must not see the same mutable instance
+			ensureOwned();
+			this.unmodified = false;
+		}
+		this.values[slot] = value;
+		
+		return value;
+	}
+
+	/**
+	 * Copies the value slots shared with a {@link #fork()} before they get
+	 * changed.
+	 */
+	private void ensureOwned() {
+		if (this.shared) {
+			this.values = this.values.clone();
+			this.primitives = this.primitives == null ? null : this.primitives.clone();
+			this.shared = false;
+		}
+	}
+
+	private static boolean isImmutable(Object value) {
+		return value instanceof String 
+				|| value instanceof Number 
+				|| value instanceof Boolean
+				|| value instanceof Character;
+	}
+
+	/**
+	 * Returns the decoder of a record created by {@link #lazy(FieldDecoder)}
+	 * as long as the record wasn't modified. Serializers can use the decoder's
+	 * source instead of encoding the fields again.
+	 *
+	 * @return the decoder of an unmodified record or {@code null}.
+	 */
+	public FieldDecoder unmodifiedSource() {
+		return this.unmodified ? this.decoder : null;
+	}
+
+	/**
+	 * Returns the decoder of a record created by {@link #lazy(FieldDecoder)},
+	 * regardless of whether the record was modified. Copies share the decoder
+	 * of their original.
+	 *
+	 * @return the decoder or {@code null} if the record wasn't created lazily.
+	 */
+	public FieldDecoder source() {
+		return this.decoder;
+	}
+
+	/**
+	 * Migrates this record to the schema extended by the given field and
+	 * ensures the values array can hold the new slot.
+	 *
+	 * @param fieldName the new field.
+	 * @return the new field's slot.
+	 */
+	private int addField(String fieldName) {
+		ensureOwned();
+		this.schema = this.schema.withField(fieldName);
+		
+		int slot = this.schema.size() - 1;
+		if (slot >= this.values.length) {
+			this.values = Arrays.copyOf(this.values, Math.max(MIN_CAPACITY, this.values.length * 2));
+			if (this.primitives != null) {
+				this.primitives = Arrays.copyOf(this.primitives, this.values.length);
+			}
+		}
+		
+		return slot;
 	}
 	
 	// ------------------------------------------------------------------------
@@ -199,6 +565,39 @@ public class GenericRecord {
 		return n == null? null : n.doubleValue();
 	}
 
+	/**
+	 * Retrieves the value of the referenced field as a String.
+	 *
+	 * @param fieldRef the field to retrieve the value for.
+	 * @return the value of the field as a String, or null if the field is not present.
+	 */
+	public String getString(FieldRef fieldRef) {
+		Object o = get(fieldRef);
+		return o == null? null : o.toString();
+	}
+
+	/**
+	 * Retrieves the value of the referenced field as a Number.
+	 *
+	 * @param fieldRef the field to retrieve the value for.
+	 * @return the value of the field as a Number, or null if the field is not present.
+	 */
+	public Number getNumber(FieldRef fieldRef) {
+		Object o = get(fieldRef);
+		return o == null? null : (Number)o;
+	}
+
+	/**
+	 * Retrieves the value of the referenced field as a Double.
+	 *
+	 * @param fieldRef the field to retrieve the value for.
+	 * @return the value of the field as a Double, or null if the field is not present.
+	 */
+	public Double getDouble(FieldRef fieldRef) {
+		Number n = getNumber(fieldRef);
+		return n == null? null : n.doubleValue();
+	}
+
 	/**
 	 * Retrieves the value of the specified field as a Map.
 	 *
@@ -221,4 +620,280 @@ public class GenericRecord {
 		return (Set<T>) get(fieldName);
 	}
 
+	// ------------------------------------------------------------------------
+	// primitive accessors
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Retrieves the value of the specified field as a long without boxing.
+	 *
+	 * @param fieldName the name of the field to retrieve the value for.
+	 * @return the value of the field as long, or 0 if the field is not present.
+	 * @throws ClassCastException if the field's value is not a Number.
+	 */
+	public long getLong(String fieldName) {
+		return longAt(slotOf(fieldName), 0L);
+	}
+
+	/**
+	 * Retrieves the value of the specified field as a long without boxing.
+	 *
+	 * @param fieldName    the name of the field to retrieve the value for.
+	 * @param defaultValue the value to return if the field is not present.
+	 * @return the value of the field as long, or the defaultValue if the field is not present.
+	 * @throws ClassCastException if the field's value is not a Number.
+	 */
+	public long getLong(String fieldName, long defaultValue) {
+		return longAt(slotOf(fieldName), defaultValue);
+	}
+
+	/**
+	 * Retrieves the value of the referenced field as a long without boxing.
+	 *
+	 * @param fieldRef the field to retrieve the value for.
+	 * @return the value of the field as long, or 0 if the field is not present.
+	 * @throws ClassCastException if the field's value is not a Number.
+	 */
+	public long getLong(FieldRef fieldRef) {
+		return longAt(slotOf(fieldRef), 0L);
+	}
+
+	/**
+	 * Retrieves the value of the referenced field as a long without boxing.
+	 *
+	 * @param fieldRef     the field to retrieve the value for.
+	 * @param defaultValue the value to return if the field is not present.
+	 * @return the value of the field as long, or the defaultValue if the field is not present.
+	 * @throws ClassCastException if the field's value is not a Number.
+	 */
+	public long getLong(FieldRef fieldRef, long defaultValue) {
+		return longAt(slotOf(fieldRef), defaultValue);
+	}
+
+	/**
+	 * Retrieves the value of the specified field as a double without boxing.
+	 *
+	 * @param fieldName the name of the field to retrieve the value for.
+	 * @return the value of the field as double, or 0.0 if the field is not present.
+	 * @throws ClassCastException if the field's value is not a Number.
+	 */
+	public double getDoubleValue(String fieldName) {
+		return doubleAt(slotOf(fieldName), 0.0);
+	}
+
+	/**
+	 * Retrieves the value of the specified field as a double without boxing.
+	 *
+	 * @param fieldName    the name of the field to retrieve the value for.
+	 * @param defaultValue the value to return if the field is not present.
+	 * @return the value of the field as double, or the defaultValue if the field is not present.
+	 * @throws ClassCastException if the field's value is not a Number.
+	 */
+	public double getDoubleValue(String fieldName, double defaultValue) {
+		return doubleAt(slotOf(fieldName), defaultValue);
+	}
+
+	/**
+	 * Retrieves the value of the referenced field as a double without boxing.
+	 *
+	 * @param fieldRef the field to retrieve the value for.
+	 * @return the value of the field as double, or 0.0 if the field is not present.
+	 * @throws ClassCastException if the field's value is not a Number.
+	 */
+	public double getDoubleValue(FieldRef fieldRef) {
+		return doubleAt(slotOf(fieldRef), 0.0);
+	}
+
+	/**
+	 * Retrieves the value of the referenced field as a double without boxing.
+	 *
+	 * @param fieldRef     the field to retrieve the value for.
+	 * @param defaultValue the value to return if the field is not present.
+	 * @return the value of the field as double, or the defaultValue if the field is not present.
+	 * @throws ClassCastException if the field's value is not a Number.
+	 */
+	public double getDoubleValue(FieldRef fieldRef, double defaultValue) {
+		return doubleAt(slotOf(fieldRef), defaultValue);
+	}
+
+	/**
+	 * Sets a long field without boxing. The field reads as {@link Long} by {@link #get(String)}.
+	 *
+	 * @param fieldName the field to set.
+	 * @param value     the field's new value.
+	 */
+	public void setLong(String fieldName, long value) {
+		setPrimitiveAt(slotOf(fieldName), fieldName, Primitive.LONG, value);
+	}
+
+	/**
+	 * Sets the referenced long field without boxing.
+	 *
+	 * @param fieldRef the field to set.
+	 * @param value    the field's new value.
+	 * @see #setLong(String, long)
+	 */
+	public void setLong(FieldRef fieldRef, long value) {
+		setPrimitiveAt(slotOf(fieldRef), fieldRef.fieldName(), Primitive.LONG, value);
+	}
+
+	/**
+	 * Sets a double field without boxing. The field reads as {@link Double} by {@link #get(String)}.
+	 *
+	 * @param fieldName the field to set.
+	 * @param value     the field's new value.
+	 */
+	public void setDouble(String fieldName, double value) {
+		setPrimitiveAt(slotOf(fieldName), fieldName, Primitive.DOUBLE, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Sets the referenced double field without boxing.
+	 *
+	 * @param fieldRef the field to set.
+	 * @param value    the field's new value.
+	 * @see #setDouble(String, double)
+	 */
+	public void setDouble(FieldRef fieldRef, double value) {
+		setPrimitiveAt(slotOf(fieldRef), fieldRef.fieldName(), Primitive.DOUBLE, Double.doubleToRawLongBits(value));
+	}
+
+	private long longAt(int slot, long defaultValue) {
+		Object value = slot < 0 ? null : this.values[slot];
+		if (value == UNDECODED) {
+			value = decode(slot);
+		}
+		if (value == null) {
+			return defaultValue;
+		}
+		if (value == Primitive.LONG) {
+			return this.primitives[slot];
+		}
+		if (value == Primitive.DOUBLE) {
+			return (long) Double.longBitsToDouble(this.primitives[slot]);
+		}
+		
+		return ((Number) value).longValue();
+	}
+
+	private double doubleAt(int slot, double defaultValue) {
+		Object value = slot < 0 ? null : this.values[slot];
+		if (value == UNDECODED) {
+			value = decode(slot);
+		}
+		if (value == null) {
+			return defaultValue;
+		}
+		if (value == Primitive.DOUBLE) {
+			return Double.longBitsToDouble(this.primitives[slot]);
+		}
+		if (value == Primitive.LONG) {
+			return this.primitives[slot];
+		}
+		
+		return ((Number) value).doubleValue();
+	}
+
+	private void setPrimitiveAt(int slot, String fieldName, Primitive kind, long bits) {
+		ensureOwned();
+		if (slot < 0) {
+			slot = addField(fieldName);
+		}
+		if (this.primitives == null) {
+			this.primitives = new long[this.values.length];
+		}
+		
+		this.values[slot] = kind;
+		this.primitives[slot] = bits;
+		this.unmodified = false;
+	}
+
+	// ------------------------------------------------------------------------
+	// json and object methods
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the present fields as a new map in slot order. Used for the json
+	 * representation.
+	 *
+	 * @return the fields of this record.
+	 */
+	@JsonProperty("fields")
+	@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "className")
+	private Map<String, Object> getFields() {
+		Map<String, Object> fields = new LinkedHashMap<>();
+		forEachField(fields::put);
+		
+		return fields;
+	}
+
+	/**
+	 * Sets the given fields. Used for the json representation.
+	 *
+	 * @param fields the fields to set.
+	 */
+	@JsonProperty("fields")
+	@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "className")
+	private void setFields(Map<String, Object> fields) {
+		if (fields != null) {
+			fields.forEach(this::set);
+		}
+	}
+
+	/**
+	 * Returns the number of present fields.
+	 *
+	 * @return the number of present fields.
+	 */
+	private int countFields() {
+		int count = 0;
+		for (int slot = 0; slot < this.schema.size(); slot++) {
+			if (this.values[slot] != null) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof GenericRecord)) {
+			return false;
+		}
+		
+		GenericRecord other = (GenericRecord) o;
+		if (countFields() != other.countFields()) {
+			return false;
+		}
+		
+		for (int slot = 0; slot < this.schema.size(); slot++) {
+			if (this.values[slot] != null && !valueAt(slot).equals(other.get(this.schema.fieldName(slot)))) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		// same as Map.hashCode() of the present fields
+		int hash = 0;
+		for (int slot = 0; slot < this.schema.size(); slot++) {
+			if (this.values[slot] != null) {
+				hash += this.schema.fieldName(slot).hashCode() ^ valueAt(slot).hashCode();
+			}
+		}
+		
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return "GenericRecord(fields=" + getFields() + ")";
+	}
 }
@@ -0,0 +1,189 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.recordtypes;
+
+import java.util.Arrays;
+
+/**
+ * An immutable composite key of the values of one or more grouping fields, e.g. the group of a
+ * {@link io.kipe.streams.kafka.processors.StatsBuilder}.
+ * <p>
+ * The values are kept typed rather than concatenated to a string. They are normalized to the types of the binary
+ * key encoding of {@link io.kipe.streams.kafka.factories.BinarySerdeFactory#getGroupKeySerde()}: integral numbers to
+ * {@link Long}, floating point numbers to {@link Double}, while {@link String}s, {@link Boolean}s and {@code null} are
+ * kept as they are. Other values are keyed by their string representation.
+ * <p>
+ * GroupKeys are ordered field by field. Values of different types are ordered by type ({@code null}, booleans,
+ * integral numbers, floating point numbers, strings), strings by their Unicode code points. This is the same order
+ * as the unsigned byte order of their binary encoding.
+ */
+public final class GroupKey implements Comparable<GroupKey> {
+
+	/**
+	 * Creates a GroupKey of the given values.
+	 *
+	 * @param values the values of the grouping fields.
+	 * @return a new GroupKey.
+	 */
+	public static GroupKey of(Object... values) {
+		Object[] normalized = new Object[values.length];
+		for (int i = 0; i < values.length; i++) {
+			normalized[i] = normalize(values[i]);
+		}
+		return new GroupKey(normalized);
+	}
+
+	private final Object[] values;
+	/** the string form, created on first use */
+	private String string;
+
+	private GroupKey(Object[] values) {
+		this.values = values;
+	}
+
+	/**
+	 * Returns the number of values of this key.
+	 *
+	 * @return the number of values.
+	 */
+	public int size() {
+		return this.values.length;
+	}
+
+	/**
+	 * Returns the value at the given position.
+	 *
+	 * @param <V>   the value's type.
+	 * @param index the position of the value.
+	 * @return the normalized value.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V get(int index) {
+		return (V) this.values[index];
+	}
+
+	@Override
+	public int compareTo(GroupKey other) {
+		int size = Math.min(this.values.length, other.values.length);
+		for (int i = 0; i < size; i++) {
+			int c = compareValues(this.values[i], other.values[i]);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return Integer.compare(this.values.length, other.values.length);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o == this || (o instanceof GroupKey && Arrays.equals(this.values, ((GroupKey) o).values));
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.values);
+	}
+
+	/**
+	 * Returns the key in the form {@code {value_1}..{value_N}}.
+	 * <p>
+	 * The string form isn't unique: distinct keys whose values have the same string representation but different
+	 * types, e.g. {@code "1"} and {@code 1L}, have the same string form.
+	 */
+	@Override
+	public String toString() {
+		String s = this.string;
+		if (s == null) {
+			StringBuilder sb = new StringBuilder();
+			for (Object value : this.values) {
+				sb.append('{').append(value).append('}');
+			}
+			s = sb.toString();
+			this.string = s;
+		}
+		return s;
+	}
+
+	// ------------------------------------------------------------------------
+	// utils
+	// ------------------------------------------------------------------------
+
+	private static Object normalize(Object value) {
+		if (value == null || value instanceof String || value instanceof Boolean
+				|| value instanceof Long || value instanceof Double) {
+			return value;
+		}
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		}
+		if (value instanceof Float) {
+			// widened by its decimal form to keep the key's string form, e.g. 0.1f as 0.1
+			return Double.parseDouble(value.toString());
+		}
+		return value.toString();
+	}
+
+	private static int typeRank(Object value) {
+		if (value == null) {
+			return 0;
+		}
+		if (value instanceof Boolean) {
+			return 1;
+		}
+		if (value instanceof Long) {
+			return 2;
+		}
+		if (value instanceof Double) {
+			return 3;
+		}
+		return 4;
+	}
+
+	private static int compareValues(Object a, Object b) {
+		int c = Integer.compare(typeRank(a), typeRank(b));
+		if (c != 0 || a == null) {
+			return c;
+		}
+
+		if (a instanceof Boolean) {
+			return Boolean.compare((Boolean) a, (Boolean) b);
+		}
+		if (a instanceof Long) {
+			return Long.compare((Long) a, (Long) b);
+		}
+		if (a instanceof Double) {
+			return Double.compare((Double) a, (Double) b);
+		}
+		return compareCodePoints((String) a, (String) b);
+	}
+
+	private static int compareCodePoints(String a, String b) {
+		int i = 0;
+		int j = 0;
+		while (i < a.length() && j < b.length()) {
+			int ca = a.codePointAt(i);
+			int cb = b.codePointAt(j);
+			if (ca != cb) {
+				return Integer.compare(ca, cb);
+			}
+			i += Character.charCount(ca);
+			j += Character.charCount(cb);
+		}
+		return Boolean.compare(i < a.length(), j < b.length());
+	}
+}
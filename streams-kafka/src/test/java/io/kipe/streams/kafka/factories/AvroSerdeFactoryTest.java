@@ -0,0 +1,160 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Test class for the {@link GenericRecord} support of {@link AvroSerdeFactory}.
+ */
+class AvroSerdeFactoryTest {
+
+	private static final String TOPIC = "topic";
+	private static final Map<String, ?> SERDE_CONFIG = Map.of("schema.registry.url", "mock://avro-serde-factory-test");
+
+	private static final Schema ITEM_SCHEMA = SchemaBuilder.record("Item").fields()
+			.requiredString("id")
+			.endRecord();
+
+	private static final Schema SCHEMA = SchemaBuilder.record("Test").fields()
+			.requiredString("name")
+			.requiredLong("count")
+			.optionalDouble("amount")
+			.name("tags").type().array().items().stringType().noDefault()
+			.name("item").type(ITEM_SCHEMA).noDefault()
+			.endRecord();
+
+	@Test
+	void test_asGenericRecord__reads_avro_fields() {
+		GenericRecord r = AvroSerdeFactory.asGenericRecord(createAvroRecord());
+
+		assertEquals("test", r.get("name"));
+		assertEquals(3L, r.getLong("count"));
+		assertFalse(r.contains("amount"));
+		assertEquals(List.of("a", "b"), r.get("tags"));
+		assertEquals("i1", r.<GenericRecord>get("item").get("id"));
+	}
+
+	@Test
+	void test_asGenericRecord__writes_to_the_view_only() {
+		GenericData.Record avroRecord = createAvroRecord();
+		GenericRecord r = AvroSerdeFactory.asGenericRecord(avroRecord);
+
+		r.set("name", "changed");
+		r.set("new", 1);
+
+		assertEquals("changed", r.get("name"));
+		assertEquals(1, (Integer) r.get("new"));
+		assertEquals("test", avroRecord.get("name").toString());
+	}
+
+	@Test
+	void test_asGenericRecord__null() {
+		assertNull(AvroSerdeFactory.asGenericRecord(null));
+	}
+
+	@Test
+	void test_serde__round_trip_unmodified() {
+		Serde<GenericRecord> serde = AvroSerdeFactory.createGenericRecordSerde(SERDE_CONFIG, false);
+		GenericRecord r = AvroSerdeFactory.asGenericRecord(createAvroRecord());
+
+		GenericRecord deser = roundTrip(serde, r);
+
+		assertNotNull(deser.unmodifiedSource());
+		assertEquals(r, deser);
+	}
+
+	@Test
+	void test_serde__round_trip_modified() {
+		Serde<GenericRecord> serde = AvroSerdeFactory.createGenericRecordSerde(SERDE_CONFIG, false);
+		GenericRecord r = AvroSerdeFactory.asGenericRecord(createAvroRecord());
+		r.set("count", 7);
+		r.set("amount", 1.5);
+		r.set("unknown", "not written");
+
+		GenericRecord deser = roundTrip(serde, r);
+
+		assertEquals(7L, (Long) deser.get("count"));
+		assertEquals(1.5, deser.getDoubleValue("amount"));
+		assertEquals("test", deser.get("name"));
+		assertFalse(deser.contains("unknown"));
+	}
+
+	@Test
+	void test_serde__writer_schema() {
+		Serde<GenericRecord> serde = AvroSerdeFactory.createGenericRecordSerde(SERDE_CONFIG, false, ITEM_SCHEMA);
+		GenericRecord r = GenericRecord.create().with("id", "i2").with("other", 1);
+
+		GenericRecord deser = roundTrip(serde, r);
+
+		assertEquals(GenericRecord.create().with("id", "i2"), deser);
+	}
+
+	@Test
+	void test_serde__no_schema() {
+		Serde<GenericRecord> serde = AvroSerdeFactory.createGenericRecordSerde(SERDE_CONFIG, false);
+		GenericRecord r = GenericRecord.create().with("id", "i2");
+
+		assertThrows(SerializationException.class, () -> serde.serializer().serialize(TOPIC, r));
+	}
+
+	@Test
+	void test_serde__null() {
+		Serde<GenericRecord> serde = AvroSerdeFactory.createGenericRecordSerde(SERDE_CONFIG, false);
+
+		assertNull(serde.serializer().serialize(TOPIC, null));
+		assertNull(serde.deserializer().deserialize(TOPIC, null));
+	}
+
+	// ------------------------------------------------------------------------
+	// utils
+	// ------------------------------------------------------------------------
+
+	private static GenericData.Record createAvroRecord() {
+		GenericData.Record item = new GenericData.Record(ITEM_SCHEMA);
+		item.put("id", new Utf8("i1"));
+
+		GenericData.Record record = new GenericData.Record(SCHEMA);
+		record.put("name", new Utf8("test"));
+		record.put("count", 3L);
+		record.put("tags", new GenericData.Array<>(SCHEMA.getField("tags").schema(), List.of(new Utf8("a"), new Utf8("b"))));
+		record.put("item", item);
+		return record;
+	}
+
+	private static GenericRecord roundTrip(Serde<GenericRecord> serde, GenericRecord r) {
+		return serde.deserializer().deserialize(TOPIC, serde.serializer().serialize(TOPIC, r));
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.recordtypes.GenericRecord;
+
+/**
+ * Test class for {@link BinaryOutput} and {@link BinaryInput}.
+ */
+class BinaryOutputTest {
+
+	@Test
+	void test_write_read__round_trips_primitives() {
+		BinaryOutput output = new BinaryOutput();
+		output.writeByte(7);
+		output.writeBoolean(true);
+		output.writeVarInt(300);
+		output.writeLong(Long.MIN_VALUE);
+		output.writeLong(-1L);
+		output.writeDouble(-0.25);
+		output.writeString("häh");
+
+		BinaryInput input = new BinaryInput(output.toByteArray());
+		assertEquals(7, input.readByte());
+		assertTrue(input.readBoolean());
+		assertEquals(300, input.readVarInt());
+		assertEquals(Long.MIN_VALUE, input.readLong());
+		assertEquals(-1L, input.readLong());
+		assertEquals(-0.25, input.readDouble());
+		assertEquals("häh", input.readString());
+		assertFalse(input.hasRemaining());
+	}
+
+	@Test
+	void test_writeDoubles__writes_the_given_length() {
+		BinaryOutput output = new BinaryOutput();
+		output.writeDoubles(new double[] {1.0, 2.5, 0.0, 0.0}, 2);
+
+		BinaryInput input = new BinaryInput(output.toByteArray());
+		assertArrayEquals(new double[] {1.0, 2.5}, input.readDoubles());
+		assertFalse(input.hasRemaining());
+	}
+
+	@Test
+	void test_writeBytes__round_trips() {
+		BinaryOutput output = new BinaryOutput();
+		output.writeBytes(new byte[] {1, -2, 3});
+		output.writeBytes(new byte[0]);
+
+		BinaryInput input = new BinaryInput(output.toByteArray());
+		assertArrayEquals(new byte[] {1, -2, 3}, input.readBytes());
+		assertArrayEquals(new byte[0], input.readBytes());
+		assertFalse(input.hasRemaining());
+	}
+
+	@Test
+	void test_readBytes__fails_on_truncated_data() {
+		BinaryOutput output = new BinaryOutput();
+		output.writeBytes(new byte[] {1, 2, 3});
+		byte[] data = output.toByteArray();
+
+		byte[] truncated = new byte[data.length - 1];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+		assertThrows(IndexOutOfBoundsException.class, () -> new BinaryInput(truncated).readBytes());
+	}
+
+	@Test
+	void test_writeValue__keeps_value_types() {
+		GenericRecord record = GenericRecord.create().with("int", 1).with("list", List.of("a"));
+
+		BinaryOutput output = new BinaryOutput();
+		output.writeValue(3);
+		output.writeValue(null);
+		output.writeValue(record);
+
+		BinaryInput input = new BinaryInput(output.toByteArray());
+		Object value = input.readValue();
+		assertEquals(Integer.class, value.getClass());
+		assertEquals(3, value);
+		assertNull(input.readValue());
+		assertEquals(record, input.readValue());
+	}
+
+	@Test
+	void test_read__fails_on_truncated_data() {
+		BinaryOutput output = new BinaryOutput();
+		output.writeDouble(1.0);
+		byte[] data = output.toByteArray();
+
+		byte[] truncated = new byte[data.length - 1];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+		assertThrows(IndexOutOfBoundsException.class, () -> new BinaryInput(truncated).readDouble());
+	}
+}
@@ -0,0 +1,267 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.recordtypes.GenericRecord;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Test class for {@link BinarySerdeFactory}.
+ */
+class BinarySerdeFactoryTest {
+
+	private static final AtomicBoolean TRIPPED = new AtomicBoolean();
+
+	private final Serde<GenericRecord> serde = BinarySerdeFactory.getGenericRecordSerde();
+
+	@Test
+	void test_serde__keeps_value_types() {
+		GenericRecord r = GenericRecord.create()
+				.with("int", -5)
+				.with("long", Long.MIN_VALUE)
+				.with("short", (short)3)
+				.with("byte", (byte)-1)
+				.with("double", 3.25)
+				.with("float", 1.5f)
+				.with("string", "häh")
+				.with("true", true)
+				.with("false", false)
+				.with("list", new ArrayList<>(List.of(1.0, 2.0)))
+				.with("set", new HashSet<>(Set.of("a", "b")))
+				.with("map", new HashMap<>(Map.of("k", 1L)))
+				.with("treeMap", new TreeMap<>(Map.of(2, "two")))
+				.with("record", GenericRecord.create().with("int", 1));
+		
+		GenericRecord deser = roundTrip(r);
+		
+		assertEquals(r, deser);
+		r.forEachField((fieldName, value) -> 
+			assertEquals(value.getClass(), deser.get(fieldName).getClass(), fieldName));
+	}
+
+	@Test
+	void test_serde__bytes() {
+		GenericRecord r = GenericRecord.create().with("bytes", new byte[] {1, 2, 3});
+		
+		assertArrayEquals(new byte[] {1, 2, 3}, (byte[])roundTrip(r).get("bytes"));
+	}
+
+	@Test
+	void test_serde__falls_back_to_json_for_other_types() {
+		GenericRecord r = GenericRecord.create()
+				.with("pojo", new Pojo("value", 42))
+				.with("list", Arrays.asList("a", "b"));
+		
+		assertEquals(r, roundTrip(r));
+	}
+
+	@Test
+	void test_serde__null() {
+		assertNull(this.serde.serializer().serialize("topic", null));
+		assertNull(this.serde.deserializer().deserialize("topic", null));
+		assertNull(this.serde.deserializer().deserialize("topic", new byte[0]));
+	}
+
+	@Test
+	void test_serde__is_smaller_than_json() {
+		GenericRecord r = GenericRecord.create()
+				.with("group", "A")
+				.with("_avg_sum", 42.0)
+				.with("_avg_count", 7L)
+				.with("avg", 6.0);
+		
+		byte[] binary = this.serde.serializer().serialize("topic", r);
+		byte[] json = JsonSerdeFactory.getJsonSerde(GenericRecord.class).serializer().serialize("topic", r);
+		
+		assertTrue(binary.length < json.length);
+	}
+
+	@Test
+	void test_deserialize__invalid_bytes() {
+		byte[] bytes = this.serde.serializer().serialize("topic", GenericRecord.create().with("string", "value"));
+		
+		assertThrows(SerializationException.class, () -> 
+			this.serde.deserializer().deserialize("topic", Arrays.copyOf(bytes, bytes.length - 2)));
+		assertThrows(SerializationException.class, () -> 
+			this.serde.deserializer().deserialize("topic", new byte[] {99}));
+	}
+
+	@Test
+	void test_deserialize__rejects_unexpected_classes() {
+		String tripwire = Tripwire.class.getName();
+
+		assertThrows(SerializationException.class, () -> 
+			this.serde.deserializer().deserialize("topic", message(GenericRecordBinaryCodec.COLLECTION, tripwire)));
+		assertThrows(SerializationException.class, () -> 
+			this.serde.deserializer().deserialize("topic", message(GenericRecordBinaryCodec.TYPED_MAP, tripwire)));
+		assertThrows(SerializationException.class, () -> 
+			this.serde.deserializer().deserialize("topic", message(GenericRecordBinaryCodec.JSON, Runnable.class.getName())));
+		assertThrows(SerializationException.class, () -> 
+			this.serde.deserializer().deserialize("topic", message(GenericRecordBinaryCodec.JSON, HashMap.class.getName())));
+
+		// neither initialized nor created
+		assertFalse(TRIPPED.get());
+	}
+
+	// ------------------------------------------------------------------------
+	// schema framed serde
+	// ------------------------------------------------------------------------
+
+	@Test
+	void test_framed_serde__round_trip() {
+		FieldNamesRegistry registry = new InMemoryFieldNamesRegistry();
+		Serde<GenericRecord> writerSerde = BinarySerdeFactory.createSchemaFramedGenericRecordSerde(registry);
+		Serde<GenericRecord> readerSerde = BinarySerdeFactory.createSchemaFramedGenericRecordSerde(registry);
+		GenericRecord r = GenericRecord.create()
+				.with("group", "A")
+				.with("count", 7L)
+				.with("record", GenericRecord.create().with("int", 1));
+		
+		byte[] bytes = writerSerde.serializer().serialize("topic", r);
+		
+		assertEquals(r, readerSerde.deserializer().deserialize("topic", bytes));
+		assertEquals(List.of("group", "count", "record"), registry.lookup(FieldNamesCache.fingerprint(List.of("group", "count", "record"))));
+	}
+
+	@Test
+	void test_framed_serde__round_trip_with_removed_fields() {
+		Serde<GenericRecord> serde = BinarySerdeFactory.createSchemaFramedGenericRecordSerde(new InMemoryFieldNamesRegistry());
+		GenericRecord full = GenericRecord.create().with("a", 1).with("b", 2).with("c", 3);
+		GenericRecord removed = GenericRecord.create().with("a", 1).with("b", 2).with("c", 3);
+		removed.remove("b");
+		
+		// both share the field schema, but only the full record's field names are identified by it
+		for (GenericRecord r : List.of(full, removed, full, removed)) {
+			assertEquals(r, serde.deserializer().deserialize("topic", serde.serializer().serialize("topic", r)));
+		}
+	}
+
+	@Test
+	void test_framed_serde__is_smaller_than_binary() {
+		Serde<GenericRecord> framedSerde = BinarySerdeFactory.createSchemaFramedGenericRecordSerde(new InMemoryFieldNamesRegistry());
+		GenericRecord r = GenericRecord.create()
+				.with("group", "A")
+				.with("_avg_sum", 42.0)
+				.with("_avg_count", 7L)
+				.with("avg", 6.0);
+		
+		byte[] framed = framedSerde.serializer().serialize("topic", r);
+		byte[] binary = this.serde.serializer().serialize("topic", r);
+		
+		assertTrue(framed.length < binary.length);
+	}
+
+	@Test
+	void test_framed_serde__reads_binary_messages() {
+		Serde<GenericRecord> framedSerde = BinarySerdeFactory.createSchemaFramedGenericRecordSerde(new InMemoryFieldNamesRegistry());
+		GenericRecord r = GenericRecord.create().with("string", "value");
+		
+		assertEquals(r, framedSerde.deserializer().deserialize("topic", this.serde.serializer().serialize("topic", r)));
+	}
+
+	@Test
+	void test_framed_serde__unknown_fingerprint() {
+		byte[] bytes = BinarySerdeFactory.createSchemaFramedGenericRecordSerde(new InMemoryFieldNamesRegistry())
+				.serializer().serialize("topic", GenericRecord.create().with("string", "value"));
+		Serde<GenericRecord> otherSerde = BinarySerdeFactory.createSchemaFramedGenericRecordSerde(new InMemoryFieldNamesRegistry());
+		
+		assertThrows(SerializationException.class, () -> otherSerde.deserializer().deserialize("topic", bytes));
+		assertThrows(SerializationException.class, () -> this.serde.deserializer().deserialize("topic", bytes));
+	}
+
+	@Test
+	void test_fingerprint() {
+		assertEquals(FieldNamesCache.fingerprint(List.of("a", "b")), FieldNamesCache.fingerprint(List.of("a", "b")));
+		assertNotEquals(FieldNamesCache.fingerprint(List.of("a", "b")), FieldNamesCache.fingerprint(List.of("b", "a")));
+		assertNotEquals(FieldNamesCache.fingerprint(List.of("ab")), FieldNamesCache.fingerprint(List.of("a", "b")));
+	}
+
+	// ------------------------------------------------------------------------
+	// utils
+	// ------------------------------------------------------------------------
+
+	private GenericRecord roundTrip(GenericRecord r) {
+		return this.serde.deserializer().deserialize("topic", this.serde.serializer().serialize("topic", r));
+	}
+
+	// ------------------------------------------------------------------------
+	// Pojo
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns a message with one field of the given tag and class name followed by an empty count or JSON.
+	 */
+	private static byte[] message(byte tag, String className) {
+		GenericRecordBinaryCodec.Writer writer = new GenericRecordBinaryCodec.Writer();
+		writer.writeByte(GenericRecordBinaryCodec.FORMAT_VERSION);
+		writer.writeVarInt(1);
+		writer.writeVarInt(0);
+		writer.writeString("field");
+		writer.writeByte(tag);
+		writer.writeVarInt(0);
+		writer.writeString(className);
+		if (tag == GenericRecordBinaryCodec.JSON) {
+			writer.writeString("{}");
+		} else {
+			writer.writeVarInt(0);
+		}
+		return writer.toByteArray();
+	}
+
+	public static class Tripwire {
+		static {
+			TRIPPED.set(true);
+		}
+
+		public Tripwire() {
+			TRIPPED.set(true);
+		}
+	}
+
+	@Data
+	@NoArgsConstructor
+	@AllArgsConstructor
+	public static class Pojo {
+		private String name;
+		private int number;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.factories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.recordtypes.GroupKey;
+
+/**
+ * Test class for {@link GroupKeyCodec} and {@link BinarySerdeFactory#getGroupKeySerde()}.
+ */
+class GroupKeyCodecTest {
+
+	private static final List<GroupKey> KEYS = List.of(
+			GroupKey.of(),
+			GroupKey.of((Object) null),
+			GroupKey.of(false),
+			GroupKey.of(true),
+			GroupKey.of(Long.MIN_VALUE),
+			GroupKey.of(-1),
+			GroupKey.of(0),
+			GroupKey.of(1),
+			GroupKey.of(Long.MAX_VALUE),
+			GroupKey.of(Double.NEGATIVE_INFINITY),
+			GroupKey.of(-2.5),
+			GroupKey.of(-0.0),
+			GroupKey.of(0.0),
+			GroupKey.of(1.5f),
+			GroupKey.of(Double.MAX_VALUE),
+			GroupKey.of(Double.NaN),
+			GroupKey.of(""),
+			GroupKey.of("\0"),
+			GroupKey.of("a"),
+			GroupKey.of("a", null),
+			GroupKey.of("a", "b"),
+			GroupKey.of("a\0"),
+			GroupKey.of("a\0b"),
+			GroupKey.of("ab"),
+			GroupKey.of("häh", 3L),
+			GroupKey.of("￿"),
+			GroupKey.of("😀"));
+
+	private final Serde<GroupKey> serde = BinarySerdeFactory.getGroupKeySerde();
+
+	@Test
+	void test_serde__round_trips_keys() {
+		for (GroupKey key : KEYS) {
+			GroupKey deser = this.serde.deserializer().deserialize("topic", this.serde.serializer().serialize("topic", key));
+
+			assertEquals(key, deser);
+			assertEquals(key.toString(), deser.toString());
+		}
+		assertNull(this.serde.serializer().serialize("topic", null));
+		assertNull(this.serde.deserializer().deserialize("topic", null));
+	}
+
+	@Test
+	void test_encode__preserves_the_key_order() {
+		for (GroupKey a : KEYS) {
+			for (GroupKey b : KEYS) {
+				int expected = Integer.signum(a.compareTo(b));
+				int actual = Integer.signum(Arrays.compareUnsigned(GroupKeyCodec.encode(a), GroupKeyCodec.encode(b)));
+
+				assertEquals(expected, actual, a + " vs. " + b);
+			}
+		}
+	}
+
+	@Test
+	void test_of__normalizes_values() {
+		assertEquals(GroupKey.of(1L, 0.5, "x"), GroupKey.of((short) 1, 0.5f, new StringBuilder("x")));
+		assertEquals("{A}{1}{null}{0.1}", GroupKey.of("A", 1, null, 0.1f).toString());
+	}
+
+	@Test
+	void test_toString__is_not_unique_across_types() {
+		GroupKey string = GroupKey.of("1");
+		GroupKey number = GroupKey.of(1L);
+
+		assertNotEquals(string, number);
+		assertNotEquals(
+				Arrays.toString(GroupKeyCodec.encode(string)),
+				Arrays.toString(GroupKeyCodec.encode(number)));
+		assertEquals(string.toString(), number.toString());
+	}
+
+	@Test
+	void test_decode__rejects_invalid_data() {
+		byte[] data = GroupKeyCodec.encode(GroupKey.of("a", 42L));
+
+		assertThrows(SerializationException.class, () -> GroupKeyCodec.decode(Arrays.copyOf(data, data.length - 1)));
+		assertThrows(SerializationException.class, () -> GroupKeyCodec.decode(Arrays.copyOf(data, 2)));
+		assertThrows(SerializationException.class, () -> GroupKeyCodec.decode(new byte[] {0x7F}));
+	}
+}
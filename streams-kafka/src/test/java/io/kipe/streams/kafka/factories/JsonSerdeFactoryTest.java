@@ -18,11 +18,19 @@
 package io.kipe.streams.kafka.factories;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.kafka.common.serialization.Serde;
 import org.junit.jupiter.api.Test;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.kipe.streams.recordtypes.GenericRecord;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -71,6 +79,92 @@ class JsonSerdeFactoryTest {
 		assertEquals(gco.getValue(), deseGco.getValue());
 	}
 
+	// ------------------------------------------------------------------------
+	// lazy GenericRecord serde
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Test that lazily decoded records equal eagerly decoded ones.
+	 */
+	@Test
+	void test_lazy_serde__decodes_fields() {
+		GenericRecord r = GenericRecord.create()
+				.with("string", "value")
+				.with("int", 42)
+				.with("long", 42L)
+				.with("list", new ArrayList<>(List.of(1.0, 2.0)))
+				.with("record", GenericRecord.create().with("field", "value"));
+		
+		byte[] json = JsonSerdeFactory.getJsonSerde(GenericRecord.class).serializer().serialize("topic", r);
+		GenericRecord lazy = JsonSerdeFactory.getLazyGenericRecordSerde().deserializer().deserialize("topic", json);
+		
+		assertEquals(42L, (Long)lazy.get("long"));
+		assertEquals(r, lazy);
+	}
+
+	/**
+	 * Test that unmodified records are serialized by their original json.
+	 */
+	@Test
+	void test_lazy_serde__passes_unmodified_records_through() {
+		Serde<GenericRecord> serde = JsonSerdeFactory.getLazyGenericRecordSerde();
+		byte[] json = serde.serializer().serialize("topic", GenericRecord.create().with("field", "value").with("other", 1));
+		
+		GenericRecord lazy = serde.deserializer().deserialize("topic", json);
+		assertEquals("value", lazy.get("field"));
+		assertSame(json, serde.serializer().serialize("topic", lazy));
+		
+		lazy.set("field", "otherValue");
+		GenericRecord modified = serde.deserializer().deserialize("topic", serde.serializer().serialize("topic", lazy));
+		assertEquals("otherValue", modified.get("field"));
+		assertEquals(1, (Integer)modified.get("other"));
+	}
+
+	// ------------------------------------------------------------------------
+	// streaming GenericRecord codec
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Test that the streaming codec writes the same json as Jackson databind and reads it back.
+	 */
+	@Test
+	void test_serde__generic_record_codec_matches_databind() throws Exception {
+		GenericRecord r = GenericRecord.create()
+				.with("string", "va\"lue")
+				.with("int", 42)
+				.with("long", 42L)
+				.with("double", 1.5)
+				.with("boolean", true)
+				.with("record", GenericRecord.create().with("field", "value").with("long", -1L));
+		r.setLong("primitiveLong", 7);
+		
+		Serde<GenericRecord> serde = JsonSerdeFactory.getJsonSerde(GenericRecord.class);
+		byte[] json = serde.serializer().serialize("topic", r);
+		GenericRecord deser = serde.deserializer().deserialize("topic", json);
+		
+		assertEquals(new String(new ObjectMapper().writeValueAsBytes(r), StandardCharsets.UTF_8), new String(json, StandardCharsets.UTF_8));
+		assertEquals(r, deser);
+		assertEquals(Long.class, deser.get("long").getClass());
+	}
+
+	/**
+	 * Test that records with values the streaming codec doesn't support are handled by Jackson databind.
+	 */
+	@Test
+	void test_serde__generic_record_codec_falls_back_to_databind() throws Exception {
+		GenericRecord r = GenericRecord.create()
+				.with("string", "value")
+				.with("list", new ArrayList<>(List.of(1.0, 2.0)))
+				.with("float", 1.5f)
+				.with("nan", Double.NaN);
+		
+		Serde<GenericRecord> serde = JsonSerdeFactory.getJsonSerde(GenericRecord.class);
+		byte[] json = serde.serializer().serialize("topic", r);
+		
+		assertEquals(new String(new ObjectMapper().writeValueAsBytes(r), StandardCharsets.UTF_8), new String(json, StandardCharsets.UTF_8));
+		assertEquals(r, serde.deserializer().deserialize("topic", json));
+	}
+
 	// ------------------------------------------------------------------------
 	// GenericClass
 	// ------------------------------------------------------------------------
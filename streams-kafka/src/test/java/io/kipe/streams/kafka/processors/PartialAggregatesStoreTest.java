@@ -0,0 +1,125 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.streams.processor.MockProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.kafka.factories.BinarySerdeFactory;
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.recordtypes.GroupKey;
+
+/**
+ * Test class for {@link PartialAggregatesStore}.
+ */
+class PartialAggregatesStoreTest {
+
+	private static final GroupKey A = GroupKey.of("A");
+	private static final GroupKey B = GroupKey.of("B");
+
+	private StatsAggregation aggregation;
+	private KeyValueStore<GroupKey,StatsAggregate> changelogged;
+	private PartialAggregatesStore store;
+
+	@BeforeEach
+	@SuppressWarnings("deprecation")
+	void setUp() {
+		List<StatsExpression> expressions = new ArrayList<>(List.of(Count.count()));
+		expressions.forEach(StatsExpression::prepare);
+		this.aggregation = new StatsAggregation(new FieldRef[] {FieldRef.of("group")}, expressions);
+
+		this.changelogged = Stores
+				.keyValueStoreBuilder(
+						Stores.inMemoryKeyValueStore("partials"),
+						BinarySerdeFactory.getGroupKeySerde(),
+						this.aggregation.serde())
+				.withLoggingDisabled() // changelogs aren't supported by the MockProcessorContext
+				.build();
+		this.store = new PartialAggregatesStore(this.changelogged);
+		this.store.init(new MockProcessorContext(), this.store);
+	}
+
+	@Test
+	void test_flush__writes_the_updated_partials() {
+		update(A);
+		update(A);
+
+		// nothing is written before the flush
+		assertNull(this.changelogged.get(A));
+		assertEquals(2L, count(this.store.get(A)));
+
+		this.store.flush();
+		assertEquals(2L, count(this.changelogged.get(A)));
+
+		// only the updated partials are written again
+		update(B);
+		this.changelogged.delete(A);
+		this.store.flush();
+		assertNull(this.changelogged.get(A));
+		assertEquals(1L, count(this.changelogged.get(B)));
+	}
+
+	@Test
+	void test_clear__deletes_the_written_partials() {
+		update(A);
+		this.store.flush();
+		update(B);
+
+		this.store.clear();
+		this.store.flush();
+
+		assertEquals(0, this.store.size());
+		assertNull(this.changelogged.get(A));
+		assertNull(this.changelogged.get(B));
+	}
+
+	@Test
+	void test_load__restores_the_written_partials() {
+		update(A);
+		update(B);
+		this.store.flush();
+		update(A);
+
+		this.store.load();
+
+		// the update after the flush is lost like the uncommitted input record
+		assertEquals(2, this.store.size());
+		assertEquals(1L, count(this.store.get(A)));
+		assertEquals(1L, count(this.store.get(B)));
+	}
+
+	private void update(GroupKey groupKey) {
+		GenericRecord value = GenericRecord.create().with("group", groupKey.toString());
+		this.store.put(groupKey, this.aggregation.update(groupKey, value, this.store.get(groupKey)));
+	}
+
+	private long count(StatsAggregate aggregate) {
+		return this.aggregation.project(aggregate).getLong("count");
+	}
+}
@@ -0,0 +1,362 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxDistinctCount;
+import io.kipe.streams.kafka.processors.expressions.stats.Average;
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.kafka.processors.expressions.stats.DistinctCount;
+import io.kipe.streams.kafka.processors.expressions.stats.ExponentialMovingAverage;
+import io.kipe.streams.kafka.processors.expressions.stats.ExponentialMovingVariance;
+import io.kipe.streams.kafka.processors.expressions.stats.First;
+import io.kipe.streams.kafka.processors.expressions.stats.Last;
+import io.kipe.streams.kafka.processors.expressions.stats.Max;
+import io.kipe.streams.kafka.processors.expressions.stats.Median;
+import io.kipe.streams.kafka.processors.expressions.stats.Min;
+import io.kipe.streams.kafka.processors.expressions.stats.Mode;
+import io.kipe.streams.kafka.processors.expressions.stats.Percentile;
+import io.kipe.streams.kafka.processors.expressions.stats.Range;
+import io.kipe.streams.kafka.processors.expressions.stats.RollingMin;
+import io.kipe.streams.kafka.processors.expressions.stats.StandardDeviation;
+import io.kipe.streams.kafka.processors.expressions.stats.Sum;
+import io.kipe.streams.kafka.processors.expressions.stats.TopN;
+import io.kipe.streams.kafka.processors.expressions.stats.Variance;
+import io.kipe.streams.recordtypes.FieldRef;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.recordtypes.GroupKey;
+
+/**
+ * Test class for {@link StatsAggregation}.
+ */
+class StatsAggregationTest {
+
+	private static final FieldRef[] GROUP_FIELDS = {FieldRef.of("group")};
+	private static final GroupKey KEY = GroupKey.of("A");
+
+	@Test
+	void test_update__keeps_typed_states_and_plain_fields_apart() {
+		StatsAggregation aggregation = aggregation(Count.count(), new LastSeenExpression());
+
+		StatsAggregate aggregate = aggregation.update(KEY, record("A", 1), null);
+		aggregate = aggregation.update(KEY, record("A", 2), aggregate);
+
+		assertEquals(1, aggregate.size());
+		assertEquals("A", aggregate.record().getString("group"));
+		assertEquals(2, aggregate.record().getNumber("lastSeen").intValue());
+		assertFalse(aggregate.record().contains("count"));
+
+		GenericRecord result = aggregation.project(aggregate);
+		assertEquals(2L, result.getLong("count"));
+		assertEquals(2, result.getNumber("lastSeen").intValue());
+		assertFalse(aggregate.record().contains("count"));
+	}
+
+	@Test
+	void test_project__omits_results_of_empty_states() {
+		StatsAggregation aggregation = aggregation(Count.count(), Average.average("value"));
+
+		GenericRecord result = aggregation.project(aggregation.update(KEY, GenericRecord.create().with("group", "A"), null));
+
+		assertEquals(1L, result.getLong("count"));
+		assertFalse(result.contains("avg"));
+		assertNull(aggregation.project(null));
+	}
+
+	@Test
+	void test_update__fuses_moments_of_the_same_field() {
+		Sum otherSum = Sum.sum("other");
+		otherSum.setFieldName("otherSum");
+		StatsAggregation aggregation = aggregation(
+				Average.average("value"),
+				Variance.var("value"),
+				Count.count(),
+				StandardDeviation.stdev("value"),
+				Sum.sum("value"),
+				otherSum);
+		Serde<StatsAggregate> serde = aggregation.serde();
+
+		StatsAggregate aggregate = null;
+		for (int value : new int[] {2, 4, 9}) {
+			aggregate = aggregation.update(KEY, record("A", value).with("other", 1), aggregate);
+			aggregate = serde.deserializer().deserialize("topic", serde.serializer().serialize("topic", aggregate));
+		}
+
+		// avg, var, stdev and sum of value share one slot
+		assertEquals(3, aggregate.size());
+
+		GenericRecord result = aggregation.project(aggregate);
+		assertEquals(5.0, result.getDouble("avg"));
+		assertEquals(13.0, result.getDouble("var"));
+		assertEquals(Math.sqrt(13.0), result.getDouble("stdev"));
+		assertEquals(15.0, result.getDouble("sum"));
+		assertEquals(3.0, result.getDouble("otherSum"));
+		assertEquals(3L, result.getLong("count"));
+	}
+
+	@Test
+	void test_update__fused_moments_track_deviations_only_if_needed() {
+		StatsAggregation sums = aggregation(Sum.sum("value"), Average.average("value"));
+		StatsAggregation deviations = aggregation(Sum.sum("value"), Variance.var("value"));
+
+		byte[] sumsData = sums.serde().serializer().serialize("topic", sums.update(KEY, record("A", 1), null));
+		byte[] deviationsData = deviations.serde().serializer().serialize("topic", deviations.update(KEY, record("A", 1), null));
+
+		assertEquals(sumsData.length + 16, deviationsData.length);
+	}
+
+	@Test
+	void test_update__shares_sorted_values_of_the_same_field() {
+		Percentile p90 = Percentile.perc90("value");
+		p90.setFieldName("p90");
+		Percentile p33 = Percentile.perc("value", 33);
+		p33.setFieldName("p33");
+		StatsAggregation aggregation = aggregation(Median.median("value"), p90, p33, Percentile.perc10("other"));
+
+		StatsAggregate aggregate = null;
+		for (int value = 1; value <= 11; value++) {
+			aggregate = aggregation.update(KEY, record("A", value).with("other", value * 10), aggregate);
+		}
+
+		assertEquals(2, aggregate.size());
+
+		GenericRecord result = aggregation.project(aggregate);
+		assertEquals(6.0, result.getDouble("median"));
+		assertEquals(10.0, result.getDouble("p90"));
+		assertEquals(4.3, result.getDouble("p33"), 1e-9);
+		assertEquals(20.0, result.getDouble("percentile"));
+	}
+
+	@Test
+	void test_merge__equals_updating_all_records() {
+		StatsAggregation aggregation = aggregation(
+				Count.count(),
+				Average.average("value"),
+				Variance.var("value"),
+				Min.min("value"),
+				Max.max("value"),
+				First.first("value"),
+				Last.last("value"),
+				Range.range("value"),
+				DistinctCount.distinctCount("value"),
+				Mode.mode("name"),
+				Median.median("value"));
+
+		StatsAggregate earlier = null;
+		StatsAggregate later = null;
+		int[] values = {4, 1, 4, 7, 2, 9};
+		for (int i = 0; i < values.length; i++) {
+			if (i < 3) {
+				earlier = aggregation.update(KEY, record("A", values[i]), earlier);
+			} else {
+				later = aggregation.update(KEY, record("A", values[i]), later);
+			}
+		}
+
+		GenericRecord result = aggregation.project(aggregation.merge(KEY, earlier, later));
+		assertEquals("A", result.getString("group"));
+		assertEquals(6L, result.getLong("count"));
+		assertEquals(4.5, result.getDouble("avg"));
+		assertEquals(9.1, result.getDouble("var"), 1e-9);
+		assertEquals(1, result.getNumber("min").intValue());
+		assertEquals(9, result.getNumber("max").intValue());
+		assertEquals(4, result.getNumber("first").intValue());
+		assertEquals(9, result.getNumber("last").intValue());
+		assertEquals(8.0, result.getDouble("range"));
+		assertEquals(5, result.getNumber("distinctCount").intValue());
+		assertEquals(Set.of("name-4"), result.get("mode"));
+		assertEquals(4.0, result.getDouble("median"));
+	}
+
+	@Test
+	void test_update__weights_late_records_like_merging() {
+		StatsAggregation aggregation = aggregation(
+				ExponentialMovingAverage.ewma("value", Duration.ofSeconds(1)),
+				ExponentialMovingVariance.ewmvar("value", Duration.ofSeconds(1)));
+
+		int[] values = {4, 1, 4, 7, 2, 9};
+		long[] timestamps = {0, 3000, 1000, 2000, 5000, 4000};
+		int[] inOrder = {0, 2, 3, 1, 5, 4};
+
+		StatsAggregate all = null;
+		StatsAggregate sorted = null;
+		StatsAggregate earlier = null;
+		StatsAggregate later = null;
+		for (int i = 0; i < values.length; i++) {
+			GenericRecord value = record("A", values[i]).with(StatsExpression.RECORD_TIMESTAMP_FIELD, timestamps[i]);
+			all = aggregation.update(KEY, value, all);
+			if (i < 3) {
+				earlier = aggregation.update(KEY, value, earlier);
+			} else {
+				later = aggregation.update(KEY, value, later);
+			}
+
+			int j = inOrder[i];
+			sorted = aggregation.update(KEY,
+					record("A", values[j]).with(StatsExpression.RECORD_TIMESTAMP_FIELD, timestamps[j]), sorted);
+		}
+
+		GenericRecord expected = aggregation.project(sorted);
+		for (StatsAggregate aggregate : List.of(all, aggregation.merge(KEY, later, earlier))) {
+			GenericRecord result = aggregation.project(aggregate);
+			assertEquals(expected.getDouble("ewma"), result.getDouble("ewma"), 1e-9);
+			assertEquals(expected.getDouble("ewmvar"), result.getDouble("ewmvar"), 1e-9);
+		}
+	}
+
+	@Test
+	void test_merge__rejects_plain_expressions() {
+		StatsAggregation aggregation = aggregation(Count.count(), new LastSeenExpression());
+		StatsAggregate earlier = aggregation.update(KEY, record("A", 1), null);
+		StatsAggregate later = aggregation.update(KEY, record("A", 2), null);
+
+		assertEquals(later, aggregation.merge(KEY, null, later));
+		assertThrows(IllegalStateException.class, () -> aggregation.merge(KEY, earlier, later));
+	}
+
+	@Test
+	void test_requireMergeable__rejects_order_dependent_expressions() {
+		// merging these requires the later records in the other aggregate, which isn't guaranteed
+		assertThrows(IllegalStateException.class,
+				() -> aggregation(Count.count(), RollingMin.rollingMin("value", 3)).requireMergeable());
+		assertThrows(IllegalStateException.class,
+				() -> aggregation(Count.count(), ExponentialMovingAverage.ewma("value", 0.5)).requireMergeable());
+
+		// time based decay doesn't depend on the order
+		aggregation(Count.count(), ExponentialMovingAverage.ewma("value", Duration.ofMinutes(1))).requireMergeable();
+	}
+
+	@Test
+	void test_serde__round_trips_states() {
+		StatsAggregation aggregation = aggregation(
+				Count.count(),
+				Average.average("value"),
+				Max.max("value"),
+				First.first("value"),
+				DistinctCount.distinctCount("value"),
+				Mode.mode("name"),
+				Median.median("value"),
+				Variance.var("value"),
+				new LastSeenExpression());
+		Serde<StatsAggregate> serde = aggregation.serde();
+
+		StatsAggregate aggregate = null;
+		for (int value : new int[] {4, 1, 4, 7}) {
+			aggregate = aggregation.update(KEY, record("A", value), aggregate);
+			aggregate = serde.deserializer().deserialize("topic", serde.serializer().serialize("topic", aggregate));
+		}
+
+		GenericRecord result = aggregation.project(aggregate);
+		assertEquals("A", result.getString("group"));
+		assertEquals(4L, result.getLong("count"));
+		assertEquals(4.0, result.getDouble("avg"));
+		assertEquals(7, result.getNumber("max").intValue());
+		assertEquals(4, result.getNumber("first").intValue());
+		assertEquals(3, result.getNumber("distinctCount").intValue());
+		assertEquals(Set.of("name-4"), result.get("mode"));
+		assertEquals(4.0, result.getDouble("median"));
+		assertEquals(6.0, result.getDouble("var"));
+		assertEquals(7, result.getNumber("lastSeen").intValue());
+	}
+
+	@Test
+	void test_serde__rejects_changed_expressions() {
+		StatsAggregation aggregation = aggregation(Count.count(), Average.average("value"));
+		byte[] data = aggregation.serde().serializer().serialize("topic", aggregation.update(KEY, record("A", 1), null));
+
+		Serde<StatsAggregate> otherSerde = aggregation(Count.count()).serde();
+
+		SerializationException e = assertThrows(
+				SerializationException.class,
+				() -> otherSerde.deserializer().deserialize("topic", data));
+		assertTrue(e.getMessage().contains("the stats expressions have changed"));
+	}
+
+	@Test
+	void test_serde__rejects_changed_state_types() {
+		StatsAggregation aggregation = aggregation(Count.count(), ApproxDistinctCount.approxDistinctCount("value"));
+		byte[] data = aggregation.serde().serializer().serialize("topic", aggregation.update(KEY, record("A", 1), null));
+
+		// same number of slots, but other states or parameters
+		for (StatsAggregation other : List.of(
+				aggregation(Count.count(), TopN.topN("value", 3)),
+				aggregation(Count.count(), ApproxDistinctCount.approxDistinctCount("value", 10)),
+				aggregation(Count.count(), ApproxDistinctCount.approxDistinctCount("other"))))
+		{
+			SerializationException e = assertThrows(
+					SerializationException.class,
+					() -> other.serde().deserializer().deserialize("topic", data));
+			assertTrue(e.getMessage().contains("the stats expressions have changed"));
+		}
+	}
+
+	@Test
+	void test_serde__rejects_truncated_data() {
+		StatsAggregation aggregation = aggregation(Count.count(), Average.average("value"));
+		Serde<StatsAggregate> serde = aggregation.serde();
+		byte[] data = serde.serializer().serialize("topic", aggregation.update(KEY, record("A", 1), null));
+
+		byte[] truncated = new byte[data.length - 1];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+		assertThrows(SerializationException.class, () -> serde.deserializer().deserialize("topic", truncated));
+	}
+
+	// ------------------------------------------------------------------------
+	// utils
+	// ------------------------------------------------------------------------
+
+	private static StatsAggregation aggregation(StatsExpression... expressions) {
+		List<StatsExpression> list = new ArrayList<>(List.of(expressions));
+		list.forEach(StatsExpression::prepare);
+		return new StatsAggregation(GROUP_FIELDS, list);
+	}
+
+	private static GenericRecord record(String group, int value) {
+		return GenericRecord.create()
+				.with("group", group)
+				.with("value", value)
+				.with("name", "name-" + value);
+	}
+
+	static class LastSeenExpression extends StatsExpression {
+
+		LastSeenExpression() {
+			super("lastSeen");
+			this.statsFunction = (groupKey, value, aggregate) -> {
+				// plain expressions get the key's string form
+				assertEquals("{A}", groupKey);
+				return value.get("value");
+			};
+		}
+	}
+}
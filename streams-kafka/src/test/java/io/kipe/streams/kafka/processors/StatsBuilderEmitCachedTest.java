@@ -0,0 +1,77 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+
+/**
+ * This class tests {@link StatsBuilder} coalescing the results of a group per flush interval.
+ */
+class StatsBuilderEmitCachedTest extends AbstractGenericRecordProcessorTopologyTest {
+
+	public StatsBuilderEmitCachedTest() {
+		super(Map.of());
+	}
+
+	@Override
+	protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+			KipesBuilder<String, GenericRecord> builder, 
+			TopologyTestContext topologyTestContext) 
+	{
+		return builder.stats()
+				.with(Count.count()).as("myCount")
+				.groupBy("group")
+				.emitCached(Duration.ofSeconds(30))
+				.build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+	}
+
+	@Test
+	void test() {
+		// given three updates of a group within the flush interval
+		send(GenericRecord.create().with("group", "A"), 0);
+		send(GenericRecord.create().with("group", "A"), 10_000);
+		send(GenericRecord.create().with("group", "A"), 20_000);
+		
+		// then nothing gets emitted
+		assertEquals(0, this.targetTopic.getQueueSize());
+		
+		// when the stream time passes the flush interval
+		send(GenericRecord.create().with("group", "B"), 40_000);
+		
+		// then we only get the latest result of the group
+		assertEquals(1, this.targetTopic.getQueueSize());
+		
+		GenericRecord r = this.targetTopic.readValue();
+		assertEquals("A", r.getString("group"));
+		assertEquals(3, r.getNumber("myCount").intValue());
+	}
+
+	private void send(GenericRecord record, long timestamp) {
+		this.sourceTopic.pipeInput(record, Instant.ofEpochMilli(timestamp));
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+
+/**
+ * This class tests {@link StatsBuilder} emitting the final result of each window.
+ */
+class StatsBuilderEmitFinalTest extends AbstractGenericRecordProcessorTopologyTest {
+
+	public StatsBuilderEmitFinalTest() {
+		super(Map.of());
+	}
+
+	@Override
+	protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+			KipesBuilder<String, GenericRecord> builder, 
+			TopologyTestContext topologyTestContext) 
+	{
+		return builder.stats()
+				.with(Count.count()).as("myCount")
+				.groupBy("group")
+				.windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMinutes(1)))
+				.emitFinal()
+				.build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+	}
+
+	@Test
+	void test() {
+		// given records of an open window
+		send(GenericRecord.create().with("group", "A"), 0);
+		send(GenericRecord.create().with("group", "A"), 20_000);
+		send(GenericRecord.create().with("group", "B"), 40_000);
+		
+		// then nothing gets emitted
+		assertEquals(0, this.targetTopic.getQueueSize());
+		
+		// when a record of the next window closes the first one
+		send(GenericRecord.create().with("group", "A"), 60_000);
+		
+		// then we get the final results of the first window
+		assertEquals(2, this.targetTopic.getQueueSize());
+		
+		GenericRecord r = this.targetTopic.readValue();
+		assertEquals("A", r.getString("group"));
+		assertEquals(2, r.getNumber("myCount").intValue());
+		assertEquals(0L, r.getNumber(StatsBuilder.WINDOW_START_FIELD).longValue());
+		
+		r = this.targetTopic.readValue();
+		assertEquals("B", r.getString("group"));
+		assertEquals(1, r.getNumber("myCount").intValue());
+	}
+
+	private void send(GenericRecord record, long timestamp) {
+		this.sourceTopic.pipeInput(record, Instant.ofEpochMilli(timestamp));
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.kafka.factories.BinarySerdeFactory;
+import io.kipe.streams.kafka.processors.expressions.stats.Average;
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+
+/**
+ * This class tests {@link StatsBuilder} using the binary GenericRecord serde for its repartition topic.
+ */
+class StatsBuilderInternalSerdeTest extends AbstractGenericRecordProcessorTopologyTest {
+
+	public StatsBuilderInternalSerdeTest() {
+		super(Map.of());
+	}
+
+	@Override
+	protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+			KipesBuilder<String, GenericRecord> builder, 
+			TopologyTestContext topologyTestContext) 
+	{
+		return builder.stats()
+				.withInternalSerde(BinarySerdeFactory.getGenericRecordSerde())
+				.with(Count.count()).as("myCount")
+				.with(Average.average("value")).as("avg")
+				.groupBy("group")
+				.build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+	}
+
+	@Test
+	void test() {
+		// given three records
+		send(GenericRecord.create().with("group", "A").with("value", 1));
+		send(GenericRecord.create().with("group", "A").with("value", 2));
+		send(GenericRecord.create().with("group", "B").with("value", 3));
+		
+		// then we get three results
+		assertEquals(3, this.targetTopic.getQueueSize());
+		
+		GenericRecord r = this.targetTopic.readValue();
+		assertEquals("A", r.getString("group"));
+		assertEquals(1, r.getNumber("myCount").intValue());
+		assertEquals(1.0, r.getDouble("avg"));
+		
+		r = this.targetTopic.readValue();
+		assertEquals("A", r.getString("group"));
+		assertEquals(2, r.getNumber("myCount").intValue());
+		assertEquals(1.5, r.getDouble("avg"));
+		
+		r = this.targetTopic.readValue();
+		assertEquals("B", r.getString("group"));
+		assertEquals(1, r.getNumber("myCount").intValue());
+		assertEquals(3.0, r.getDouble("avg"));
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.apache.kafka.streams.KeyValue;
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.kafka.processors.expressions.stats.Sum;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+
+/**
+ * This class tests {@link StatsBuilder} merging the partial aggregates of pre-aggregated records.
+ */
+class StatsBuilderPreAggregationTest extends AbstractGenericRecordProcessorTopologyTest {
+
+	public StatsBuilderPreAggregationTest() {
+		super(Map.of());
+	}
+
+	@Override
+	protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+			KipesBuilder<String, GenericRecord> builder, 
+			TopologyTestContext topologyTestContext) 
+	{
+		return builder.stats()
+				.with(Count.count()).as("myCount")
+				.with(Sum.sum("value")).as("mySum")
+				.groupBy("group")
+				.preAggregate(2, Duration.ofHours(1))
+				.build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+	}
+
+	@Test
+	void test() {
+		// given records of two groups
+		send(GenericRecord.create().with("group", "A").with("value", 1));
+		send(GenericRecord.create().with("group", "A").with("value", 2));
+		send((GenericRecord) null);
+		
+		// then nothing gets emitted before the partial aggregates are flushed
+		assertEquals(0, this.targetTopic.getQueueSize());
+		
+		// when the second group reaches the maximum number of groups
+		send(GenericRecord.create().with("group", "B").with("value", 3));
+		
+		// then the partial aggregates are flushed
+		assertEquals(2, this.targetTopic.getQueueSize());
+		assertResult("{A}", 2, 3.0);
+		assertResult("{B}", 1, 3.0);
+		
+		// when the next partial aggregates get flushed
+		send(GenericRecord.create().with("group", "A").with("value", 4));
+		send(GenericRecord.create().with("group", "C").with("value", 5));
+		
+		// then they are merged into the final aggregates
+		assertEquals(2, this.targetTopic.getQueueSize());
+		assertResult("{A}", 3, 7.0);
+		assertResult("{C}", 1, 5.0);
+	}
+
+	private void assertResult(String key, int count, double sum) {
+		KeyValue<String, GenericRecord> kv = this.targetTopic.readKeyValue();
+		assertEquals(key, kv.key);
+		assertEquals(count, kv.value.getNumber("myCount").intValue());
+		assertEquals(sum, kv.value.getNumber("mySum").doubleValue());
+	}
+}
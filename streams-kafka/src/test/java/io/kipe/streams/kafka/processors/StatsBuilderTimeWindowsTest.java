@@ -0,0 +1,98 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.junit.jupiter.api.Test;
+
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.kafka.processors.expressions.stats.Sum;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+
+/**
+ * This class tests {@link StatsBuilder} aggregating per tumbling time window.
+ */
+class StatsBuilderTimeWindowsTest extends AbstractGenericRecordProcessorTopologyTest {
+
+	public StatsBuilderTimeWindowsTest() {
+		super(Map.of());
+	}
+
+	@Override
+	protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+			KipesBuilder<String, GenericRecord> builder, 
+			TopologyTestContext topologyTestContext) 
+	{
+		return builder.stats()
+				.with(Count.count()).as("myCount")
+				.with(Sum.sum("value")).as("mySum")
+				.groupBy("group")
+				.windowedBy(TimeWindows.ofSizeWithNoGrace(Duration.ofMinutes(1)))
+				.withRetention(Duration.ofMinutes(10))
+				.build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+	}
+
+	@Test
+	void test() {
+		// given records of two windows and a late record
+		send(GenericRecord.create().with("group", "A").with("value", 1), 0);
+		send(GenericRecord.create().with("group", "A").with("value", 2), 30_000);
+		send(GenericRecord.create().with("group", "B").with("value", 3), 45_000);
+		send(GenericRecord.create().with("group", "A").with("value", 4), 70_000);
+		send(GenericRecord.create().with("group", "A").with("value", 5), 10_000);
+		
+		// then the late record gets dropped
+		assertEquals(4, this.targetTopic.getQueueSize());
+		
+		GenericRecord r = this.targetTopic.readValue();
+		assertEquals("A", r.getString("group"));
+		assertEquals(1, r.getNumber("myCount").intValue());
+		assertEquals(1.0, r.getDouble("mySum"));
+		assertEquals(0L, r.getNumber(StatsBuilder.WINDOW_START_FIELD).longValue());
+		assertEquals(60_000L, r.getNumber(StatsBuilder.WINDOW_END_FIELD).longValue());
+		
+		r = this.targetTopic.readValue();
+		assertEquals("A", r.getString("group"));
+		assertEquals(2, r.getNumber("myCount").intValue());
+		assertEquals(3.0, r.getDouble("mySum"));
+		assertEquals(0L, r.getNumber(StatsBuilder.WINDOW_START_FIELD).longValue());
+		
+		r = this.targetTopic.readValue();
+		assertEquals("B", r.getString("group"));
+		assertEquals(1, r.getNumber("myCount").intValue());
+		assertEquals(3.0, r.getDouble("mySum"));
+		
+		r = this.targetTopic.readValue();
+		assertEquals("A", r.getString("group"));
+		assertEquals(1, r.getNumber("myCount").intValue());
+		assertEquals(4.0, r.getDouble("mySum"));
+		assertEquals(60_000L, r.getNumber(StatsBuilder.WINDOW_START_FIELD).longValue());
+		assertEquals(120_000L, r.getNumber(StatsBuilder.WINDOW_END_FIELD).longValue());
+	}
+
+	private void send(GenericRecord record, long timestamp) {
+		this.sourceTopic.pipeInput(record, Instant.ofEpochMilli(timestamp));
+	}
+}
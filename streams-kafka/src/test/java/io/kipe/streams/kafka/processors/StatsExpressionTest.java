@@ -18,15 +18,113 @@
 package io.kipe.streams.kafka.processors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxDistinctCount;
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxMode;
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxPercentile;
+import io.kipe.streams.kafka.processors.expressions.stats.ApproxTopK;
+import io.kipe.streams.kafka.processors.expressions.stats.Average;
+import io.kipe.streams.kafka.processors.expressions.stats.Count;
+import io.kipe.streams.kafka.processors.expressions.stats.DistinctCount;
+import io.kipe.streams.kafka.processors.expressions.stats.First;
+import io.kipe.streams.kafka.processors.expressions.stats.Last;
+import io.kipe.streams.kafka.processors.expressions.stats.Max;
+import io.kipe.streams.kafka.processors.expressions.stats.Median;
+import io.kipe.streams.kafka.processors.expressions.stats.Min;
+import io.kipe.streams.kafka.processors.expressions.stats.Mode;
+import io.kipe.streams.kafka.processors.expressions.stats.Percentile;
+import io.kipe.streams.kafka.processors.expressions.stats.Range;
+import io.kipe.streams.kafka.processors.expressions.stats.StandardDeviation;
+import io.kipe.streams.kafka.processors.expressions.stats.Sum;
+import io.kipe.streams.kafka.processors.expressions.stats.Variance;
+import io.kipe.streams.recordtypes.GenericRecord;
+
 class StatsExpressionTest {
 	
 	@Test
 	void testCreateInternalFieldName() {
 		assertEquals("_constructName_fieldNamePart", new TestStatsExpression("constructName").createInternalFieldName("fieldNamePart"));
 	}
+
+	@Test
+	void test_merge__equals_updating_all_records() {
+		List<StatsExpression> expressions = List.of(
+				Count.count(),
+				Sum.sum("value"),
+				Average.average("value"),
+				Variance.var("value"),
+				StandardDeviation.stdevp("value"),
+				Min.min("value"),
+				Max.max("value"),
+				First.first("value"),
+				Last.last("value"),
+				Range.range("value"),
+				DistinctCount.distinctCount("value"),
+				Mode.mode("name"),
+				Median.median("value"),
+				Percentile.perc90("value"),
+				ApproxPercentile.approxMedian("value"),
+				ApproxDistinctCount.approxDistinctCount("value"),
+				ApproxMode.approxMode("name"),
+				ApproxTopK.approxTopK("name", 2));
+		int[] values = {4, 1, 4, 7, 2, 9};
+
+		for (StatsExpression e : expressions) {
+			e.prepare();
+			assertTrue(e.isMergeable(), e.getClass().getSimpleName());
+
+			GenericRecord all = new GenericRecord();
+			GenericRecord earlier = new GenericRecord();
+			GenericRecord later = new GenericRecord();
+			for (int i = 0; i < values.length; i++) {
+				GenericRecord value = GenericRecord.create()
+						.with("value", values[i])
+						.with("name", "name-" + values[i]);
+				e.update("A", value, all);
+				e.update("A", value, i < 3 ? earlier : later);
+			}
+
+			// merging into an empty aggregate takes over the other one
+			GenericRecord merged = new GenericRecord();
+			e.merge(merged, earlier);
+			e.merge(merged, later);
+
+			assertResultEquals(e.finish(all), e.finish(merged), e.getClass().getSimpleName());
+			assertResultEquals(e.finish(all), merged.get(e.fieldRef), e.getClass().getSimpleName());
+		}
+	}
+
+	@Test
+	void test_merge__plain_expressions_are_not_mergeable() {
+		TestStatsExpression e = new TestStatsExpression("test");
+		GenericRecord aggregate = GenericRecord.create().with("test", 42);
+
+		assertFalse(e.isMergeable());
+		assertThrows(UnsupportedOperationException.class, () -> e.merge(aggregate, GenericRecord.create()));
+		assertEquals(42, aggregate.getNumber("test").intValue());
+		assertEquals(42, e.finish(aggregate));
+	}
+
+	@Test
+	void test_finish__of_typed_expression_without_values_is_null() {
+		assertNull(Average.average("value").finish(new GenericRecord()));
+	}
+
+	private static void assertResultEquals(Object expected, Object actual, String message) {
+		if (expected instanceof Double) {
+			assertEquals((Double) expected, ((Number) actual).doubleValue(), 1e-9, message);
+		} else {
+			assertEquals(expected, actual, message);
+		}
+	}
 	
 	static class TestStatsExpression extends StatsExpression {
 
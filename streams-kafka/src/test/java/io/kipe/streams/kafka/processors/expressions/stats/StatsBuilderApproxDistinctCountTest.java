@@ -0,0 +1,108 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.processors.AbstractGenericRecordProcessorTopologyTest;
+import io.kipe.streams.kafka.processors.KipesBuilder;
+import io.kipe.streams.kafka.processors.StatsBuilder;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link StatsBuilder} with ApproxDistinctCount stats.
+ */
+class StatsBuilderApproxDistinctCountTest extends AbstractGenericRecordProcessorTopologyTest {
+    public StatsBuilderApproxDistinctCountTest() {
+        super(Map.of());
+    }
+
+    /**
+     * Adds the stats processor to the topology builder, estimates the number of distinct values in each group.
+     *
+     * @param builder             KipesBuilder<String, GenericRecord>
+     * @param topologyTestContext TopologyTestContext
+     * @return KipesBuilder<String, GenericRecord>
+     */
+    @Override
+    protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+            KipesBuilder<String, GenericRecord> builder,
+            TopologyTestContext topologyTestContext) {
+        return builder.stats()
+                .with(ApproxDistinctCount.approxDistinctCount("field")).as("myDistinctCount")
+                .groupBy("group")
+                .build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+    }
+
+    @Test
+    void testSmallCardinality() {
+        send(GenericRecord.create().with("group", "A").with("field", "a"));
+        send(GenericRecord.create().with("group", "A").with("field", "b"));
+        send(GenericRecord.create().with("group", "B").with("field", "a"));
+        send(GenericRecord.create().with("group", "A").with("field", "a"));
+        send(GenericRecord.create().with("group", "A"));
+
+        assertEquals(5, this.targetTopic.getQueueSize());
+
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(1L, r.getNumber("myDistinctCount").longValue());
+
+        r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(2L, r.getNumber("myDistinctCount").longValue());
+
+        r = this.targetTopic.readValue();
+        assertEquals("B", r.getString("group"));
+        assertEquals(1L, r.getNumber("myDistinctCount").longValue());
+
+        r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(2L, r.getNumber("myDistinctCount").longValue());
+
+        r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(2L, r.getNumber("myDistinctCount").longValue());
+    }
+
+    @Test
+    void testLargeCardinality() {
+        // given 1000 distinct values, each sent twice
+        for (int i = 0; i < 2000; i++) {
+            send(GenericRecord.create().with("group", "A").with("field", "value-" + i % 1000));
+        }
+
+        List<GenericRecord> results = this.targetTopic.readValuesToList();
+        assertEquals(2000, results.size());
+
+        // then the estimate is within the expected error
+        assertEquals(1000, results.get(1999).getNumber("myDistinctCount").longValue(), 30);
+    }
+
+    @Test
+    void testInvalidPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> ApproxDistinctCount.approxDistinctCount("field", 3));
+        assertThrows(IllegalArgumentException.class, () -> ApproxDistinctCount.approxDistinctCount("field", 19));
+    }
+}
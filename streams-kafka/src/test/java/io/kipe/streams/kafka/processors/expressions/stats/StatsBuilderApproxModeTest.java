@@ -0,0 +1,139 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.processors.AbstractGenericRecordProcessorTopologyTest;
+import io.kipe.streams.kafka.processors.KipesBuilder;
+import io.kipe.streams.kafka.processors.StatsBuilder;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link StatsBuilder} with ApproxMode and ApproxTopK stats.
+ */
+class StatsBuilderApproxModeTest extends AbstractGenericRecordProcessorTopologyTest {
+    public StatsBuilderApproxModeTest() {
+        super(Map.of());
+    }
+
+    /**
+     * Adds the stats processor to the topology builder, estimates the mode and the two most frequent values of
+     * records in each group.
+     *
+     * @param builder             KipesBuilder<String, GenericRecord>
+     * @param topologyTestContext TopologyTestContext
+     * @return KipesBuilder<String, GenericRecord>
+     */
+    @Override
+    protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+            KipesBuilder<String, GenericRecord> builder,
+            TopologyTestContext topologyTestContext) {
+        return builder.stats()
+                .with(ApproxMode.approxMode("field")).as("myMode")
+                .with(ApproxTopK.approxTopK("field", 2)).as("myTopK")
+                .groupBy("group")
+                .build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+    }
+
+    @Test
+    void test() {
+        send(GenericRecord.create().with("group", "A").with("field", "apple"));
+        send(GenericRecord.create().with("group", "A").with("field", "banana"));
+        send(GenericRecord.create().with("group", "A").with("field", "apple"));
+        send(GenericRecord.create().with("group", "B").with("field", "orange"));
+        send(GenericRecord.create().with("group", "A").with("field", "cherry"));
+
+        assertEquals(5, this.targetTopic.getQueueSize());
+
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(Set.of("apple"), r.getSet("myMode"));
+        assertEquals(List.of("apple"), r.get("myTopK"));
+
+        r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(Set.of("apple", "banana"), r.getSet("myMode"));
+        assertEquals(List.of("apple", "banana"), r.get("myTopK"));
+
+        r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(Set.of("apple"), r.getSet("myMode"));
+        assertEquals(List.of("apple", "banana"), r.get("myTopK"));
+
+        r = this.targetTopic.readValue();
+        assertEquals("B", r.getString("group"));
+        assertEquals(Set.of("orange"), r.getSet("myMode"));
+        assertEquals(List.of("orange"), r.get("myTopK"));
+
+        r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(Set.of("apple"), r.getSet("myMode"));
+        assertEquals(List.of("apple", "banana"), r.get("myTopK"));
+    }
+
+    @Test
+    void testNullValuesAtStart() {
+        send(GenericRecord.create().with("group", "D").with("field", null));
+        send(GenericRecord.create().with("group", "D").with("field", "banana"));
+
+        assertEquals(2, this.targetTopic.getQueueSize());
+
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("D", r.getString("group"));
+        assertNull(r.get("myMode"));
+        assertNull(r.get("myTopK"));
+
+        r = this.targetTopic.readValue();
+        assertEquals("D", r.getString("group"));
+        assertEquals(Set.of("banana"), r.getSet("myMode"));
+        assertEquals(List.of("banana"), r.get("myTopK"));
+    }
+
+    @Test
+    void testManyDistinctValues() {
+        // given a frequent value among more distinct values than counters
+        for (int i = 0; i < 1000; i++) {
+            String value = i % 4 == 0 ? "frequent" : i % 8 == 1 ? "second" : "rare-" + i;
+            send(GenericRecord.create().with("group", "A").with("field", value));
+        }
+
+        List<GenericRecord> results = this.targetTopic.readValuesToList();
+        assertEquals(1000, results.size());
+
+        // then the frequent values are still found
+        GenericRecord r = results.get(999);
+        assertEquals(Set.of("frequent"), r.getSet("myMode"));
+        assertEquals(List.of("frequent", "second"), r.get("myTopK"));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> ApproxMode.approxMode("field", 0));
+        assertThrows(IllegalArgumentException.class, () -> ApproxTopK.approxTopK("field", 0));
+        assertThrows(IllegalArgumentException.class, () -> ApproxTopK.approxTopK("field", 5, 4));
+    }
+}
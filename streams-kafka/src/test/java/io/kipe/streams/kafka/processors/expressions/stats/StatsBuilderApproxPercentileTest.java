@@ -0,0 +1,106 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.processors.AbstractGenericRecordProcessorTopologyTest;
+import io.kipe.streams.kafka.processors.KipesBuilder;
+import io.kipe.streams.kafka.processors.StatsBuilder;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link StatsBuilder} with ApproxPercentile stats.
+ */
+class StatsBuilderApproxPercentileTest extends AbstractGenericRecordProcessorTopologyTest {
+    public StatsBuilderApproxPercentileTest() {
+        super(Map.of());
+    }
+
+    /**
+     * Adds the stats processor to the topology builder, estimates percentiles of records in each group.
+     *
+     * @param builder             KipesBuilder<String, GenericRecord>
+     * @param topologyTestContext TopologyTestContext
+     * @return KipesBuilder<String, GenericRecord>
+     */
+    @Override
+    protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+            KipesBuilder<String, GenericRecord> builder,
+            TopologyTestContext topologyTestContext) {
+        return builder.stats()
+                .with(ApproxPercentile.approxMedian("field"))
+                .with(ApproxPercentile.approxPercentile("field", 1)).as("p1")
+                .with(ApproxPercentile.approxPercentile("field", 90)).as("p90")
+                .with(ApproxPercentile.approxPercentile("field", 99)).as("p99")
+                .with(ApproxPercentile.approxPercentile("field", 50, 20)).as("p50c20")
+                .groupBy("group")
+                .build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+    }
+
+    @Test
+    void testSingleValue() {
+        send(GenericRecord.create().with("group", "A").with("field", 10.0));
+
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals(10.0, r.getDouble("approxMedian"));
+        assertEquals(10.0, r.getDouble("p1"));
+        assertEquals(10.0, r.getDouble("p99"));
+    }
+
+    @Test
+    void testMissingValues() {
+        send(GenericRecord.create().with("group", "A"));
+
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertFalse(r.contains("approxMedian"));
+    }
+
+    @Test
+    void testApproxPercentile() {
+        // given the values 1..1000 in a scrambled order
+        for (int i = 0; i < 1000; i++) {
+            send(GenericRecord.create().with("group", "A").with("field", (i * 7919) % 1000 + 1));
+        }
+
+        List<GenericRecord> results = this.targetTopic.readValuesToList();
+        assertEquals(1000, results.size());
+
+        GenericRecord r = results.get(999);
+        assertEquals("A", r.getString("group"));
+        assertEquals(500.5, r.getDouble("approxMedian"), 5.0);
+        assertEquals(10.5, r.getDouble("p1"), 2.0);
+        assertEquals(900.5, r.getDouble("p90"), 5.0);
+        assertEquals(990.5, r.getDouble("p99"), 2.0);
+        assertEquals(500.5, r.getDouble("p50c20"), 10.0);
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> ApproxPercentile.approxPercentile("field", 101));
+        assertThrows(IllegalArgumentException.class, () -> ApproxPercentile.approxPercentile("field", 50, 1));
+    }
+}
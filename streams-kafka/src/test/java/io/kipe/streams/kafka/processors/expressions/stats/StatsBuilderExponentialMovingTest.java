@@ -0,0 +1,92 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.processors.AbstractGenericRecordProcessorTopologyTest;
+import io.kipe.streams.kafka.processors.KipesBuilder;
+import io.kipe.streams.kafka.processors.StatsBuilder;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link StatsBuilder} with ExponentialMovingAverage and ExponentialMovingVariance stats.
+ */
+class StatsBuilderExponentialMovingTest extends AbstractGenericRecordProcessorTopologyTest {
+    public StatsBuilderExponentialMovingTest() {
+        super(Map.of());
+    }
+
+    /**
+     * Adds the stats processor to the topology builder, calculates the moving average and variance per value and
+     * per record time in each group.
+     *
+     * @param builder             KipesBuilder<String, GenericRecord>
+     * @param topologyTestContext TopologyTestContext
+     * @return KipesBuilder<String, GenericRecord>
+     */
+    @Override
+    protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+            KipesBuilder<String, GenericRecord> builder,
+            TopologyTestContext topologyTestContext) {
+        return builder.stats()
+                .with(ExponentialMovingAverage.ewma("field", 0.5)).as("ewma")
+                .with(ExponentialMovingVariance.ewmvar("field", 0.5)).as("ewmvar")
+                .with(ExponentialMovingAverage.ewma("field", Duration.ofSeconds(10))).as("ewma10s")
+                .groupBy("group")
+                .build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+    }
+
+    /**
+     * Tests the functionality of the stats processor.
+     */
+    @Test
+    void test() {
+        // given three records of a group, one half-life apart, and one with a NaN value in between
+        send(GenericRecord.create().with("group", "A").with("field", 10), 0);
+        send(GenericRecord.create().with("group", "A").with("field", 20), 10_000);
+        send(GenericRecord.create().with("group", "A").with("field", Double.NaN), 15_000);
+        send(GenericRecord.create().with("group", "A").with("field", 40), 20_000);
+
+        // then we get four results, with the weights halving per value and per half-life, ignoring the NaN value
+        assertEquals(4, this.targetTopic.getQueueSize());
+
+        assertResult(10.0, 0.0);
+        assertResult(25.0 / 1.5, 100.0 / 4.5);
+        assertResult(25.0 / 1.5, 100.0 / 4.5);
+        assertResult(52.5 / 1.75, 250.0 / 1.75);
+    }
+
+    private void assertResult(double ewma, double ewmvar) {
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(ewma, r.getDouble("ewma"), 1e-6);
+        assertEquals(ewmvar, r.getDouble("ewmvar"), 1e-6);
+        assertEquals(ewma, r.getDouble("ewma10s"), 1e-6);
+    }
+
+    private void send(GenericRecord record, long timestamp) {
+        this.sourceTopic.pipeInput(record, Instant.ofEpochMilli(timestamp));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.processors.AbstractGenericRecordProcessorTopologyTest;
+import io.kipe.streams.kafka.processors.KipesBuilder;
+import io.kipe.streams.kafka.processors.StatsBuilder;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link StatsBuilder} with Histogram stats.
+ */
+class StatsBuilderHistogramTest extends AbstractGenericRecordProcessorTopologyTest {
+    public StatsBuilderHistogramTest() {
+        super(Map.of());
+    }
+
+    /**
+     * Adds the stats processor to the topology builder, counts the values per span, boundary and power of ten in each
+     * group.
+     *
+     * @param builder             KipesBuilder<String, GenericRecord>
+     * @param topologyTestContext TopologyTestContext
+     * @return KipesBuilder<String, GenericRecord>
+     */
+    @Override
+    protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+            KipesBuilder<String, GenericRecord> builder,
+            TopologyTestContext topologyTestContext) {
+        return builder.stats()
+                .with(Histogram.histogram("field", 10)).as("spans")
+                .with(Histogram.histogram("field", new double[] {0, 50})).as("boundaries")
+                .with(Histogram.logHistogram("field", 10)).as("powers")
+                .groupBy("group")
+                .build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+    }
+
+    /**
+     * Tests the functionality of the stats processor.
+     */
+    @Test
+    void test() {
+        // given four records of a group
+        send(GenericRecord.create().with("group", "A").with("field", 12));
+        send(GenericRecord.create().with("group", "A").with("field", 100));
+        send(GenericRecord.create().with("group", "A").with("field", 8));
+        send(GenericRecord.create().with("group", "A").with("field", -3));
+
+        // then we get four results
+        assertEquals(4, this.targetTopic.getQueueSize());
+
+        assertResult(
+                Map.of("10.0", 1L),
+                Map.of("0.0", 1L),
+                Map.of("10.0", 1L));
+        assertResult(
+                Map.of("10.0", 1L, "100.0", 1L),
+                Map.of("0.0", 1L, "50.0", 1L),
+                Map.of("10.0", 1L, "100.0", 1L));
+        assertResult(
+                Map.of("10.0", 2L, "100.0", 1L),
+                Map.of("0.0", 2L, "50.0", 1L),
+                Map.of("1.0", 1L, "10.0", 1L, "100.0", 1L));
+        assertResult(
+                Map.of("0.0", 1L, "10.0", 2L, "100.0", 1L),
+                Map.of("-Infinity", 1L, "0.0", 2L, "50.0", 1L),
+                Map.of("0.0", 1L, "1.0", 1L, "10.0", 1L, "100.0", 1L));
+    }
+
+    @Test
+    void testInvalidScales() {
+        assertThrows(IllegalArgumentException.class, () -> Histogram.histogram("field", 0));
+        assertThrows(IllegalArgumentException.class, () -> Histogram.histogram("field", new double[] {1, 1}));
+        assertThrows(IllegalArgumentException.class, () -> Histogram.logHistogram("field", 1));
+    }
+
+    @Test
+    void testZeroBucketOfLogScale() {
+        // the powers of the smallest values fall below the int range for a base close to 1
+        Histogram h = Histogram.logHistogram("field", 1.0000001);
+        long smallest = h.bucketOf(Double.MIN_VALUE);
+
+        assertTrue(smallest < Integer.MIN_VALUE);
+        assertTrue(h.bucketOf(0) < smallest);
+        assertEquals(h.bucketOf(0), h.bucketOf(-1));
+        assertEquals(0.0, h.labelOf(h.bucketOf(0)));
+    }
+
+    private void assertResult(Map<String, Long> spans, Map<String, Long> boundaries, Map<String, Long> powers) {
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(spans, counts(r.get("spans")));
+        assertEquals(boundaries, counts(r.get("boundaries")));
+        assertEquals(powers, counts(r.get("powers")));
+    }
+
+    private static Map<String, Long> counts(Map<?, ?> histogram) {
+        // the json serde turns the bucket labels into strings
+        Map<String, Long> counts = new TreeMap<>();
+        histogram.forEach((label, count) -> counts.put(label.toString(), ((Number) count).longValue()));
+        return counts;
+    }
+}
@@ -27,6 +27,7 @@ import org.junit.jupiter.api.Test;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 /**
  * Tests {@link StatsBuilder} with Median stats.
@@ -223,4 +224,22 @@ class StatsBuilderMedianTest extends AbstractGenericRecordProcessorTopologyTest
         assertEquals(15, r.getNumber("myMedian").intValue());
     }
 
+    @Test
+    void testMissingValues() {
+        send(GenericRecord.create().with("group", "A"));
+        send(GenericRecord.create().with("group", "A").with("field", 10));
+        send(GenericRecord.create().with("group", "A").with("field", null));
+
+        assertEquals(3, this.targetTopic.getQueueSize());
+
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertFalse(r.contains("myMedian"));
+
+        r = this.targetTopic.readValue();
+        assertEquals(10, r.getNumber("myMedian").intValue());
+
+        r = this.targetTopic.readValue();
+        assertEquals(10, r.getNumber("myMedian").intValue());
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.processors.AbstractGenericRecordProcessorTopologyTest;
+import io.kipe.streams.kafka.processors.KipesBuilder;
+import io.kipe.streams.kafka.processors.StatsBuilder;
+import io.kipe.streams.kafka.processors.StatsExpression;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests {@link StatsBuilder} with RollingMin, RollingMax and RollingRange stats.
+ */
+class StatsBuilderRollingExtremesTest extends AbstractGenericRecordProcessorTopologyTest {
+    public StatsBuilderRollingExtremesTest() {
+        super(Map.of());
+    }
+
+    /**
+     * Adds the stats processor to the topology builder, calculates the extremes of the last three values and of the
+     * last ten seconds in each group.
+     *
+     * @param builder             KipesBuilder<String, GenericRecord>
+     * @param topologyTestContext TopologyTestContext
+     * @return KipesBuilder<String, GenericRecord>
+     */
+    @Override
+    protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+            KipesBuilder<String, GenericRecord> builder,
+            TopologyTestContext topologyTestContext) {
+        return builder.stats()
+                .with(RollingMin.rollingMin("field", 3)).as("min3")
+                .with(RollingMax.rollingMax("field", 3)).as("max3")
+                .with(RollingRange.rollingRange("field", 3)).as("range3")
+                .with(RollingMin.rollingMin("field", Duration.ofSeconds(10))).as("min10s")
+                .groupBy("group")
+                .build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+    }
+
+    /**
+     * Tests the functionality of the stats processor.
+     */
+    @Test
+    void test() {
+        // given five records of a group
+        send(GenericRecord.create().with("group", "A").with("field", 5), 0);
+        send(GenericRecord.create().with("group", "A").with("field", 1), 4_000);
+        send(GenericRecord.create().with("group", "A").with("field", 7), 12_000);
+        send(GenericRecord.create().with("group", "A").with("field", 3), 15_000);
+        send(GenericRecord.create().with("group", "A").with("field", 9), 16_000);
+
+        // then we get five results
+        assertEquals(5, this.targetTopic.getQueueSize());
+
+        assertResult(5, 5, 0, 5);
+        assertResult(1, 5, 4, 1);
+        assertResult(1, 7, 6, 1);
+        assertResult(1, 7, 6, 3);
+        assertResult(3, 9, 6, 3);
+    }
+
+    private void assertResult(double min3, double max3, double range3, double min10s) {
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(min3, r.getDouble("min3"));
+        assertEquals(max3, r.getDouble("max3"));
+        assertEquals(range3, r.getDouble("range3"));
+        assertEquals(min10s, r.getDouble("min10s"));
+        assertFalse(r.contains(StatsExpression.RECORD_TIMESTAMP_FIELD));
+    }
+
+    private void send(GenericRecord record, long timestamp) {
+        this.sourceTopic.pipeInput(record, Instant.ofEpochMilli(timestamp));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.kafka.processors.expressions.stats;
+
+import io.kipe.streams.kafka.processors.AbstractGenericRecordProcessorTopologyTest;
+import io.kipe.streams.kafka.processors.KipesBuilder;
+import io.kipe.streams.kafka.processors.StatsBuilder;
+import io.kipe.streams.kafka.processors.expressions.stats.TopN.TopNOrder;
+import io.kipe.streams.recordtypes.GenericRecord;
+import io.kipe.streams.test.kafka.TopologyTestContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link StatsBuilder} with TopN stats.
+ */
+class StatsBuilderTopNTest extends AbstractGenericRecordProcessorTopologyTest {
+    public StatsBuilderTopNTest() {
+        super(Map.of());
+    }
+
+    /**
+     * Adds the stats processor to the topology builder, finds the two largest and smallest values in each group.
+     *
+     * @param builder             KipesBuilder<String, GenericRecord>
+     * @param topologyTestContext TopologyTestContext
+     * @return KipesBuilder<String, GenericRecord>
+     */
+    @Override
+    protected KipesBuilder<String, GenericRecord> addGenericRecordProcessor(
+            KipesBuilder<String, GenericRecord> builder,
+            TopologyTestContext topologyTestContext) {
+        return builder.stats()
+                .with(TopN.topN("field", 2)).as("largest")
+                .with(TopN.topN("field", 2, TopNOrder.SMALLEST)).as("smallest")
+                .groupBy("group")
+                .build(topologyTestContext.getJsonSerdeRegistry().getSerde(String.class));
+    }
+
+    /**
+     * Tests the functionality of the stats processor.
+     */
+    @Test
+    void test() {
+        // given four records of a group
+        send(GenericRecord.create().with("group", "A").with("field", 10));
+        send(GenericRecord.create().with("group", "A").with("field", 30));
+        send(GenericRecord.create().with("group", "A").with("field", 20));
+        send(GenericRecord.create().with("group", "A").with("field", 30));
+
+        // then we get four results
+        assertEquals(4, this.targetTopic.getQueueSize());
+
+        assertResult(List.of(10.0), List.of(10.0));
+        assertResult(List.of(30.0, 10.0), List.of(10.0, 30.0));
+        assertResult(List.of(30.0, 20.0), List.of(10.0, 20.0));
+        assertResult(List.of(30.0, 30.0), List.of(10.0, 20.0));
+    }
+
+    @Test
+    void testInvalidN() {
+        assertThrows(IllegalArgumentException.class, () -> TopN.topN("field", 0));
+    }
+
+    private void assertResult(List<Double> largest, List<Double> smallest) {
+        GenericRecord r = this.targetTopic.readValue();
+        assertEquals("A", r.getString("group"));
+        assertEquals(largest, r.get("largest"));
+        assertEquals(smallest, r.get("smallest"));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.recordtypes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link FieldRef}.
+ */
+class FieldRefTest {
+
+	/**
+	 * Test that {@link FieldRef#slotIn(FieldSchema)} resolves the slot per schema.
+	 */
+	@Test
+	void test_slotIn__resolves_per_schema() {
+		FieldRef b = FieldRef.of("b");
+		
+		assertEquals(1, b.slotIn(FieldSchema.EMPTY.withField("a").withField("b")));
+		assertEquals(0, b.slotIn(FieldSchema.EMPTY.withField("b")));
+		assertEquals(-1, b.slotIn(FieldSchema.EMPTY.withField("a")));
+		assertEquals(1, b.slotIn(FieldSchema.EMPTY.withField("a").withField("b")));
+	}
+
+	/**
+	 * Test that a {@link FieldRef} accesses the same field as its name for records of different schemas.
+	 */
+	@Test
+	void test_record_access__matches_field_name_access() {
+		FieldRef b = FieldRef.of("b");
+		GenericRecord r1 = GenericRecord.create().with("a", 1).with("b", "one");
+		GenericRecord r2 = GenericRecord.create().with("b", "two");
+		GenericRecord r3 = GenericRecord.create().with("a", 3);
+		
+		assertEquals("one", r1.get(b));
+		assertEquals("two", r2.get(b));
+		assertNull(r3.get(b));
+		assertFalse(r3.contains(b));
+		
+		r3.set(b, "three");
+		assertTrue(r3.contains(b));
+		assertEquals("three", r3.get("b"));
+		
+		r1.remove(b);
+		assertFalse(r1.contains("b"));
+		assertEquals(1, (Integer) r1.get("a"));
+	}
+
+	/**
+	 * Test that the primitive accessors work with {@link FieldRef}s.
+	 */
+	@Test
+	void test_primitive_access() {
+		FieldRef count = FieldRef.of("count");
+		GenericRecord r = GenericRecord.create();
+		
+		assertEquals(0L, r.getLong(count));
+		r.setLong(count, r.getLong(count) + 1);
+		r.setLong(count, r.getLong(count) + 1);
+		
+		assertEquals(2L, r.getLong("count"));
+	}
+
+	/**
+	 * Test that {@link FieldRef}s are equal by field name.
+	 */
+	@Test
+	void test_equals() {
+		assertEquals(FieldRef.of("a"), FieldRef.of("a"));
+		assertEquals(FieldRef.of("a").hashCode(), FieldRef.of("a").hashCode());
+		assertFalse(FieldRef.of("a").equals(FieldRef.of("b")));
+	}
+}
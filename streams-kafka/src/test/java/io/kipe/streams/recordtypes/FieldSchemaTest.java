@@ -0,0 +1,76 @@
+/*
+ * Kipes SDK for Kafka - The High-Level Event Processing SDK.
+ * Copyright © 2023 kipe.io
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package io.kipe.streams.recordtypes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link FieldSchema}.
+ */
+class FieldSchemaTest {
+
+	/**
+	 * Test that {@link FieldSchema#withField(String)} returns the same interned schema for the same transition.
+	 */
+	@Test
+	void test_withField__interns_schemas() {
+		FieldSchema ab = FieldSchema.EMPTY.withField("a").withField("b");
+		
+		assertSame(ab, FieldSchema.EMPTY.withField("a").withField("b"));
+		assertNotSame(ab, FieldSchema.EMPTY.withField("b").withField("a"));
+	}
+
+	/**
+	 * Test that {@link FieldSchema#withField(String)} appends the new field as last slot.
+	 */
+	@Test
+	void test_withField__appends_slot() {
+		FieldSchema ab = FieldSchema.EMPTY.withField("a").withField("b");
+		
+		assertEquals(2, ab.size());
+		assertEquals(0, ab.slotOf("a"));
+		assertEquals(1, ab.slotOf("b"));
+		assertEquals(-1, ab.slotOf("c"));
+		assertEquals("b", ab.fieldName(1));
+	}
+
+	/**
+	 * Test that transitions beyond {@link FieldSchema#MAX_TRANSITIONS} are not cached anymore but still correct.
+	 */
+	@Test
+	void test_withField__limits_transitions() {
+		FieldSchema root = FieldSchema.EMPTY.withField("test_withField__limits_transitions");
+		for (int i = 0; i < FieldSchema.MAX_TRANSITIONS; i++) {
+			root.withField("field" + i);
+		}
+		
+		FieldSchema uncached = root.withField("uncached");
+		
+		assertNotSame(uncached, root.withField("uncached"));
+		assertEquals(1, uncached.slotOf("uncached"));
+		assertTrue(root.isInterned());
+		assertFalse(uncached.isInterned());
+		assertFalse(uncached.withField("next").isInterned());
+	}
+}
@@ -21,7 +21,9 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
@@ -94,6 +96,57 @@ class GenericRecordTest {
 		assertEquals("new", r.get("otherField"));
 	}
 	
+	// ------------------------------------------------------------------------
+	// tests copy/equals
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Test {@link GenericRecord#copy()} returns an independent copy.
+	 */
+	@Test
+	void test_copy_is_independent() {
+		r.with(FIELD, VALUE);
+		
+		GenericRecord copy = r.copy();
+		copy.set(FIELD, OTHER_VALUE);
+		copy.set("otherField", VALUE);
+		
+		assertEquals(VALUE, r.get(FIELD));
+		assertNull(r.get("otherField"));
+		assertEquals(OTHER_VALUE, copy.get(FIELD));
+	}
+
+	/**
+	 * Test {@link GenericRecord#equals(Object)} doesn't depend on the order the fields were added in or on removed
+	 * fields.
+	 */
+	@Test
+	void test_equals_ignores_field_order_and_removed_fields() {
+		r.with(FIELD, VALUE).with("otherField", OTHER_VALUE).with("removed", VALUE);
+		r.remove("removed");
+		
+		GenericRecord other = GenericRecord.create().with("otherField", OTHER_VALUE).with(FIELD, VALUE);
+		
+		assertEquals(other, r);
+		assertEquals(other.hashCode(), r.hashCode());
+	}
+
+	/**
+	 * Test {@link GenericRecord#fieldLayout()} is shared by records with the same present fields in the same order.
+	 */
+	@Test
+	void test_fieldLayout_identifies_the_present_fields() {
+		r.with(FIELD, VALUE).with("otherField", OTHER_VALUE);
+		
+		assertNotNull(r.fieldLayout());
+		assertSame(r.fieldLayout(), GenericRecord.create().with(FIELD, OTHER_VALUE).with("otherField", VALUE).fieldLayout());
+		assertSame(r.fieldLayout(), r.copy().fieldLayout());
+		assertNotSame(r.fieldLayout(), GenericRecord.create().with("otherField", OTHER_VALUE).with(FIELD, VALUE).fieldLayout());
+		
+		r.remove(FIELD);
+		assertNull(r.fieldLayout());
+	}
+
 	// ------------------------------------------------------------------------
 	// tests set/get/remove
 	// ------------------------------------------------------------------------
@@ -197,6 +250,192 @@ class GenericRecordTest {
 		assertNull(r.get(fieldName));
 	}
 
+	// ------------------------------------------------------------------------
+	// tests primitive accessors
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Tests that primitive fields read as their boxed counterparts.
+	 */
+	@Test
+	void test_setLong_setDouble_read_as_boxed_values() {
+		r.setLong("long", 5L);
+		r.setDouble("double", 2.5);
+		
+		assertEquals(5L, (Long)r.get("long"));
+		assertEquals(2.5, (Double)r.get("double"));
+		assertEquals(GenericRecord.create().with("long", 5L).with("double", 2.5), r);
+	}
+
+	/**
+	 * Tests that the primitive getters convert and default.
+	 */
+	@Test
+	void test_getLong_getDoubleValue() {
+		r.set("int", 3);
+		r.setDouble("double", 2.5);
+		
+		assertEquals(3L, r.getLong("int"));
+		assertEquals(3.0, r.getDoubleValue("int"));
+		assertEquals(2L, r.getLong("double"));
+		assertEquals(0L, r.getLong("unknown"));
+		assertEquals(7.0, r.getDoubleValue("unknown", 7.0));
+	}
+
+	/**
+	 * Tests that primitive fields can be removed and replaced by objects.
+	 */
+	@Test
+	void test_primitive_fields_remove_and_replace() {
+		r.setLong(FIELD, 1L);
+		r.remove(FIELD);
+		assertNull(r.get(FIELD));
+		
+		r.setLong(FIELD, 1L);
+		r.set(FIELD, VALUE);
+		assertEquals(VALUE, r.get(FIELD));
+	}
+
+	/**
+	 * Tests that primitive fields are written as numbers to json.
+	 */
+	@Test
+	void test_primitive_fields_serde() throws JsonProcessingException {
+		r.setLong("long", 5L);
+		r.setDouble("double", 2.5);
+		
+		ObjectMapper mapper = new ObjectMapper();
+		GenericRecord serdeRecord = mapper.readValue(mapper.writeValueAsString(r), GenericRecord.class);
+		
+		assertEquals(r, serdeRecord);
+		assertEquals(5L, serdeRecord.getLong("long"));
+	}
+
+	// ------------------------------------------------------------------------
+	// tests lazy
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Tests that lazy records decode each field once on first access.
+	 */
+	@Test
+	void test_lazy_decodes_on_first_access() {
+		int[] decodes = new int[2];
+		GenericRecord lazy = GenericRecord.lazy(new FieldDecoder() {
+			@Override
+			public int size() {
+				return 2;
+			}
+
+			@Override
+			public String fieldName(int index) {
+				return index == 0 ? FIELD : "list";
+			}
+
+			@Override
+			public Object decode(int index) {
+				decodes[index]++;
+				return index == 0 ? VALUE : new ArrayList<>(List.of(1));
+			}
+		});
+		
+		assertEquals(VALUE, lazy.get(FIELD));
+		assertEquals(VALUE, lazy.get(FIELD));
+		assertArrayEquals(new int[] {1, 0}, decodes);
+		assertNotNull(lazy.unmodifiedSource());
+		
+		// decoding a mutable value ends the unmodified state
+		assertEquals(List.of(1), lazy.get("list"));
+		assertNull(lazy.unmodifiedSource());
+	}
+
+	/**
+	 * Tests that changes end the unmodified state of lazy records.
+	 */
+	@Test
+	void test_lazy_modification() {
+		FieldDecoder decoder = new FieldDecoder() {
+			@Override
+			public int size() {
+				return 1;
+			}
+
+			@Override
+			public String fieldName(int index) {
+				return FIELD;
+			}
+
+			@Override
+			public Object decode(int index) {
+				return VALUE;
+			}
+		};
+		GenericRecord lazy = GenericRecord.lazy(decoder);
+		GenericRecord copy = lazy.copy();
+		
+		copy.set(FIELD, OTHER_VALUE);
+		
+		assertSame(decoder, lazy.unmodifiedSource());
+		assertNull(copy.unmodifiedSource());
+		assertEquals(VALUE, lazy.get(FIELD));
+		assertEquals(OTHER_VALUE, copy.get(FIELD));
+	}
+
+	// ------------------------------------------------------------------------
+	// tests fork
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Tests that changes of a fork and its original don't affect each other.
+	 */
+	@Test
+	void test_fork_copy_on_write() {
+		GenericRecord original = GenericRecord.create().with(FIELD, VALUE);
+		original.setLong("count", 1);
+		GenericRecord forkA = original.fork();
+		GenericRecord forkB = original.fork();
+		
+		forkA.set(FIELD, OTHER_VALUE);
+		forkA.setLong("count", 2);
+		forkB.set("new", VALUE);
+		forkB.remove("count");
+		original.setDouble("avg", 1.5);
+		
+		assertEquals(GenericRecord.create().with(FIELD, VALUE).with("count", 1L).with("avg", 1.5), original);
+		assertEquals(GenericRecord.create().with(FIELD, OTHER_VALUE).with("count", 2L), forkA);
+		assertEquals(GenericRecord.create().with(FIELD, VALUE).with("new", VALUE), forkB);
+	}
+
+	/**
+	 * Tests that forks of lazy records decode their own mutable values.
+	 */
+	@Test
+	void test_fork_lazy() {
+		GenericRecord lazy = GenericRecord.lazy(new FieldDecoder() {
+			@Override
+			public int size() {
+				return 1;
+			}
+
+			@Override
+			public String fieldName(int index) {
+				return "list";
+			}
+
+			@Override
+			public Object decode(int index) {
+				return new ArrayList<>(List.of(1));
+			}
+		});
+		GenericRecord fork = lazy.fork();
+		
+		fork.<List<Integer>>get("list").add(2);
+		
+		assertNotNull(lazy.unmodifiedSource());
+		assertEquals(List.of(1), lazy.get("list"));
+		assertEquals(List.of(1, 2), fork.get("list"));
+	}
+
 	// ------------------------------------------------------------------------
 	// serde
 	// ------------------------------------------------------------------------